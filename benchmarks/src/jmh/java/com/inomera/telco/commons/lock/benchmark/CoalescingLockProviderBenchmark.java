@@ -0,0 +1,97 @@
+package com.inomera.telco.commons.lock.benchmark;
+
+import com.inomera.telco.commons.lock.LockProvider;
+import com.inomera.telco.commons.lock.reentrant.CoalescingLockProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Threads of one JVM locking a hot key of a distributed provider and holding it for {@code holdMicros}, directly and
+ * through a {@link CoalescingLockProvider}. Coalesced threads queue locally and hand the remote lock off to each other,
+ * so the remote store sees about one acquisition per node instead of one per thread.
+ * <p>
+ * For the {@code redis} backend the number of commands the Redis server processed per acquisition is printed after
+ * every iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CoalescingLockProviderBenchmark {
+    private static final String LOCK_MAP = "/lock-provider-benchmark";
+    private static final String HOT_KEY = "hot-key";
+
+    @Param({"redis", "hazelcast", "zookeeper"})
+    public String backend;
+
+    @Param({"false", "true"})
+    public boolean coalescing;
+
+    @Param({"100"})
+    public long holdMicros;
+
+    private LockProviderBackend lockProviderBackend;
+    private LockProvider lockProvider;
+    private final LongAdder acquisitions = new LongAdder();
+    private long commandsProcessed;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        lockProviderBackend = LockProviderBackend.start(backend);
+        lockProvider = coalescing
+                ? new CoalescingLockProvider(lockProviderBackend.lockProvider())
+                : lockProviderBackend.lockProvider();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        lockProviderBackend.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void startCounting() {
+        acquisitions.reset();
+        if ("redis".equals(backend)) {
+            commandsProcessed = lockProviderBackend.redisCommandsProcessed();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void printCommandsPerAcquisition() {
+        if (!"redis".equals(backend)) {
+            return;
+        }
+        final long commands = lockProviderBackend.redisCommandsProcessed() - commandsProcessed;
+        final long acquired = acquisitions.sum();
+        System.out.printf("%ncoalescing=%s: %d acquisitions, %.2f Redis commands per acquisition%n",
+                coalescing, acquired, acquired == 0 ? 0.0 : (double) commands / acquired);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void hotKey_1Thread() {
+        lockAndHold();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void hotKey_16Threads() {
+        lockAndHold();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void hotKey_64Threads() {
+        lockAndHold();
+    }
+
+    private void lockAndHold() {
+        lockProvider.executeInLock(LOCK_MAP, HOT_KEY, () -> LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(holdMicros)));
+        acquisitions.increment();
+    }
+}
@@ -0,0 +1,70 @@
+package com.inomera.telco.commons.lock.benchmark;
+
+import com.inomera.telco.commons.lock.LockProvider;
+import com.inomera.telco.commons.lock.reentrant.LocalExecutionMode;
+import com.inomera.telco.commons.lock.reentrant.LocalReentrantLockProvider;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Threads running a small supplier through {@code executeInLock} of a {@link LocalReentrantLockProvider} on a single
+ * fair key, with every caller acquiring the lock ({@code LOCKED}) and with flat combining ({@code COMBINING}),
+ * at 1, 8, 32 and 128 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CombiningExecuteInLockBenchmark {
+    private static final String LOCK_MAP = "subscribers";
+    private static final String LOCK_KEY = "hot";
+
+    @Param({"LOCKED", "COMBINING"})
+    public LocalExecutionMode executionMode;
+
+    @Param({"20"})
+    public int workTokens;
+
+    private LockProvider lockProvider;
+    private long counter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        lockProvider = new LocalReentrantLockProvider(executionMode);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long threads1() {
+        return executeInLock();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long threads8() {
+        return executeInLock();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public long threads32() {
+        return executeInLock();
+    }
+
+    @Benchmark
+    @Threads(128)
+    public long threads128() {
+        return executeInLock();
+    }
+
+    private long executeInLock() {
+        return lockProvider.executeInLock(LOCK_MAP, LOCK_KEY, () -> {
+            Blackhole.consumeCPU(workTokens);
+            return ++counter;
+        });
+    }
+}
@@ -0,0 +1,70 @@
+package com.inomera.telco.commons.lock.benchmark;
+
+import com.inomera.telco.commons.lock.LockProvider;
+import com.inomera.telco.commons.lock.hazelcast.HazelcastLockMode;
+import com.inomera.telco.commons.lock.hazelcast.HazelcastLockProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link HazelcastLockMode}s of a {@link HazelcastLockProvider} on an embedded cluster of three members,
+ * which are all CP members. The provider runs on the first member.
+ * <ul>
+ * <li>{@code MAP}: map lock, one operation on the key's partition owner, replicated to its backup.</li>
+ * <li>{@code FENCED_LOCK}: CP fenced lock, committed through the Raft log of the CP group on a majority of members.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HazelcastLockModeBenchmark {
+    private static final String LOCK_MAP = "/lock-provider-benchmark";
+    private static final String HOT_KEY = "hot-key";
+    private static final int MEMBERS = 3;
+    private static final int KEY_COUNT = 1000;
+
+    @Param({"MAP", "FENCED_LOCK"})
+    public HazelcastLockMode lockMode;
+
+    private LockProviderBackend lockProviderBackend;
+    private LockProvider lockProvider;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        lockProviderBackend = LockProviderBackend.startHazelcast(MEMBERS, lockMode);
+        lockProvider = lockProviderBackend.lockProvider();
+        keys = new String[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keys[i] = "key-" + i;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        lockProviderBackend.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void uncontended_1Thread() {
+        lockProvider.lock(LOCK_MAP, HOT_KEY).unlock();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void hotKey_4Threads() {
+        lockProvider.lock(LOCK_MAP, HOT_KEY).unlock();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void manyKeys_4Threads() {
+        lockProvider.lock(LOCK_MAP, keys[ThreadLocalRandom.current().nextInt(KEY_COUNT)]).unlock();
+    }
+}
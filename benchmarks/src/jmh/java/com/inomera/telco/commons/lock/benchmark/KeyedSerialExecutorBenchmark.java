@@ -0,0 +1,90 @@
+package com.inomera.telco.commons.lock.benchmark;
+
+import com.inomera.telco.commons.lock.LockProvider;
+import com.inomera.telco.commons.lock.reentrant.KeyedSerialExecutor;
+import com.inomera.telco.commons.lock.reentrant.LocalReentrantLockProvider;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Threads serializing small updates per key, picked out of {@code keys} keys with a Zipf distribution of exponent
+ * {@code skew} (0 for uniform), through {@code executeInLock} of a {@link LocalReentrantLockProvider} and through
+ * a {@link KeyedSerialExecutor} on {@code ForkJoinPool.commonPool()}.
+ * <p>
+ * Submitters keep up to {@code window} updates outstanding each and wait for the oldest one beyond that, so the
+ * executor is measured at the rate it completes updates rather than the rate it queues them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class KeyedSerialExecutorBenchmark {
+    private static final String LOCK_MAP = "subscribers";
+
+    @Param({"1000"})
+    public int keys;
+
+    @Param({"0.0", "1.0", "1.5"})
+    public double skew;
+
+    @Param({"100"})
+    public int workTokens;
+
+    @Param({"64"})
+    public int window;
+
+    private LockProvider lockProvider;
+    private KeyedSerialExecutor keyedSerialExecutor;
+    private double[] cumulativeWeights;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        lockProvider = new LocalReentrantLockProvider();
+        keyedSerialExecutor = new KeyedSerialExecutor();
+        cumulativeWeights = new double[keys];
+        double total = 0;
+        for (int rank = 0; rank < keys; rank++) {
+            total += 1 / Math.pow(rank + 1, skew);
+            cumulativeWeights[rank] = total;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Outstanding {
+        private final ArrayDeque<CompletableFuture<Void>> futures = new ArrayDeque<>();
+
+        @TearDown(Level.Iteration)
+        public void drain() {
+            futures.forEach(CompletableFuture::join);
+            futures.clear();
+        }
+    }
+
+    @Benchmark
+    public void executeInLock() {
+        lockProvider.executeInLock(LOCK_MAP, nextKey(), () -> Blackhole.consumeCPU(workTokens));
+    }
+
+    @Benchmark
+    public void keyedSerialExecutor(Outstanding outstanding) {
+        outstanding.futures.add(keyedSerialExecutor.execute(LOCK_MAP, nextKey(), () -> Blackhole.consumeCPU(workTokens)));
+        if (outstanding.futures.size() > window) {
+            outstanding.futures.poll().join();
+        }
+    }
+
+    private String nextKey() {
+        final double weight = ThreadLocalRandom.current().nextDouble(cumulativeWeights[keys - 1]);
+        final int index = Arrays.binarySearch(cumulativeWeights, weight);
+        return "key" + (index >= 0 ? index : -index - 1);
+    }
+}
@@ -0,0 +1,240 @@
+package com.inomera.telco.commons.lock.benchmark;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.inomera.telco.commons.lock.LockProvider;
+import com.inomera.telco.commons.lock.hazelcast.HazelcastLockMode;
+import com.inomera.telco.commons.lock.hazelcast.HazelcastLockProvider;
+import com.inomera.telco.commons.lock.redis.RedisLockMode;
+import com.inomera.telco.commons.lock.redis.RedisLockProvider;
+import com.inomera.telco.commons.lock.reentrant.LocalReentrantLockProvider;
+import com.inomera.telco.commons.lock.zookeeper.ZookeeperLockMode;
+import com.inomera.telco.commons.lock.zookeeper.ZookeeperLockProvider;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.ExponentialBackoffRetry;
+import org.apache.curator.test.TestingServer;
+import org.redisson.Redisson;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.redisnode.RedisNode;
+import org.redisson.api.redisnode.RedisNodes;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link LockProvider} together with the in-process server it talks to.
+ * <ul>
+ * <li>{@code local}: {@link LocalReentrantLockProvider}, no server.</li>
+ * <li>{@code hazelcast}: {@link HazelcastLockProvider} on a single embedded member with joining disabled, or on
+ * several members joining over TCP/IP.</li>
+ * <li>{@code zookeeper}: {@link ZookeeperLockProvider} on Curator's {@link TestingServer}.</li>
+ * <li>{@code redis}: {@link RedisLockProvider} on an embedded redis-server process, or on the server given by
+ * the {@code lock.benchmark.redis.address} system property, e.g. {@code redis://127.0.0.1:6379}.</li>
+ * </ul>
+ */
+abstract class LockProviderBackend implements AutoCloseable {
+    static final String REDIS_ADDRESS_PROPERTY = "lock.benchmark.redis.address";
+
+    static LockProviderBackend start(String name) throws Exception {
+        switch (name) {
+            case "local":
+                return new Local();
+            case "hazelcast":
+                return new EmbeddedHazelcast(1, HazelcastLockMode.MAP);
+            case "zookeeper":
+                return new EmbeddedZookeeper(ZookeeperLockProvider.DEFAULT_MUTEX_CACHE_SIZE, ZookeeperLockMode.MUTEX);
+            case "redis":
+                return new EmbeddedRedis(RedisLockProvider.DEFAULT_LOCK_HANDLE_CACHE_SIZE, RedisLockMode.fair());
+            default:
+                throw new IllegalArgumentException("Unknown lock provider backend: " + name);
+        }
+    }
+
+    /**
+     * Starts the {@code hazelcast} backend on the given number of members, which are all CP members if there are
+     * at least three, with the given lock mode. The lock provider uses the first member.
+     */
+    static LockProviderBackend startHazelcast(int members, HazelcastLockMode lockMode) {
+        return new EmbeddedHazelcast(members, lockMode);
+    }
+
+    /**
+     * Starts the {@code zookeeper} backend with the given mutex cache size.
+     */
+    static LockProviderBackend startZookeeper(int mutexCacheSize) throws Exception {
+        return new EmbeddedZookeeper(mutexCacheSize, ZookeeperLockMode.MUTEX);
+    }
+
+    /**
+     * Starts the {@code zookeeper} backend with the default mutex cache size and the given lock mode.
+     */
+    static LockProviderBackend startZookeeper(ZookeeperLockMode lockMode) throws Exception {
+        return new EmbeddedZookeeper(ZookeeperLockProvider.DEFAULT_MUTEX_CACHE_SIZE, lockMode);
+    }
+
+    /**
+     * Starts the {@code redis} backend with the given lock handle cache size and lock mode of all lock maps.
+     */
+    static LockProviderBackend startRedis(int lockHandleCacheSize, RedisLockMode lockMode) throws IOException {
+        return new EmbeddedRedis(lockHandleCacheSize, lockMode);
+    }
+
+    abstract LockProvider lockProvider();
+
+    /**
+     * @return number of commands the Redis server processed since it started, from {@code INFO stats}
+     */
+    long redisCommandsProcessed() {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " has no Redis server");
+    }
+
+    /**
+     * Stops the server; declared with {@link IOException} rather than {@link Exception}, so that closing cannot throw
+     * {@link InterruptedException}.
+     */
+    @Override
+    public void close() throws IOException {
+    }
+
+    private static final class Local extends LockProviderBackend {
+        private final LockProvider lockProvider = new LocalReentrantLockProvider();
+
+        @Override
+        LockProvider lockProvider() {
+            return lockProvider;
+        }
+    }
+
+    private static final class EmbeddedHazelcast extends LockProviderBackend {
+        private static final int BASE_PORT = 5701;
+
+        private final List<HazelcastInstance> hazelcastInstances = new ArrayList<>();
+        private final LockProvider lockProvider;
+
+        EmbeddedHazelcast(int members, HazelcastLockMode lockMode) {
+            for (int i = 0; i < members; i++) {
+                final Config config = new Config();
+                config.setClusterName("lock-provider-benchmark");
+                config.setProperty("hazelcast.phone.home.enabled", "false");
+                final JoinConfig join = config.getNetworkConfig().getJoin();
+                join.getMulticastConfig().setEnabled(false);
+                join.getAutoDetectionConfig().setEnabled(false);
+                config.getNetworkConfig().setPort(BASE_PORT + i).setPortAutoIncrement(false);
+                if (members > 1) {
+                    join.getTcpIpConfig().setEnabled(true);
+                    for (int j = 0; j < members; j++) {
+                        join.getTcpIpConfig().addMember("127.0.0.1:" + (BASE_PORT + j));
+                    }
+                }
+                if (members >= 3) {
+                    config.getCPSubsystemConfig().setCPMemberCount(members);
+                }
+                hazelcastInstances.add(Hazelcast.newHazelcastInstance(config));
+            }
+            final HazelcastInstance hazelcastInstance = hazelcastInstances.get(0);
+            if (members >= 3) {
+                try {
+                    hazelcastInstance.getCPSubsystem().getCPSubsystemManagementService()
+                            .awaitUntilDiscoveryCompleted(2, TimeUnit.MINUTES);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the CP subsystem", e);
+                }
+            }
+            lockProvider = new HazelcastLockProvider(hazelcastInstance, "HazelcastLockProvider_DefaultLockMap", lockMode);
+        }
+
+        @Override
+        LockProvider lockProvider() {
+            return lockProvider;
+        }
+
+        @Override
+        public void close() {
+            hazelcastInstances.forEach(HazelcastInstance::shutdown);
+        }
+    }
+
+    private static final class EmbeddedZookeeper extends LockProviderBackend {
+        private final TestingServer server;
+        private final CuratorFramework curatorClient;
+        private final LockProvider lockProvider;
+
+        EmbeddedZookeeper(int mutexCacheSize, ZookeeperLockMode lockMode) throws Exception {
+            server = new TestingServer(true);
+            curatorClient = CuratorFrameworkFactory.newClient(server.getConnectString(), new ExponentialBackoffRetry(1000, 3));
+            curatorClient.start();
+            curatorClient.blockUntilConnected();
+            lockProvider = new ZookeeperLockProvider(curatorClient, "/locks", mutexCacheSize, null, lockMode);
+        }
+
+        @Override
+        LockProvider lockProvider() {
+            return lockProvider;
+        }
+
+        @Override
+        public void close() throws IOException {
+            curatorClient.close();
+            server.close();
+        }
+    }
+
+    private static final class EmbeddedRedis extends LockProviderBackend {
+        private final RedisServer server;
+        private final RedissonClient redisson;
+        private final LockProvider lockProvider;
+
+        EmbeddedRedis(int lockHandleCacheSize, RedisLockMode lockMode) throws IOException {
+            String address = System.getProperty(REDIS_ADDRESS_PROPERTY);
+            if (address == null) {
+                final int port = freePort();
+                server = new RedisServer(port);
+                server.start();
+                address = "redis://127.0.0.1:" + port;
+            } else {
+                server = null;
+            }
+            final org.redisson.config.Config config = new org.redisson.config.Config();
+            config.useSingleServer().setAddress(address);
+            redisson = Redisson.create(config);
+            lockProvider = new RedisLockProvider(redisson, "RedisLockProvider_DefaultLockMap", lockHandleCacheSize,
+                    lockMode, new HashMap<>());
+        }
+
+        @Override
+        LockProvider lockProvider() {
+            return lockProvider;
+        }
+
+        @Override
+        long redisCommandsProcessed() {
+            final Map<String, String> stats = redisson.getRedisNodes(RedisNodes.SINGLE).getInstance()
+                    .info(RedisNode.InfoSection.STATS);
+            return Long.parseLong(stats.get("total_commands_processed"));
+        }
+
+        @Override
+        public void close() throws IOException {
+            redisson.shutdown();
+            if (server != null) {
+                server.stop();
+            }
+        }
+
+        private static int freePort() throws IOException {
+            try (ServerSocket socket = new ServerSocket(0)) {
+                return socket.getLocalPort();
+            }
+        }
+    }
+}
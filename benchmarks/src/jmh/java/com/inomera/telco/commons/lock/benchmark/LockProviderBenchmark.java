@@ -0,0 +1,170 @@
+package com.inomera.telco.commons.lock.benchmark;
+
+import com.inomera.telco.commons.lock.LockProvider;
+import com.inomera.telco.commons.lock.Locked;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Compares the {@link LockProvider} implementations on the same workloads, each at several thread counts:
+ * <ul>
+ * <li>{@code uncontended}: one thread locking and unlocking its own key.</li>
+ * <li>{@code hotKey}: all threads locking the same key.</li>
+ * <li>{@code manyKeys}: every operation locks a random key out of {@code keyCount}.</li>
+ * <li>{@code executeInLock}: {@link LockProvider#executeInLock(String, String, Supplier)} on the thread's own key.</li>
+ * <li>{@code tryLockHotKey}: tryLock without waiting on the same key. The {@code acquired} and {@code failed}
+ * secondary results give the failure rate.</li>
+ * </ul>
+ * Select backends with {@code -p backend=local,redis}; see {@link LockProviderBackend} for how each one is started.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LockProviderBenchmark {
+    private static final String LOCK_MAP = "/lock-provider-benchmark";
+    private static final String HOT_KEY = "hot-key";
+
+    @Param({"local", "hazelcast", "zookeeper", "redis"})
+    public String backend;
+
+    @Param({"10000"})
+    public int keyCount;
+
+    private final AtomicInteger threadIndex = new AtomicInteger();
+    private final Supplier<Integer> supplier = () -> 42;
+    private LockProviderBackend lockProviderBackend;
+    private LockProvider lockProvider;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        lockProviderBackend = LockProviderBackend.start(backend);
+        lockProvider = lockProviderBackend.lockProvider();
+        keys = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = "key-" + i;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        lockProviderBackend.close();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadKey {
+        String ownKey;
+
+        @Setup
+        public void setUp(LockProviderBenchmark benchmark) {
+            ownKey = "thread-" + benchmark.threadIndex.getAndIncrement();
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class TryLockCounters {
+        public long acquired;
+        public long failed;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            acquired = 0;
+            failed = 0;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void uncontended(ThreadKey key) {
+        lockAndUnlock(key.ownKey);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void hotKey_4Threads() {
+        lockAndUnlock(HOT_KEY);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void hotKey_16Threads() {
+        lockAndUnlock(HOT_KEY);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void manyKeys_1Thread() {
+        lockAndUnlock(randomKey());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void manyKeys_4Threads() {
+        lockAndUnlock(randomKey());
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void manyKeys_16Threads() {
+        lockAndUnlock(randomKey());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Integer executeInLock_1Thread(ThreadKey key) {
+        return lockProvider.executeInLock(LOCK_MAP, key.ownKey, supplier);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Integer executeInLock_4Threads(ThreadKey key) {
+        return lockProvider.executeInLock(LOCK_MAP, key.ownKey, supplier);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Integer executeInLock_16Threads(ThreadKey key) {
+        return lockProvider.executeInLock(LOCK_MAP, key.ownKey, supplier);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void tryLockHotKey_4Threads(TryLockCounters counters) {
+        tryLockAndUnlock(counters);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void tryLockHotKey_16Threads(TryLockCounters counters) {
+        tryLockAndUnlock(counters);
+    }
+
+    private void lockAndUnlock(String lockKey) {
+        final Locked locked = lockProvider.lock(LOCK_MAP, lockKey);
+        locked.unlock();
+    }
+
+    private void tryLockAndUnlock(TryLockCounters counters) {
+        final Optional<Locked> locked = lockProvider.tryLock(LOCK_MAP, HOT_KEY, Duration.ZERO);
+        if (locked.isPresent()) {
+            counters.acquired++;
+            locked.get().unlock();
+        } else {
+            counters.failed++;
+        }
+    }
+
+    private String randomKey() {
+        return keys[ThreadLocalRandom.current().nextInt(keys.length)];
+    }
+}
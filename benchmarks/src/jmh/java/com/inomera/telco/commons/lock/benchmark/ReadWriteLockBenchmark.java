@@ -0,0 +1,87 @@
+package com.inomera.telco.commons.lock.benchmark;
+
+import com.inomera.telco.commons.lock.LockProvider;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-mostly workload on a single hot key, comparing read/write locks with exclusive locks at several thread counts.
+ * Each operation is a read with probability {@code readPercent}, otherwise a write, and spends {@code workTokens}
+ * of {@link Blackhole#consumeCPU(long)} inside the lock.
+ * <ul>
+ * <li>{@code lockType=readWrite}: reads use {@link LockProvider#executeInReadLock}, writes
+ * {@link LockProvider#executeInWriteLock}. Throughput should grow with threads, the more so the higher the read share.</li>
+ * <li>{@code lockType=exclusive}: reads and writes both use {@link LockProvider#executeInLock}, the baseline.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadWriteLockBenchmark {
+    private static final String LOCK_MAP = "/lock-provider-benchmark";
+    private static final String HOT_KEY = "read-mostly-key";
+
+    @Param({"local", "hazelcast", "zookeeper", "redis"})
+    public String backend;
+
+    @Param({"readWrite", "exclusive"})
+    public String lockType;
+
+    @Param({"90", "99"})
+    public int readPercent;
+
+    @Param({"500"})
+    public long workTokens;
+
+    private LockProviderBackend lockProviderBackend;
+    private LockProvider lockProvider;
+    private boolean readWrite;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        lockProviderBackend = LockProviderBackend.start(backend);
+        lockProvider = lockProviderBackend.lockProvider();
+        readWrite = "readWrite".equals(lockType);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        lockProviderBackend.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void readMostly_1Thread() {
+        readOrWrite();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void readMostly_4Threads() {
+        readOrWrite();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void readMostly_16Threads() {
+        readOrWrite();
+    }
+
+    private void readOrWrite() {
+        final Runnable work = () -> Blackhole.consumeCPU(workTokens);
+        final boolean read = ThreadLocalRandom.current().nextInt(100) < readPercent;
+        if (!readWrite) {
+            lockProvider.executeInLock(LOCK_MAP, HOT_KEY, work);
+        } else if (read) {
+            lockProvider.executeInReadLock(LOCK_MAP, HOT_KEY, work);
+        } else {
+            lockProvider.executeInWriteLock(LOCK_MAP, HOT_KEY, work);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.inomera.telco.commons.lock.benchmark;
+
+import com.inomera.telco.commons.lock.LockProvider;
+import com.inomera.telco.commons.lock.redis.RedisLockMode;
+import com.inomera.telco.commons.lock.redis.RedisLockProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Locks and unlocks random keys of a {@link RedisLockProvider} with and without its lock handle cache
+ * ({@code lockHandleCacheSize=0}). Run with {@code -prof gc} and compare {@code gc.alloc.rate.norm}, the bytes
+ * allocated per operation: the difference is the Redisson map proxy, lock object and lock names the cache saves.
+ * <p>
+ * With {@code keyCount} above the cache size the cache also evicts, e.g. {@code -p keyCount=100000}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class RedisLockHandleCacheBenchmark {
+    private static final String LOCK_MAP = "/lock-provider-benchmark";
+
+    @Param({"0", "10000"})
+    public int lockHandleCacheSize;
+
+    @Param({"1000"})
+    public int keyCount;
+
+    private LockProviderBackend lockProviderBackend;
+    private LockProvider lockProvider;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        lockProviderBackend = LockProviderBackend.startRedis(lockHandleCacheSize, RedisLockMode.fair());
+        lockProvider = lockProviderBackend.lockProvider();
+        keys = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = "key-" + i;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        lockProviderBackend.close();
+    }
+
+    @Benchmark
+    public void lock() {
+        lockProvider.lock(LOCK_MAP, randomKey()).unlock();
+    }
+
+    @Benchmark
+    public void tryLock() {
+        lockProvider.tryLock(LOCK_MAP, randomKey(), Duration.ZERO).ifPresent(locked -> locked.unlock());
+    }
+
+    private String randomKey() {
+        return keys[ThreadLocalRandom.current().nextInt(keyCount)];
+    }
+}
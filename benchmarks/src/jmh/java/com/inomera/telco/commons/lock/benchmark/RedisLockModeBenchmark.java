@@ -0,0 +1,108 @@
+package com.inomera.telco.commons.lock.benchmark;
+
+import com.inomera.telco.commons.lock.LockProvider;
+import com.inomera.telco.commons.lock.redis.RedisLockMode;
+import com.inomera.telco.commons.lock.redis.RedisLockProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Threads of a {@link RedisLockProvider} locking one hot key and holding it for {@code holdMicros},
+ * in each {@link RedisLockMode}:
+ * <ul>
+ * <li>{@code fair}: fair lock, waiters are woken through pub/sub.</li>
+ * <li>{@code nonFair}: non-fair lock, waiters are woken through pub/sub.</li>
+ * <li>{@code spin}: spin lock with the default exponential backoff, no pub/sub.</li>
+ * </ul>
+ * The sampled time per operation, with its percentiles, is the end-to-end latency of an acquisition including the
+ * time spent waiting for the other threads. After every iteration the number of commands the Redis server processed
+ * per acquisition is printed, counting the retries of spinning waiters and the queue upkeep of the fair lock.
+ * Spinning wins while the backoff stays close to the hold time; with long holds the waiters back off further and
+ * leave the lock idle. All threads share one Redisson client, so this measures the modes rather than many clients'
+ * pub/sub fan-out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RedisLockModeBenchmark {
+    private static final String LOCK_MAP = "/lock-provider-benchmark";
+    private static final String HOT_KEY = "hot-key";
+
+    @Param({"fair", "nonFair", "spin"})
+    public String mode;
+
+    @Param({"100", "1000", "10000"})
+    public long holdMicros;
+
+    private LockProviderBackend lockProviderBackend;
+    private LockProvider lockProvider;
+    private final LongAdder acquisitions = new LongAdder();
+    private long commandsProcessed;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        lockProviderBackend = LockProviderBackend.startRedis(RedisLockProvider.DEFAULT_LOCK_HANDLE_CACHE_SIZE, lockMode());
+        lockProvider = lockProviderBackend.lockProvider();
+    }
+
+    @Setup(Level.Iteration)
+    public void startCounting() {
+        acquisitions.reset();
+        commandsProcessed = lockProviderBackend.redisCommandsProcessed();
+    }
+
+    @TearDown(Level.Iteration)
+    public void printCommandsPerAcquisition() {
+        final long commands = lockProviderBackend.redisCommandsProcessed() - commandsProcessed;
+        final long acquired = acquisitions.sum();
+        System.out.printf("%n%s: %d acquisitions, %.1f Redis commands per acquisition%n",
+                mode, acquired, acquired == 0 ? 0.0 : (double) commands / acquired);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        lockProviderBackend.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void hotKey_1Thread() {
+        lockAndHold();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void hotKey_4Threads() {
+        lockAndHold();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void hotKey_16Threads() {
+        lockAndHold();
+    }
+
+    private RedisLockMode lockMode() {
+        switch (mode) {
+            case "fair":
+                return RedisLockMode.fair();
+            case "nonFair":
+                return RedisLockMode.nonFair();
+            case "spin":
+                return RedisLockMode.spin();
+            default:
+                throw new IllegalArgumentException("Unknown lock mode: " + mode);
+        }
+    }
+
+    private void lockAndHold() {
+        lockProvider.executeInLock(LOCK_MAP, HOT_KEY, () -> LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(holdMicros)));
+        acquisitions.increment();
+    }
+}
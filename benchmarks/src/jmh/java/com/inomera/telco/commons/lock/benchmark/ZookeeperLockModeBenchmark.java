@@ -0,0 +1,72 @@
+package com.inomera.telco.commons.lock.benchmark;
+
+import com.inomera.telco.commons.lock.LockProvider;
+import com.inomera.telco.commons.lock.Locked;
+import com.inomera.telco.commons.lock.zookeeper.ZookeeperLockMode;
+import com.inomera.telco.commons.lock.zookeeper.ZookeeperLockProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tries the locks of a {@link ZookeeperLockProvider} on Curator's {@code TestingServer} in each
+ * {@link ZookeeperLockMode}.
+ * <ul>
+ * <li>{@code tryLockFree}: tries and unlocks a key nobody holds.</li>
+ * <li>{@code tryLockHeld}: tries a key held by another thread without a wait time, which waits 500 milliseconds
+ * in {@code MUTEX} mode.</li>
+ * <li>{@code tryLockHeldZeroWait}: tries a key held by another thread with a zero wait time, which still creates,
+ * checks and deletes a lock node in {@code MUTEX} mode.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class ZookeeperLockModeBenchmark {
+    private static final String LOCK_MAP = "/lock-provider-benchmark";
+    private static final String FREE_KEY = "free";
+    private static final String HELD_KEY = "held";
+
+    @Param({"MUTEX", "EPHEMERAL"})
+    public ZookeeperLockMode lockMode;
+
+    private LockProviderBackend lockProviderBackend;
+    private LockProvider lockProvider;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        lockProviderBackend = LockProviderBackend.startZookeeper(lockMode);
+        lockProvider = lockProviderBackend.lockProvider();
+        // Mutex locks are reentrant, so the key is held by another thread
+        CompletableFuture.runAsync(() -> lockProvider.lock(LOCK_MAP, HELD_KEY), runnable -> new Thread(runnable).start()).join();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        lockProviderBackend.close();
+    }
+
+    @Benchmark
+    public boolean tryLockFree() {
+        final Optional<Locked> locked = lockProvider.tryLock(LOCK_MAP, FREE_KEY);
+        locked.ifPresent(Locked::unlock);
+        return locked.isPresent();
+    }
+
+    @Benchmark
+    public boolean tryLockHeld() {
+        return lockProvider.tryLock(LOCK_MAP, HELD_KEY).isPresent();
+    }
+
+    @Benchmark
+    public boolean tryLockHeldZeroWait() {
+        return lockProvider.tryLock(LOCK_MAP, HELD_KEY, Duration.ZERO).isPresent();
+    }
+}
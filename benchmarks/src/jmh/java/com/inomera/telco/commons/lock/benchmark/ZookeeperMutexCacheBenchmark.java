@@ -0,0 +1,66 @@
+package com.inomera.telco.commons.lock.benchmark;
+
+import com.inomera.telco.commons.lock.LockProvider;
+import com.inomera.telco.commons.lock.Locked;
+import com.inomera.telco.commons.lock.zookeeper.ZookeeperLockProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Locks a key of a {@link ZookeeperLockProvider} on Curator's {@code TestingServer} with and without its mutex cache
+ * ({@code mutexCacheSize=0}).
+ * <ul>
+ * <li>{@code repeated}: locks and unlocks the same key.</li>
+ * <li>{@code reentrant}: locks a key and tries it again while holding it. With the cache the inner try only counts
+ * up the mutex of the outer lock; without it the inner try creates, checks and deletes a lock node of its own, and
+ * fails.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class ZookeeperMutexCacheBenchmark {
+    private static final String LOCK_MAP = "/lock-provider-benchmark";
+    private static final String KEY = "key";
+
+    @Param({"0", "10000"})
+    public int mutexCacheSize;
+
+    private LockProviderBackend lockProviderBackend;
+    private LockProvider lockProvider;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        lockProviderBackend = LockProviderBackend.startZookeeper(mutexCacheSize);
+        lockProvider = lockProviderBackend.lockProvider();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        lockProviderBackend.close();
+    }
+
+    @Benchmark
+    public void repeated() {
+        lockProvider.lock(LOCK_MAP, KEY).unlock();
+    }
+
+    @Benchmark
+    public boolean reentrant() {
+        final Locked outer = lockProvider.lock(LOCK_MAP, KEY);
+        try {
+            final Optional<Locked> inner = lockProvider.tryLock(LOCK_MAP, KEY, Duration.ZERO);
+            inner.ifPresent(Locked::unlock);
+            return inner.isPresent();
+        } finally {
+            outer.unlock();
+        }
+    }
+}
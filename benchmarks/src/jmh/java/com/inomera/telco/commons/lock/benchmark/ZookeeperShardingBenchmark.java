@@ -0,0 +1,98 @@
+package com.inomera.telco.commons.lock.benchmark;
+
+import com.inomera.telco.commons.lock.zookeeper.ZookeeperLockMode;
+import com.inomera.telco.commons.lock.zookeeper.ZookeeperLockProvider;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.framework.api.transaction.CuratorOp;
+import org.apache.curator.retry.ExponentialBackoffRetry;
+import org.apache.curator.test.TestingServer;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Locks a random key of a lock map already holding the lock paths of {@code keys} keys, on Curator's
+ * {@code TestingServer}, with keys right under the lock map ({@code shardFanOut=0}) and under shard nodes.
+ * The lock paths are created as empty container nodes, as left behind by earlier locks, before the trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@Threads(1)
+public class ZookeeperShardingBenchmark {
+    private static final String LOCK_MAP = "/lock-provider-benchmark";
+    private static final int CREATES_PER_TRANSACTION = 1000;
+
+    @Param({"10000", "100000", "1000000"})
+    public int keys;
+
+    @Param({"0", "64"})
+    public int shardFanOut;
+
+    private TestingServer server;
+    private CuratorFramework curatorClient;
+    private ZookeeperLockProvider lockProvider;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = new TestingServer(true);
+        curatorClient = CuratorFrameworkFactory.newClient(server.getConnectString(), new ExponentialBackoffRetry(1000, 3));
+        curatorClient.start();
+        curatorClient.blockUntilConnected();
+        lockProvider = new ZookeeperLockProvider(curatorClient, "/locks", ZookeeperLockProvider.DEFAULT_MUTEX_CACHE_SIZE,
+                null, ZookeeperLockMode.MUTEX, shardFanOut);
+        createLockPaths();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        curatorClient.close();
+        server.close();
+    }
+
+    @Benchmark
+    public void lockRandomKey() {
+        lockProvider.lock(LOCK_MAP, "key" + ThreadLocalRandom.current().nextInt(keys)).unlock();
+    }
+
+    /**
+     * Creates the shard nodes one by one and the lock paths in pipelined transactions.
+     */
+    private void createLockPaths() throws Exception {
+        curatorClient.createContainers(LOCK_MAP);
+        for (int first = 0; first < shardFanOut; first++) {
+            for (int second = 0; second < shardFanOut; second++) {
+                curatorClient.createContainers(LOCK_MAP + "/" + Integer.toHexString(first) + "/" + Integer.toHexString(second));
+            }
+        }
+        final List<CompletableFuture<Void>> transactions = new ArrayList<>();
+        List<CuratorOp> creates = new ArrayList<>(CREATES_PER_TRANSACTION);
+        for (int i = 0; i < keys; i++) {
+            creates.add(curatorClient.transactionOp().create().withMode(CreateMode.CONTAINER)
+                    .forPath(lockProvider.lockPath(LOCK_MAP, "key" + i)));
+            if (creates.size() == CREATES_PER_TRANSACTION || i == keys - 1) {
+                final CompletableFuture<Void> created = new CompletableFuture<>();
+                curatorClient.transaction().inBackground((curator, event) -> {
+                    if (event.getResultCode() == KeeperException.Code.OK.intValue()) {
+                        created.complete(null);
+                    } else {
+                        created.completeExceptionally(KeeperException.create(KeeperException.Code.get(event.getResultCode())));
+                    }
+                }).forOperations(creates);
+                transactions.add(created);
+                creates = new ArrayList<>(CREATES_PER_TRANSACTION);
+            }
+        }
+        CompletableFuture.allOf(transactions.toArray(new CompletableFuture<?>[0])).join();
+    }
+}
@@ -0,0 +1,27 @@
+package com.inomera.telco.commons.lock.hazelcast;
+
+import com.hazelcast.cp.lock.FencedLock;
+import com.inomera.telco.commons.lock.FencedLocked;
+
+/**
+ * A hold of a Hazelcast CP {@link FencedLock} with the fence it was acquired with.
+ */
+class HazelcastFencedLocked implements FencedLocked {
+    private final FencedLock lock;
+    private final long fence;
+
+    HazelcastFencedLocked(FencedLock lock, long fence) {
+        this.lock = lock;
+        this.fence = fence;
+    }
+
+    @Override
+    public long getFence() {
+        return fence;
+    }
+
+    @Override
+    public void unlock() {
+        lock.unlock();
+    }
+}
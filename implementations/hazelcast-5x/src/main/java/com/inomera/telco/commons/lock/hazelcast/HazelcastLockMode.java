@@ -0,0 +1,25 @@
+package com.inomera.telco.commons.lock.hazelcast;
+
+import com.hazelcast.cp.lock.FencedLock;
+import com.hazelcast.map.IMap;
+import com.inomera.telco.commons.lock.FencedLocked;
+
+/**
+ * How {@link HazelcastLockProvider} acquires the exclusive locks of keys.
+ */
+public enum HazelcastLockMode {
+    /**
+     * The key's {@link IMap} lock, held by the map's partition owner. Fast, but a holder can lose the lock to a
+     * network partition or a member failure without noticing, and nothing tells its writes from those of the next
+     * holder.
+     */
+    MAP,
+
+    /**
+     * A CP subsystem {@link FencedLock} named after the lock map and key, replicated with Raft by the CP members.
+     * Acquired locks are {@link FencedLocked}, whose fence a store can use to reject the writes of stale holders.
+     * A lock is released when its holder's CP session expires. Leases are not supported. The CP subsystem must be
+     * enabled, with at least three CP members to tolerate failures.
+     */
+    FENCED_LOCK
+}
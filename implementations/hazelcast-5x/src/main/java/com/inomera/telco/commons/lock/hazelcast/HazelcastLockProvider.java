@@ -1,24 +1,49 @@
 package com.inomera.telco.commons.lock.hazelcast;
 
 import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.cp.ISemaphore;
+import com.hazelcast.cp.lock.FencedLock;
 import com.hazelcast.map.IMap;
 import com.inomera.telco.commons.lock.BaseLockProvider;
+import com.inomera.telco.commons.lock.FencedLocked;
 import com.inomera.telco.commons.lock.LockProvider;
 import com.inomera.telco.commons.lock.Locked;
+import com.inomera.telco.commons.lock.Permits;
 
+import java.time.Duration;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Use to lock in a distributed environment
+ * <p>
+ * Hazelcast has no distributed read/write lock, so read and write locks both use the key's exclusive map lock.
+ * <p>
+ * Locks with a lease are released by the map's partition owner once the lease elapses.
+ * <p>
+ * In {@link HazelcastLockMode#FENCED_LOCK} mode exclusive locks are CP subsystem {@link FencedLock}s named after the
+ * lock map and key instead of map locks, and the acquired locks are {@link FencedLocked}. Leases are not supported
+ * in this mode.
+ * <p>
+ * Permits come from a CP subsystem {@link ISemaphore} named after the lock map and key. It is initialized with
+ * the permit count the first time this provider uses the key, unless it is initialized already. The provider
+ * remembers up to {@value #MAX_INITIALIZED_SEMAPHORES} initialized keys and forgets them all once that many are kept;
+ * a forgotten key is initialized again, which leaves an initialized semaphore as it is. Like map locks, the permits
+ * are bound to the acquiring thread.
  *
  * @author Ebru Zorlu
  */
 public class HazelcastLockProvider extends BaseLockProvider implements LockProvider {
     private static final String DEFAULT_LOCK_MAP = "HazelcastLockProvider_DefaultLockMap";
+    private static final int MAX_INITIALIZED_SEMAPHORES = 10_000;
 
     private final HazelcastInstance hazelcastInstance;
     private final String defaultLockMap;
+    private final HazelcastLockMode lockMode;
+    private final Set<String> initializedSemaphores = ConcurrentHashMap.newKeySet();
 
     /**
      * Creates a new HazelcastLockProvider with given HazelcastInstance and
@@ -27,8 +52,7 @@ public class HazelcastLockProvider extends BaseLockProvider implements LockProvi
      * @param hazelcastInstance HazelcastInstance to get lock maps
      */
     public HazelcastLockProvider(HazelcastInstance hazelcastInstance) {
-        this.hazelcastInstance = Objects.requireNonNull(hazelcastInstance, "HazelcastInstance is required!");
-        this.defaultLockMap = DEFAULT_LOCK_MAP;
+        this(hazelcastInstance, DEFAULT_LOCK_MAP, HazelcastLockMode.MAP);
     }
 
     /**
@@ -39,12 +63,29 @@ public class HazelcastLockProvider extends BaseLockProvider implements LockProvi
      * @param defaultLockMap    name of the default lock map
      */
     public HazelcastLockProvider(HazelcastInstance hazelcastInstance, String defaultLockMap) {
-        this.hazelcastInstance = hazelcastInstance;
+        this(hazelcastInstance, defaultLockMap, HazelcastLockMode.MAP);
+    }
+
+    /**
+     * Creates a new HazelcastLockProvider with given HazelcastInstance,
+     * given default lock map name and given lock mode.
+     *
+     * @param hazelcastInstance HazelcastInstance to get lock maps or CP locks
+     * @param defaultLockMap    name of the default lock map
+     * @param lockMode          how exclusive locks are acquired
+     */
+    public HazelcastLockProvider(HazelcastInstance hazelcastInstance, String defaultLockMap, HazelcastLockMode lockMode) {
+        this.hazelcastInstance = Objects.requireNonNull(hazelcastInstance, "HazelcastInstance is required!");
         this.defaultLockMap = Objects.requireNonNull(defaultLockMap, "Default lock map name cannot be null");
+        this.lockMode = Objects.requireNonNull(lockMode, "Lock mode cannot be null");
     }
 
     @Override
     public Locked lock(String lockMap, String lockKey) {
+        if (lockMode == HazelcastLockMode.FENCED_LOCK) {
+            final FencedLock fencedLock = getFencedLock(lockMap, lockKey);
+            return new HazelcastFencedLocked(fencedLock, fencedLock.lockAndGetFence());
+        }
         final IMap<String, ?> lockMapInstance = getLockMap(lockMap);
 
         lockMapInstance.lock(lockKey);
@@ -52,8 +93,23 @@ public class HazelcastLockProvider extends BaseLockProvider implements LockProvi
         return () -> lockMapInstance.unlock(lockKey);
     }
 
+    @Override
+    public Locked lock(String lockMap, String lockKey, Duration leaseTime) {
+        final long leaseMillis = leaseMillis(leaseTime);
+        checkLeaseSupported();
+        final IMap<String, ?> lockMapInstance = getLockMap(lockMap);
+
+        lockMapInstance.lock(lockKey, leaseMillis, TimeUnit.MILLISECONDS);
+
+        return () -> lockMapInstance.unlock(lockKey);
+    }
+
     @Override
     public Optional<Locked> tryLock(String lockMap, String lockKey) {
+        if (lockMode == HazelcastLockMode.FENCED_LOCK) {
+            final FencedLock fencedLock = getFencedLock(lockMap, lockKey);
+            return fenced(fencedLock, fencedLock.tryLockAndGetFence());
+        }
         final IMap<String, ?> lockMapInstance = getLockMap(lockMap);
         final boolean isLocked = lockMapInstance.tryLock(lockKey);
 
@@ -64,6 +120,76 @@ public class HazelcastLockProvider extends BaseLockProvider implements LockProvi
         return Optional.empty();
     }
 
+    @Override
+    public Optional<Locked> tryLock(String lockMap, String lockKey, Duration waitTime) {
+        final long waitMillis = Objects.requireNonNull(waitTime, "Wait time cannot be null").toMillis();
+        if (lockMode == HazelcastLockMode.FENCED_LOCK) {
+            final FencedLock fencedLock = getFencedLock(lockMap, lockKey);
+            return fenced(fencedLock, fencedLock.tryLockAndGetFence(waitMillis, TimeUnit.MILLISECONDS));
+        }
+        final IMap<String, ?> lockMapInstance = getLockMap(lockMap);
+
+        try {
+            if (lockMapInstance.tryLock(lockKey, waitMillis, TimeUnit.MILLISECONDS)) {
+                return Optional.of(() -> lockMapInstance.unlock(lockKey));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Locked> tryLock(String lockMap, String lockKey, Duration waitTime, Duration leaseTime) {
+        final long waitMillis = Objects.requireNonNull(waitTime, "Wait time cannot be null").toMillis();
+        final long leaseMillis = leaseMillis(leaseTime);
+        checkLeaseSupported();
+        final IMap<String, ?> lockMapInstance = getLockMap(lockMap);
+
+        try {
+            if (lockMapInstance.tryLock(lockKey, waitMillis, TimeUnit.MILLISECONDS, leaseMillis, TimeUnit.MILLISECONDS)) {
+                return Optional.of(() -> lockMapInstance.unlock(lockKey));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return Optional.empty();
+    }
+
+    @Override
+    public Permits acquirePermits(String lockMap, String lockKey, int maxPermits, int permits) {
+        checkPermits(maxPermits, permits);
+        final ISemaphore semaphore = getSemaphore(lockMap, lockKey, maxPermits);
+
+        try {
+            semaphore.acquire(permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while acquiring permits of " + semaphore.getName(), e);
+        }
+
+        return new HazelcastPermits(semaphore, permits);
+    }
+
+    @Override
+    public Optional<Permits> tryAcquirePermits(String lockMap, String lockKey, int maxPermits, int permits, Duration waitTime) {
+        checkPermits(maxPermits, permits);
+        final long waitMillis = Objects.requireNonNull(waitTime, "Wait time cannot be null").toMillis();
+        final ISemaphore semaphore = getSemaphore(lockMap, lockKey, maxPermits);
+
+        try {
+            if (semaphore.tryAcquire(permits, waitMillis, TimeUnit.MILLISECONDS)) {
+                return Optional.of(new HazelcastPermits(semaphore, permits));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return Optional.empty();
+    }
+
     @Override
     public Locked lock(String lockName) {
         return lock(defaultLockMap, lockName);
@@ -74,6 +200,47 @@ public class HazelcastLockProvider extends BaseLockProvider implements LockProvi
         return tryLock(defaultLockMap, lockName);
     }
 
+    @Override
+    public Optional<Locked> tryLock(String lockName, Duration waitTime) {
+        return tryLock(defaultLockMap, lockName, waitTime);
+    }
+
+    private void checkLeaseSupported() {
+        if (lockMode == HazelcastLockMode.FENCED_LOCK) {
+            throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support leases in "
+                    + lockMode + " mode");
+        }
+    }
+
+    private static Optional<Locked> fenced(FencedLock fencedLock, long fence) {
+        if (fence == FencedLock.INVALID_FENCE) {
+            return Optional.empty();
+        }
+        return Optional.of(new HazelcastFencedLocked(fencedLock, fence));
+    }
+
+    private FencedLock getFencedLock(String lockMap, String lockKey) {
+        return hazelcastInstance.getCPSubsystem().getLock(lockMap.concat(":").concat(lockKey));
+    }
+
+    private ISemaphore getSemaphore(String lockMap, String lockKey, int maxPermits) {
+        final String name = lockMap.concat(":").concat(lockKey);
+        final ISemaphore semaphore = hazelcastInstance.getCPSubsystem().getSemaphore(name);
+        if (initializedSemaphores.add(name)) {
+            if (initializedSemaphores.size() > MAX_INITIALIZED_SEMAPHORES) {
+                initializedSemaphores.clear();
+                initializedSemaphores.add(name);
+            }
+            try {
+                semaphore.init(maxPermits);
+            } catch (RuntimeException e) {
+                initializedSemaphores.remove(name);
+                throw e;
+            }
+        }
+        return semaphore;
+    }
+
     private IMap<String, ?> getLockMap(String mapName) {
         return hazelcastInstance.getMap(mapName);
     }
@@ -0,0 +1,21 @@
+package com.inomera.telco.commons.lock.hazelcast;
+
+import com.hazelcast.cp.ISemaphore;
+import com.inomera.telco.commons.lock.BasePermits;
+
+/**
+ * Permits of a Hazelcast CP {@link ISemaphore}.
+ */
+class HazelcastPermits extends BasePermits {
+    private final ISemaphore semaphore;
+
+    HazelcastPermits(ISemaphore semaphore, int permits) {
+        super(permits);
+        this.semaphore = semaphore;
+    }
+
+    @Override
+    protected void releasePermits(int permits) {
+        semaphore.release(permits);
+    }
+}
@@ -0,0 +1,186 @@
+package com.inomera.telco.commons.lock.hazelcast;
+
+import com.hazelcast.cluster.Address;
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.cp.CPGroup;
+import com.hazelcast.cp.session.CPSession;
+import com.inomera.telco.commons.lock.FencedLocked;
+import com.inomera.telco.commons.lock.Locked;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs {@link HazelcastLockMode#FENCED_LOCK} on an embedded cluster of three CP members.
+ */
+class HazelcastFencedLockTest {
+    private static final String LOCK_MAP = "fenced";
+    private static final int MEMBERS = 3;
+
+    private static final List<HazelcastInstance> members = new ArrayList<>();
+    private static final List<HazelcastLockProvider> lockProviders = new ArrayList<>();
+
+    @BeforeAll
+    static void startCluster() throws Exception {
+        final int basePort = freePort();
+        for (int i = 0; i < MEMBERS; i++) {
+            final Config config = new Config();
+            config.setClusterName("lock-provider-fenced-lock-test-" + basePort);
+            config.setProperty("hazelcast.phone.home.enabled", "false");
+            config.getNetworkConfig().setPort(basePort + i).setPortAutoIncrement(false);
+            final JoinConfig join = config.getNetworkConfig().getJoin();
+            join.getMulticastConfig().setEnabled(false);
+            join.getAutoDetectionConfig().setEnabled(false);
+            join.getTcpIpConfig().setEnabled(true);
+            for (int j = 0; j < MEMBERS; j++) {
+                join.getTcpIpConfig().addMember("127.0.0.1:" + (basePort + j));
+            }
+            config.getCPSubsystemConfig().setCPMemberCount(MEMBERS).setSessionTimeToLiveSeconds(5)
+                    .setSessionHeartbeatIntervalSeconds(1);
+            members.add(Hazelcast.newHazelcastInstance(config));
+        }
+        for (HazelcastInstance member : members) {
+            assertTrue(member.getCPSubsystem().getCPSubsystemManagementService()
+                    .awaitUntilDiscoveryCompleted(2, TimeUnit.MINUTES));
+            lockProviders.add(new HazelcastLockProvider(member, "defaultLockMap", HazelcastLockMode.FENCED_LOCK));
+        }
+    }
+
+    @AfterAll
+    static void stopCluster() {
+        members.forEach(HazelcastInstance::shutdown);
+    }
+
+    @Test
+    @DisplayName("Every holder should get a greater fence than the previous holders, on whichever member")
+    void lock_shouldReturnIncreasingFences() {
+        long previousFence = 0;
+        for (int i = 0; i < 6; i++) {
+            final Locked locked = lockProviders.get(i % MEMBERS).lock(LOCK_MAP, "increasing");
+            final long fence = ((FencedLocked) locked).getFence();
+            assertTrue(fence > previousFence, fence + " should be greater than " + previousFence);
+            previousFence = fence;
+            locked.unlock();
+        }
+    }
+
+    @Test
+    @DisplayName("tryLock should fail while another member holds the lock and succeed with a greater fence after it is unlocked")
+    void tryLock_shouldFailWhileHeldByAnotherMember() throws Exception {
+        final Locked locked = lockProviders.get(0).lock(LOCK_MAP, "contended");
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertFalse(executor.submit(() -> lockProviders.get(1).tryLock(LOCK_MAP, "contended")).get().isPresent());
+            assertFalse(executor.submit(() -> lockProviders.get(2).tryLock(LOCK_MAP, "contended", Duration.ofMillis(100)))
+                    .get().isPresent());
+            locked.unlock();
+
+            final Optional<Locked> next = executor.submit(() -> lockProviders.get(1).tryLock(LOCK_MAP, "contended")).get();
+            assertTrue(next.isPresent());
+            assertTrue(((FencedLocked) next.get()).getFence() > ((FencedLocked) locked).getFence());
+            executor.submit(() -> next.get().unlock()).get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("A store keeping the greatest fence should accept the writes of all holders of a contended lock")
+    void executeInLock_shouldHandOutFencesInAcquisitionOrder() throws Exception {
+        final AtomicLong greatestFence = new AtomicLong();
+        final List<Long> rejected = Collections.synchronizedList(new ArrayList<>());
+        final ExecutorService executor = Executors.newFixedThreadPool(MEMBERS * 2);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < MEMBERS * 2; i++) {
+                final HazelcastLockProvider lockProvider = lockProviders.get(i % MEMBERS);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < 10; j++) {
+                        final Locked locked = lockProvider.lock(LOCK_MAP, "store");
+                        try {
+                            final long fence = ((FencedLocked) locked).getFence();
+                            if (greatestFence.getAndAccumulate(fence, Math::max) >= fence) {
+                                rejected.add(fence);
+                            }
+                        } finally {
+                            locked.unlock();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(Collections.emptyList(), rejected);
+    }
+
+    @Test
+    @DisplayName("A holder whose CP session is closed should lose the lock to a holder with a greater fence")
+    void closedSession_shouldFenceOffStaleHolder() throws Exception {
+        final HazelcastInstance staleMember = members.get(2);
+        final Locked stale = lockProviders.get(2).lock(LOCK_MAP, "stale");
+        final long staleFence = ((FencedLocked) stale).getFence();
+
+        final Address staleAddress = staleMember.getCluster().getLocalMember().getAddress();
+        for (CPSession session : members.get(0).getCPSubsystem().getCPSessionManagementService()
+                .getAllSessions(CPGroup.DEFAULT_GROUP_NAME).toCompletableFuture().get()) {
+            if (session.endpoint().equals(staleAddress)) {
+                assertTrue(members.get(0).getCPSubsystem().getCPSessionManagementService()
+                        .forceCloseSession(CPGroup.DEFAULT_GROUP_NAME, session.id()).toCompletableFuture().get());
+            }
+        }
+
+        final Optional<Locked> next = lockProviders.get(0).tryLock(LOCK_MAP, "stale", Duration.ofSeconds(30));
+        assertTrue(next.isPresent());
+        assertTrue(((FencedLocked) next.get()).getFence() > staleFence);
+        assertThrows(IllegalMonitorStateException.class, stale::unlock);
+        next.get().unlock();
+    }
+
+    @Test
+    @DisplayName("lockAsync should return the fence of the lock")
+    void lockAsync_shouldKeepFence() {
+        final Locked locked = lockProviders.get(1).lockAsync(LOCK_MAP, "async").toCompletableFuture().join();
+
+        assertTrue(((FencedLocked) locked).getFence() > 0);
+        locked.unlockAsync().toCompletableFuture().join();
+        assertTrue(lockProviders.get(0).tryLock(LOCK_MAP, "async").map(next -> {
+            next.unlock();
+            return true;
+        }).orElse(false));
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
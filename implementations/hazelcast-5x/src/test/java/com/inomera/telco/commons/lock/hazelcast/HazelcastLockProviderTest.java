@@ -1,20 +1,30 @@
 package com.inomera.telco.commons.lock.hazelcast;
 
 import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.cp.CPSubsystem;
+import com.hazelcast.cp.ISemaphore;
+import com.hazelcast.cp.lock.FencedLock;
 import com.hazelcast.map.IMap;
+import com.inomera.telco.commons.lock.FencedLocked;
 import com.inomera.telco.commons.lock.Locked;
+import com.inomera.telco.commons.lock.Permits;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
 
+import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -524,4 +534,247 @@ class HazelcastLockProviderTest {
         assertEquals(0, counter.get());
         assertNull(returnValue);
     }
+
+    @Test
+    @DisplayName("tryLock with wait time should wait on the map lock and unlock on a map")
+    void tryLockWithWaitTime_shouldWaitOnMapLockAndUnlock() throws InterruptedException {
+        when(hazelcastInstance.<String, Object>getMap("map1")).thenReturn(mockMap);
+        when(mockMap.tryLock("lock1", 1500, TimeUnit.MILLISECONDS)).thenReturn(true);
+
+        final Optional<Locked> locked = lockProvider.tryLock("map1", "lock1", Duration.ofMillis(1500));
+        assertTrue(locked.isPresent());
+        locked.get().unlock();
+
+        verify(mockMap, times(1)).tryLock("lock1", 1500, TimeUnit.MILLISECONDS);
+        verify(mockMap, times(1)).unlock("lock1");
+    }
+
+    @Test
+    @DisplayName("tryLock with wait time should return empty Optional when the wait time elapses")
+    void tryLockWithWaitTime_shouldReturnEmptyOptionalWhenWaitTimeElapses() throws InterruptedException {
+        when(hazelcastInstance.<String, Object>getMap(DEFAULT_MAP_NAME)).thenReturn(mockMap);
+        when(mockMap.tryLock("lock1", 200, TimeUnit.MILLISECONDS)).thenReturn(false);
+
+        final Optional<Locked> locked = lockProvider.tryLock("lock1", Duration.ofMillis(200));
+        assertFalse(locked.isPresent());
+
+        verify(mockMap, never()).unlock("lock1");
+    }
+
+    @Test
+    @DisplayName("tryLock with wait time should return empty Optional and keep the interrupt flag when interrupted")
+    void tryLockWithWaitTime_shouldReturnEmptyOptionalWhenInterrupted() throws InterruptedException {
+        when(hazelcastInstance.<String, Object>getMap(DEFAULT_MAP_NAME)).thenReturn(mockMap);
+        when(mockMap.tryLock("lock1", 200, TimeUnit.MILLISECONDS)).thenThrow(new InterruptedException());
+
+        final Optional<Locked> locked = lockProvider.tryLock("lock1", Duration.ofMillis(200));
+        assertFalse(locked.isPresent());
+        assertTrue(Thread.interrupted());
+    }
+
+    @Test
+    @DisplayName("executeInTryLock with wait time should lock in HZ and unlock after supplier finishes")
+    void executeInTryLockWithWaitTime_shouldLockAndUnlockAfterSupplierFinishes() throws InterruptedException {
+        when(hazelcastInstance.<String, Object>getMap(DEFAULT_MAP_NAME)).thenReturn(mockMap);
+        when(mockMap.tryLock("key1", 1000, TimeUnit.MILLISECONDS)).thenReturn(true);
+
+        final Integer returnValue = lockProvider.executeInTryLock("key1", Duration.ofSeconds(1), () -> 3);
+
+        verify(mockMap, times(1)).unlock("key1");
+        assertEquals(Integer.valueOf(3), returnValue);
+    }
+
+    @Test
+    @DisplayName("lock with lease should lock the key in the map with the lease time")
+    void lockWithLease_shouldLockKeyWithLeaseTime() {
+        when(hazelcastInstance.<String, Object>getMap("map1")).thenReturn(mockMap);
+
+        final Locked locked = lockProvider.lock("map1", "lock1", Duration.ofSeconds(30));
+        locked.unlock();
+
+        verify(mockMap, times(1)).lock("lock1", 30000, TimeUnit.MILLISECONDS);
+        verify(mockMap, never()).lock("lock1");
+        verify(mockMap, times(1)).unlock("lock1");
+    }
+
+    @Test
+    @DisplayName("tryLock with lease should try the key in the map with the wait and lease time")
+    void tryLockWithLease_shouldTryLockWithWaitAndLeaseTime() throws InterruptedException {
+        when(hazelcastInstance.<String, Object>getMap("map1")).thenReturn(mockMap);
+        when(mockMap.tryLock("lock1", 1500, TimeUnit.MILLISECONDS, 10000, TimeUnit.MILLISECONDS)).thenReturn(true);
+        when(mockMap.tryLock("lock2", 200, TimeUnit.MILLISECONDS, 10000, TimeUnit.MILLISECONDS)).thenReturn(false);
+
+        final Optional<Locked> locked = lockProvider.tryLock("map1", "lock1", Duration.ofMillis(1500), Duration.ofSeconds(10));
+        assertTrue(locked.isPresent());
+        locked.get().unlock();
+        assertFalse(lockProvider.tryLock("map1", "lock2", Duration.ofMillis(200), Duration.ofSeconds(10)).isPresent());
+
+        verify(mockMap, times(1)).unlock("lock1");
+        verify(mockMap, never()).unlock("lock2");
+    }
+
+    @Test
+    @DisplayName("lock with lease should reject a non-positive lease")
+    void lockWithLease_shouldRejectNonPositiveLease() {
+        when(hazelcastInstance.<String, Object>getMap("map1")).thenReturn(mockMap);
+
+        assertThrows(IllegalArgumentException.class, () -> lockProvider.lock("map1", "lock1", Duration.ofSeconds(-1)));
+        verify(mockMap, never()).lock(anyString(), anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("lockAsync should lock and unlock the key on the same thread while unlocked from another thread")
+    void lockAsync_shouldLockAndUnlockOnSameThread() {
+        when(hazelcastInstance.<String, Object>getMap("map1")).thenReturn(mockMap);
+        final AtomicReference<Thread> lockingThread = new AtomicReference<>();
+        final AtomicReference<Thread> unlockingThread = new AtomicReference<>();
+        doAnswer(invocation -> {
+            lockingThread.set(Thread.currentThread());
+            return null;
+        }).when(mockMap).lock("key1");
+        doAnswer(invocation -> {
+            unlockingThread.set(Thread.currentThread());
+            return null;
+        }).when(mockMap).unlock("key1");
+
+        final Locked locked = lockProvider.lockAsync("map1", "key1").toCompletableFuture().join();
+        locked.unlock();
+
+        verify(mockMap, times(1)).lock("key1");
+        verify(mockMap, times(1)).unlock("key1");
+        assertNotSame(Thread.currentThread(), lockingThread.get());
+        assertSame(lockingThread.get(), unlockingThread.get());
+    }
+
+    @Test
+    @DisplayName("tryLockAsync should return empty Optional when the key is locked elsewhere")
+    void tryLockAsync_shouldReturnEmptyOptionalWhenKeyIsLocked() {
+        when(hazelcastInstance.<String, Object>getMap(DEFAULT_MAP_NAME)).thenReturn(mockMap);
+        when(mockMap.tryLock("key1")).thenReturn(false);
+
+        final Optional<Locked> locked = lockProvider.tryLockAsync("key1").toCompletableFuture().join();
+        assertFalse(locked.isPresent());
+
+        verify(mockMap, never()).unlock("key1");
+    }
+
+    @Test
+    @DisplayName("executeInLockAsync should lock in HZ and unlock after supplier finishes")
+    void executeInLockAsync_shouldLockAndUnlockAfterSupplierFinishes() {
+        when(hazelcastInstance.<String, Object>getMap(DEFAULT_MAP_NAME)).thenReturn(mockMap);
+
+        final Integer returnValue = lockProvider.executeInLockAsync("key1", () -> 3).toCompletableFuture().join();
+
+        verify(mockMap, times(1)).lock("key1");
+        verify(mockMap, times(1)).unlock("key1");
+        assertEquals(Integer.valueOf(3), returnValue);
+    }
+
+    @Test
+    @DisplayName("lockAll should lock the distinct keys in canonical order and unlock them in reverse order")
+    void lockAll_shouldLockInCanonicalOrderAndUnlockInReverse() {
+        when(hazelcastInstance.<String, Object>getMap("map1")).thenReturn(mockMap);
+
+        final Locked locked = lockProvider.lockAll("map1", List.of("c", "a", "b", "a"));
+        locked.unlock();
+
+        final InOrder inOrder = inOrder(mockMap);
+        inOrder.verify(mockMap).lock("a");
+        inOrder.verify(mockMap).lock("b");
+        inOrder.verify(mockMap).lock("c");
+        inOrder.verify(mockMap).unlock("c");
+        inOrder.verify(mockMap).unlock("b");
+        inOrder.verify(mockMap).unlock("a");
+        verifyNoMoreInteractions(mockMap);
+    }
+
+    @Test
+    @DisplayName("lockAll should release the acquired locks when acquiring a later lock fails")
+    void lockAll_shouldReleaseAcquiredLocksWhenLockFails() {
+        when(hazelcastInstance.<String, Object>getMap("map1")).thenReturn(mockMap);
+        doThrow(new IllegalStateException("Cluster is down")).when(mockMap).lock("b");
+
+        assertThrows(IllegalStateException.class, () -> lockProvider.lockAll("map1", List.of("b", "a")));
+
+        verify(mockMap).unlock("a");
+        verify(mockMap, never()).unlock("b");
+    }
+
+    @Test
+    @DisplayName("readLock and writeLock should fall back to the exclusive map lock")
+    void readAndWriteLock_shouldUseExclusiveMapLock() {
+        when(hazelcastInstance.<String, Object>getMap("map1")).thenReturn(mockMap);
+
+        lockProvider.readLock("map1", "lock1").unlock();
+        final Integer returnValue = lockProvider.executeInWriteLock("map1", "lock2", () -> 5);
+
+        assertEquals(Integer.valueOf(5), returnValue);
+        verify(mockMap).lock("lock1");
+        verify(mockMap).unlock("lock1");
+        verify(mockMap).lock("lock2");
+        verify(mockMap).unlock("lock2");
+    }
+
+    @Test
+    @DisplayName("acquirePermits should initialize the CP semaphore once and release permits by count")
+    void acquirePermits_shouldInitializeSemaphoreOnceAndReleaseByCount() throws InterruptedException {
+        final CPSubsystem cpSubsystem = mock(CPSubsystem.class);
+        final ISemaphore semaphore = mock(ISemaphore.class);
+        when(hazelcastInstance.getCPSubsystem()).thenReturn(cpSubsystem);
+        when(cpSubsystem.getSemaphore("map1:lock1")).thenReturn(semaphore);
+        when(semaphore.tryAcquire(1, 100, TimeUnit.MILLISECONDS)).thenReturn(false);
+
+        final Permits permits = lockProvider.acquirePermits("map1", "lock1", 5, 3);
+        assertFalse(lockProvider.tryAcquirePermits("map1", "lock1", 5, 1, Duration.ofMillis(100)).isPresent());
+        verify(semaphore, times(1)).init(5);
+        verify(semaphore).acquire(3);
+
+        permits.release(1);
+        permits.unlock();
+        verify(semaphore).release(1);
+        verify(semaphore).release(2);
+    }
+
+    @Test
+    @DisplayName("Fenced lock mode should lock the CP lock of the key and return its fence")
+    void fencedLockMode_shouldLockCpLockAndReturnFence() {
+        final CPSubsystem cpSubsystem = mock(CPSubsystem.class);
+        final FencedLock fencedLock = mock(FencedLock.class);
+        when(hazelcastInstance.getCPSubsystem()).thenReturn(cpSubsystem);
+        when(cpSubsystem.getLock("map1:lock1")).thenReturn(fencedLock);
+        when(fencedLock.lockAndGetFence()).thenReturn(42L);
+        final HazelcastLockProvider fencedLockProvider =
+                new HazelcastLockProvider(hazelcastInstance, DEFAULT_MAP_NAME, HazelcastLockMode.FENCED_LOCK);
+
+        final Locked locked = fencedLockProvider.lock("map1", "lock1");
+        assertEquals(42L, ((FencedLocked) locked).getFence());
+        locked.unlock();
+
+        verify(fencedLock, times(1)).unlock();
+        verify(hazelcastInstance, never()).getMap(anyString());
+    }
+
+    @Test
+    @DisplayName("Fenced lock mode should return an empty optional when tryLock gets no fence and reject leases")
+    void fencedLockMode_shouldReturnEmptyOptionalOnInvalidFenceAndRejectLeases() {
+        final CPSubsystem cpSubsystem = mock(CPSubsystem.class);
+        final FencedLock fencedLock = mock(FencedLock.class);
+        when(hazelcastInstance.getCPSubsystem()).thenReturn(cpSubsystem);
+        when(cpSubsystem.getLock("map1:lock1")).thenReturn(fencedLock);
+        when(fencedLock.tryLockAndGetFence()).thenReturn(FencedLock.INVALID_FENCE);
+        when(fencedLock.tryLockAndGetFence(200, TimeUnit.MILLISECONDS)).thenReturn(7L);
+        final HazelcastLockProvider fencedLockProvider =
+                new HazelcastLockProvider(hazelcastInstance, DEFAULT_MAP_NAME, HazelcastLockMode.FENCED_LOCK);
+
+        assertFalse(fencedLockProvider.tryLock("map1", "lock1").isPresent());
+        final Optional<Locked> locked = fencedLockProvider.tryLock("map1", "lock1", Duration.ofMillis(200));
+        assertEquals(7L, ((FencedLocked) locked.get()).getFence());
+        assertThrows(UnsupportedOperationException.class,
+                () -> fencedLockProvider.lock("map1", "lock1", Duration.ofSeconds(1)));
+        assertThrows(UnsupportedOperationException.class,
+                () -> fencedLockProvider.tryLock("map1", "lock1", Duration.ZERO, Duration.ofSeconds(1)));
+
+        verify(fencedLock, never()).lockAndGetFence();
+        verify(fencedLock, never()).unlock();
+    }
 }
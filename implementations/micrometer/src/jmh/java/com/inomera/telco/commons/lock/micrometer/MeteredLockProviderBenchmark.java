@@ -0,0 +1,58 @@
+package com.inomera.telco.commons.lock.micrometer;
+
+import com.inomera.telco.commons.lock.LockProvider;
+import com.inomera.telco.commons.lock.Locked;
+import com.inomera.telco.commons.lock.reentrant.LocalReentrantLockProvider;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Measures what {@link MeteredLockProvider} adds to the uncontended hot path of {@link LocalReentrantLockProvider}.
+ * The difference between the {@code local} and {@code metered} scores of a method is the metering overhead,
+ * which should stay well under a microsecond.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MeteredLockProviderBenchmark {
+    private static final String LOCK_MAP = "benchmark";
+    private static final String LOCK_KEY = "key";
+
+    @Param({"local", "metered"})
+    public String provider;
+
+    private final Supplier<Integer> supplier = () -> 42;
+    private LockProvider lockProvider;
+
+    @Setup
+    public void setUp() {
+        final LocalReentrantLockProvider localLockProvider = new LocalReentrantLockProvider();
+        lockProvider = "metered".equals(provider)
+                ? new MeteredLockProvider(localLockProvider, new SimpleMeterRegistry())
+                : localLockProvider;
+    }
+
+    @Benchmark
+    public void lockAndUnlock() {
+        final Locked locked = lockProvider.lock(LOCK_MAP, LOCK_KEY);
+        locked.unlock();
+    }
+
+    @Benchmark
+    public void tryLockAndUnlock() {
+        final Optional<Locked> locked = lockProvider.tryLock(LOCK_MAP, LOCK_KEY);
+        locked.ifPresent(Locked::unlock);
+    }
+
+    @Benchmark
+    public Integer executeInLock() {
+        return lockProvider.executeInLock(LOCK_MAP, LOCK_KEY, supplier);
+    }
+}
@@ -0,0 +1,113 @@
+package com.inomera.telco.commons.lock.micrometer;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram which is cheap to record into and exported to Micrometer when the registry reads it.
+ * <p>
+ * Recording goes into an HdrHistogram {@link Recorder}, which is wait-free for writers. Readers drain the recorder
+ * into a cumulative histogram, exported as a {@link FunctionTimer} along with
+ * the exact total time, and into a rolling window of two periods,
+ * exported as percentile and max {@link TimeGauge}s. Values are kept with two significant digits up to one hour.
+ */
+final class LatencyHistogram {
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.HOURS.toNanos(1);
+    private static final int SIGNIFICANT_DIGITS = 2;
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+    private final LongAdder totalNanos = new LongAdder();
+    private final Histogram cumulative = newHistogram();
+    private final Histogram window = newHistogram();
+    private final Clock clock;
+    private final long periodNanos;
+    private Histogram currentPeriod = newHistogram();
+    private Histogram previousPeriod = newHistogram();
+    private Histogram intervalHistogram;
+    private long periodStartedAt;
+
+    LatencyHistogram(MeterRegistry registry, String name, String description, Tags tags, long periodNanos) {
+        this.clock = registry.config().clock();
+        this.periodNanos = periodNanos;
+        this.periodStartedAt = clock.monotonicTime();
+
+        FunctionTimer.builder(name, this, LatencyHistogram::count, LatencyHistogram::totalNanos, TimeUnit.NANOSECONDS)
+                .description(description)
+                .tags(tags)
+                .register(registry);
+        TimeGauge.builder(name + ".max", this, TimeUnit.NANOSECONDS, LatencyHistogram::maxNanos)
+                .description(description)
+                .tags(tags)
+                .register(registry);
+        for (double percentile : PERCENTILES) {
+            TimeGauge.builder(name + ".percentile", this, TimeUnit.NANOSECONDS, h -> h.percentileNanos(percentile))
+                    .description(description)
+                    .tags(tags.and("phi", String.valueOf(percentile)))
+                    .register(registry);
+        }
+    }
+
+    void record(long nanos) {
+        final long clamped = Math.max(0L, Math.min(nanos, HIGHEST_TRACKABLE_NANOS));
+        recorder.recordValue(clamped);
+        totalNanos.add(clamped);
+    }
+
+    synchronized long count() {
+        drain();
+        return cumulative.getTotalCount();
+    }
+
+    double totalNanos() {
+        return totalNanos.sum();
+    }
+
+    synchronized double maxNanos() {
+        drain();
+        return window.getMaxValue();
+    }
+
+    synchronized double percentileNanos(double percentile) {
+        drain();
+        return window.getValueAtPercentile(percentile * 100.0);
+    }
+
+    /**
+     * Moves the values recorded since the last read into the cumulative histogram and the current period,
+     * and starts a new period once the current one is over. The window covers the current and previous periods.
+     */
+    private void drain() {
+        intervalHistogram = recorder.getIntervalHistogram(intervalHistogram);
+        cumulative.add(intervalHistogram);
+
+        final long now = clock.monotonicTime();
+        if (now - periodStartedAt >= periodNanos) {
+            final Histogram finished = currentPeriod;
+            currentPeriod = previousPeriod;
+            currentPeriod.reset();
+            if (now - periodStartedAt >= 2 * periodNanos) {
+                finished.reset();
+            }
+            previousPeriod = finished;
+            periodStartedAt = now;
+        }
+        currentPeriod.add(intervalHistogram);
+
+        window.reset();
+        window.add(previousPeriod);
+        window.add(currentPeriod);
+    }
+
+    private static Histogram newHistogram() {
+        return new Histogram(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+    }
+}
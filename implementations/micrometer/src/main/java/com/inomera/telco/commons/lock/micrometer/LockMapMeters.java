@@ -0,0 +1,46 @@
+package com.inomera.telco.commons.lock.micrometer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Meters of a single lock map, registered once and reused by every lock of the map.
+ */
+final class LockMapMeters {
+    static final String WAIT_TIMER = "lock.wait";
+    static final String HOLD_TIMER = "lock.hold";
+    static final String TRY_LOCK_COUNTER = "lock.try";
+    static final String HELD_GAUGE = "lock.held";
+    static final String LOCK_MAP_TAG = "lock.map";
+    static final String RESULT_TAG = "result";
+
+    final LatencyHistogram waitTime;
+    final LatencyHistogram holdTime;
+    final Counter tryLockAcquired;
+    final Counter tryLockFailed;
+    final AtomicInteger held = new AtomicInteger();
+
+    LockMapMeters(MeterRegistry registry, String lockMap, long percentilePeriodNanos) {
+        final Tags tags = Tags.of(LOCK_MAP_TAG, lockMap);
+        waitTime = new LatencyHistogram(registry, WAIT_TIMER, "Time spent waiting to acquire a lock",
+                tags, percentilePeriodNanos);
+        holdTime = new LatencyHistogram(registry, HOLD_TIMER, "Time a lock is held, from acquisition to unlock",
+                tags, percentilePeriodNanos);
+        tryLockAcquired = Counter.builder(TRY_LOCK_COUNTER)
+                .description("tryLock attempts")
+                .tags(tags.and(RESULT_TAG, "acquired"))
+                .register(registry);
+        tryLockFailed = Counter.builder(TRY_LOCK_COUNTER)
+                .description("tryLock attempts")
+                .tags(tags.and(RESULT_TAG, "failed"))
+                .register(registry);
+        Gauge.builder(HELD_GAUGE, held, AtomicInteger::get)
+                .description("Locks currently held")
+                .tags(tags)
+                .register(registry);
+    }
+}
@@ -0,0 +1,64 @@
+package com.inomera.telco.commons.lock.micrometer;
+
+import io.micrometer.core.instrument.Clock;
+
+import java.util.function.Supplier;
+
+/**
+ * Supplier given to the delegate's execute methods, recording the wait time until the delegate runs it and
+ * the hold time while it runs. The delegate may run it on another thread, as combining providers do.
+ */
+final class MeteredExecution<T> implements Supplier<T> {
+    private final Supplier<T> supplier;
+    private final LockMapMeters meters;
+    private final Clock clock;
+    private final long startedAt;
+    private volatile boolean ran;
+
+    private MeteredExecution(Supplier<T> supplier, LockMapMeters meters, Clock clock) {
+        this.supplier = supplier;
+        this.meters = meters;
+        this.clock = clock;
+        this.startedAt = clock.monotonicTime();
+    }
+
+    static <T> MeteredExecution<T> of(Supplier<T> supplier, LockMapMeters meters, Clock clock) {
+        return new MeteredExecution<>(supplier, meters, clock);
+    }
+
+    static MeteredExecution<Void> of(Runnable runnable, LockMapMeters meters, Clock clock) {
+        return new MeteredExecution<>(() -> {
+            runnable.run();
+            return null;
+        }, meters, clock);
+    }
+
+    @Override
+    public T get() {
+        final long acquiredAt = clock.monotonicTime();
+        ran = true;
+        meters.waitTime.record(acquiredAt - startedAt);
+        meters.held.incrementAndGet();
+        try {
+            return supplier.get();
+        } finally {
+            meters.held.decrementAndGet();
+            meters.holdTime.record(clock.monotonicTime() - acquiredAt);
+        }
+    }
+
+    void run() {
+        get();
+    }
+
+    /**
+     * Counts a tryLock attempt, acquired if the delegate ran the supplier.
+     */
+    void countTry() {
+        if (ran) {
+            meters.tryLockAcquired.increment();
+        } else {
+            meters.tryLockFailed.increment();
+        }
+    }
+}
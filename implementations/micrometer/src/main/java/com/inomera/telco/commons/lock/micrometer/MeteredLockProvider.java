@@ -0,0 +1,371 @@
+package com.inomera.telco.commons.lock.micrometer;
+
+import com.inomera.telco.commons.lock.BaseLockProvider;
+import com.inomera.telco.commons.lock.LockProvider;
+import com.inomera.telco.commons.lock.Locked;
+import com.inomera.telco.commons.lock.Permits;
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * LockProvider decorator which records lock metrics per lock map into a Micrometer {@link MeterRegistry}:
+ * <ul>
+ * <li>{@code lock.wait}: timer of the time spent waiting until a lock is acquired.</li>
+ * <li>{@code lock.hold}: timer of the time from acquiring a lock until unlocking it.</li>
+ * <li>{@code lock.try}: counter of tryLock attempts, tagged with {@code result=acquired|failed}.</li>
+ * <li>{@code lock.held}: gauge of the locks currently held.</li>
+ * </ul>
+ * Both timers come with {@code .percentile} gauges tagged with {@code phi} (0.5, 0.9, 0.99, 0.999) and a {@code .max}
+ * gauge, computed over the last one to two percentile periods (one minute by default).
+ * Read and write locks are recorded as locks of their lock map.
+ * A lock whose lease expired before it was unlocked is recorded as held until the end of its lease.
+ * Permits are passed through to the delegate without being recorded.
+ * Locks acquired together by {@link #lockAll(String, Collection)} are recorded as a single lock.
+ * Every meter is tagged with {@code lock.map}; locks acquired by lock name only are tagged with {@code default}.
+ * <p>
+ * The execute methods are passed to the delegate, so that it runs their suppliers its own way, e.g. combining them.
+ * Their wait time is recorded until the delegate starts the supplier and their hold time while the supplier runs.
+ * <p>
+ * Latencies are recorded into HdrHistogram recorders rather than Micrometer timers, so each acquisition costs
+ * three clock reads, two wait-free histogram records and one small handle wrapping the delegate's {@link Locked}.
+ * The histograms are aggregated only when the registry reads them.
+ */
+public class MeteredLockProvider extends BaseLockProvider implements LockProvider {
+    static final String DEFAULT_LOCK_MAP = "default";
+    private static final Duration DEFAULT_PERCENTILE_PERIOD = Duration.ofMinutes(1);
+
+    private final LockProvider delegate;
+    private final MeterRegistry registry;
+    private final Clock clock;
+    private final long percentilePeriodNanos;
+    private final ConcurrentMap<String, LockMapMeters> lockMapMeters = new ConcurrentHashMap<>();
+    private final LockMapMeters lockNameMeters;
+
+    /**
+     * @param delegate LockProvider acquiring the locks
+     * @param registry registry to record the metrics into
+     */
+    public MeteredLockProvider(LockProvider delegate, MeterRegistry registry) {
+        this(delegate, registry, DEFAULT_PERCENTILE_PERIOD);
+    }
+
+    /**
+     * @param delegate         LockProvider acquiring the locks
+     * @param registry         registry to record the metrics into
+     * @param percentilePeriod length of a percentile period; percentiles cover the current and the previous period
+     */
+    public MeteredLockProvider(LockProvider delegate, MeterRegistry registry, Duration percentilePeriod) {
+        this.delegate = Objects.requireNonNull(delegate, "Delegate lock provider cannot be null");
+        this.registry = Objects.requireNonNull(registry, "Meter registry cannot be null");
+        this.percentilePeriodNanos = Objects.requireNonNull(percentilePeriod, "Percentile period cannot be null").toNanos();
+        if (percentilePeriodNanos <= 0) {
+            throw new IllegalArgumentException("Percentile period must be positive: " + percentilePeriod);
+        }
+        this.clock = registry.config().clock();
+        this.lockNameMeters = new LockMapMeters(registry, DEFAULT_LOCK_MAP, percentilePeriodNanos);
+    }
+
+    @Override
+    public Locked lock(String lockMap, String lockKey) {
+        final LockMapMeters meters = meters(lockMap);
+        final long startedAt = clock.monotonicTime();
+        return acquired(delegate.lock(lockMap, lockKey), meters, startedAt);
+    }
+
+    @Override
+    public Locked lockAll(String lockMap, Collection<String> lockKeys) {
+        final LockMapMeters meters = meters(lockMap);
+        final long startedAt = clock.monotonicTime();
+        return acquired(delegate.lockAll(lockMap, lockKeys), meters, startedAt);
+    }
+
+    @Override
+    public Locked readLock(String lockMap, String lockKey) {
+        final LockMapMeters meters = meters(lockMap);
+        final long startedAt = clock.monotonicTime();
+        return acquired(delegate.readLock(lockMap, lockKey), meters, startedAt);
+    }
+
+    @Override
+    public Locked writeLock(String lockMap, String lockKey) {
+        final LockMapMeters meters = meters(lockMap);
+        final long startedAt = clock.monotonicTime();
+        return acquired(delegate.writeLock(lockMap, lockKey), meters, startedAt);
+    }
+
+    @Override
+    public Permits acquirePermits(String lockMap, String lockKey, int maxPermits, int permits) {
+        return delegate.acquirePermits(lockMap, lockKey, maxPermits, permits);
+    }
+
+    @Override
+    public Optional<Permits> tryAcquirePermits(String lockMap, String lockKey, int maxPermits, int permits, Duration waitTime) {
+        return delegate.tryAcquirePermits(lockMap, lockKey, maxPermits, permits, waitTime);
+    }
+
+    @Override
+    public Optional<Locked> tryLock(String lockMap, String lockKey) {
+        final LockMapMeters meters = meters(lockMap);
+        final long startedAt = clock.monotonicTime();
+        return tried(delegate.tryLock(lockMap, lockKey), meters, startedAt);
+    }
+
+    @Override
+    public Optional<Locked> tryLock(String lockMap, String lockKey, Duration waitTime) {
+        final LockMapMeters meters = meters(lockMap);
+        final long startedAt = clock.monotonicTime();
+        return tried(delegate.tryLock(lockMap, lockKey, waitTime), meters, startedAt);
+    }
+
+    @Override
+    public Locked lock(String lockMap, String lockKey, Duration leaseTime) {
+        final LockMapMeters meters = meters(lockMap);
+        final long startedAt = clock.monotonicTime();
+        return acquired(delegate.lock(lockMap, lockKey, leaseTime), meters, startedAt, leaseTime);
+    }
+
+    @Override
+    public Optional<Locked> tryLock(String lockMap, String lockKey, Duration waitTime, Duration leaseTime) {
+        final LockMapMeters meters = meters(lockMap);
+        final long startedAt = clock.monotonicTime();
+        final Optional<Locked> locked = delegate.tryLock(lockMap, lockKey, waitTime, leaseTime);
+        if (!locked.isPresent()) {
+            meters.tryLockFailed.increment();
+            return locked;
+        }
+        meters.tryLockAcquired.increment();
+        return Optional.of(acquired(locked.get(), meters, startedAt, leaseTime));
+    }
+
+    @Override
+    public Locked lock(String lockName) {
+        final long startedAt = clock.monotonicTime();
+        return acquired(delegate.lock(lockName), lockNameMeters, startedAt);
+    }
+
+    @Override
+    public Optional<Locked> tryLock(String lockName) {
+        final long startedAt = clock.monotonicTime();
+        return tried(delegate.tryLock(lockName), lockNameMeters, startedAt);
+    }
+
+    @Override
+    public Optional<Locked> tryLock(String lockName, Duration waitTime) {
+        final long startedAt = clock.monotonicTime();
+        return tried(delegate.tryLock(lockName, waitTime), lockNameMeters, startedAt);
+    }
+
+    @Override
+    public CompletionStage<Locked> lockAsync(String lockMap, String lockKey) {
+        final LockMapMeters meters = meters(lockMap);
+        final long startedAt = clock.monotonicTime();
+        return delegate.lockAsync(lockMap, lockKey).thenApply(locked -> acquired(locked, meters, startedAt));
+    }
+
+    @Override
+    public CompletionStage<Locked> lockAsync(String lockName) {
+        final long startedAt = clock.monotonicTime();
+        return delegate.lockAsync(lockName).thenApply(locked -> acquired(locked, lockNameMeters, startedAt));
+    }
+
+    @Override
+    public CompletionStage<Optional<Locked>> tryLockAsync(String lockMap, String lockKey) {
+        final LockMapMeters meters = meters(lockMap);
+        final long startedAt = clock.monotonicTime();
+        return delegate.tryLockAsync(lockMap, lockKey).thenApply(locked -> tried(locked, meters, startedAt));
+    }
+
+    @Override
+    public CompletionStage<Optional<Locked>> tryLockAsync(String lockName) {
+        final long startedAt = clock.monotonicTime();
+        return delegate.tryLockAsync(lockName).thenApply(locked -> tried(locked, lockNameMeters, startedAt));
+    }
+
+    @Override
+    public void executeInLock(String lockMap, String lockKey, Runnable runnable) {
+        delegate.executeInLock(lockMap, lockKey, MeteredExecution.of(runnable, meters(lockMap), clock)::run);
+    }
+
+    @Override
+    public <T> T executeInLock(String lockMap, String lockKey, Supplier<T> supplier) {
+        return delegate.executeInLock(lockMap, lockKey, MeteredExecution.of(supplier, meters(lockMap), clock));
+    }
+
+    @Override
+    public void executeInLock(String lockName, Runnable runnable) {
+        delegate.executeInLock(lockName, MeteredExecution.of(runnable, lockNameMeters, clock)::run);
+    }
+
+    @Override
+    public <T> T executeInLock(String lockName, Supplier<T> supplier) {
+        return delegate.executeInLock(lockName, MeteredExecution.of(supplier, lockNameMeters, clock));
+    }
+
+    @Override
+    public void executeInLock(String lockMap, Collection<String> lockKeys, Runnable runnable) {
+        delegate.executeInLock(lockMap, lockKeys, MeteredExecution.of(runnable, meters(lockMap), clock)::run);
+    }
+
+    @Override
+    public <T> T executeInLock(String lockMap, Collection<String> lockKeys, Supplier<T> supplier) {
+        return delegate.executeInLock(lockMap, lockKeys, MeteredExecution.of(supplier, meters(lockMap), clock));
+    }
+
+    @Override
+    public void executeInReadLock(String lockMap, String lockKey, Runnable runnable) {
+        delegate.executeInReadLock(lockMap, lockKey, MeteredExecution.of(runnable, meters(lockMap), clock)::run);
+    }
+
+    @Override
+    public <T> T executeInReadLock(String lockMap, String lockKey, Supplier<T> supplier) {
+        return delegate.executeInReadLock(lockMap, lockKey, MeteredExecution.of(supplier, meters(lockMap), clock));
+    }
+
+    @Override
+    public void executeInWriteLock(String lockMap, String lockKey, Runnable runnable) {
+        delegate.executeInWriteLock(lockMap, lockKey, MeteredExecution.of(runnable, meters(lockMap), clock)::run);
+    }
+
+    @Override
+    public <T> T executeInWriteLock(String lockMap, String lockKey, Supplier<T> supplier) {
+        return delegate.executeInWriteLock(lockMap, lockKey, MeteredExecution.of(supplier, meters(lockMap), clock));
+    }
+
+    @Override
+    public void executeWithPermit(String lockMap, String lockKey, int maxPermits, Runnable runnable) {
+        delegate.executeWithPermit(lockMap, lockKey, maxPermits, runnable);
+    }
+
+    @Override
+    public <T> T executeWithPermit(String lockMap, String lockKey, int maxPermits, Supplier<T> supplier) {
+        return delegate.executeWithPermit(lockMap, lockKey, maxPermits, supplier);
+    }
+
+    @Override
+    public void executeInTryLock(String lockMap, String lockKey, Runnable runnable) {
+        final MeteredExecution<Void> execution = MeteredExecution.of(runnable, meters(lockMap), clock);
+        try {
+            delegate.executeInTryLock(lockMap, lockKey, execution::run);
+        } finally {
+            execution.countTry();
+        }
+    }
+
+    @Override
+    public <T> T executeInTryLock(String lockMap, String lockKey, Supplier<T> supplier) {
+        final MeteredExecution<T> execution = MeteredExecution.of(supplier, meters(lockMap), clock);
+        try {
+            return delegate.executeInTryLock(lockMap, lockKey, execution);
+        } finally {
+            execution.countTry();
+        }
+    }
+
+    @Override
+    public void executeInTryLock(String lockName, Runnable runnable) {
+        final MeteredExecution<Void> execution = MeteredExecution.of(runnable, lockNameMeters, clock);
+        try {
+            delegate.executeInTryLock(lockName, execution::run);
+        } finally {
+            execution.countTry();
+        }
+    }
+
+    @Override
+    public <T> T executeInTryLock(String lockName, Supplier<T> supplier) {
+        final MeteredExecution<T> execution = MeteredExecution.of(supplier, lockNameMeters, clock);
+        try {
+            return delegate.executeInTryLock(lockName, execution);
+        } finally {
+            execution.countTry();
+        }
+    }
+
+    @Override
+    public void executeInTryLock(String lockMap, String lockKey, Duration waitTime, Runnable runnable) {
+        final MeteredExecution<Void> execution = MeteredExecution.of(runnable, meters(lockMap), clock);
+        try {
+            delegate.executeInTryLock(lockMap, lockKey, waitTime, execution::run);
+        } finally {
+            execution.countTry();
+        }
+    }
+
+    @Override
+    public <T> T executeInTryLock(String lockMap, String lockKey, Duration waitTime, Supplier<T> supplier) {
+        final MeteredExecution<T> execution = MeteredExecution.of(supplier, meters(lockMap), clock);
+        try {
+            return delegate.executeInTryLock(lockMap, lockKey, waitTime, execution);
+        } finally {
+            execution.countTry();
+        }
+    }
+
+    @Override
+    public void executeInTryLock(String lockName, Duration waitTime, Runnable runnable) {
+        final MeteredExecution<Void> execution = MeteredExecution.of(runnable, lockNameMeters, clock);
+        try {
+            delegate.executeInTryLock(lockName, waitTime, execution::run);
+        } finally {
+            execution.countTry();
+        }
+    }
+
+    @Override
+    public <T> T executeInTryLock(String lockName, Duration waitTime, Supplier<T> supplier) {
+        final MeteredExecution<T> execution = MeteredExecution.of(supplier, lockNameMeters, clock);
+        try {
+            return delegate.executeInTryLock(lockName, waitTime, execution);
+        } finally {
+            execution.countTry();
+        }
+    }
+
+    @Override
+    public <T> CompletionStage<T> executeInLockAsync(String lockMap, String lockKey, Supplier<T> supplier) {
+        return delegate.executeInLockAsync(lockMap, lockKey, MeteredExecution.of(supplier, meters(lockMap), clock));
+    }
+
+    @Override
+    public <T> CompletionStage<T> executeInLockAsync(String lockName, Supplier<T> supplier) {
+        return delegate.executeInLockAsync(lockName, MeteredExecution.of(supplier, lockNameMeters, clock));
+    }
+
+    private Locked acquired(Locked locked, LockMapMeters meters, long startedAt) {
+        final MeteredLocked meteredLocked = MeteredLocked.of(locked, meters, clock);
+        meters.waitTime.record(meteredLocked.getAcquiredAt() - startedAt);
+        return meteredLocked;
+    }
+
+    private Locked acquired(Locked locked, LockMapMeters meters, long startedAt, Duration leaseTime) {
+        final MeteredLocked meteredLocked = MeteredLocked.of(locked, meters, clock, leaseTime.toNanos());
+        meters.waitTime.record(meteredLocked.getAcquiredAt() - startedAt);
+        return meteredLocked;
+    }
+
+    private Optional<Locked> tried(Optional<Locked> locked, LockMapMeters meters, long startedAt) {
+        if (!locked.isPresent()) {
+            meters.tryLockFailed.increment();
+            return locked;
+        }
+        meters.tryLockAcquired.increment();
+        return Optional.of(acquired(locked.get(), meters, startedAt));
+    }
+
+    private LockMapMeters meters(String lockMap) {
+        final LockMapMeters meters = lockMapMeters.get(lockMap);
+        if (meters != null) {
+            return meters;
+        }
+        return lockMapMeters.computeIfAbsent(lockMap, name -> new LockMapMeters(registry, name, percentilePeriodNanos));
+    }
+}
@@ -0,0 +1,95 @@
+package com.inomera.telco.commons.lock.micrometer;
+
+import com.inomera.telco.commons.lock.FencedLocked;
+import com.inomera.telco.commons.lock.Locked;
+import io.micrometer.core.instrument.Clock;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Records the hold time and the in-flight holder count of a lock when it is unlocked.
+ * A lock is recorded once, even if the delegate tolerates repeated unlocks.
+ * <p>
+ * A lock acquired with a lease is recorded as released at the end of the lease when unlocking it fails
+ * after the lease elapsed, since the backend released it then.
+ * <p>
+ * The fence of a {@link FencedLocked} is kept.
+ */
+class MeteredLocked implements Locked {
+    private static final AtomicIntegerFieldUpdater<MeteredLocked> RELEASED =
+            AtomicIntegerFieldUpdater.newUpdater(MeteredLocked.class, "released");
+
+    private final Locked delegate;
+    private final LockMapMeters meters;
+    private final Clock clock;
+    private final long acquiredAt;
+    private final long leaseNanos;
+    private volatile int released;
+
+    private MeteredLocked(Locked delegate, LockMapMeters meters, Clock clock, long leaseNanos) {
+        this.delegate = delegate;
+        this.leaseNanos = leaseNanos;
+        this.meters = meters;
+        this.clock = clock;
+        this.acquiredAt = clock.monotonicTime();
+        meters.held.incrementAndGet();
+    }
+
+    static MeteredLocked of(Locked delegate, LockMapMeters meters, Clock clock) {
+        return of(delegate, meters, clock, Long.MAX_VALUE);
+    }
+
+    static MeteredLocked of(Locked delegate, LockMapMeters meters, Clock clock, long leaseNanos) {
+        if (delegate instanceof FencedLocked fencedLocked) {
+            return new Fenced(fencedLocked, meters, clock, leaseNanos);
+        }
+        return new MeteredLocked(delegate, meters, clock, leaseNanos);
+    }
+
+    long getAcquiredAt() {
+        return acquiredAt;
+    }
+
+    @Override
+    public void unlock() {
+        final long releasedAt = clock.monotonicTime();
+        try {
+            delegate.unlock();
+        } catch (IllegalMonitorStateException e) {
+            if (releasedAt - acquiredAt >= leaseNanos) {
+                recordRelease(acquiredAt + leaseNanos);
+            }
+            throw e;
+        }
+        recordRelease(releasedAt);
+    }
+
+    @Override
+    public CompletionStage<Void> unlockAsync() {
+        final long releasedAt = clock.monotonicTime();
+        return delegate.unlockAsync().thenRun(() -> recordRelease(releasedAt));
+    }
+
+    private void recordRelease(long releasedAt) {
+        if (!RELEASED.compareAndSet(this, 0, 1)) {
+            return;
+        }
+        meters.held.decrementAndGet();
+        meters.holdTime.record(releasedAt - acquiredAt);
+    }
+
+    private static final class Fenced extends MeteredLocked implements FencedLocked {
+        private final long fence;
+
+        private Fenced(FencedLocked delegate, LockMapMeters meters, Clock clock, long leaseNanos) {
+            super(delegate, meters, clock, leaseNanos);
+            this.fence = delegate.getFence();
+        }
+
+        @Override
+        public long getFence() {
+            return fence;
+        }
+    }
+}
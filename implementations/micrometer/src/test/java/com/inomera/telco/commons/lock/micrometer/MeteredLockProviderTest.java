@@ -0,0 +1,279 @@
+package com.inomera.telco.commons.lock.micrometer;
+
+import com.inomera.telco.commons.lock.FencedLocked;
+import com.inomera.telco.commons.lock.LockProvider;
+import com.inomera.telco.commons.lock.Locked;
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.simple.SimpleConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static com.inomera.telco.commons.lock.micrometer.LockMapMeters.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class MeteredLockProviderTest {
+    private static final String LOCK_MAP = "lockMap";
+    private static final String KEY1 = "key1";
+
+    @Mock
+    private LockProvider delegate;
+
+    @Mock
+    private Locked delegateLocked;
+
+    private MockClock clock;
+    private SimpleMeterRegistry registry;
+    private MeteredLockProvider lockProvider;
+
+    @BeforeEach
+    void init() {
+        clock = new MockClock();
+        registry = new SimpleMeterRegistry(SimpleConfig.DEFAULT, clock);
+        lockProvider = new MeteredLockProvider(delegate, registry);
+    }
+
+    @Test
+    @DisplayName("lock should record wait time, hold time and held locks of the lock map")
+    void lock_shouldRecordWaitAndHoldTime() {
+        when(delegate.lock(LOCK_MAP, KEY1)).thenAnswer(invocation -> {
+            clock.add(5, TimeUnit.MILLISECONDS);
+            return delegateLocked;
+        });
+
+        final Locked locked = lockProvider.lock(LOCK_MAP, KEY1);
+        assertEquals(1.0, held(LOCK_MAP));
+        clock.add(20, TimeUnit.MILLISECONDS);
+        locked.unlock();
+
+        verify(delegateLocked, times(1)).unlock();
+        assertEquals(1, timer(WAIT_TIMER, LOCK_MAP).count());
+        assertEquals(5.0, timer(WAIT_TIMER, LOCK_MAP).totalTime(TimeUnit.MILLISECONDS));
+        assertEquals(1, timer(HOLD_TIMER, LOCK_MAP).count());
+        assertEquals(20.0, timer(HOLD_TIMER, LOCK_MAP).totalTime(TimeUnit.MILLISECONDS));
+        assertEquals(0.0, held(LOCK_MAP));
+    }
+
+    @Test
+    @DisplayName("lock with lock name should record into the default lock map")
+    void lockWithLockName_shouldRecordIntoDefaultLockMap() {
+        when(delegate.lock(KEY1)).thenReturn(delegateLocked);
+
+        lockProvider.lock(KEY1).unlock();
+
+        assertEquals(1, timer(WAIT_TIMER, MeteredLockProvider.DEFAULT_LOCK_MAP).count());
+        assertEquals(1, timer(HOLD_TIMER, MeteredLockProvider.DEFAULT_LOCK_MAP).count());
+    }
+
+    @Test
+    @DisplayName("tryLock should count acquired and failed attempts")
+    void tryLock_shouldCountAcquiredAndFailedAttempts() {
+        when(delegate.tryLock(LOCK_MAP, KEY1)).thenReturn(Optional.of(delegateLocked)).thenReturn(Optional.empty());
+        when(delegate.tryLock(LOCK_MAP, KEY1, Duration.ofMillis(100))).thenReturn(Optional.empty());
+
+        final Optional<Locked> acquired = lockProvider.tryLock(LOCK_MAP, KEY1);
+        assertTrue(acquired.isPresent());
+        assertFalse(lockProvider.tryLock(LOCK_MAP, KEY1).isPresent());
+        assertFalse(lockProvider.tryLock(LOCK_MAP, KEY1, Duration.ofMillis(100)).isPresent());
+        acquired.get().unlock();
+
+        assertEquals(1.0, tryLockCount(LOCK_MAP, "acquired"));
+        assertEquals(2.0, tryLockCount(LOCK_MAP, "failed"));
+        assertEquals(1, timer(WAIT_TIMER, LOCK_MAP).count());
+        assertEquals(1, timer(HOLD_TIMER, LOCK_MAP).count());
+    }
+
+    @Test
+    @DisplayName("A fenced lock should keep its fence when metered")
+    void fencedLock_shouldKeepFence() {
+        final FencedLocked fencedLocked = mock(FencedLocked.class);
+        when(fencedLocked.getFence()).thenReturn(42L);
+        when(delegate.tryLock(LOCK_MAP, KEY1)).thenReturn(Optional.of(fencedLocked));
+
+        final Locked locked = lockProvider.tryLock(LOCK_MAP, KEY1).get();
+        assertEquals(42L, ((FencedLocked) locked).getFence());
+        locked.unlock();
+
+        verify(fencedLocked, times(1)).unlock();
+        assertEquals(1, timer(HOLD_TIMER, LOCK_MAP).count());
+    }
+
+    @Test
+    @DisplayName("Unlocking twice should record the hold time once")
+    void unlockTwice_shouldRecordHoldTimeOnce() {
+        when(delegate.lock(LOCK_MAP, KEY1)).thenReturn(delegateLocked);
+
+        final Locked locked = lockProvider.lock(LOCK_MAP, KEY1);
+        locked.unlock();
+        locked.unlock();
+
+        assertEquals(1, timer(HOLD_TIMER, LOCK_MAP).count());
+        assertEquals(0.0, held(LOCK_MAP));
+    }
+
+    @Test
+    @DisplayName("Failing unlock should not record the hold time")
+    void failingUnlock_shouldNotRecordHoldTime() {
+        when(delegate.lock(LOCK_MAP, KEY1)).thenReturn(delegateLocked);
+        doThrow(new IllegalMonitorStateException()).when(delegateLocked).unlock();
+
+        final Locked locked = lockProvider.lock(LOCK_MAP, KEY1);
+        assertThrows(IllegalMonitorStateException.class, locked::unlock);
+
+        assertEquals(0, timer(HOLD_TIMER, LOCK_MAP).count());
+        assertEquals(1.0, held(LOCK_MAP));
+    }
+
+    @Test
+    @DisplayName("A lock whose lease expired should be recorded as held until the end of the lease when unlocking fails")
+    void lockWithExpiredLease_shouldRecordHoldTimeUpToLease() {
+        when(delegate.lock(LOCK_MAP, KEY1, Duration.ofMillis(100))).thenReturn(delegateLocked);
+        when(delegate.tryLock(LOCK_MAP, KEY1, Duration.ZERO, Duration.ofMillis(100))).thenReturn(Optional.of(delegateLocked));
+        doThrow(new IllegalMonitorStateException()).when(delegateLocked).unlock();
+
+        final Locked locked = lockProvider.lock(LOCK_MAP, KEY1, Duration.ofMillis(100));
+        clock.add(50, TimeUnit.MILLISECONDS);
+        assertThrows(IllegalMonitorStateException.class, locked::unlock);
+        assertEquals(0, timer(HOLD_TIMER, LOCK_MAP).count());
+
+        final Locked tried = lockProvider.tryLock(LOCK_MAP, KEY1, Duration.ZERO, Duration.ofMillis(100)).get();
+        clock.add(250, TimeUnit.MILLISECONDS);
+        assertThrows(IllegalMonitorStateException.class, tried::unlock);
+        assertEquals(1, timer(HOLD_TIMER, LOCK_MAP).count());
+        assertEquals(100.0, timer(HOLD_TIMER, LOCK_MAP).totalTime(TimeUnit.MILLISECONDS));
+        assertEquals(1.0, held(LOCK_MAP));
+    }
+
+    @Test
+    @DisplayName("lockAsync should record wait time when the delegate completes the acquisition")
+    void lockAsync_shouldRecordWaitTimeOnCompletion() {
+        final CompletableFuture<Locked> delegateFuture = new CompletableFuture<>();
+        when(delegate.lockAsync(LOCK_MAP, KEY1)).thenReturn(delegateFuture);
+        when(delegateLocked.unlockAsync()).thenReturn(CompletableFuture.completedFuture(null));
+
+        final CompletableFuture<Locked> future = lockProvider.lockAsync(LOCK_MAP, KEY1).toCompletableFuture();
+        clock.add(7, TimeUnit.MILLISECONDS);
+        delegateFuture.complete(delegateLocked);
+        future.join().unlockAsync().toCompletableFuture().join();
+
+        assertEquals(7.0, timer(WAIT_TIMER, LOCK_MAP).totalTime(TimeUnit.MILLISECONDS));
+        assertEquals(1, timer(HOLD_TIMER, LOCK_MAP).count());
+        assertEquals(0.0, held(LOCK_MAP));
+    }
+
+    @Test
+    @DisplayName("executeInLock should be passed to the delegate and record wait time until the supplier runs")
+    void executeInLock_shouldBeDelegatedAndMetered() {
+        when(delegate.executeInLock(eq(LOCK_MAP), eq(KEY1), ArgumentMatchers.<Supplier<Integer>>any())).thenAnswer(invocation -> {
+            clock.add(5, TimeUnit.MILLISECONDS);
+            return invocation.<Supplier<?>>getArgument(2).get();
+        });
+
+        final Integer returnValue = lockProvider.executeInLock(LOCK_MAP, KEY1, () -> {
+            assertEquals(1.0, held(LOCK_MAP));
+            clock.add(3, TimeUnit.MILLISECONDS);
+            return 3;
+        });
+
+        assertEquals(Integer.valueOf(3), returnValue);
+        verify(delegate, never()).lock(LOCK_MAP, KEY1);
+        assertEquals(5.0, timer(WAIT_TIMER, LOCK_MAP).totalTime(TimeUnit.MILLISECONDS));
+        assertEquals(3.0, timer(HOLD_TIMER, LOCK_MAP).totalTime(TimeUnit.MILLISECONDS));
+        assertEquals(0.0, held(LOCK_MAP));
+    }
+
+    @Test
+    @DisplayName("executeInTryLock should be passed to the delegate and count whether the runnable ran")
+    void executeInTryLock_shouldBeDelegatedAndCountAttempts() {
+        final AtomicBoolean acquire = new AtomicBoolean(true);
+        doAnswer(invocation -> {
+            if (acquire.get()) {
+                invocation.<Runnable>getArgument(1).run();
+            }
+            return null;
+        }).when(delegate).executeInTryLock(eq(KEY1), any(Runnable.class));
+        final AtomicInteger runs = new AtomicInteger();
+        final Runnable runnable = runs::incrementAndGet;
+
+        lockProvider.executeInTryLock(KEY1, runnable);
+        acquire.set(false);
+        lockProvider.executeInTryLock(KEY1, runnable);
+
+        assertEquals(1, runs.get());
+        assertEquals(1.0, tryLockCount(MeteredLockProvider.DEFAULT_LOCK_MAP, "acquired"));
+        assertEquals(1.0, tryLockCount(MeteredLockProvider.DEFAULT_LOCK_MAP, "failed"));
+        assertEquals(1, timer(HOLD_TIMER, MeteredLockProvider.DEFAULT_LOCK_MAP).count());
+    }
+
+    @Test
+    @DisplayName("Timers should publish percentiles and max of the last two periods")
+    void timers_shouldPublishPercentilesOfLastTwoPeriods() {
+        lockProvider = new MeteredLockProvider(delegate, registry, Duration.ofSeconds(10));
+        when(delegate.lock(LOCK_MAP, KEY1)).thenReturn(delegateLocked);
+
+        for (int i = 1; i <= 100; i++) {
+            final Locked locked = lockProvider.lock(LOCK_MAP, KEY1);
+            clock.add(i, TimeUnit.MILLISECONDS);
+            locked.unlock();
+        }
+
+        assertEquals(50.0, percentile(HOLD_TIMER, LOCK_MAP, "0.5"), 1.0);
+        assertEquals(99.0, percentile(HOLD_TIMER, LOCK_MAP, "0.99"), 1.0);
+        assertEquals(100.0, max(HOLD_TIMER, LOCK_MAP), 1.0);
+
+        clock.add(10, TimeUnit.SECONDS);
+        assertEquals(100.0, max(HOLD_TIMER, LOCK_MAP), 1.0);
+
+        clock.add(10, TimeUnit.SECONDS);
+        assertEquals(0.0, max(HOLD_TIMER, LOCK_MAP));
+        assertEquals(100.0, timer(HOLD_TIMER, LOCK_MAP).count());
+    }
+
+    @Test
+    @DisplayName("Constructor should reject a non-positive percentile period")
+    void constructor_shouldRejectNonPositivePercentilePeriod() {
+        assertThrows(IllegalArgumentException.class, () -> new MeteredLockProvider(delegate, registry, Duration.ZERO));
+    }
+
+    private FunctionTimer timer(String name, String lockMap) {
+        return registry.get(name).tag(LOCK_MAP_TAG, lockMap).functionTimer();
+    }
+
+    private double percentile(String name, String lockMap, String phi) {
+        return registry.get(name + ".percentile").tag(LOCK_MAP_TAG, lockMap).tag("phi", phi).timeGauge()
+                .value(TimeUnit.MILLISECONDS);
+    }
+
+    private double max(String name, String lockMap) {
+        return registry.get(name + ".max").tag(LOCK_MAP_TAG, lockMap).timeGauge().value(TimeUnit.MILLISECONDS);
+    }
+
+    private double held(String lockMap) {
+        return registry.get(HELD_GAUGE).tag(LOCK_MAP_TAG, lockMap).gauge().value();
+    }
+
+    private double tryLockCount(String lockMap, String result) {
+        return registry.get(TRY_LOCK_COUNTER).tag(LOCK_MAP_TAG, lockMap).tag(RESULT_TAG, result).counter().count();
+    }
+}
@@ -0,0 +1,58 @@
+package com.inomera.telco.commons.lock.redis;
+
+import com.inomera.telco.commons.lock.Locked;
+import org.redisson.api.RLock;
+
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Lock acquired through Redisson's asynchronous API.
+ * <p>
+ * Redisson identifies lock owners by thread id. An asynchronous acquisition is not bound to a thread,
+ * so it is made on behalf of a random negative owner id, which never collides with a thread id.
+ * The same id is used to unlock, which lets any thread release the lock.
+ */
+final class AsyncRedisLocked implements Locked {
+    private final RLock lock;
+    private final long ownerId;
+
+    private AsyncRedisLocked(RLock lock, long ownerId) {
+        this.lock = lock;
+        this.ownerId = ownerId;
+    }
+
+    static CompletionStage<Locked> lock(RLock lock) {
+        final long ownerId = newOwnerId();
+        return lock.lockAsync(ownerId).thenApply(ignored -> new AsyncRedisLocked(lock, ownerId));
+    }
+
+    static CompletionStage<Optional<Locked>> tryLock(RLock lock) {
+        final long ownerId = newOwnerId();
+        return lock.tryLockAsync(ownerId)
+                .thenApply(acquired -> acquired ? Optional.of(new AsyncRedisLocked(lock, ownerId)) : Optional.empty());
+    }
+
+    private static long newOwnerId() {
+        return ThreadLocalRandom.current().nextLong(Long.MIN_VALUE, 0);
+    }
+
+    @Override
+    public void unlock() {
+        try {
+            lock.unlockAsync(ownerId).toCompletableFuture().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletionStage<Void> unlockAsync() {
+        return lock.unlockAsync(ownerId);
+    }
+}
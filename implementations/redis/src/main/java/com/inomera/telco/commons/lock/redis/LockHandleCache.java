@@ -0,0 +1,212 @@
+package com.inomera.telco.commons.lock.redis;
+
+import org.redisson.api.LockOptions;
+import org.redisson.api.RLock;
+import org.redisson.api.RMap;
+import org.redisson.api.RPermitExpirableSemaphore;
+import org.redisson.api.RedissonClient;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded cache of the Redisson lock objects of lock keys.
+ * <p>
+ * Redisson builds a new map proxy, a new lock object and its lock names on every lookup. These objects keep no state
+ * of their holders and are thread-safe, so they are cached per lock map and lock key and shared by all callers.
+ * Looking up a cached lock does not allocate. A lock held through an evicted object is still unlocked as usual,
+ * since Redisson identifies the lock by its name and the holder by its thread.
+ * <p>
+ * Once the number of cached lock keys exceeds the maximum size, keys are evicted with the CLOCK policy: a key looked up
+ * since the previous sweep gets a second chance, others are evicted, until an eighth of the maximum size is free.
+ * Lock maps are few, so their map proxies are kept without bound. A maximum size of zero disables caching.
+ * <p>
+ * A semaphore is cached only once its permit count is set, so that its permit count is set once per cached key.
+ * Setting it again after eviction leaves the count of an existing semaphore as it is.
+ */
+final class LockHandleCache {
+    private final RedissonClient redisson;
+    private final int maximumSize;
+    private final int evictedSize;
+    private final ConcurrentMap<String, MapHandles> mapHandles = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    LockHandleCache(RedissonClient redisson, int maximumSize) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("Lock handle cache size cannot be negative: " + maximumSize);
+        }
+        this.redisson = redisson;
+        this.maximumSize = maximumSize;
+        this.evictedSize = maximumSize - Math.max(1, maximumSize / 8);
+    }
+
+    RMap<String, ?> map(String lockMap) {
+        if (maximumSize == 0) {
+            return redisson.getMap(lockMap);
+        }
+        return mapHandles(lockMap).map;
+    }
+
+    RLock fairLock(String lockMap, String lockKey) {
+        if (maximumSize == 0) {
+            misses.increment();
+            return redisson.getMap(lockMap).getFairLock(lockKey);
+        }
+        final MapHandles map = mapHandles(lockMap);
+        final KeyHandles key = keyHandles(map, lockKey);
+        final RLock fairLock = key.fairLock;
+        if (fairLock != null) {
+            hits.increment();
+            return fairLock;
+        }
+        misses.increment();
+        return key.fairLock = map.map.getFairLock(lockKey);
+    }
+
+    RLock lock(String lockMap, String lockKey) {
+        if (maximumSize == 0) {
+            misses.increment();
+            return redisson.getMap(lockMap).getLock(lockKey);
+        }
+        final MapHandles map = mapHandles(lockMap);
+        final KeyHandles key = keyHandles(map, lockKey);
+        final RLock lock = key.lock;
+        if (lock != null) {
+            hits.increment();
+            return lock;
+        }
+        misses.increment();
+        return key.lock = map.map.getLock(lockKey);
+    }
+
+    /**
+     * @return the spin lock sharing its Redis key with the key's non-fair lock
+     */
+    RLock spinLock(String lockMap, String lockKey, LockOptions.BackOff backOff) {
+        if (maximumSize == 0) {
+            misses.increment();
+            return redisson.getSpinLock(redisson.getMap(lockMap).getLock(lockKey).getName(), backOff);
+        }
+        final MapHandles map = mapHandles(lockMap);
+        final KeyHandles key = keyHandles(map, lockKey);
+        final RLock spinLock = key.spinLock;
+        if (spinLock != null) {
+            hits.increment();
+            return spinLock;
+        }
+        misses.increment();
+        return key.spinLock = redisson.getSpinLock(map.map.getLock(lockKey).getName(), backOff);
+    }
+
+    /**
+     * @return the key's permit expirable semaphore, its permit count set to the given count unless already set
+     */
+    RPermitExpirableSemaphore semaphore(String lockMap, String lockKey, int maxPermits) {
+        if (maximumSize == 0) {
+            misses.increment();
+            final RPermitExpirableSemaphore semaphore = redisson.getMap(lockMap).getPermitExpirableSemaphore(lockKey);
+            semaphore.trySetPermits(maxPermits);
+            return semaphore;
+        }
+        final MapHandles map = mapHandles(lockMap);
+        final KeyHandles key = keyHandles(map, lockKey);
+        final RPermitExpirableSemaphore semaphore = key.semaphore;
+        if (semaphore != null) {
+            hits.increment();
+            return semaphore;
+        }
+        misses.increment();
+        final RPermitExpirableSemaphore created = map.map.getPermitExpirableSemaphore(lockKey);
+        created.trySetPermits(maxPermits);
+        return key.semaphore = created;
+    }
+
+    LockHandleCacheStats stats() {
+        return new LockHandleCacheStats(hits.sum(), misses.sum(), evictions.sum(), size.get());
+    }
+
+    private MapHandles mapHandles(String lockMap) {
+        final MapHandles map = mapHandles.get(lockMap);
+        if (map != null) {
+            return map;
+        }
+        return mapHandles.computeIfAbsent(lockMap, name -> new MapHandles(redisson.getMap(name)));
+    }
+
+    private KeyHandles keyHandles(MapHandles map, String lockKey) {
+        final KeyHandles cached = map.keys.get(lockKey);
+        if (cached != null) {
+            if (!cached.referenced) {
+                cached.referenced = true;
+            }
+            return cached;
+        }
+        final KeyHandles created = new KeyHandles();
+        final KeyHandles existing = map.keys.putIfAbsent(lockKey, created);
+        if (existing != null) {
+            return existing;
+        }
+        if (size.incrementAndGet() > maximumSize) {
+            evict();
+        }
+        return created;
+    }
+
+    /**
+     * Sweeps the keys at most twice, the first sweep possibly only taking away second chances.
+     * Callers finding another caller evicting go on without waiting.
+     */
+    private void evict() {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            for (int sweep = 0; sweep < 2 && size.get() > evictedSize; sweep++) {
+                for (MapHandles map : mapHandles.values()) {
+                    final Iterator<Map.Entry<String, KeyHandles>> entries = map.keys.entrySet().iterator();
+                    while (entries.hasNext() && size.get() > evictedSize) {
+                        final Map.Entry<String, KeyHandles> entry = entries.next();
+                        final KeyHandles key = entry.getValue();
+                        if (key.referenced) {
+                            key.referenced = false;
+                        } else if (map.keys.remove(entry.getKey(), key)) {
+                            size.decrementAndGet();
+                            evictions.increment();
+                        }
+                    }
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static final class MapHandles {
+        private final RMap<String, ?> map;
+        private final ConcurrentMap<String, KeyHandles> keys = new ConcurrentHashMap<>();
+
+        private MapHandles(RMap<String, ?> map) {
+            this.map = map;
+        }
+    }
+
+    /**
+     * Lock objects of a key, created on first use. Two callers racing to create one both create it; either is kept.
+     */
+    private static final class KeyHandles {
+        private volatile RLock fairLock;
+        private volatile RLock lock;
+        private volatile RLock spinLock;
+        private volatile RPermitExpirableSemaphore semaphore;
+        private volatile boolean referenced;
+    }
+}
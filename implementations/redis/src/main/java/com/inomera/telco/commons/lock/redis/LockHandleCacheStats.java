@@ -0,0 +1,59 @@
+package com.inomera.telco.commons.lock.redis;
+
+/**
+ * Snapshot of the statistics of the Redisson lock objects cached by a {@link RedisLockProvider}.
+ * A lookup is a hit if the lock object of its key was cached, and a miss if Redisson had to create it.
+ */
+public final class LockHandleCacheStats {
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final int size;
+
+    LockHandleCacheStats(long hitCount, long missCount, long evictionCount, int size) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return number of lock keys evicted to keep the cache within its maximum size
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return number of lock keys cached
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return ratio of hits to lookups, or 1 if there was no lookup
+     */
+    public double getHitRate() {
+        final long lookups = hitCount + missCount;
+        return lookups == 0 ? 1.0 : (double) hitCount / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return "LockHandleCacheStats{" +
+                "hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", evictionCount=" + evictionCount +
+                ", size=" + size +
+                '}';
+    }
+}
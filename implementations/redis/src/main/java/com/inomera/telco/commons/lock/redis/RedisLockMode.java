@@ -0,0 +1,103 @@
+package com.inomera.telco.commons.lock.redis;
+
+import org.redisson.api.LockOptions;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * How {@link RedisLockProvider} acquires the exclusive locks of a lock map.
+ * <ul>
+ * <li>{@link #fair()}: {@code lock} and {@code tryLock} take the key's Redisson fair lock, which grants the lock in
+ * arrival order by keeping a queue and a timeout set next to the lock. Waiters subscribe to a pub/sub channel and
+ * are woken by a message on every unlock.</li>
+ * <li>{@link #nonFair()}: both take the key's Redisson non-fair lock, a single Redis hash updated by lighter scripts.
+ * Waiters are woken through pub/sub as well, and whichever asks first after an unlock gets the lock.</li>
+ * <li>{@link #spin(Duration, Duration, int)}: both take the key's Redisson spin lock, which retries with
+ * exponential backoff and uses no pub/sub. Suits short critical sections with many waiting clients, whose
+ * pub/sub fan-out would otherwise load Redis, at the cost of the retries and of up to one backoff delay of idle
+ * time after an unlock.</li>
+ * </ul>
+ * Every exclusive lock of a key, with or without a wait time, a lease or a {@link java.util.concurrent.CompletionStage},
+ * takes the same lock in a given mode. A spin lock shares its Redis key with the key's non-fair lock, so clients in
+ * non-fair and spin mode exclude each other, but the fair lock uses a Redis key of its own.
+ * All clients of a lock map should use the same mode.
+ */
+public final class RedisLockMode {
+    private static final Duration DEFAULT_INITIAL_DELAY = Duration.ofMillis(1);
+    private static final Duration DEFAULT_MAX_DELAY = Duration.ofMillis(128);
+    private static final int DEFAULT_MULTIPLIER = 2;
+    private static final RedisLockMode FAIR = new RedisLockMode(Mode.FAIR, null);
+    private static final RedisLockMode NON_FAIR = new RedisLockMode(Mode.NON_FAIR, null);
+
+    private final Mode mode;
+    private final LockOptions.ExponentialBackOff backOff;
+
+    private RedisLockMode(Mode mode, LockOptions.ExponentialBackOff backOff) {
+        this.mode = mode;
+        this.backOff = backOff;
+    }
+
+    public static RedisLockMode fair() {
+        return FAIR;
+    }
+
+    public static RedisLockMode nonFair() {
+        return NON_FAIR;
+    }
+
+    /**
+     * @return spin lock mode retrying after 1 millisecond, doubling the delay up to 128 milliseconds
+     */
+    public static RedisLockMode spin() {
+        return spin(DEFAULT_INITIAL_DELAY, DEFAULT_MAX_DELAY, DEFAULT_MULTIPLIER);
+    }
+
+    /**
+     * @param initialDelay delay before the first retry, at least a millisecond
+     * @param maxDelay     maximum delay between retries, not less than the initial delay
+     * @param multiplier   factor by which the delay grows after every failed retry, at least 1
+     * @return spin lock mode with the given exponential backoff
+     */
+    public static RedisLockMode spin(Duration initialDelay, Duration maxDelay, int multiplier) {
+        Objects.requireNonNull(initialDelay, "Initial delay cannot be null");
+        Objects.requireNonNull(maxDelay, "Max delay cannot be null");
+        if (initialDelay.toMillis() < 1) {
+            throw new IllegalArgumentException("Initial delay must be at least a millisecond: " + initialDelay);
+        }
+        if (maxDelay.compareTo(initialDelay) < 0) {
+            throw new IllegalArgumentException("Max delay cannot be less than the initial delay: " + maxDelay);
+        }
+        if (multiplier < 1) {
+            throw new IllegalArgumentException("Multiplier must be at least 1: " + multiplier);
+        }
+        return new RedisLockMode(Mode.SPIN, new LockOptions.ExponentialBackOff()
+                .initialDelay(initialDelay.toMillis())
+                .maxDelay(maxDelay.toMillis())
+                .multiplier(multiplier));
+    }
+
+    boolean isFair() {
+        return mode == Mode.FAIR;
+    }
+
+    boolean isSpin() {
+        return mode == Mode.SPIN;
+    }
+
+    LockOptions.BackOff getBackOff() {
+        return backOff;
+    }
+
+    @Override
+    public String toString() {
+        if (mode != Mode.SPIN) {
+            return mode.name();
+        }
+        return "SPIN(" + backOff.getInitialDelay() + "ms.." + backOff.getMaxDelay() + "ms x" + backOff.getMultiplier() + ")";
+    }
+
+    private enum Mode {
+        FAIR, NON_FAIR, SPIN
+    }
+}
@@ -3,23 +3,65 @@ package com.inomera.telco.commons.lock.redis;
 import com.inomera.telco.commons.lock.BaseLockProvider;
 import com.inomera.telco.commons.lock.LockProvider;
 import com.inomera.telco.commons.lock.Locked;
+import com.inomera.telco.commons.lock.Permits;
 import org.redisson.api.RLock;
 import org.redisson.api.RMap;
+import org.redisson.api.RPermitExpirableSemaphore;
+import org.redisson.api.RReadWriteLock;
 import org.redisson.api.RedissonClient;
 
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Use to lock in a distributed environment
+ * <p>
+ * Asynchronous methods use Redisson's asynchronous lock API and do not occupy a thread while waiting.
+ * <p>
+ * Exclusive locks are acquired in the {@link RedisLockMode} of their lock map, {@link RedisLockMode#fair()} unless
+ * another mode is given, either for all lock maps or per lock map. Locks acquired by lock name only use the mode
+ * of the default lock map.
+ * <p>
+ * {@link #lockAll(String, Collection)} acquires the locks of all keys as one Redisson multi lock, which
+ * releases the locks it got and retries whenever one of them is busy, so it cannot deadlock.
+ * <p>
+ * Read and write locks are the two sides of the key's Redisson {@link RReadWriteLock},
+ * which is stored apart from the key's exclusive lock.
+ * <p>
+ * Locks with a lease are acquired with Redisson's lease time, so no watchdog renews them while they are held;
+ * Redis expires them once the lease elapses.
+ * <p>
+ * Permits come from the key's {@link RPermitExpirableSemaphore}. Its permit count is set when this provider caches the
+ * key's semaphore and kept if the semaphore already exists. Permits are acquired with a lease,
+ * {@link #DEFAULT_PERMIT_LEASE_TIME} unless another is given, after which Redis expires them, so that the permits of
+ * a crashed client are not lost. Releasing expired permits throws. Renewal of the lease while permits are held is
+ * opt-in: it costs one Redis command per permit every third of the lease.
+ * <p>
+ * The Redisson map proxies and the lock objects of the most recently used lock keys are cached, up to
+ * {@value #DEFAULT_LOCK_HANDLE_CACHE_SIZE} keys unless another size is given, so that locking a key again does not
+ * build them anew. See {@link #getLockHandleCacheStats()}.
  *
  * @author Turgay Can
  */
 public class RedisLockProvider extends BaseLockProvider implements LockProvider {
+    public static final int DEFAULT_LOCK_HANDLE_CACHE_SIZE = 10_000;
+    public static final Duration DEFAULT_PERMIT_LEASE_TIME = Duration.ofSeconds(30);
     private static final String DEFAULT_LOCK_MAP = "RedisLockProvider_DefaultLockMap";
 
     private final RedissonClient redisson;
     private final String defaultLockMap;
+    private final LockHandleCache lockHandles;
+    private final RedisLockMode defaultLockMode;
+    private final Map<String, RedisLockMode> lockMapModes;
+    private final long permitLeaseMillis;
+    private final boolean renewPermitLeases;
 
     /**
      * Creates a new RedisLockProvider with given RedissonClient and
@@ -28,8 +70,7 @@ public class RedisLockProvider extends BaseLockProvider implements LockProvider
      * @param redisson RedissonClient to get lock maps
      */
     public RedisLockProvider(RedissonClient redisson) {
-        this.redisson = Objects.requireNonNull(redisson, "RedissonClient is required!");
-        this.defaultLockMap = DEFAULT_LOCK_MAP;
+        this(Objects.requireNonNull(redisson, "RedissonClient is required!"), DEFAULT_LOCK_MAP);
     }
 
     /**
@@ -40,24 +81,164 @@ public class RedisLockProvider extends BaseLockProvider implements LockProvider
      * @param defaultLockMap name of the default lock map
      */
     public RedisLockProvider(RedissonClient redisson, String defaultLockMap) {
+        this(redisson, defaultLockMap, DEFAULT_LOCK_HANDLE_CACHE_SIZE);
+    }
+
+    /**
+     * Creates a new RedisLockProvider with given RedissonClient, default lock map name
+     * and maximum number of lock keys whose lock objects are cached.
+     *
+     * @param redisson            RedissonClient to get lock maps
+     * @param defaultLockMap      name of the default lock map
+     * @param lockHandleCacheSize maximum number of lock keys whose lock objects are cached, zero to disable caching
+     */
+    public RedisLockProvider(RedissonClient redisson, String defaultLockMap, int lockHandleCacheSize) {
+        this(redisson, defaultLockMap, lockHandleCacheSize, RedisLockMode.fair(), new HashMap<>());
+    }
+
+    /**
+     * Creates a new RedisLockProvider with given RedissonClient, default lock map name, maximum number of lock keys
+     * whose lock objects are cached and lock modes.
+     *
+     * @param redisson            RedissonClient to get lock maps
+     * @param defaultLockMap      name of the default lock map
+     * @param lockHandleCacheSize maximum number of lock keys whose lock objects are cached, zero to disable caching
+     * @param defaultLockMode     lock mode of lock maps which are not in {@code lockMapModes}
+     * @param lockMapModes        lock modes by lock map name
+     */
+    public RedisLockProvider(RedissonClient redisson, String defaultLockMap, int lockHandleCacheSize,
+                             RedisLockMode defaultLockMode, Map<String, RedisLockMode> lockMapModes) {
+        this(redisson, defaultLockMap, lockHandleCacheSize, defaultLockMode, lockMapModes, DEFAULT_PERMIT_LEASE_TIME);
+    }
+
+    /**
+     * Creates a new RedisLockProvider with given RedissonClient, default lock map name, maximum number of lock keys
+     * whose lock objects are cached, lock modes and permit lease time.
+     *
+     * @param redisson            RedissonClient to get lock maps
+     * @param defaultLockMap      name of the default lock map
+     * @param lockHandleCacheSize maximum number of lock keys whose lock objects are cached, zero to disable caching
+     * @param defaultLockMode     lock mode of lock maps which are not in {@code lockMapModes}
+     * @param lockMapModes        lock modes by lock map name
+     * @param permitLeaseTime     time after which permits expire
+     */
+    public RedisLockProvider(RedissonClient redisson, String defaultLockMap, int lockHandleCacheSize,
+                             RedisLockMode defaultLockMode, Map<String, RedisLockMode> lockMapModes,
+                             Duration permitLeaseTime) {
+        this(redisson, defaultLockMap, lockHandleCacheSize, defaultLockMode, lockMapModes, permitLeaseTime, false);
+    }
+
+    /**
+     * Creates a new RedisLockProvider with given RedissonClient, default lock map name, maximum number of lock keys
+     * whose lock objects are cached, lock modes, permit lease time and whether the leases of held permits are renewed.
+     *
+     * @param redisson            RedissonClient to get lock maps
+     * @param defaultLockMap      name of the default lock map
+     * @param lockHandleCacheSize maximum number of lock keys whose lock objects are cached, zero to disable caching
+     * @param defaultLockMode     lock mode of lock maps which are not in {@code lockMapModes}
+     * @param lockMapModes        lock modes by lock map name
+     * @param permitLeaseTime     time after which permits expire unless renewed
+     * @param renewPermitLeases   whether the lease of held permits is renewed every third of the lease
+     */
+    public RedisLockProvider(RedissonClient redisson, String defaultLockMap, int lockHandleCacheSize,
+                             RedisLockMode defaultLockMode, Map<String, RedisLockMode> lockMapModes,
+                             Duration permitLeaseTime, boolean renewPermitLeases) {
+        this.permitLeaseMillis = leaseMillis(permitLeaseTime);
+        this.renewPermitLeases = renewPermitLeases;
         this.redisson = redisson;
         this.defaultLockMap = Objects.requireNonNull(defaultLockMap, "Default redis lock map name cannot be null");
+        this.lockHandles = new LockHandleCache(redisson, lockHandleCacheSize);
+        this.defaultLockMode = Objects.requireNonNull(defaultLockMode, "Default lock mode cannot be null");
+        this.lockMapModes = new HashMap<>(Objects.requireNonNull(lockMapModes, "Lock map modes cannot be null"));
+    }
+
+    /**
+     * @return hit, miss and eviction counts of the lock object cache since this provider was created
+     */
+    public LockHandleCacheStats getLockHandleCacheStats() {
+        return lockHandles.stats();
     }
 
     @Override
     public Locked lock(String lockMap, String lockKey) {
-        final RMap<String, ?> lockMapInstance = getLockMap(lockMap);
+        final RLock lock = exclusiveLock(lockMap, lockKey);
+        lock.lock();
+
+        return lock::unlock;
+    }
+
+    @Override
+    public Locked lock(String lockMap, String lockKey, Duration leaseTime) {
+        final long leaseMillis = leaseMillis(leaseTime);
+        final RLock lock = exclusiveLock(lockMap, lockKey);
+        lock.lock(leaseMillis, TimeUnit.MILLISECONDS);
+
+        return lock::unlock;
+    }
+
+    @Override
+    public Locked lockAll(String lockMap, Collection<String> lockKeys) {
+        final RLock[] locks = canonicalOrder(lockKeys).stream()
+                .map(lockKey -> exclusiveLock(lockMap, lockKey))
+                .toArray(RLock[]::new);
+
+        final RLock multiLock = redisson.getMultiLock(locks);
+        multiLock.lock();
+
+        return multiLock::unlock;
+    }
+
+    @Override
+    public Locked readLock(String lockMap, String lockKey) {
+        final RLock readLock = getLockMap(lockMap).getReadWriteLock(lockKey).readLock();
+        readLock.lock();
 
-        final RLock fairLock = lockMapInstance.getFairLock(lockKey);
-        fairLock.lock();
+        return readLock::unlock;
+    }
+
+    @Override
+    public Locked writeLock(String lockMap, String lockKey) {
+        final RLock writeLock = getLockMap(lockMap).getReadWriteLock(lockKey).writeLock();
+        writeLock.lock();
 
-        return fairLock::unlock;
+        return writeLock::unlock;
+    }
+
+    @Override
+    public Permits acquirePermits(String lockMap, String lockKey, int maxPermits, int permits) {
+        checkPermits(maxPermits, permits);
+        final RPermitExpirableSemaphore semaphore = getSemaphore(lockMap, lockKey, maxPermits);
+
+        try {
+            return new RedisPermits(semaphore, semaphore.acquire(permits, permitLeaseMillis, TimeUnit.MILLISECONDS),
+                    permitLeaseMillis, renewPermitLeases);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while acquiring permits of " + semaphore.getName(), e);
+        }
+    }
+
+    @Override
+    public Optional<Permits> tryAcquirePermits(String lockMap, String lockKey, int maxPermits, int permits, Duration waitTime) {
+        checkPermits(maxPermits, permits);
+        final long waitMillis = Objects.requireNonNull(waitTime, "Wait time cannot be null").toMillis();
+        final RPermitExpirableSemaphore semaphore = getSemaphore(lockMap, lockKey, maxPermits);
+
+        try {
+            final List<String> permitIds = semaphore.tryAcquire(permits, waitMillis, permitLeaseMillis, TimeUnit.MILLISECONDS);
+            if (permitIds != null && !permitIds.isEmpty()) {
+                return Optional.of(new RedisPermits(semaphore, permitIds, permitLeaseMillis, renewPermitLeases));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return Optional.empty();
     }
 
     @Override
     public Optional<Locked> tryLock(String lockMap, String lockKey) {
-        final RMap<String, ?> lockMapInstance = getLockMap(lockMap);
-        final RLock lock = lockMapInstance.getLock(lockKey);
+        final RLock lock = exclusiveLock(lockMap, lockKey);
 
         if (lock.tryLock()) {
             return Optional.of(lock::unlock);
@@ -66,6 +247,49 @@ public class RedisLockProvider extends BaseLockProvider implements LockProvider
         return Optional.empty();
     }
 
+    @Override
+    public Optional<Locked> tryLock(String lockMap, String lockKey, Duration waitTime) {
+        final long waitMillis = Objects.requireNonNull(waitTime, "Wait time cannot be null").toMillis();
+        final RLock lock = exclusiveLock(lockMap, lockKey);
+
+        try {
+            if (lock.tryLock(waitMillis, TimeUnit.MILLISECONDS)) {
+                return Optional.of(lock::unlock);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Locked> tryLock(String lockMap, String lockKey, Duration waitTime, Duration leaseTime) {
+        final long waitMillis = Objects.requireNonNull(waitTime, "Wait time cannot be null").toMillis();
+        final long leaseMillis = leaseMillis(leaseTime);
+        final RLock lock = exclusiveLock(lockMap, lockKey);
+
+        try {
+            if (lock.tryLock(waitMillis, leaseMillis, TimeUnit.MILLISECONDS)) {
+                return Optional.of(lock::unlock);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return Optional.empty();
+    }
+
+    @Override
+    public CompletionStage<Locked> lockAsync(String lockMap, String lockKey) {
+        return AsyncRedisLocked.lock(exclusiveLock(lockMap, lockKey));
+    }
+
+    @Override
+    public CompletionStage<Optional<Locked>> tryLockAsync(String lockMap, String lockKey) {
+        return AsyncRedisLocked.tryLock(exclusiveLock(lockMap, lockKey));
+    }
+
     @Override
     public Locked lock(String lockName) {
         return lock(defaultLockMap, lockName);
@@ -76,7 +300,40 @@ public class RedisLockProvider extends BaseLockProvider implements LockProvider
         return tryLock(defaultLockMap, lockName);
     }
 
+    @Override
+    public Optional<Locked> tryLock(String lockName, Duration waitTime) {
+        return tryLock(defaultLockMap, lockName, waitTime);
+    }
+
+    @Override
+    public CompletionStage<Locked> lockAsync(String lockName) {
+        return lockAsync(defaultLockMap, lockName);
+    }
+
+    @Override
+    public CompletionStage<Optional<Locked>> tryLockAsync(String lockName) {
+        return tryLockAsync(defaultLockMap, lockName);
+    }
+
+    /**
+     * @return the lock of the key which every exclusive lock and tryLock call takes, so that they exclude each other
+     */
+    private RLock exclusiveLock(String lockMap, String lockKey) {
+        final RedisLockMode lockMode = lockMapModes.getOrDefault(lockMap, defaultLockMode);
+        if (lockMode.isSpin()) {
+            return lockHandles.spinLock(lockMap, lockKey, lockMode.getBackOff());
+        }
+        if (lockMode.isFair()) {
+            return lockHandles.fairLock(lockMap, lockKey);
+        }
+        return lockHandles.lock(lockMap, lockKey);
+    }
+
+    private RPermitExpirableSemaphore getSemaphore(String lockMap, String lockKey, int maxPermits) {
+        return lockHandles.semaphore(lockMap, lockKey, maxPermits);
+    }
+
     private RMap<String, ?> getLockMap(String mapName) {
-        return redisson.getMap(mapName);
+        return lockHandles.map(mapName);
     }
 }
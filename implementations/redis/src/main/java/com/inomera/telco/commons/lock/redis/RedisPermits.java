@@ -0,0 +1,97 @@
+package com.inomera.telco.commons.lock.redis;
+
+import com.inomera.telco.commons.lock.BasePermits;
+import org.redisson.api.RPermitExpirableSemaphore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Permits of a Redisson {@link RPermitExpirableSemaphore}, identified by the permit ids handed out on acquisition.
+ * <p>
+ * The permits are acquired with a lease. If renewal is asked for, the lease is renewed every third of the lease until
+ * all of them are released; renewals are sent asynchronously from one daemon thread shared by all permits. A renewal
+ * which fails, or finds the permit expired already, is logged and stops the renewal of the permits, which then expire
+ * at the end of their lease.
+ */
+class RedisPermits extends BasePermits {
+    private static final System.Logger LOGGER = System.getLogger(RedisPermits.class.getName());
+    private static final ScheduledThreadPoolExecutor LEASE_RENEWER = newLeaseRenewer();
+
+    private final RPermitExpirableSemaphore semaphore;
+    private final List<String> permitIds;
+    private final long leaseMillis;
+    private final ScheduledFuture<?> renewal;
+
+    RedisPermits(RPermitExpirableSemaphore semaphore, List<String> permitIds, long leaseMillis, boolean renewLease) {
+        super(permitIds.size());
+        this.semaphore = semaphore;
+        this.permitIds = new CopyOnWriteArrayList<>(permitIds);
+        this.leaseMillis = leaseMillis;
+        if (renewLease) {
+            final long periodMillis = Math.max(1, leaseMillis / 3);
+            this.renewal = LEASE_RENEWER.scheduleWithFixedDelay(this::renewLease, periodMillis, periodMillis,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            this.renewal = null;
+        }
+    }
+
+    @Override
+    protected void releasePermits(int permits) {
+        final List<String> released = new ArrayList<>(permitIds.subList(permitIds.size() - permits, permitIds.size()));
+        permitIds.removeAll(released);
+        try {
+            semaphore.release(released);
+        } catch (RuntimeException e) {
+            permitIds.addAll(released);
+            throw e;
+        }
+        if (permitIds.isEmpty() && renewal != null) {
+            renewal.cancel(false);
+        }
+    }
+
+    private void renewLease() {
+        for (String permitId : permitIds) {
+            try {
+                semaphore.updateLeaseTimeAsync(permitId, leaseMillis, TimeUnit.MILLISECONDS)
+                        .whenComplete((renewed, failure) -> {
+                            if (failure != null || !Boolean.TRUE.equals(renewed)) {
+                                renewalFailed(permitId, failure);
+                            }
+                        });
+            } catch (RuntimeException e) {
+                renewalFailed(permitId, e);
+            }
+        }
+    }
+
+    private void renewalFailed(String permitId, Throwable failure) {
+        if (renewal.isCancelled() || !permitIds.contains(permitId)) {
+            return;
+        }
+        renewal.cancel(false);
+        if (failure == null) {
+            LOGGER.log(System.Logger.Level.WARNING, "Lease of permit {0} of {1} expired before it was renewed",
+                    permitId, semaphore.getName());
+        } else {
+            LOGGER.log(System.Logger.Level.WARNING, "Could not renew lease of permit " + permitId + " of "
+                    + semaphore.getName() + ", the permits expire at the end of their lease", failure);
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor newLeaseRenewer() {
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "redis-permit-lease-renewer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+}
@@ -0,0 +1,100 @@
+package com.inomera.telco.commons.lock.redis;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.redisson.api.RLock;
+import org.redisson.api.RMap;
+import org.redisson.api.RedissonClient;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class LockHandleCacheTest {
+    @Mock
+    private RedissonClient redissonClient;
+
+    @Mock
+    private RMap<String, Object> mockMap;
+
+    @BeforeEach
+    void init() {
+        when(redissonClient.<String, Object>getMap(anyString())).thenReturn(mockMap);
+        when(mockMap.getFairLock(anyString())).thenAnswer(invocation -> mock(RLock.class));
+        when(mockMap.getLock(anyString())).thenAnswer(invocation -> mock(RLock.class));
+    }
+
+    @Test
+    @DisplayName("Lock objects should be created once per key and kind and counted as hits afterwards")
+    void lookups_shouldCreateLockObjectsOnce() {
+        final LockHandleCache cache = new LockHandleCache(redissonClient, 10);
+
+        final RLock fairLock = cache.fairLock("map1", "key1");
+        assertSame(fairLock, cache.fairLock("map1", "key1"));
+        final RLock lock = cache.lock("map1", "key1");
+        assertNotSame(fairLock, lock);
+        assertSame(lock, cache.lock("map1", "key1"));
+        assertNotSame(fairLock, cache.fairLock("map2", "key1"));
+        assertSame(mockMap, cache.map("map1"));
+
+        verify(redissonClient, times(1)).getMap("map1");
+        verify(redissonClient, times(1)).getMap("map2");
+        verify(mockMap, times(2)).getFairLock("key1");
+        verify(mockMap, times(1)).getLock("key1");
+
+        final LockHandleCacheStats stats = cache.stats();
+        assertEquals(2, stats.getHitCount());
+        assertEquals(3, stats.getMissCount());
+        assertEquals(0, stats.getEvictionCount());
+        assertEquals(2, stats.getSize());
+        assertEquals(0.4, stats.getHitRate());
+    }
+
+    @Test
+    @DisplayName("Keys beyond the maximum size should be evicted, keeping keys looked up since the last sweep")
+    void overflow_shouldEvictKeysNotLookedUpAgain() {
+        final LockHandleCache cache = new LockHandleCache(redissonClient, 8);
+        final RLock hotLock = cache.fairLock("map1", "hot");
+
+        for (int i = 0; i < 100; i++) {
+            cache.fairLock("map1", "key" + i);
+            assertSame(hotLock, cache.fairLock("map1", "hot"));
+        }
+
+        final LockHandleCacheStats stats = cache.stats();
+        assertTrue(stats.getSize() <= 8, stats.toString());
+        assertEquals(101 - stats.getSize(), stats.getEvictionCount());
+        assertEquals(100, stats.getHitCount());
+        verify(mockMap, times(1)).getFairLock("hot");
+    }
+
+    @Test
+    @DisplayName("A cache of size zero should create the map and lock objects on every lookup")
+    void zeroSize_shouldNotCache() {
+        final LockHandleCache cache = new LockHandleCache(redissonClient, 0);
+
+        assertNotSame(cache.fairLock("map1", "key1"), cache.fairLock("map1", "key1"));
+        cache.lock("map1", "key1");
+        cache.map("map1");
+
+        verify(redissonClient, times(4)).getMap("map1");
+        assertEquals(0, cache.stats().getHitCount());
+        assertEquals(3, cache.stats().getMissCount());
+        assertEquals(0, cache.stats().getSize());
+    }
+
+    @Test
+    @DisplayName("A negative size should be rejected")
+    void negativeSize_shouldBeRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new LockHandleCache(redissonClient, -1));
+        assertEquals(1.0, new LockHandleCache(redissonClient, 1).stats().getHitRate());
+    }
+}
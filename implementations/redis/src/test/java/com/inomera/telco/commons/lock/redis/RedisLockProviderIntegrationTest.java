@@ -0,0 +1,178 @@
+package com.inomera.telco.commons.lock.redis;
+
+import com.inomera.telco.commons.lock.Locked;
+import com.inomera.telco.commons.lock.Permits;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.redisson.Redisson;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.RedisException;
+import org.redisson.config.Config;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs two clients, each with a provider of its own, against an embedded redis-server.
+ */
+class RedisLockProviderIntegrationTest {
+    private static final String LOCK_MAP = "lockMap";
+    private static final String LOCK_KEY = "lockKey";
+
+    private static RedisServer redisServer;
+    private static String redisAddress;
+
+    private RedissonClient holderClient;
+    private RedissonClient contenderClient;
+    private RedisLockProvider holder;
+    private RedisLockProvider contender;
+    private final ExecutorService contenderThread = Executors.newSingleThreadExecutor();
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        final int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+        redisAddress = "redis://127.0.0.1:" + port;
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        redisServer.stop();
+    }
+
+    @BeforeEach
+    void init() {
+        holderClient = newClient();
+        contenderClient = newClient();
+        holder = new RedisLockProvider(holderClient);
+        contender = new RedisLockProvider(contenderClient);
+    }
+
+    @AfterEach
+    void end() {
+        contenderClient.getKeys().flushall();
+        if (!holderClient.isShutdown()) {
+            holderClient.shutdown();
+        }
+        contenderClient.shutdown();
+        contenderThread.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("tryLock should fail while another client holds the key's lock in fair mode")
+    void tryLock_shouldFailWhileLockIsHeldInFairMode() {
+        final Locked locked = holder.lock(LOCK_MAP, LOCK_KEY);
+        assertFalse(contender.tryLock(LOCK_MAP, LOCK_KEY).isPresent());
+        locked.unlock();
+
+        final Optional<Locked> tryLocked = contender.tryLock(LOCK_MAP, LOCK_KEY);
+        assertTrue(tryLocked.isPresent());
+        assertFalse(holder.tryLock(LOCK_MAP, LOCK_KEY).isPresent());
+        tryLocked.get().unlock();
+    }
+
+    @Test
+    @DisplayName("tryLock with wait time should time out while another client holds the lock, and get it once released")
+    void tryLockWithWaitTime_shouldWaitForLockHeldByAnotherClient() {
+        final Locked locked = holder.lock(LOCK_MAP, LOCK_KEY);
+        final long start = System.nanoTime();
+        assertFalse(contender.tryLock(LOCK_MAP, LOCK_KEY, Duration.ofMillis(300)).isPresent());
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(300));
+
+        final CompletableFuture<Optional<Locked>> waiting = CompletableFuture.supplyAsync(
+                () -> contender.tryLock(LOCK_MAP, LOCK_KEY, Duration.ofSeconds(10)), contenderThread);
+        sleepUninterruptibly(100, TimeUnit.MILLISECONDS);
+        assertFalse(waiting.isDone());
+        locked.unlock();
+
+        final Optional<Locked> tryLocked = waiting.join();
+        assertTrue(tryLocked.isPresent());
+        assertFalse(holder.tryLock(LOCK_MAP, LOCK_KEY, Duration.ofMillis(100)).isPresent());
+        CompletableFuture.runAsync(() -> tryLocked.get().unlock(), contenderThread).join();
+    }
+
+    @Test
+    @DisplayName("tryLock with a lease should fail while another client holds the lock with a lease, until it expires")
+    void tryLockWithLease_shouldExcludeLockWithLease() {
+        holder.lock(LOCK_MAP, LOCK_KEY, Duration.ofMillis(500));
+        assertFalse(contender.tryLock(LOCK_MAP, LOCK_KEY, Duration.ofMillis(100), Duration.ofSeconds(10)).isPresent());
+
+        final Optional<Locked> tryLocked = contender.tryLock(LOCK_MAP, LOCK_KEY, Duration.ofSeconds(10), Duration.ofSeconds(10));
+        assertTrue(tryLocked.isPresent());
+        assertFalse(holder.tryLock(LOCK_MAP, LOCK_KEY, Duration.ofMillis(100), Duration.ofSeconds(10)).isPresent());
+        tryLocked.get().unlock();
+    }
+
+    @Test
+    @DisplayName("tryLockAsync should fail while another client holds the lock, synchronously or asynchronously")
+    void tryLockAsync_shouldExcludeLockAndLockAsync() {
+        final Locked locked = holder.lock(LOCK_MAP, LOCK_KEY);
+        assertFalse(contender.tryLockAsync(LOCK_MAP, LOCK_KEY).toCompletableFuture().join().isPresent());
+        locked.unlock();
+
+        final Locked lockedAsync = holder.lockAsync(LOCK_MAP, LOCK_KEY).toCompletableFuture().join();
+        assertFalse(contender.tryLockAsync(LOCK_MAP, LOCK_KEY).toCompletableFuture().join().isPresent());
+        lockedAsync.unlockAsync().toCompletableFuture().join();
+
+        final Optional<Locked> tryLocked = contender.tryLockAsync(LOCK_MAP, LOCK_KEY).toCompletableFuture().join();
+        assertTrue(tryLocked.isPresent());
+        assertFalse(holder.tryLock(LOCK_MAP, LOCK_KEY).isPresent());
+        tryLocked.get().unlockAsync().toCompletableFuture().join();
+    }
+
+    @Test
+    @DisplayName("Permits should stay held while renewed, and expire once their client stops renewing them")
+    void permits_shouldExpireOnceHolderStopsRenewingLease() {
+        final RedisLockProvider leasingHolder = new RedisLockProvider(holderClient, LOCK_MAP,
+                RedisLockProvider.DEFAULT_LOCK_HANDLE_CACHE_SIZE, RedisLockMode.fair(), Collections.emptyMap(),
+                Duration.ofMillis(600), true);
+        leasingHolder.acquirePermits(LOCK_MAP, LOCK_KEY, 2, 2);
+        sleepUninterruptibly(1_000, TimeUnit.MILLISECONDS);
+        assertFalse(contender.tryAcquirePermits(LOCK_MAP, LOCK_KEY, 2, 1, Duration.ofMillis(100)).isPresent());
+
+        holderClient.shutdown();
+        final Optional<Permits> acquired = contender.tryAcquirePermits(LOCK_MAP, LOCK_KEY, 2, 2, Duration.ofSeconds(5));
+        assertTrue(acquired.isPresent());
+        acquired.get().unlock();
+    }
+
+    @Test
+    @DisplayName("Permits should expire at the end of their lease unless renewed, and releasing them then should throw")
+    void permits_shouldExpireAtEndOfLeaseUnlessRenewed() {
+        final RedisLockProvider leasingHolder = new RedisLockProvider(holderClient, LOCK_MAP,
+                RedisLockProvider.DEFAULT_LOCK_HANDLE_CACHE_SIZE, RedisLockMode.fair(), Collections.emptyMap(),
+                Duration.ofMillis(300));
+        final Permits expired = leasingHolder.acquirePermits(LOCK_MAP, LOCK_KEY, 2, 2);
+        assertFalse(contender.tryAcquirePermits(LOCK_MAP, LOCK_KEY, 2, 1, Duration.ofMillis(100)).isPresent());
+
+        final Optional<Permits> acquired = contender.tryAcquirePermits(LOCK_MAP, LOCK_KEY, 2, 2, Duration.ofSeconds(5));
+        assertTrue(acquired.isPresent());
+        assertThrows(RedisException.class, expired::unlock);
+        acquired.get().unlock();
+    }
+
+    private static RedissonClient newClient() {
+        final Config config = new Config();
+        config.useSingleServer().setAddress(redisAddress);
+        return Redisson.create(config);
+    }
+}
@@ -1,6 +1,7 @@
 package com.inomera.telco.commons.lock.redis;
 
 import com.inomera.telco.commons.lock.Locked;
+import com.inomera.telco.commons.lock.Permits;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -10,16 +11,28 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.redisson.api.LockOptions;
 import org.redisson.api.RLock;
 import org.redisson.api.RMap;
+import org.redisson.api.RPermitExpirableSemaphore;
+import org.redisson.api.RReadWriteLock;
 import org.redisson.api.RedissonClient;
+import org.redisson.misc.CompletableFutureWrapper;
 
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
+import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 @ExtendWith({MockitoExtension.class})
@@ -111,64 +124,64 @@ class RedisLockProviderTest {
     @DisplayName("tryLock with mapName and lockKey should lock on a map")
     void tryLock_shouldTryLockOnMap_returnFullOptional() {
         when(redissonClient.<String, Object>getMap("map1")).thenReturn(mockMap);
-        when(mockMap.getLock("lock1")).thenReturn(optimisticLock);
-        when(optimisticLock.tryLock()).thenReturn(true);
+        when(mockMap.getFairLock("lock1")).thenReturn(pessimisticLock);
+        when(pessimisticLock.tryLock()).thenReturn(true);
 
         final Optional<Locked> locked = lockProvider.tryLock("map1", "lock1");
         assertNotNull(locked);
         assertTrue(locked.isPresent());
 
-        verify(mockMap, times(1)).getLock("lock1");
-        verify(optimisticLock, times(1)).tryLock();
+        verify(mockMap, times(1)).getFairLock("lock1");
+        verify(pessimisticLock, times(1)).tryLock();
     }
 
     @Test
     @DisplayName("tryLock with mapName and lockKey should unlock on a map")
     void tryLock_shouldUnlockOnMap() {
         when(redissonClient.<String, Object>getMap("map1")).thenReturn(mockMap);
-        when(mockMap.getLock("lock1")).thenReturn(optimisticLock);
-        when(optimisticLock.tryLock()).thenReturn(true);
+        when(mockMap.getFairLock("lock1")).thenReturn(pessimisticLock);
+        when(pessimisticLock.tryLock()).thenReturn(true);
 
         lockProvider.tryLock("map1", "lock1").ifPresent(Locked::unlock);
 
-        verify(mockMap, times(1)).getLock("lock1");
-        verify(optimisticLock, times(1)).tryLock();
+        verify(mockMap, times(1)).getFairLock("lock1");
+        verify(pessimisticLock, times(1)).tryLock();
     }
 
     @Test
     @DisplayName("tryLock with mapName and lockKey should return empty Optional when lock is owned")
     void tryLock_shouldTryLockOnMap_returnEmptyOptional() {
         when(redissonClient.<String, Object>getMap("map1")).thenReturn(mockMap);
-        when(mockMap.getLock("lock1")).thenReturn(optimisticLock);
-        when(optimisticLock.tryLock()).thenReturn(false);
+        when(mockMap.getFairLock("lock1")).thenReturn(pessimisticLock);
+        when(pessimisticLock.tryLock()).thenReturn(false);
 
         final Optional<Locked> locked = lockProvider.tryLock("map1", "lock1");
         assertNotNull(locked);
         assertFalse(locked.isPresent());
 
-        verify(mockMap, times(1)).getLock("lock1");
+        verify(mockMap, times(1)).getFairLock("lock1");
     }
 
     @Test
     @DisplayName("tryLock without mapName and with lockKey should lock on default map")
     void tryLock_shouldLockWithDefaultMap_returnFullOptional() {
         when(redissonClient.<String, Object>getMap(DEFAULT_MAP_NAME)).thenReturn(mockMap);
-        when(mockMap.getLock("lock1")).thenReturn(optimisticLock);
-        when(optimisticLock.tryLock()).thenReturn(true);
+        when(mockMap.getFairLock("lock1")).thenReturn(pessimisticLock);
+        when(pessimisticLock.tryLock()).thenReturn(true);
 
         final Optional<Locked> locked = lockProvider.tryLock("lock1");
         assertNotNull(locked);
         assertTrue(locked.isPresent());
 
-        verify(mockMap, times(1)).getLock("lock1");
+        verify(mockMap, times(1)).getFairLock("lock1");
     }
 
     @Test
     @DisplayName("tryLock without mapName and with lockKey should return empty Optional when lock is owned")
     void tryLock_shouldLockWithDefaultMap_returnEmptyOptional() {
         when(redissonClient.<String, Object>getMap(DEFAULT_MAP_NAME)).thenReturn(mockMap);
-        when(mockMap.getLock("lock1")).thenReturn(optimisticLock);
-        when(optimisticLock.tryLock()).thenReturn(false);
+        when(mockMap.getFairLock("lock1")).thenReturn(pessimisticLock);
+        when(pessimisticLock.tryLock()).thenReturn(false);
 
         final Optional<Locked> locked = lockProvider.tryLock("lock1");
         assertNotNull(locked);
@@ -179,13 +192,13 @@ class RedisLockProviderTest {
     @DisplayName("lock without mapName and with lockKey should unlock on default map")
     void tryLock_shouldUnlockOnDefaultMap_returnFullOptional() {
         when(redissonClient.<String, Object>getMap(DEFAULT_MAP_NAME)).thenReturn(mockMap);
-        when(mockMap.getLock("lock1")).thenReturn(optimisticLock);
-        when(optimisticLock.tryLock()).thenReturn(true);
+        when(mockMap.getFairLock("lock1")).thenReturn(pessimisticLock);
+        when(pessimisticLock.tryLock()).thenReturn(true);
 
         lockProvider.tryLock("lock1").ifPresent(Locked::unlock);
 
-        verify(mockMap, times(1)).getLock("lock1");
-        verify(optimisticLock, times(1)).unlock();
+        verify(mockMap, times(1)).getFairLock("lock1");
+        verify(pessimisticLock, times(1)).unlock();
     }
 
     @Test
@@ -250,7 +263,7 @@ class RedisLockProviderTest {
     @DisplayName("executeInLock should lock in Redis map and unlock after supplier throws exception")
     void executeInLock_shouldLockInMapAndUnlockAfterSupplierThrowsException() {
         when(redissonClient.<String, Object>getMap("map1")).thenReturn(mockMap);
-        when(mockMap.getLock("key1")).thenReturn(pessimisticLock);
+        when(mockMap.getFairLock("key1")).thenReturn(pessimisticLock);
 
         final AtomicInteger counter = new AtomicInteger(0);
 
@@ -345,19 +358,19 @@ class RedisLockProviderTest {
     @DisplayName("executeInTryLock should lock in Redis map and unlock after task finishes")
     void executeInTryLock_shouldLockInMapAndUnlockAfterRunnableFinishes() {
         when(redissonClient.<String, Object>getMap("map1")).thenReturn(mockMap);
-        when(mockMap.getLock("key1")).thenReturn(optimisticLock);
-        when(optimisticLock.tryLock()).thenReturn(true);
+        when(mockMap.getFairLock("key1")).thenReturn(pessimisticLock);
+        when(pessimisticLock.tryLock()).thenReturn(true);
 
         final AtomicInteger counter = new AtomicInteger(0);
         lockProvider.executeInTryLock("map1", "key1", () -> {
             counter.incrementAndGet();
-            verify(mockMap, times(1)).getLock("key1");
-            verify(optimisticLock, times(1)).tryLock();
-            verify(optimisticLock, never()).unlock();
+            verify(mockMap, times(1)).getFairLock("key1");
+            verify(pessimisticLock, times(1)).tryLock();
+            verify(pessimisticLock, never()).unlock();
         });
 
-        verify(mockMap, times(1)).getLock("key1");
-        verify(optimisticLock, times(1)).unlock();
+        verify(mockMap, times(1)).getFairLock("key1");
+        verify(pessimisticLock, times(1)).unlock();
         assertEquals(1, counter.get());
     }
 
@@ -365,20 +378,20 @@ class RedisLockProviderTest {
     @DisplayName("executeInTryLock should lock in Redis map and unlock after task throws exception")
     void executeInTryLock_shouldLockInMapAndUnlockAfterRunnableThrowsException() {
         when(redissonClient.<String, Object>getMap("map1")).thenReturn(mockMap);
-        when(mockMap.getLock("key1")).thenReturn(optimisticLock);
-        when(optimisticLock.tryLock()).thenReturn(true);
+        when(mockMap.getFairLock("key1")).thenReturn(pessimisticLock);
+        when(pessimisticLock.tryLock()).thenReturn(true);
 
         final AtomicInteger counter = new AtomicInteger(0);
 
         assertThrows(RuntimeException.class, () -> lockProvider.executeInTryLock("map1", "key1", (Runnable) () -> {
-            verify(mockMap, times(1)).getLock("key1");
-            verify(optimisticLock, never()).unlock();
+            verify(mockMap, times(1)).getFairLock("key1");
+            verify(pessimisticLock, never()).unlock();
             counter.incrementAndGet();
             throw new RuntimeException("test");
         }));
 
-        verify(mockMap, times(1)).getLock("key1");
-        verify(optimisticLock, times(1)).unlock();
+        verify(mockMap, times(1)).getFairLock("key1");
+        verify(pessimisticLock, times(1)).unlock();
         assertEquals(1, counter.get());
     }
 
@@ -386,15 +399,15 @@ class RedisLockProviderTest {
     @DisplayName("executeInTryLock should not lock in Redis map and unlock when tryLock returns false")
     void executeInTryLock_shouldNotLockInMapAndUnlockWhenTryLockReturnsFalse() {
         when(redissonClient.<String, Object>getMap("map1")).thenReturn(mockMap);
-        when(mockMap.getLock("key1")).thenReturn(optimisticLock);
-        when(optimisticLock.tryLock()).thenReturn(false);
+        when(mockMap.getFairLock("key1")).thenReturn(pessimisticLock);
+        when(pessimisticLock.tryLock()).thenReturn(false);
 
         final AtomicInteger counter = new AtomicInteger(0);
 
         lockProvider.executeInTryLock("map1", "key1", (Runnable) counter::incrementAndGet);
 
-        verify(mockMap, times(1)).getLock("key1");
-        verify(optimisticLock, never()).unlock();
+        verify(mockMap, times(1)).getFairLock("key1");
+        verify(pessimisticLock, never()).unlock();
         assertEquals(0, counter.get());
     }
 
@@ -402,19 +415,19 @@ class RedisLockProviderTest {
     @DisplayName("executeInTryLock should lock in Redis map and unlock after task finishes and return the value")
     void executeTryInLock_shouldLockInMapAndUnlockAfterSupplierFinishes() {
         when(redissonClient.<String, Object>getMap("map1")).thenReturn(mockMap);
-        when(mockMap.getLock("key1")).thenReturn(optimisticLock);
-        when(optimisticLock.tryLock()).thenReturn(true);
+        when(mockMap.getFairLock("key1")).thenReturn(pessimisticLock);
+        when(pessimisticLock.tryLock()).thenReturn(true);
 
         final AtomicInteger counter = new AtomicInteger(0);
         int returnValue = lockProvider.executeInTryLock("map1", "key1", () -> {
             counter.incrementAndGet();
-            verify(mockMap, times(1)).getLock("key1");
-            verify(optimisticLock, never()).unlock();
+            verify(mockMap, times(1)).getFairLock("key1");
+            verify(pessimisticLock, never()).unlock();
             return 3;
         });
 
-        verify(mockMap, times(1)).getLock("key1");
-        verify(optimisticLock, times(1)).unlock();
+        verify(mockMap, times(1)).getFairLock("key1");
+        verify(pessimisticLock, times(1)).unlock();
         assertEquals(1, counter.get());
         assertEquals(3, returnValue);
     }
@@ -423,21 +436,21 @@ class RedisLockProviderTest {
     @DisplayName("executeInTryLock should lock in Redis map and unlock after supplier throws exception")
     void executeInTryLock_shouldLockInMapAndUnlockAfterSupplierThrowsException() {
         when(redissonClient.<String, Object>getMap("map1")).thenReturn(mockMap);
-        when(mockMap.getLock("key1")).thenReturn(optimisticLock);
-        when(optimisticLock.tryLock()).thenReturn(true);
+        when(mockMap.getFairLock("key1")).thenReturn(pessimisticLock);
+        when(pessimisticLock.tryLock()).thenReturn(true);
 
         final AtomicInteger counter = new AtomicInteger(0);
 
         assertThrows(RuntimeException.class, () -> lockProvider.executeInTryLock("map1", "key1", (Supplier<String>) () -> {
-            verify(mockMap, times(1)).getLock("key1");
-            verify(optimisticLock, times(1)).tryLock();
-            verify(optimisticLock, never()).unlock();
+            verify(mockMap, times(1)).getFairLock("key1");
+            verify(pessimisticLock, times(1)).tryLock();
+            verify(pessimisticLock, never()).unlock();
             counter.incrementAndGet();
             throw new RuntimeException("test");
         }));
 
-        verify(mockMap, times(1)).getLock("key1");
-        verify(optimisticLock, times(1)).unlock();
+        verify(mockMap, times(1)).getFairLock("key1");
+        verify(pessimisticLock, times(1)).unlock();
         assertEquals(1, counter.get());
     }
 
@@ -445,8 +458,8 @@ class RedisLockProviderTest {
     @DisplayName("executeInTryLock should not lock in Redis map and unlock when lock is not available")
     void executeTryInLock_shouldLockInMapAndUnlockWhenLockIsNotAvailable() {
         when(redissonClient.<String, Object>getMap("map1")).thenReturn(mockMap);
-        when(mockMap.getLock("key1")).thenReturn(optimisticLock);
-        when(optimisticLock.tryLock()).thenReturn(false);
+        when(mockMap.getFairLock("key1")).thenReturn(pessimisticLock);
+        when(pessimisticLock.tryLock()).thenReturn(false);
 
         final AtomicInteger counter = new AtomicInteger(0);
         Integer returnValue = lockProvider.executeInTryLock("map1", "key1", () -> {
@@ -454,8 +467,8 @@ class RedisLockProviderTest {
             return 3;
         });
 
-        verify(mockMap, times(1)).getLock("key1");
-        verify(optimisticLock, never()).unlock();
+        verify(mockMap, times(1)).getFairLock("key1");
+        verify(pessimisticLock, never()).unlock();
         assertEquals(0, counter.get());
         assertNull(returnValue);
     }
@@ -464,18 +477,18 @@ class RedisLockProviderTest {
     @DisplayName("executeInTryLock should lock in Redis and unlock after task finishes")
     void executeInTryLock_shouldLockAndUnlockAfterRunnableFinishes() {
         when(redissonClient.<String, Object>getMap(DEFAULT_MAP_NAME)).thenReturn(mockMap);
-        when(mockMap.getLock("key1")).thenReturn(optimisticLock);
-        when(optimisticLock.tryLock()).thenReturn(true);
+        when(mockMap.getFairLock("key1")).thenReturn(pessimisticLock);
+        when(pessimisticLock.tryLock()).thenReturn(true);
 
         final AtomicInteger counter = new AtomicInteger(0);
         lockProvider.executeInTryLock("key1", () -> {
             counter.incrementAndGet();
-            verify(mockMap, times(1)).getLock("key1");
-            verify(optimisticLock, never()).unlock();
+            verify(mockMap, times(1)).getFairLock("key1");
+            verify(pessimisticLock, never()).unlock();
         });
 
-        verify(mockMap, times(1)).getLock("key1");
-        verify(optimisticLock, times(1)).unlock();
+        verify(mockMap, times(1)).getFairLock("key1");
+        verify(pessimisticLock, times(1)).unlock();
         assertEquals(1, counter.get());
     }
 
@@ -483,20 +496,20 @@ class RedisLockProviderTest {
     @DisplayName("executeInTryLock should lock in Redis and unlock after task throws exception")
     void executeInTryLock_shouldLockAndUnlockAfterRunnableThrowsException() {
         when(redissonClient.<String, Object>getMap(DEFAULT_MAP_NAME)).thenReturn(mockMap);
-        when(mockMap.getLock("key1")).thenReturn(optimisticLock);
-        when(optimisticLock.tryLock()).thenReturn(true);
+        when(mockMap.getFairLock("key1")).thenReturn(pessimisticLock);
+        when(pessimisticLock.tryLock()).thenReturn(true);
 
         final AtomicInteger counter = new AtomicInteger(0);
 
         assertThrows(RuntimeException.class, () -> lockProvider.executeInTryLock("key1", (Runnable) () -> {
-            verify(mockMap, times(1)).getLock("key1");
-            verify(optimisticLock, never()).unlock();
+            verify(mockMap, times(1)).getFairLock("key1");
+            verify(pessimisticLock, never()).unlock();
             counter.incrementAndGet();
             throw new RuntimeException("test");
         }));
 
-        verify(mockMap, times(1)).getLock("key1");
-        verify(optimisticLock, times(1)).unlock();
+        verify(mockMap, times(1)).getFairLock("key1");
+        verify(pessimisticLock, times(1)).unlock();
         assertEquals(1, counter.get());
     }
 
@@ -504,14 +517,14 @@ class RedisLockProviderTest {
     @DisplayName("executeInTryLock should not lock in Redis and unlock when the lock is not available")
     void executeInTryLock_shouldNotLockAndUnlockWhenLockIsNotAvailable() {
         when(redissonClient.<String, Object>getMap(DEFAULT_MAP_NAME)).thenReturn(mockMap);
-        when(mockMap.getLock("key1")).thenReturn(optimisticLock);
-        when(optimisticLock.tryLock()).thenReturn(false);
+        when(mockMap.getFairLock("key1")).thenReturn(pessimisticLock);
+        when(pessimisticLock.tryLock()).thenReturn(false);
 
         final AtomicInteger counter = new AtomicInteger(0);
         lockProvider.executeInTryLock("key1", (Runnable) counter::incrementAndGet);
 
-        verify(mockMap, times(1)).getLock("key1");
-        verify(optimisticLock, never()).unlock();
+        verify(mockMap, times(1)).getFairLock("key1");
+        verify(pessimisticLock, never()).unlock();
         assertEquals(0, counter.get());
     }
 
@@ -519,19 +532,19 @@ class RedisLockProviderTest {
     @DisplayName("executeInTryLock should lock in Redis and unlock after task finishes and return the value")
     void executeInTryLock_shouldLockAndUnlockAfterSupplierFinishes() {
         when(redissonClient.<String, Object>getMap(DEFAULT_MAP_NAME)).thenReturn(mockMap);
-        when(mockMap.getLock("key1")).thenReturn(optimisticLock);
-        when(optimisticLock.tryLock()).thenReturn(true);
+        when(mockMap.getFairLock("key1")).thenReturn(pessimisticLock);
+        when(pessimisticLock.tryLock()).thenReturn(true);
 
         final AtomicInteger counter = new AtomicInteger(0);
         int returnValue = lockProvider.executeInTryLock("key1", () -> {
             counter.incrementAndGet();
-            verify(mockMap, times(1)).getLock("key1");
-            verify(optimisticLock, never()).unlock();
+            verify(mockMap, times(1)).getFairLock("key1");
+            verify(pessimisticLock, never()).unlock();
             return 3;
         });
 
-        verify(mockMap, times(1)).getLock("key1");
-        verify(optimisticLock, times(1)).unlock();
+        verify(mockMap, times(1)).getFairLock("key1");
+        verify(pessimisticLock, times(1)).unlock();
         assertEquals(1, counter.get());
         assertEquals(3, returnValue);
     }
@@ -540,20 +553,20 @@ class RedisLockProviderTest {
     @DisplayName("executeInTryLock should lock in Redis and unlock after supplier throws exception")
     void executeInTryLock_shouldLockAndUnlockAfterSupplierThrowsException() {
         when(redissonClient.<String, Object>getMap(DEFAULT_MAP_NAME)).thenReturn(mockMap);
-        when(mockMap.getLock("key1")).thenReturn(optimisticLock);
-        when(optimisticLock.tryLock()).thenReturn(true);
+        when(mockMap.getFairLock("key1")).thenReturn(pessimisticLock);
+        when(pessimisticLock.tryLock()).thenReturn(true);
 
         final AtomicInteger counter = new AtomicInteger(0);
 
         assertThrows(RuntimeException.class, () -> lockProvider.executeInTryLock("key1", (Supplier<String>) () -> {
-            verify(mockMap, times(1)).getLock("key1");
-            verify(optimisticLock, never()).unlock();
+            verify(mockMap, times(1)).getFairLock("key1");
+            verify(pessimisticLock, never()).unlock();
             counter.incrementAndGet();
             throw new RuntimeException("test");
         }));
 
-        verify(mockMap, times(1)).getLock("key1");
-        verify(optimisticLock, times(1)).unlock();
+        verify(mockMap, times(1)).getFairLock("key1");
+        verify(pessimisticLock, times(1)).unlock();
         assertEquals(1, counter.get());
     }
 
@@ -561,8 +574,8 @@ class RedisLockProviderTest {
     @DisplayName("executeInTryLock should not lock in Redis and unlock when lock is not available and return null")
     void executeInTryLock_shouldNotLockAndUnlockWhenLockIsNotAvailableAndReturnNull() {
         when(redissonClient.<String, Object>getMap(DEFAULT_MAP_NAME)).thenReturn(mockMap);
-        when(mockMap.getLock("key1")).thenReturn(optimisticLock);
-        when(optimisticLock.tryLock()).thenReturn(false);
+        when(mockMap.getFairLock("key1")).thenReturn(pessimisticLock);
+        when(pessimisticLock.tryLock()).thenReturn(false);
 
         final AtomicInteger counter = new AtomicInteger(0);
         final Integer returnValue = lockProvider.executeInTryLock("key1", () -> {
@@ -570,9 +583,435 @@ class RedisLockProviderTest {
             return 3;
         });
 
-        verify(mockMap, times(1)).getLock("key1");
-        verify(optimisticLock, never()).unlock();
+        verify(mockMap, times(1)).getFairLock("key1");
+        verify(pessimisticLock, never()).unlock();
         assertEquals(0, counter.get());
         assertNull(returnValue);
     }
+
+    @Test
+    @DisplayName("tryLock with wait time should return empty Optional when the wait time elapses")
+    void tryLockWithWaitTime_shouldReturnEmptyOptionalWhenWaitTimeElapses() throws InterruptedException {
+        when(redissonClient.<String, Object>getMap(DEFAULT_MAP_NAME)).thenReturn(mockMap);
+        when(pessimisticLock.tryLock(200, TimeUnit.MILLISECONDS)).thenReturn(false);
+
+        final Optional<Locked> locked = lockProvider.tryLock("lock1", Duration.ofMillis(200));
+        assertFalse(locked.isPresent());
+
+        verify(pessimisticLock, never()).unlock();
+    }
+
+    @Test
+    @DisplayName("tryLock with wait time should return empty Optional and keep the interrupt flag when interrupted")
+    void tryLockWithWaitTime_shouldReturnEmptyOptionalWhenInterrupted() throws InterruptedException {
+        when(redissonClient.<String, Object>getMap(DEFAULT_MAP_NAME)).thenReturn(mockMap);
+        when(pessimisticLock.tryLock(200, TimeUnit.MILLISECONDS)).thenThrow(new InterruptedException());
+
+        final Optional<Locked> locked = lockProvider.tryLock("lock1", Duration.ofMillis(200));
+        assertFalse(locked.isPresent());
+        assertTrue(Thread.interrupted());
+    }
+
+    @Test
+    @DisplayName("Locking a key again should reuse the cached map and lock objects")
+    void lockAgain_shouldReuseCachedLockObjects() throws InterruptedException {
+        when(redissonClient.<String, Object>getMap("map1")).thenReturn(mockMap);
+        when(pessimisticLock.tryLock(100, TimeUnit.MILLISECONDS)).thenReturn(true);
+
+        lockProvider.lock("map1", "lock1").unlock();
+        lockProvider.lock("map1", "lock1").unlock();
+        lockProvider.tryLock("map1", "lock1", Duration.ofMillis(100)).get().unlock();
+        lockProvider.tryLock("map1", "lock1", Duration.ofMillis(100)).get().unlock();
+
+        verify(redissonClient, times(1)).getMap("map1");
+        verify(mockMap, times(1)).getFairLock("lock1");
+        verify(mockMap, never()).getLock("lock1");
+        verify(pessimisticLock, times(4)).unlock();
+        assertEquals(3, lockProvider.getLockHandleCacheStats().getHitCount());
+        assertEquals(1, lockProvider.getLockHandleCacheStats().getMissCount());
+    }
+
+    @Test
+    @DisplayName("A provider without lock object cache should look up the lock objects on every call")
+    void lockWithoutCache_shouldLookUpLockObjectsEveryTime() {
+        final RedisLockProvider uncachedLockProvider = new RedisLockProvider(redissonClient, DEFAULT_MAP_NAME, 0);
+        when(redissonClient.<String, Object>getMap("map1")).thenReturn(mockMap);
+
+        uncachedLockProvider.lock("map1", "lock1").unlock();
+        uncachedLockProvider.lock("map1", "lock1").unlock();
+
+        verify(redissonClient, times(2)).getMap("map1");
+        verify(mockMap, times(2)).getFairLock("lock1");
+        assertThrows(IllegalArgumentException.class, () -> new RedisLockProvider(redissonClient, DEFAULT_MAP_NAME, -1));
+    }
+
+    @Test
+    @DisplayName("Spin mode should lock and try the spin lock sharing its name with the non-fair lock")
+    void spinMode_shouldUseSpinLockWithBackOff() throws InterruptedException {
+        final Map<String, RedisLockMode> lockMapModes = new HashMap<>();
+        lockMapModes.put("spinMap", RedisLockMode.spin(Duration.ofMillis(2), Duration.ofMillis(64), 3));
+        final RedisLockProvider spinLockProvider = new RedisLockProvider(redissonClient, DEFAULT_MAP_NAME,
+                RedisLockProvider.DEFAULT_LOCK_HANDLE_CACHE_SIZE, RedisLockMode.fair(), lockMapModes);
+        final RLock spinLock = mock(RLock.class);
+        final ArgumentCaptor<LockOptions.BackOff> backOffCaptor = ArgumentCaptor.forClass(LockOptions.BackOff.class);
+        when(redissonClient.<String, Object>getMap("spinMap")).thenReturn(mockMap);
+        when(redissonClient.<String, Object>getMap("map1")).thenReturn(mockMap);
+        when(optimisticLock.getName()).thenReturn("redisson_lock__{spinMap}:lock1");
+        when(redissonClient.getSpinLock(eq("redisson_lock__{spinMap}:lock1"), backOffCaptor.capture())).thenReturn(spinLock);
+        when(spinLock.tryLock(100, TimeUnit.MILLISECONDS)).thenReturn(true);
+
+        spinLockProvider.lock("spinMap", "lock1").unlock();
+        spinLockProvider.tryLock("spinMap", "lock1", Duration.ofMillis(100)).get().unlock();
+        spinLockProvider.lock("map1", "lock1").unlock();
+
+        verify(spinLock, times(1)).lock();
+        verify(spinLock, times(1)).tryLock(100, TimeUnit.MILLISECONDS);
+        verify(spinLock, times(2)).unlock();
+        verify(redissonClient, times(1)).getSpinLock(anyString(), any());
+        verify(mockMap, never()).getFairLock("spinMap");
+        verify(pessimisticLock, times(1)).lock();
+        final LockOptions.ExponentialBackOff backOff = (LockOptions.ExponentialBackOff) backOffCaptor.getValue();
+        assertEquals(2, backOff.getInitialDelay());
+        assertEquals(64, backOff.getMaxDelay());
+        assertEquals(3, backOff.getMultiplier());
+    }
+
+    @Test
+    @DisplayName("Spin mode as default should apply to the lock name methods")
+    void spinModeAsDefault_shouldApplyToLockNames() {
+        final RedisLockProvider spinLockProvider = new RedisLockProvider(redissonClient, DEFAULT_MAP_NAME, 0,
+                RedisLockMode.spin(), new HashMap<>());
+        final RLock spinLock = mock(RLock.class);
+        when(redissonClient.<String, Object>getMap(DEFAULT_MAP_NAME)).thenReturn(mockMap);
+        when(optimisticLock.getName()).thenReturn("lock1");
+        when(redissonClient.getSpinLock(eq("lock1"), any())).thenReturn(spinLock);
+
+        spinLockProvider.executeInLock("lock1", () -> {
+        });
+
+        verify(spinLock, times(1)).lock();
+        verify(spinLock, times(1)).unlock();
+        verify(pessimisticLock, never()).lock();
+    }
+
+    @Test
+    @DisplayName("Non-fair mode should lock and try the key's non-fair lock, also asynchronously and for several keys")
+    void nonFairMode_shouldUseNonFairLock() throws InterruptedException {
+        final Map<String, RedisLockMode> lockMapModes = new HashMap<>();
+        lockMapModes.put("map1", RedisLockMode.nonFair());
+        final RedisLockProvider nonFairLockProvider = new RedisLockProvider(redissonClient, DEFAULT_MAP_NAME,
+                RedisLockProvider.DEFAULT_LOCK_HANDLE_CACHE_SIZE, RedisLockMode.fair(), lockMapModes);
+        final RLock multiLock = mock(RLock.class);
+        when(redissonClient.<String, Object>getMap("map1")).thenReturn(mockMap);
+        when(optimisticLock.tryLock(100, TimeUnit.MILLISECONDS)).thenReturn(true);
+        when(redissonClient.getMultiLock(any())).thenReturn(multiLock);
+
+        nonFairLockProvider.lock("map1", "lock1").unlock();
+        nonFairLockProvider.tryLock("map1", "lock1", Duration.ofMillis(100)).get().unlock();
+        nonFairLockProvider.lockAll("map1", List.of("lock2", "lock1")).unlock();
+
+        verify(optimisticLock, times(1)).lock();
+        verify(optimisticLock, times(2)).unlock();
+        verify(mockMap, never()).getFairLock(anyString());
+        verify(pessimisticLock, never()).lock();
+        verify(redissonClient, times(1)).getMultiLock(optimisticLock, optimisticLock);
+        assertEquals("NON_FAIR", RedisLockMode.nonFair().toString());
+    }
+
+    @Test
+    @DisplayName("Spin mode should reject an invalid backoff")
+    void spinMode_shouldRejectInvalidBackOff() {
+        assertThrows(IllegalArgumentException.class, () -> RedisLockMode.spin(Duration.ZERO, Duration.ofMillis(1), 2));
+        assertThrows(IllegalArgumentException.class, () -> RedisLockMode.spin(Duration.ofMillis(10), Duration.ofMillis(1), 2));
+        assertThrows(IllegalArgumentException.class, () -> RedisLockMode.spin(Duration.ofMillis(1), Duration.ofMillis(1), 0));
+        assertThrows(NullPointerException.class, () -> RedisLockMode.spin(null, Duration.ofMillis(1), 2));
+        assertEquals("SPIN(1ms..128ms x2)", RedisLockMode.spin().toString());
+        assertEquals("FAIR", RedisLockMode.fair().toString());
+    }
+
+    @Test
+    @DisplayName("lock with lease should lock the fair lock with Redisson's lease time")
+    void lockWithLease_shouldLockFairLockWithLeaseTime() {
+        when(redissonClient.<String, Object>getMap("map1")).thenReturn(mockMap);
+
+        final Locked locked = lockProvider.lock("map1", "lock1", Duration.ofSeconds(30));
+        locked.unlock();
+
+        verify(mockMap, times(1)).getFairLock("lock1");
+        verify(pessimisticLock, times(1)).lock(30000, TimeUnit.MILLISECONDS);
+        verify(pessimisticLock, never()).lock();
+        verify(pessimisticLock, times(1)).unlock();
+    }
+
+    @Test
+    @DisplayName("tryLock with lease should try the lock with Redisson's wait and lease time")
+    void tryLockWithLease_shouldTryLockWithWaitAndLeaseTime() throws InterruptedException {
+        when(redissonClient.<String, Object>getMap("map1")).thenReturn(mockMap);
+        when(pessimisticLock.tryLock(1500, 10000, TimeUnit.MILLISECONDS)).thenReturn(true);
+
+        final Optional<Locked> locked = lockProvider.tryLock("map1", "lock1", Duration.ofMillis(1500), Duration.ofSeconds(10));
+        assertTrue(locked.isPresent());
+        locked.get().unlock();
+
+        verify(pessimisticLock, times(1)).tryLock(1500, 10000, TimeUnit.MILLISECONDS);
+        verify(pessimisticLock, times(1)).unlock();
+    }
+
+    @Test
+    @DisplayName("tryLock with lease should return empty Optional when the wait time elapses")
+    void tryLockWithLease_shouldReturnEmptyOptionalWhenWaitTimeElapses() throws InterruptedException {
+        when(redissonClient.<String, Object>getMap("map1")).thenReturn(mockMap);
+        when(pessimisticLock.tryLock(200, 10000, TimeUnit.MILLISECONDS)).thenReturn(false);
+
+        final Optional<Locked> locked = lockProvider.tryLock("map1", "lock1", Duration.ofMillis(200), Duration.ofSeconds(10));
+        assertFalse(locked.isPresent());
+
+        verify(optimisticLock, never()).unlock();
+    }
+
+    @Test
+    @DisplayName("lock with lease should reject a non-positive lease")
+    void lockWithLease_shouldRejectNonPositiveLease() {
+        when(redissonClient.<String, Object>getMap("map1")).thenReturn(mockMap);
+
+        assertThrows(IllegalArgumentException.class, () -> lockProvider.lock("map1", "lock1", Duration.ZERO));
+        assertThrows(IllegalArgumentException.class,
+                () -> lockProvider.tryLock("map1", "lock1", Duration.ofSeconds(1), Duration.ofMillis(-1)));
+        assertThrows(NullPointerException.class, () -> lockProvider.lock("map1", "lock1", null));
+        verifyZeroInteractions(pessimisticLock, optimisticLock);
+    }
+
+    @Test
+    @DisplayName("executeInTryLock with wait time should lock in Redis map and unlock after supplier finishes")
+    void executeInTryLockWithWaitTime_shouldLockAndUnlockAfterSupplierFinishes() throws InterruptedException {
+        when(redissonClient.<String, Object>getMap("map1")).thenReturn(mockMap);
+        when(pessimisticLock.tryLock(1000, TimeUnit.MILLISECONDS)).thenReturn(true);
+
+        final Integer returnValue = lockProvider.executeInTryLock("map1", "key1", Duration.ofSeconds(1), () -> 3);
+
+        verify(pessimisticLock, times(1)).unlock();
+        assertEquals(Integer.valueOf(3), returnValue);
+    }
+
+    @Test
+    @DisplayName("lockAsync should lock the fair lock asynchronously and unlock with the same owner id")
+    void lockAsync_shouldLockAsynchronouslyAndUnlockWithSameOwnerId() {
+        when(redissonClient.<String, Object>getMap("map1")).thenReturn(mockMap);
+        when(pessimisticLock.lockAsync(anyLong())).thenReturn(new CompletableFutureWrapper<>((Void) null));
+        when(pessimisticLock.unlockAsync(anyLong())).thenReturn(new CompletableFutureWrapper<>((Void) null));
+
+        final Locked locked = lockProvider.lockAsync("map1", "lock1").toCompletableFuture().join();
+        locked.unlockAsync().toCompletableFuture().join();
+
+        final ArgumentCaptor<Long> lockOwnerCaptor = ArgumentCaptor.forClass(Long.class);
+        final ArgumentCaptor<Long> unlockOwnerCaptor = ArgumentCaptor.forClass(Long.class);
+        verify(mockMap, times(1)).getFairLock("lock1");
+        verify(pessimisticLock, times(1)).lockAsync(lockOwnerCaptor.capture());
+        verify(pessimisticLock, times(1)).unlockAsync(unlockOwnerCaptor.capture());
+        verify(pessimisticLock, never()).lock();
+        assertEquals(lockOwnerCaptor.getValue(), unlockOwnerCaptor.getValue());
+        assertTrue(lockOwnerCaptor.getValue() < 0);
+    }
+
+    @Test
+    @DisplayName("lockAsync with lock name should use the default map")
+    void lockAsyncWithLockName_shouldUseDefaultMap() {
+        when(redissonClient.<String, Object>getMap(DEFAULT_MAP_NAME)).thenReturn(mockMap);
+        when(pessimisticLock.lockAsync(anyLong())).thenReturn(new CompletableFutureWrapper<>((Void) null));
+        when(pessimisticLock.unlockAsync(anyLong())).thenReturn(new CompletableFutureWrapper<>((Void) null));
+
+        lockProvider.lockAsync("lock1").toCompletableFuture().join().unlock();
+
+        verify(mockMap, times(1)).getFairLock("lock1");
+        verify(pessimisticLock, times(1)).unlockAsync(anyLong());
+    }
+
+    @Test
+    @DisplayName("tryLockAsync should return the lock when the fair lock is acquired asynchronously")
+    void tryLockAsync_shouldReturnLockWhenAcquired() {
+        when(redissonClient.<String, Object>getMap("map1")).thenReturn(mockMap);
+        when(pessimisticLock.tryLockAsync(anyLong())).thenReturn(new CompletableFutureWrapper<>(true));
+        when(pessimisticLock.unlockAsync(anyLong())).thenReturn(new CompletableFutureWrapper<>((Void) null));
+
+        final Optional<Locked> locked = lockProvider.tryLockAsync("map1", "lock1").toCompletableFuture().join();
+        assertTrue(locked.isPresent());
+        locked.get().unlock();
+
+        verify(mockMap, times(1)).getFairLock("lock1");
+        verify(pessimisticLock, times(1)).unlockAsync(anyLong());
+    }
+
+    @Test
+    @DisplayName("tryLockAsync should return empty Optional when the lock is held elsewhere")
+    void tryLockAsync_shouldReturnEmptyOptionalWhenLockIsHeld() {
+        when(redissonClient.<String, Object>getMap(DEFAULT_MAP_NAME)).thenReturn(mockMap);
+        when(pessimisticLock.tryLockAsync(anyLong())).thenReturn(new CompletableFutureWrapper<>(false));
+
+        final Optional<Locked> locked = lockProvider.tryLockAsync("lock1").toCompletableFuture().join();
+        assertFalse(locked.isPresent());
+
+        verify(pessimisticLock, never()).unlockAsync(anyLong());
+    }
+
+    @Test
+    @DisplayName("executeInLockAsync should run the supplier and unlock asynchronously")
+    void executeInLockAsync_shouldRunSupplierAndUnlockAsynchronously() {
+        when(redissonClient.<String, Object>getMap("map1")).thenReturn(mockMap);
+        when(pessimisticLock.lockAsync(anyLong())).thenReturn(new CompletableFutureWrapper<>((Void) null));
+        when(pessimisticLock.unlockAsync(anyLong())).thenReturn(new CompletableFutureWrapper<>((Void) null));
+
+        final Integer returnValue = lockProvider.executeInLockAsync("map1", "key1", () -> 3).toCompletableFuture().join();
+
+        assertEquals(Integer.valueOf(3), returnValue);
+        verify(pessimisticLock, times(1)).unlockAsync(anyLong());
+    }
+
+    @Test
+    @DisplayName("lockAll should acquire the fair locks of the distinct keys as one multi lock in canonical order")
+    void lockAll_shouldAcquireMultiLockInCanonicalOrder() {
+        final RLock lockA = mock(RLock.class);
+        final RLock lockB = mock(RLock.class);
+        final RLock multiLock = mock(RLock.class);
+        when(redissonClient.<String, Object>getMap("map1")).thenReturn(mockMap);
+        when(mockMap.getFairLock("a")).thenReturn(lockA);
+        when(mockMap.getFairLock("b")).thenReturn(lockB);
+        when(redissonClient.getMultiLock(lockA, lockB)).thenReturn(multiLock);
+
+        final Locked locked = lockProvider.lockAll("map1", List.of("b", "a", "b"));
+        verify(redissonClient).getMultiLock(lockA, lockB);
+        verify(multiLock).lock();
+
+        locked.unlock();
+        verify(multiLock).unlock();
+    }
+
+    @Test
+    @DisplayName("executeInLock with keys should run within the multi lock")
+    void executeInLockWithKeys_shouldRunWithinMultiLock() {
+        final RLock multiLock = mock(RLock.class);
+        when(redissonClient.<String, Object>getMap("map1")).thenReturn(mockMap);
+        when(redissonClient.getMultiLock(any())).thenReturn(multiLock);
+
+        final String returnValue = lockProvider.executeInLock("map1", List.of("a", "b"), () -> {
+            verify(multiLock).lock();
+            verify(multiLock, never()).unlock();
+            return "value";
+        });
+
+        assertEquals("value", returnValue);
+        verify(multiLock).unlock();
+    }
+
+    @Test
+    @DisplayName("lockAll should reject an empty key collection")
+    void lockAll_shouldRejectEmptyKeys() {
+        when(redissonClient.<String, Object>getMap("map1")).thenReturn(mockMap);
+
+        assertThrows(IllegalArgumentException.class, () -> lockProvider.lockAll("map1", List.of()));
+    }
+
+    @Test
+    @DisplayName("readLock and writeLock should lock the sides of the key's read/write lock")
+    void readAndWriteLock_shouldLockSidesOfReadWriteLock() {
+        final RReadWriteLock readWriteLock = mock(RReadWriteLock.class);
+        final RLock readLock = mock(RLock.class);
+        final RLock writeLock = mock(RLock.class);
+        when(redissonClient.<String, Object>getMap("map1")).thenReturn(mockMap);
+        when(mockMap.getReadWriteLock("lock1")).thenReturn(readWriteLock);
+        when(readWriteLock.readLock()).thenReturn(readLock);
+        when(readWriteLock.writeLock()).thenReturn(writeLock);
+
+        final Locked readLocked = lockProvider.readLock("map1", "lock1");
+        verify(readLock).lock();
+        readLocked.unlock();
+        verify(readLock).unlock();
+
+        lockProvider.executeInWriteLock("map1", "lock1", () -> verify(writeLock).lock());
+        verify(writeLock).unlock();
+        verifyZeroInteractions(pessimisticLock, optimisticLock);
+    }
+
+    @Test
+    @DisplayName("acquirePermits should set the permit count once and release permits by id")
+    void acquirePermits_shouldSetPermitsOnceAndReleaseById() throws InterruptedException {
+        final RPermitExpirableSemaphore semaphore = mock(RPermitExpirableSemaphore.class);
+        when(redissonClient.<String, Object>getMap("map1")).thenReturn(mockMap);
+        when(mockMap.getPermitExpirableSemaphore("lock1")).thenReturn(semaphore);
+        when(semaphore.getName()).thenReturn("map1:lock1");
+        when(semaphore.acquire(3, 30_000, TimeUnit.MILLISECONDS)).thenReturn(List.of("id1", "id2", "id3"));
+        when(semaphore.tryAcquire(1, 100, 30_000, TimeUnit.MILLISECONDS)).thenReturn(List.of());
+
+        final Permits permits = lockProvider.acquirePermits("map1", "lock1", 5, 3);
+        assertFalse(lockProvider.tryAcquirePermits("map1", "lock1", 5, 1, Duration.ofMillis(100)).isPresent());
+        verify(semaphore, times(1)).trySetPermits(5);
+
+        permits.release(1);
+        verify(semaphore).release(List.of("id3"));
+        permits.unlock();
+        verify(semaphore).release(List.of("id1", "id2"));
+    }
+
+    @Test
+    @DisplayName("acquirePermits should renew the lease of held permits until they are released")
+    void acquirePermits_shouldRenewLeaseUntilReleased() throws InterruptedException {
+        final RedisLockProvider leasingLockProvider = new RedisLockProvider(redissonClient, DEFAULT_MAP_NAME,
+                RedisLockProvider.DEFAULT_LOCK_HANDLE_CACHE_SIZE, RedisLockMode.fair(), new HashMap<>(),
+                Duration.ofMillis(150), true);
+        final RPermitExpirableSemaphore semaphore = mock(RPermitExpirableSemaphore.class);
+        when(redissonClient.<String, Object>getMap("map1")).thenReturn(mockMap);
+        when(mockMap.getPermitExpirableSemaphore("lock1")).thenReturn(semaphore);
+        when(semaphore.acquire(2, 150, TimeUnit.MILLISECONDS)).thenReturn(List.of("id1", "id2"));
+        when(semaphore.updateLeaseTimeAsync(anyString(), anyLong(), any())).thenReturn(new CompletableFutureWrapper<>(true));
+
+        final Permits permits = leasingLockProvider.acquirePermits("map1", "lock1", 5, 2);
+        verify(semaphore, timeout(1_000).atLeast(2)).updateLeaseTimeAsync("id1", 150, TimeUnit.MILLISECONDS);
+        verify(semaphore, atLeast(2)).updateLeaseTimeAsync("id2", 150, TimeUnit.MILLISECONDS);
+
+        permits.release(1);
+        clearInvocations(semaphore);
+        verify(semaphore, timeout(1_000).atLeastOnce()).updateLeaseTimeAsync("id1", 150, TimeUnit.MILLISECONDS);
+        verify(semaphore, never()).updateLeaseTimeAsync("id2", 150, TimeUnit.MILLISECONDS);
+
+        permits.unlock();
+        sleepUninterruptibly(100, TimeUnit.MILLISECONDS);
+        clearInvocations(semaphore);
+        sleepUninterruptibly(200, TimeUnit.MILLISECONDS);
+        verify(semaphore, never()).updateLeaseTimeAsync(any(), anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("acquirePermits should not renew the lease unless lease renewal is turned on")
+    void acquirePermits_shouldNotRenewLeaseByDefault() throws InterruptedException {
+        final RedisLockProvider leasingLockProvider = new RedisLockProvider(redissonClient, DEFAULT_MAP_NAME,
+                RedisLockProvider.DEFAULT_LOCK_HANDLE_CACHE_SIZE, RedisLockMode.fair(), new HashMap<>(),
+                Duration.ofMillis(60));
+        final RPermitExpirableSemaphore semaphore = mock(RPermitExpirableSemaphore.class);
+        when(redissonClient.<String, Object>getMap("map1")).thenReturn(mockMap);
+        when(mockMap.getPermitExpirableSemaphore("lock1")).thenReturn(semaphore);
+        when(semaphore.acquire(1, 60, TimeUnit.MILLISECONDS)).thenReturn(List.of("id1"));
+
+        final Permits permits = leasingLockProvider.acquirePermits("map1", "lock1", 5, 1);
+        sleepUninterruptibly(200, TimeUnit.MILLISECONDS);
+        verify(semaphore, never()).updateLeaseTimeAsync(any(), anyLong(), any());
+        permits.unlock();
+    }
+
+    @Test
+    @DisplayName("acquirePermits should stop renewing the lease once a renewal finds the permit expired")
+    void acquirePermits_shouldStopRenewingLeaseOfExpiredPermit() throws InterruptedException {
+        final RedisLockProvider leasingLockProvider = new RedisLockProvider(redissonClient, DEFAULT_MAP_NAME,
+                RedisLockProvider.DEFAULT_LOCK_HANDLE_CACHE_SIZE, RedisLockMode.fair(), new HashMap<>(),
+                Duration.ofMillis(60), true);
+        final RPermitExpirableSemaphore semaphore = mock(RPermitExpirableSemaphore.class);
+        when(redissonClient.<String, Object>getMap("map1")).thenReturn(mockMap);
+        when(mockMap.getPermitExpirableSemaphore("lock1")).thenReturn(semaphore);
+        when(semaphore.getName()).thenReturn("map1:lock1");
+        when(semaphore.acquire(1, 60, TimeUnit.MILLISECONDS)).thenReturn(List.of("id1"));
+        when(semaphore.updateLeaseTimeAsync("id1", 60, TimeUnit.MILLISECONDS)).thenReturn(new CompletableFutureWrapper<>(false));
+
+        leasingLockProvider.acquirePermits("map1", "lock1", 5, 1);
+        verify(semaphore, timeout(1_000)).updateLeaseTimeAsync("id1", 60, TimeUnit.MILLISECONDS);
+        sleepUninterruptibly(200, TimeUnit.MILLISECONDS);
+        verify(semaphore, times(1)).updateLeaseTimeAsync("id1", 60, TimeUnit.MILLISECONDS);
+    }
 }
@@ -0,0 +1,64 @@
+package com.inomera.telco.commons.lock.reentrant;
+
+import com.inomera.telco.commons.lock.Locked;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures lock/unlock throughput of {@link LocalReentrantLockProvider} while every thread works on
+ * its own key. The keys never collide, so throughput should grow with the thread count as long as
+ * the lock table itself does not serialize the threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocalReentrantLockProviderContentionBenchmark {
+    private static final String LOCK_MAP = "benchmark";
+
+    private final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider();
+    private final AtomicInteger threadIndex = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class DisjointKey {
+        String lockKey;
+
+        @Setup
+        public void setUp(LocalReentrantLockProviderContentionBenchmark benchmark) {
+            lockKey = "key-" + benchmark.threadIndex.getAndIncrement();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void disjointKeys_1Thread(DisjointKey key) {
+        lockAndUnlock(key);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void disjointKeys_4Threads(DisjointKey key) {
+        lockAndUnlock(key);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void disjointKeys_16Threads(DisjointKey key) {
+        lockAndUnlock(key);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void disjointKeys_64Threads(DisjointKey key) {
+        lockAndUnlock(key);
+    }
+
+    private void lockAndUnlock(DisjointKey key) {
+        final Locked locked = lockProvider.lock(LOCK_MAP, key.lockKey);
+        locked.unlock();
+    }
+}
@@ -0,0 +1,62 @@
+package com.inomera.telco.commons.lock.reentrant;
+
+import com.inomera.telco.commons.lock.Locked;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares fair, non-fair and adaptive local locks on a single hot key.
+ * <p>
+ * Throughput mode shows the cost of strict hand-offs, sample time mode shows the tail: the p99 of an operation
+ * is dominated by how long the thread waited for the lock, since the work done while holding it is constant.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class LocalReentrantLockProviderFairnessBenchmark {
+    private static final String LOCK_MAP = "benchmark";
+    private static final String LOCK_KEY = "hot-key";
+
+    @Param({"fair", "nonFair", "adaptive"})
+    public String fairness;
+
+    @Param({"100"})
+    public long workTokens;
+
+    private LocalReentrantLockProvider lockProvider;
+
+    @Setup
+    public void setUp() {
+        lockProvider = new LocalReentrantLockProvider(lockFairness());
+    }
+
+    @Benchmark
+    public void hotKey() {
+        final Locked locked = lockProvider.lock(LOCK_MAP, LOCK_KEY);
+        try {
+            Blackhole.consumeCPU(workTokens);
+        } finally {
+            locked.unlock();
+        }
+    }
+
+    private LockFairness lockFairness() {
+        switch (fairness) {
+            case "fair":
+                return LockFairness.fair();
+            case "nonFair":
+                return LockFairness.nonFair();
+            case "adaptive":
+                return LockFairness.adaptive(Duration.ofMillis(1));
+            default:
+                throw new IllegalArgumentException("Unknown fairness: " + fairness);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.inomera.telco.commons.lock.reentrant;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures how long 100k tasks take to lock one of a few thousand keys, park while holding the lock
+ * and unlock, on one virtual thread per task versus a fixed pool of platform threads.
+ * <p>
+ * {@code jdk.VirtualThreadPinned} events are recorded over the whole trial and their count is printed
+ * at tear down. It should stay at zero: a monitor on the acquisition path would pin the carrier thread
+ * every time a virtual thread parks inside it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LocalReentrantLockProviderVirtualThreadBenchmark {
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final String LOCK_MAP = "benchmark";
+
+    @Param({"virtual", "platform"})
+    public String threads;
+
+    @Param({"100000"})
+    public int taskCount;
+
+    @Param({"2000"})
+    public int keyCount;
+
+    @Param({"256"})
+    public int platformThreadCount;
+
+    @Param({"10"})
+    public long holdMicros;
+
+    private final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider();
+    private String[] lockKeys;
+    private Recording recording;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        lockKeys = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            lockKeys[i] = "key-" + i;
+        }
+        recording = new Recording();
+        recording.enable(PINNED_EVENT).withThreshold(Duration.ZERO);
+        recording.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        recording.stop();
+        final Path recordingFile = Files.createTempFile("virtual-thread-benchmark", ".jfr");
+        try {
+            recording.dump(recordingFile);
+            final long pinnedEvents = RecordingFile.readAllEvents(recordingFile).stream()
+                    .filter(event -> PINNED_EVENT.equals(event.getEventType().getName()))
+                    .count();
+            System.out.println(PINNED_EVENT + " events: " + pinnedEvents);
+        } finally {
+            recording.close();
+            Files.deleteIfExists(recordingFile);
+        }
+    }
+
+    @Benchmark
+    public int contendedKeys() {
+        final long holdNanos = TimeUnit.MICROSECONDS.toNanos(holdMicros);
+        final int[] counters = new int[keyCount];
+        try (ExecutorService executor = newExecutor()) {
+            for (int i = 0; i < taskCount; i++) {
+                final int slot = i % keyCount;
+                executor.execute(() -> lockProvider.executeInLock(LOCK_MAP, lockKeys[slot], () -> {
+                    LockSupport.parkNanos(holdNanos);
+                    counters[slot]++;
+                }));
+            }
+        }
+        return counters[0];
+    }
+
+    private ExecutorService newExecutor() {
+        if ("virtual".equals(threads)) {
+            return Executors.newVirtualThreadPerTaskExecutor();
+        }
+        return Executors.newFixedThreadPool(platformThreadCount);
+    }
+}
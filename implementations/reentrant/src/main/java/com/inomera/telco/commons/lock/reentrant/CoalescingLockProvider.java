@@ -0,0 +1,312 @@
+package com.inomera.telco.commons.lock.reentrant;
+
+import com.inomera.telco.commons.lock.BaseLockProvider;
+import com.inomera.telco.commons.lock.LockProvider;
+import com.inomera.telco.commons.lock.Locked;
+import com.inomera.telco.commons.lock.Permits;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Decorates a distributed {@link LockProvider} so that the threads of this JVM contend for a lock locally first.
+ * <p>
+ * A thread takes the key's lock of a {@link LocalReentrantLockProvider}, and only the local holder takes the remote
+ * lock of the key. When the local holder unlocks while other threads of this JVM are blocked in {@code lock} on the
+ * same key, the remote lock is kept and handed off to the next local holder instead of being released and acquired
+ * again, so a busy key costs about one remote acquisition per node rather than one per waiting thread. After
+ * {@code maxHandoffs} consecutive handoffs the remote lock is released anyway, so that other nodes waiting for the key
+ * get their turn. Threads waiting in {@code tryLock} are not handed the remote lock, since they may give up.
+ * <p>
+ * Remote locks are acquired through the asynchronous API of the remote provider, which lets whichever local holder
+ * comes last release them. A {@code tryLock} with a wait time waits for the remote lock as {@code lock} does until the
+ * wait time elapses; a remote lock acquired after that is released right away.
+ * <p>
+ * Locks are reentrant; a nested lock reuses the remote lock of the outer one. Read and write locks fall back to the
+ * exclusive lock of the key. Permits are acquired from the remote provider directly. Leases are not supported.
+ */
+public class CoalescingLockProvider extends BaseLockProvider implements LockProvider {
+    public static final int DEFAULT_MAX_HANDOFFS = 64;
+
+    private final LockProvider remoteLockProvider;
+    private final LocalReentrantLockProvider localLockProvider;
+    private final int maxHandoffs;
+    private final ConcurrentMap<LockMapKey, RemoteHold> remoteHolds = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new CoalescingLockProvider handing a remote lock off at most 64 times in a row.
+     *
+     * @param remoteLockProvider distributed lock provider to decorate
+     */
+    public CoalescingLockProvider(LockProvider remoteLockProvider) {
+        this(remoteLockProvider, DEFAULT_MAX_HANDOFFS);
+    }
+
+    /**
+     * @param remoteLockProvider distributed lock provider to decorate
+     * @param maxHandoffs        maximum number of consecutive local holders a remote lock is handed off to before it is
+     *                           released, zero to release it after every holder
+     */
+    public CoalescingLockProvider(LockProvider remoteLockProvider, int maxHandoffs) {
+        this(remoteLockProvider, maxHandoffs, new LocalReentrantLockProvider());
+    }
+
+    CoalescingLockProvider(LockProvider remoteLockProvider, int maxHandoffs, LocalReentrantLockProvider localLockProvider) {
+        this.localLockProvider = localLockProvider;
+        this.remoteLockProvider = Objects.requireNonNull(remoteLockProvider, "Remote lock provider cannot be null");
+        if (maxHandoffs < 0) {
+            throw new IllegalArgumentException("Max handoffs cannot be negative: " + maxHandoffs);
+        }
+        this.maxHandoffs = maxHandoffs;
+    }
+
+    @Override
+    public Locked lock(String lockMap, String lockKey) {
+        return lock(new CompositeLockMapKey(lockMap, lockKey), () -> localLockProvider.lock(lockMap, lockKey),
+                () -> remoteLockProvider.lockAsync(lockMap, lockKey));
+    }
+
+    @Override
+    public Optional<Locked> tryLock(String lockMap, String lockKey) {
+        return tryLock(new CompositeLockMapKey(lockMap, lockKey), () -> localLockProvider.tryLock(lockMap, lockKey),
+                () -> join(remoteLockProvider.tryLockAsync(lockMap, lockKey)));
+    }
+
+    @Override
+    public Optional<Locked> tryLock(String lockMap, String lockKey, Duration waitTime) {
+        final long deadline = System.nanoTime() + Objects.requireNonNull(waitTime, "Wait time cannot be null").toNanos();
+        return tryLock(new CompositeLockMapKey(lockMap, lockKey), () -> localLockProvider.tryLock(lockMap, lockKey, waitTime),
+                () -> await(remoteLockProvider.lockAsync(lockMap, lockKey), deadline));
+    }
+
+    @Override
+    public Locked lock(String lockName) {
+        return lock(new SimpleLockMapKey(lockName), () -> localLockProvider.lock(lockName),
+                () -> remoteLockProvider.lockAsync(lockName));
+    }
+
+    @Override
+    public Optional<Locked> tryLock(String lockName) {
+        return tryLock(new SimpleLockMapKey(lockName), () -> localLockProvider.tryLock(lockName),
+                () -> join(remoteLockProvider.tryLockAsync(lockName)));
+    }
+
+    @Override
+    public Optional<Locked> tryLock(String lockName, Duration waitTime) {
+        final long deadline = System.nanoTime() + Objects.requireNonNull(waitTime, "Wait time cannot be null").toNanos();
+        return tryLock(new SimpleLockMapKey(lockName), () -> localLockProvider.tryLock(lockName, waitTime),
+                () -> await(remoteLockProvider.lockAsync(lockName), deadline));
+    }
+
+    @Override
+    public Permits acquirePermits(String lockMap, String lockKey, int maxPermits, int permits) {
+        return remoteLockProvider.acquirePermits(lockMap, lockKey, maxPermits, permits);
+    }
+
+    @Override
+    public Optional<Permits> tryAcquirePermits(String lockMap, String lockKey, int maxPermits, int permits, Duration waitTime) {
+        return remoteLockProvider.tryAcquirePermits(lockMap, lockKey, maxPermits, permits, waitTime);
+    }
+
+    /**
+     * @return the number of keys locked or waited for
+     */
+    public int size() {
+        return remoteHolds.size();
+    }
+
+    private Locked lock(LockMapKey key, Supplier<Locked> localLock, Supplier<CompletionStage<Locked>> remoteLock) {
+        final RemoteHold hold = retain(key);
+        final Locked localLocked;
+        hold.waiters.incrementAndGet();
+        try {
+            localLocked = localLock.get();
+        } catch (RuntimeException e) {
+            releaseAfterFailure(key, hold, e);
+            throw e;
+        } finally {
+            hold.waiters.decrementAndGet();
+        }
+        if (hold.depth == 0 && hold.remoteLocked == null) {
+            try {
+                hold.remoteLocked = join(remoteLock.get());
+            } catch (RuntimeException e) {
+                localLocked.unlock();
+                release(key, hold);
+                throw e;
+            }
+        }
+        hold.depth++;
+        return new CoalescedLocked(key, hold, localLocked);
+    }
+
+    private Optional<Locked> tryLock(LockMapKey key, Supplier<Optional<Locked>> localLock,
+                                     Supplier<Optional<Locked>> remoteLock) {
+        final RemoteHold hold = retain(key);
+        final Optional<Locked> localLocked;
+        try {
+            localLocked = localLock.get();
+        } catch (RuntimeException e) {
+            releaseAfterFailure(key, hold, e);
+            throw e;
+        }
+        if (!localLocked.isPresent()) {
+            release(key, hold);
+            return Optional.empty();
+        }
+        if (hold.depth == 0 && hold.remoteLocked == null) {
+            final Optional<Locked> remoteLocked;
+            try {
+                remoteLocked = remoteLock.get();
+            } catch (RuntimeException e) {
+                localLocked.get().unlock();
+                release(key, hold);
+                throw e;
+            }
+            if (!remoteLocked.isPresent()) {
+                localLocked.get().unlock();
+                release(key, hold);
+                return Optional.empty();
+            }
+            hold.remoteLocked = remoteLocked.get();
+        }
+        hold.depth++;
+        return Optional.of(new CoalescedLocked(key, hold, localLocked.get()));
+    }
+
+    private RemoteHold retain(LockMapKey key) {
+        return remoteHolds.compute(key, (ignored, hold) -> {
+            final RemoteHold retained = hold == null ? new RemoteHold() : hold;
+            retained.references++;
+            return retained;
+        });
+    }
+
+    /**
+     * Drops a reference to the hold. The last reference releases a remote lock still kept for a handoff, which happens
+     * when the local holder it was kept for fails to take the local lock.
+     */
+    private void release(LockMapKey key, RemoteHold hold) {
+        if (remoteHolds.computeIfPresent(key, (ignored, retained) -> --retained.references == 0 ? null : retained) != null) {
+            return;
+        }
+        final Locked remoteLocked = hold.remoteLocked;
+        if (remoteLocked != null) {
+            hold.remoteLocked = null;
+            remoteLocked.unlock();
+        }
+    }
+
+    private void releaseAfterFailure(LockMapKey key, RemoteHold hold, RuntimeException failure) {
+        try {
+            release(key, hold);
+        } catch (RuntimeException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    private static <T> T join(CompletionStage<T> stage) {
+        try {
+            return stage.toCompletableFuture().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for a remote lock until the deadline, after which it is released as soon as it is acquired.
+     */
+    private static Optional<Locked> await(CompletionStage<Locked> stage, long deadline) {
+        final CompletableFuture<Locked> future = stage.toCompletableFuture();
+        try {
+            return Optional.of(future.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+        } catch (TimeoutException e) {
+            future.thenAccept(Locked::unlockAsync);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.thenAccept(Locked::unlockAsync);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Failed to acquire the remote lock", e.getCause());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * The remote lock of a key and its local holders. Only {@link #references} is guarded by the map of remote holds;
+     * the other fields are guarded by the local lock of the key, or belong to whoever drops the last reference.
+     */
+    private static final class RemoteHold {
+        private final AtomicInteger waiters = new AtomicInteger();
+        private int references;
+        private Locked remoteLocked;
+        private int depth;
+        private int handoffs;
+    }
+
+    private final class CoalescedLocked implements Locked {
+        private final LockMapKey key;
+        private final RemoteHold hold;
+        private final Locked localLocked;
+        private final Thread owner = Thread.currentThread();
+        private boolean released;
+
+        private CoalescedLocked(LockMapKey key, RemoteHold hold, Locked localLocked) {
+            this.key = key;
+            this.hold = hold;
+            this.localLocked = localLocked;
+        }
+
+        @Override
+        public void unlock() {
+            if (Thread.currentThread() != owner) {
+                throw new IllegalMonitorStateException("Lock for key " + key + " is not owned by the current thread");
+            }
+            if (released) {
+                throw new IllegalMonitorStateException("Lock for key " + key + " is already released");
+            }
+            released = true;
+            if (--hold.depth > 0) {
+                unlockLocal();
+                return;
+            }
+            if (hold.waiters.get() > 0 && hold.handoffs < maxHandoffs) {
+                hold.handoffs++;
+                unlockLocal();
+                return;
+            }
+            final Locked remoteLocked = hold.remoteLocked;
+            hold.remoteLocked = null;
+            hold.handoffs = 0;
+            try {
+                remoteLocked.unlock();
+            } finally {
+                unlockLocal();
+            }
+        }
+
+        private void unlockLocal() {
+            try {
+                localLocked.unlock();
+            } finally {
+                release(key, hold);
+            }
+        }
+    }
+}
@@ -1,17 +1,22 @@
 package com.inomera.telco.commons.lock.reentrant;
 
-import java.util.Objects;
-
 /**
  * @author Serdar Kuzucu
  */
 public class CompositeLockMapKey implements LockMapKey {
     private final String lockGroup;
     private final String lockName;
+    private final int hash;
 
     CompositeLockMapKey(String lockGroup, String lockName) {
         this.lockGroup = lockGroup;
         this.lockName = lockName;
+        this.hash = 31 * lockGroup.hashCode() + lockName.hashCode();
+    }
+
+    @Override
+    public String getLockName() {
+        return lockName;
     }
 
     @Override
@@ -24,12 +29,12 @@ public class CompositeLockMapKey implements LockMapKey {
         }
 
         final CompositeLockMapKey that = (CompositeLockMapKey) o;
-        return lockGroup.equals(that.lockGroup) && lockName.equals(that.lockName);
+        return hash == that.hash && lockGroup.equals(that.lockGroup) && lockName.equals(that.lockName);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(lockGroup, lockName);
+        return hash;
     }
 
     @Override
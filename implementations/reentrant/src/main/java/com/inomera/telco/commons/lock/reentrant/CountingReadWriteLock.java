@@ -0,0 +1,77 @@
+package com.inomera.telco.commons.lock.reentrant;
+
+import com.inomera.telco.commons.lock.Locked;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Reentrant read/write lock which also counts the callers holding or waiting for it, the same way as
+ * {@link CountingReentrantLock}. Once the counter drops to zero the lock is retired.
+ * <p>
+ * The read and write {@link Locked} handles are created once per lock, so acquiring a lock that is
+ * already in its table does not allocate.
+ */
+final class CountingReadWriteLock extends ReentrantReadWriteLock {
+    private static final long serialVersionUID = 1L;
+
+    private final AtomicInteger counter = new AtomicInteger(1);
+    private final transient ReadWriteLockTable table;
+    private final transient String lockName;
+    private final transient Locked readLocked = this::unlockReadAndRelease;
+    private final transient Locked writeLocked = this::unlockWriteAndRelease;
+
+    CountingReadWriteLock(ReadWriteLockTable table, String lockName, boolean fair) {
+        super(fair);
+        this.table = table;
+        this.lockName = lockName;
+    }
+
+    int decrementCounterAndGetValue() {
+        return counter.decrementAndGet();
+    }
+
+    /**
+     * Increments the counter unless the lock is already retired.
+     *
+     * @return true if the counter is incremented, false if the counter has already dropped to zero
+     */
+    boolean tryIncrementCounter() {
+        int current;
+        do {
+            current = counter.get();
+            if (current <= 0) {
+                return false;
+            }
+        } while (!counter.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    String getLockName() {
+        return lockName;
+    }
+
+    Locked lockRead() {
+        readLock().lock();
+        table.threadAcquired();
+        return readLocked;
+    }
+
+    Locked lockWrite() {
+        writeLock().lock();
+        table.threadAcquired();
+        return writeLocked;
+    }
+
+    private void unlockReadAndRelease() {
+        readLock().unlock();
+        table.threadReleased();
+        table.release(this);
+    }
+
+    private void unlockWriteAndRelease() {
+        writeLock().unlock();
+        table.threadReleased();
+        table.release(this);
+    }
+}
@@ -1,17 +1,81 @@
 package com.inomera.telco.commons.lock.reentrant;
 
+import com.inomera.telco.commons.lock.Locked;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
 
 /**
+ * Reentrant lock which also counts the callers holding or waiting for it.
+ * The counter starts at 1 for the creating caller. While it is zero the lock is idle and stays in its table,
+ * so that locking the key again reuses it. Only an idle lock can be retired by its table, after which
+ * {@link #tryIncrementCounter()} refuses to hand it out again.
+ * <p>
+ * Callers which have to wait for the lock queue in arrival order, whether they are parked threads or asynchronous
+ * waiters. A release lets the first of them have the lock: a parked thread is woken to take it, and an asynchronous
+ * waiter, a {@link CompletableFuture} holding no thread, is handed it. The table's {@link LockFairness} decides
+ * whether arriving threads may barge in ahead of the queue. With adaptive fairness they may until the first waiter
+ * has waited for the starvation threshold; from then on they queue behind it, and the starving waiter keeps its
+ * place in the queue throughout. Asynchronous callers never barge in ahead of waiters.
+ * <p>
+ * Besides being held by a thread, the lock can be held asynchronously by a {@link Locked}
+ * handle that any thread may unlock. Asynchronous waiters are completed on the table's executor; if the executor
+ * rejects the completion, the waiter fails and the lock passes on.
+ * <p>
+ * A lock acquired with a lease is acquired by the calling thread and then turned into an asynchronous hold,
+ * whose handle is unlocked by the {@link LeaseTimer} once the lease elapses. Such a hold is not reentrant.
+ * <p>
+ * Suppliers may also be run by flat combining: a caller publishes its supplier on the lock, and whichever caller
+ * acquires the lock runs the published suppliers before releasing it. Every full release wakes the caller of the
+ * oldest published supplier, so that it acquires the lock and runs the suppliers published meanwhile.
+ * <p>
+ * The {@link Locked} handle returned to threads is created once per lock, so acquiring
+ * a lock that is already in its table does not allocate.
+ *
  * @author Serdar Kuzucu
  */
-class CountingReentrantLock extends ReentrantLock {
-    private static final long serialVersionUID = 1L;
+class CountingReentrantLock {
+    private static final int ASYNC_HOLD = -1;
+    private static final AtomicIntegerFieldUpdater<CountingReentrantLock> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(CountingReentrantLock.class, "state");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<CountingReentrantLock, Queue> WAITERS =
+            AtomicReferenceFieldUpdater.newUpdater(CountingReentrantLock.class, Queue.class, "waiters");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<CountingReentrantLock, Queue> COMBINED_TASKS =
+            AtomicReferenceFieldUpdater.newUpdater(CountingReentrantLock.class, Queue.class, "combinedTasks");
+    private static final int MAX_COMBINED_TASKS = 64;
+    private static final long COMBINER_RECHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int RETIRED = -1;
+
     private final AtomicInteger counter = new AtomicInteger(1);
+    private final LockTable table;
+    private final LockMapKey key;
+    private final Locked locked = this::unlockAndRelease;
+    private final Optional<Locked> optionalLocked = Optional.of(locked);
+    /**
+     * Number of holds, one while the lock is held asynchronously, in which case it has no owner.
+     */
+    private volatile int state;
+    private Thread owner;
+    private volatile Queue<Waiter> waiters;
+    private volatile Queue<CombinedTask<?>> combinedTasks;
+    private boolean recentlyUsed;
 
-    CountingReentrantLock() {
-        super(true);
+    CountingReentrantLock(LockTable table, LockMapKey key) {
+        this.table = table;
+        this.key = key;
     }
 
     int incrementCounterAndGetValue() {
@@ -21,4 +85,563 @@ class CountingReentrantLock extends ReentrantLock {
     int decrementCounterAndGetValue() {
         return counter.decrementAndGet();
     }
+
+    /**
+     * Increments the counter unless the lock is already retired, and marks the lock as recently used.
+     *
+     * @return true if the counter is incremented, false if the lock is retired
+     */
+    boolean tryIncrementCounter() {
+        int current;
+        do {
+            current = counter.get();
+            if (current == RETIRED) {
+                return false;
+            }
+        } while (!counter.compareAndSet(current, current + 1));
+        if (!recentlyUsed) {
+            recentlyUsed = true;
+        }
+        return true;
+    }
+
+    /**
+     * Retires the lock if it is idle and was not used since the previous call.
+     * Clears the recently used mark otherwise.
+     *
+     * @return true if the lock is retired and must be removed from its table
+     */
+    boolean tryRetireUnused() {
+        if (recentlyUsed) {
+            recentlyUsed = false;
+            return false;
+        }
+        return counter.compareAndSet(0, RETIRED);
+    }
+
+    /**
+     * @return true if any caller holds or waits for the lock
+     */
+    boolean isInUse() {
+        return counter.get() > 0;
+    }
+
+    LockMapKey getKey() {
+        return key;
+    }
+
+    /**
+     * @return the handle of the calling thread's hold, counting the hold as one of the thread's holds in the table
+     */
+    Locked locked() {
+        table.threadAcquired();
+        return locked;
+    }
+
+    /**
+     * @return the handle of the calling thread's hold, counting the hold as one of the thread's holds in the table
+     */
+    Optional<Locked> optionalLocked() {
+        table.threadAcquired();
+        return optionalLocked;
+    }
+
+    void lock() {
+        if (!tryAcquire()) {
+            acquireQueued();
+        }
+    }
+
+    boolean tryLock() {
+        return tryAcquire(false);
+    }
+
+    boolean tryLock(long timeout, TimeUnit unit) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        if (tryAcquire()) {
+            return true;
+        }
+        final long nanos = unit.toNanos(timeout);
+        return nanos > 0L && acquireQueued(nanos);
+    }
+
+    boolean isHeldByCurrentThread() {
+        return owner == Thread.currentThread();
+    }
+
+    /**
+     * Acquires the lock for a handle that is not bound to the calling thread.
+     * The caller must have incremented the counter; it is decremented when the handle is unlocked,
+     * or when the returned future is found cancelled at hand-off.
+     *
+     * @return a future completed with the handle once the lock is handed to it
+     */
+    CompletableFuture<Locked> lockAsync() {
+        if (!hasWaiters() && STATE.compareAndSet(this, 0, 1)) {
+            return CompletableFuture.completedFuture(new AsyncLocked());
+        }
+        final Waiter waiter = new Waiter(null, new CompletableFuture<>(), arrivalTime());
+        waiters().add(waiter);
+        passOn();
+        return waiter.future;
+    }
+
+    /**
+     * Attempts to acquire the lock for a handle that is not bound to the calling thread.
+     *
+     * @return the handle if the lock was free, otherwise an empty {@link Optional}
+     */
+    Optional<Locked> tryLockAsync() {
+        if (STATE.compareAndSet(this, 0, 1)) {
+            return Optional.of(new AsyncLocked());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Acquires the lock for a handle that is not bound to the calling thread and expires after the lease.
+     *
+     * @param leaseNanos the maximum time the lock is held
+     * @return the handle
+     * @throws IllegalMonitorStateException if the calling thread already holds the lock
+     */
+    Locked lock(long leaseNanos) {
+        checkNotHeldByCurrentThread();
+        lock();
+        return leased(leaseNanos);
+    }
+
+    /**
+     * Attempts to acquire the lock for a handle that is not bound to the calling thread and expires after the lease.
+     *
+     * @param timeout    the maximum time to wait for the lock
+     * @param unit       the unit of the timeout
+     * @param leaseNanos the maximum time the lock is held
+     * @return the handle if the lock was acquired in time, otherwise an empty {@link Optional}
+     * @throws IllegalMonitorStateException if the calling thread already holds the lock
+     */
+    Optional<Locked> tryLock(long timeout, TimeUnit unit, long leaseNanos) throws InterruptedException {
+        checkNotHeldByCurrentThread();
+        if (!tryLock(timeout, unit)) {
+            return Optional.empty();
+        }
+        return Optional.of(leased(leaseNanos));
+    }
+
+    /**
+     * Runs the supplier within the lock by flat combining, and decrements the counter the caller incremented.
+     * The supplier is run by the calling thread if it already holds the lock, or if the lock is free and no supplier
+     * is published, so that an uncontended call costs no more than acquiring the lock.
+     * <p>
+     * A caller holding another lock of the provider is not combined: it acquires the lock and runs its supplier
+     * itself. Run by a combiner, its supplier would lack the caller's holds, so taking one of those locks again
+     * would wait for the caller, which waits for the supplier.
+     *
+     * @return the result of the supplier, whichever thread ran it
+     */
+    <T> T executeCombining(Supplier<T> supplier) {
+        if (isHeldByCurrentThread()) {
+            try {
+                return supplier.get();
+            } finally {
+                table.release(this);
+            }
+        }
+        if (table.threadHoldsAny()) {
+            lock();
+            table.threadAcquired();
+            try {
+                return supplier.get();
+            } finally {
+                unlockAndRelease();
+            }
+        }
+        final Queue<CombinedTask<?>> published = combinedTasks;
+        if ((published == null || published.isEmpty()) && tryAcquire()) {
+            table.threadAcquired();
+            try {
+                return supplier.get();
+            } finally {
+                unlockAndRelease();
+            }
+        }
+
+        final CombinedTask<T> task = new CombinedTask<>(supplier);
+        combinedTasks().add(task);
+        boolean interrupted = false;
+        while (!task.done) {
+            if (tryAcquire()) {
+                combine(task);
+                break;
+            }
+            // A caller queued for the lock may give up without releasing it, so wake up now and then
+            // instead of waiting for a release that may not come.
+            if (hasWaiters()) {
+                LockSupport.parkNanos(this, COMBINER_RECHECK_NANOS);
+            } else {
+                LockSupport.park(this);
+            }
+            if (Thread.interrupted()) {
+                interrupted = true;
+            }
+        }
+        table.release(this);
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return task.get();
+    }
+
+    /**
+     * Runs published suppliers with the lock held until the queue is empty, or until the batch is used up
+     * once the caller's own supplier has run, and releases the lock.
+     */
+    private void combine(CombinedTask<?> own) {
+        final Queue<CombinedTask<?>> tasks = combinedTasks;
+        table.threadAcquired();
+        try {
+            CombinedTask<?> task;
+            for (int ran = 0; (!own.done || ran < MAX_COMBINED_TASKS) && (task = tasks.poll()) != null; ran++) {
+                task.run();
+            }
+        } finally {
+            releaseAndPassOn(1);
+            table.threadReleased();
+        }
+    }
+
+    private void checkNotHeldByCurrentThread() {
+        if (isHeldByCurrentThread()) {
+            throw new IllegalMonitorStateException("Lock for key " + key + " is already held by the current thread");
+        }
+    }
+
+    /**
+     * Turns the single hold of the calling thread into an asynchronous hold expiring after the lease.
+     */
+    private Locked leased(long leaseNanos) {
+        owner = null;
+        final AsyncLocked handle = new AsyncLocked();
+        handle.lease = LeaseTimer.shared().schedule(handle::expire, leaseNanos);
+        return handle;
+    }
+
+    /**
+     * Attempts to acquire the lock for the calling thread, barging in ahead of the waiters as far as the fairness
+     * allows.
+     */
+    private boolean tryAcquire() {
+        final LockFairness fairness = table.getFairness();
+        if (fairness.isFair()) {
+            return tryAcquire(true);
+        }
+        if (!fairness.isAdaptive()) {
+            return tryAcquire(false);
+        }
+        // Barge in only while the first waiter has not waited for the starvation threshold
+        final Queue<Waiter> queue = waiters;
+        final Waiter first = queue == null ? null : queue.peek();
+        return tryAcquire(first != null && System.nanoTime() - first.since >= fairness.getStarvationThresholdNanos());
+    }
+
+    private boolean tryAcquire(boolean respectQueue) {
+        final Thread current = Thread.currentThread();
+        final int held = state;
+        if (held == 0) {
+            if ((!respectQueue || !hasWaiters()) && STATE.compareAndSet(this, 0, 1)) {
+                owner = current;
+                return true;
+            }
+        } else if (owner == current) {
+            if (held == Integer.MAX_VALUE) {
+                throw new Error("Maximum lock count exceeded");
+            }
+            state = held + 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Queues the calling thread and parks it until it takes the lock as the first waiter.
+     * An interrupt is kept for the caller to see once the lock is acquired.
+     */
+    private void acquireQueued() {
+        final Waiter waiter = new Waiter(Thread.currentThread(), null, arrivalTime());
+        waiters().add(waiter);
+        boolean interrupted = false;
+        while (!tryAcquireFirst(waiter)) {
+            LockSupport.park(this);
+            if (Thread.interrupted()) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queues the calling thread and parks it until it takes the lock as the first waiter, or until the timeout
+     * elapses or the thread is interrupted, in which case it leaves the queue.
+     */
+    private boolean acquireQueued(long nanos) throws InterruptedException {
+        final long deadline = System.nanoTime() + nanos;
+        final Waiter waiter = new Waiter(Thread.currentThread(), null, arrivalTime());
+        waiters().add(waiter);
+        while (!tryAcquireFirst(waiter)) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0L) {
+                cancel(waiter);
+                return false;
+            }
+            LockSupport.parkNanos(this, remaining);
+            if (Thread.interrupted()) {
+                cancel(waiter);
+                throw new InterruptedException();
+            }
+        }
+        return true;
+    }
+
+    private boolean tryAcquireFirst(Waiter waiter) {
+        final Queue<Waiter> queue = waiters;
+        if (queue.peek() != waiter || !tryAcquire(false)) {
+            return false;
+        }
+        queue.poll();
+        return true;
+    }
+
+    /**
+     * Removes a thread which gave up waiting, and passes the lock on in case the thread was woken to take it.
+     */
+    private void cancel(Waiter waiter) {
+        waiters.remove(waiter);
+        passOn();
+    }
+
+    private long arrivalTime() {
+        return table.getFairness().isAdaptive() ? System.nanoTime() : 0L;
+    }
+
+    private boolean hasWaiters() {
+        final Queue<Waiter> queue = waiters;
+        return queue != null && !queue.isEmpty();
+    }
+
+    private void unlockAndRelease() {
+        releaseAndPassOn(1);
+        table.threadReleased();
+        table.release(this);
+    }
+
+    private void releaseAndPassOn(int releases) {
+        if (release(releases)) {
+            passOn();
+            wakeCombiner();
+        }
+    }
+
+    /**
+     * Releases a hold of the calling thread, or the asynchronous hold if {@code releases} is {@link #ASYNC_HOLD}.
+     *
+     * @return true if the lock became free
+     */
+    private boolean release(int releases) {
+        if (releases == ASYNC_HOLD) {
+            if (owner != null || state != 1) {
+                throw new IllegalMonitorStateException("Lock for key " + key + " is not held asynchronously");
+            }
+        } else {
+            if (owner != Thread.currentThread()) {
+                throw new IllegalMonitorStateException("Lock for key " + key + " is not owned by the current thread");
+            }
+            final int next = state - releases;
+            if (next > 0) {
+                state = next;
+                return false;
+            }
+            owner = null;
+        }
+        state = 0;
+        return true;
+    }
+
+    /**
+     * Wakes the caller of the oldest published supplier to acquire the lock and run the published suppliers.
+     * A supplier published while the lock was being released would otherwise wait for a release that already happened.
+     */
+    private void wakeCombiner() {
+        final Queue<CombinedTask<?>> tasks = combinedTasks;
+        final CombinedTask<?> head = tasks == null ? null : tasks.peek();
+        if (head != null) {
+            LockSupport.unpark(head.caller);
+        }
+    }
+
+    /**
+     * Lets the first waiter have the lock while it is free: a parked thread is woken to take it, and an asynchronous
+     * waiter is handed it. A waiter enqueued while the lock was being released would otherwise find the lock held
+     * and never be woken.
+     */
+    private void passOn() {
+        final Queue<Waiter> queue = waiters;
+        Waiter first;
+        while (queue != null && (first = queue.peek()) != null && state == 0) {
+            if (first.thread != null) {
+                LockSupport.unpark(first.thread);
+                return;
+            }
+            if (!STATE.compareAndSet(this, 0, 1)) {
+                return;
+            }
+            // Asynchronous waiters are only taken off the queue with the lock held, so the first one stays first
+            first = queue.peek();
+            if (first != null && first.thread == null) {
+                queue.poll();
+                if (handOff(first.future)) {
+                    return;
+                }
+                table.release(this);
+            }
+            state = 0;
+            wakeCombiner();
+        }
+    }
+
+    /**
+     * Completes the waiter with a handle of the asynchronous hold on the table's executor. The handle is unlocked
+     * there if the waiter is already done by then.
+     *
+     * @return false if the waiter is already done, or if the executor rejected the completion, in which case
+     * the waiter is failed; the caller still holds the lock either way
+     */
+    private boolean handOff(CompletableFuture<Locked> waiter) {
+        if (waiter.isDone()) {
+            return false;
+        }
+        final AsyncLocked handle = new AsyncLocked();
+        try {
+            table.getAsyncExecutor().execute(() -> {
+                if (!waiter.complete(handle)) {
+                    handle.unlock();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            waiter.completeExceptionally(e);
+            return false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Queue<Waiter> waiters() {
+        final Queue<Waiter> queue = waiters;
+        if (queue != null) {
+            return queue;
+        }
+        WAITERS.compareAndSet(this, null, new ConcurrentLinkedQueue<Waiter>());
+        return waiters;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Queue<CombinedTask<?>> combinedTasks() {
+        final Queue<CombinedTask<?>> tasks = combinedTasks;
+        if (tasks != null) {
+            return tasks;
+        }
+        COMBINED_TASKS.compareAndSet(this, null, new ConcurrentLinkedQueue<CombinedTask<?>>());
+        return combinedTasks;
+    }
+
+    /**
+     * A caller queued for the lock: either a parked thread, which takes the lock itself once it is first and the lock
+     * is free, or an asynchronous waiter, which is handed the lock.
+     */
+    private static final class Waiter {
+        private final Thread thread;
+        private final CompletableFuture<Locked> future;
+        private final long since;
+
+        private Waiter(Thread thread, CompletableFuture<Locked> future, long since) {
+            this.thread = thread;
+            this.future = future;
+            this.since = since;
+        }
+    }
+
+    /**
+     * A supplier published for flat combining, with its result handed back to the calling thread.
+     */
+    private static final class CombinedTask<T> {
+        private final Supplier<T> supplier;
+        private final Thread caller = Thread.currentThread();
+        private T result;
+        private Throwable failure;
+        private volatile boolean done;
+
+        private CombinedTask(Supplier<T> supplier) {
+            this.supplier = supplier;
+        }
+
+        private void run() {
+            try {
+                result = supplier.get();
+            } catch (Throwable e) {
+                failure = e;
+            }
+            done = true;
+            if (caller != Thread.currentThread()) {
+                LockSupport.unpark(caller);
+            }
+        }
+
+        private T get() {
+            if (failure == null) {
+                return result;
+            }
+            if (failure instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (failure instanceof Error error) {
+                throw error;
+            }
+            throw new UndeclaredThrowableException(failure);
+        }
+    }
+
+    /**
+     * Handle of an asynchronous hold, which may be unlocked from any thread exactly once,
+     * either by its holder or by the expiry of its lease.
+     */
+    private final class AsyncLocked implements Locked {
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile LeaseTimer.Timeout lease;
+
+        @Override
+        public void unlock() {
+            if (!released.compareAndSet(false, true)) {
+                throw new IllegalMonitorStateException("Lock for key " + key + " is already released or its lease expired");
+            }
+            final LeaseTimer.Timeout timeout = lease;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+            releaseHold();
+        }
+
+        private void expire() {
+            if (released.compareAndSet(false, true)) {
+                releaseHold();
+            }
+        }
+
+        private void releaseHold() {
+            releaseAndPassOn(ASYNC_HOLD);
+            table.release(CountingReentrantLock.this);
+        }
+    }
 }
@@ -0,0 +1,78 @@
+package com.inomera.telco.commons.lock.reentrant;
+
+import com.inomera.telco.commons.lock.BasePermits;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Semaphore holding the permits of a key, which also counts the callers holding or waiting for its permits,
+ * the same way as {@link CountingReentrantLock}. Once the counter drops to zero the semaphore is retired.
+ */
+final class CountingSemaphore extends Semaphore {
+    private static final long serialVersionUID = 1L;
+
+    private final AtomicInteger counter = new AtomicInteger(1);
+    private final transient SemaphoreTable table;
+    private final transient String lockName;
+    private final int maxPermits;
+
+    CountingSemaphore(SemaphoreTable table, String lockName, int maxPermits, boolean fair) {
+        super(maxPermits, fair);
+        this.table = table;
+        this.lockName = lockName;
+        this.maxPermits = maxPermits;
+    }
+
+    int decrementCounterAndGetValue() {
+        return counter.decrementAndGet();
+    }
+
+    /**
+     * Increments the counter unless the semaphore is already retired.
+     *
+     * @return true if the counter is incremented, false if the counter has already dropped to zero
+     */
+    boolean tryIncrementCounter() {
+        int current;
+        do {
+            current = counter.get();
+            if (current <= 0) {
+                return false;
+            }
+        } while (!counter.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    String getLockName() {
+        return lockName;
+    }
+
+    int getMaxPermits() {
+        return maxPermits;
+    }
+
+    /**
+     * @param permits number of permits acquired by the caller
+     * @return a handle returning the permits to this semaphore and dropping the caller's reference once all are released
+     */
+    LocalPermits permits(int permits) {
+        return new LocalPermits(permits);
+    }
+
+    final class LocalPermits extends BasePermits {
+
+        private LocalPermits(int held) {
+            super(held);
+        }
+
+        @Override
+        protected void releasePermits(int permits) {
+            final boolean last = permits == held();
+            CountingSemaphore.this.release(permits);
+            if (last) {
+                table.release(CountingSemaphore.this);
+            }
+        }
+    }
+}
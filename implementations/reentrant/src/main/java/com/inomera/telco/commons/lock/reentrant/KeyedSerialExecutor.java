@@ -0,0 +1,180 @@
+package com.inomera.telco.commons.lock.reentrant;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Runs the tasks submitted for a key one at a time, in submission order, and the tasks of different keys in parallel
+ * on a shared executor.
+ * <p>
+ * Serializes updates per key the way {@code executeInLock(lockMap, lockKey, supplier)} of a
+ * {@link LocalReentrantLockProvider} does, without a thread blocking for the lock: a submission is queued behind the
+ * tasks of its key, and the caller gets a {@link CompletableFuture} of the result. The thread running a task of a key
+ * goes on with the next queued task of the key, up to a batch of tasks, then hands the rest of the queue back to
+ * the executor so that a busy key does not keep a thread of the executor from other keys.
+ * <p>
+ * A key has a queue only while it has a task running or queued; the queue is removed once the last task is done,
+ * so keys used once take no memory afterwards. A task may submit further tasks for its own key, which are queued
+ * behind it, but must not wait for them. A failed task completes its future exceptionally and does not stop the tasks
+ * queued after it; a task whose future is cancelled before it starts is skipped.
+ */
+public class KeyedSerialExecutor {
+    public static final int DEFAULT_MAX_TASKS_PER_RUN = 16;
+
+    private final Executor executor;
+    private final int maxTasksPerRun;
+    private final ConcurrentMap<LockMapKey, TaskQueue> taskQueues = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new KeyedSerialExecutor running tasks on {@link ForkJoinPool#commonPool()}.
+     */
+    public KeyedSerialExecutor() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param executor executor running the tasks
+     */
+    public KeyedSerialExecutor(Executor executor) {
+        this(executor, DEFAULT_MAX_TASKS_PER_RUN);
+    }
+
+    /**
+     * @param executor       executor running the tasks
+     * @param maxTasksPerRun maximum number of tasks of a key run by a thread before the rest of the key's queue is
+     *                       handed back to the executor
+     */
+    public KeyedSerialExecutor(Executor executor, int maxTasksPerRun) {
+        this.executor = Objects.requireNonNull(executor, "Executor cannot be null");
+        if (maxTasksPerRun < 1) {
+            throw new IllegalArgumentException("Max tasks per run must be positive: " + maxTasksPerRun);
+        }
+        this.maxTasksPerRun = maxTasksPerRun;
+    }
+
+    /**
+     * Runs the supplier after the tasks submitted earlier for the key.
+     *
+     * @return a future completed with the result of the supplier, or exceptionally with what it throws
+     */
+    public <T> CompletableFuture<T> submit(String lockMap, String lockKey, Supplier<T> supplier) {
+        Objects.requireNonNull(supplier, "Supplier cannot be null");
+        final Task<T> task = new Task<>(supplier);
+        final LockMapKey key = new CompositeLockMapKey(lockMap, lockKey);
+        final TaskQueue[] started = new TaskQueue[1];
+        taskQueues.compute(key, (ignored, queue) -> {
+            if (queue == null) {
+                started[0] = new TaskQueue(key, task);
+                return started[0];
+            }
+            queue.tasks.add(task);
+            return queue;
+        });
+        if (started[0] != null) {
+            schedule(started[0]);
+        }
+        return task.future;
+    }
+
+    /**
+     * Runs the runnable after the tasks submitted earlier for the key.
+     *
+     * @return a future completed once the runnable has run, or exceptionally with what it throws
+     */
+    public CompletableFuture<Void> execute(String lockMap, String lockKey, Runnable runnable) {
+        Objects.requireNonNull(runnable, "Runnable cannot be null");
+        return submit(lockMap, lockKey, () -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    /**
+     * @return the number of keys with a task running or queued
+     */
+    public int size() {
+        return taskQueues.size();
+    }
+
+    private void schedule(TaskQueue queue) {
+        try {
+            executor.execute(() -> run(queue));
+        } catch (RejectedExecutionException e) {
+            Task<?> task = queue.next;
+            while (task != null) {
+                task.future.completeExceptionally(e);
+                task = poll(queue);
+            }
+        }
+    }
+
+    /**
+     * Runs the tasks of the queue until it is empty, or until the batch is used up and the queue is scheduled again.
+     */
+    private void run(TaskQueue queue) {
+        Task<?> task = queue.next;
+        for (int ran = 0; task != null; ran++) {
+            if (ran == maxTasksPerRun) {
+                queue.next = task;
+                schedule(queue);
+                return;
+            }
+            task.run();
+            task = poll(queue);
+        }
+    }
+
+    /**
+     * @return the next task of the queue, or null after removing the queue if it is empty
+     */
+    private Task<?> poll(TaskQueue queue) {
+        final Task<?>[] next = new Task<?>[1];
+        taskQueues.compute(queue.key, (ignored, current) -> {
+            next[0] = current.tasks.poll();
+            return next[0] == null ? null : current;
+        });
+        return next[0];
+    }
+
+    /**
+     * The tasks of a key. {@link #tasks} is guarded by the map of task queues, {@link #next} is only used by
+     * the thread running the key's tasks.
+     */
+    private static final class TaskQueue {
+        private final LockMapKey key;
+        private final ArrayDeque<Task<?>> tasks = new ArrayDeque<>();
+        private Task<?> next;
+
+        private TaskQueue(LockMapKey key, Task<?> first) {
+            this.key = key;
+            this.next = first;
+        }
+    }
+
+    private static final class Task<T> {
+        private final Supplier<T> supplier;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private Task(Supplier<T> supplier) {
+            this.supplier = supplier;
+        }
+
+        private void run() {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                future.complete(supplier.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.inomera.telco.commons.lock.reentrant;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed wheel timer expiring lock leases.
+ * <p>
+ * Most leases are cancelled by an unlock long before they expire, so scheduling and cancelling take constant time:
+ * both only enqueue the timeout, and a single worker thread moves new timeouts into the bucket of the wheel
+ * their deadline falls on and unlinks cancelled ones. Every tick the worker expires the timeouts of one bucket
+ * whose deadline is within that tick, so leases expire up to one tick late.
+ * <p>
+ * The worker is a daemon thread started with the first timeout and shared by all local lock providers.
+ */
+final class LeaseTimer {
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final int WHEEL_SIZE = 512;
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+    private static final LeaseTimer SHARED = new LeaseTimer(TICK_NANOS, WHEEL_SIZE);
+
+    private final long tickNanos;
+    private final int mask;
+    private final Bucket[] wheel;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile long startTime;
+    private long tick;
+
+    /**
+     * @param tickNanos length of a tick
+     * @param wheelSize number of buckets, a power of two
+     */
+    LeaseTimer(long tickNanos, int wheelSize) {
+        this.tickNanos = tickNanos;
+        this.mask = wheelSize - 1;
+        this.wheel = new Bucket[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            this.wheel[i] = new Bucket();
+        }
+    }
+
+    static LeaseTimer shared() {
+        return SHARED;
+    }
+
+    /**
+     * Schedules a task to run on the timer thread once the delay elapses.
+     *
+     * @param task       task to run, which should return quickly
+     * @param delayNanos delay after which the task runs
+     * @return the timeout, which may be cancelled until the task runs
+     */
+    Timeout schedule(Runnable task, long delayNanos) {
+        start();
+        final Timeout timeout = new Timeout(task, System.nanoTime() - startTime + delayNanos);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    private void start() {
+        if (started.get() || !started.compareAndSet(false, true)) {
+            while (startTime == 0) {
+                Thread.onSpinWait();
+            }
+            return;
+        }
+        final Thread worker = new Thread(this::run, "lock-lease-timer");
+        worker.setDaemon(true);
+        final long now = System.nanoTime();
+        startTime = now == 0 ? 1 : now;
+        worker.start();
+    }
+
+    private void run() {
+        while (true) {
+            final long deadline = waitForNextTick();
+            unlinkCancelled();
+            transferPending();
+            wheel[(int) (tick & mask)].expire(deadline);
+            tick++;
+        }
+    }
+
+    /**
+     * @return the end of the current tick, relative to the start time
+     */
+    private long waitForNextTick() {
+        final long deadline = tickNanos * (tick + 1);
+        long remaining;
+        while ((remaining = deadline - (System.nanoTime() - startTime)) > 0) {
+            LockSupport.parkNanos(this, remaining);
+        }
+        return deadline;
+    }
+
+    private void unlinkCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferPending() {
+        Timeout timeout;
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK && (timeout = pending.poll()) != null; i++) {
+            if (timeout.state != Timeout.INIT) {
+                continue;
+            }
+            final long expiryTick = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (expiryTick - tick) / wheel.length;
+            wheel[(int) (Math.max(expiryTick, tick) & mask)].add(timeout);
+        }
+    }
+
+    /**
+     * Timeouts falling on the same bucket of the wheel, as a doubly linked list touched only by the worker.
+     */
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void expire(long deadline) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                final Timeout next = timeout.next;
+                if (timeout.state != Timeout.INIT) {
+                    remove(timeout);
+                } else if (timeout.remainingRounds <= 0 && timeout.deadline <= deadline) {
+                    remove(timeout);
+                    timeout.expire();
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+
+    final class Timeout {
+        private static final int INIT = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final Runnable task;
+        private final long deadline;
+        private volatile int state;
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * @return true if the task will not run, false if it already ran or is running
+         */
+        boolean cancel() {
+            if (!STATE.compareAndSet(this, INIT, CANCELLED)) {
+                return false;
+            }
+            cancelled.add(this);
+            return true;
+        }
+
+        private void expire() {
+            if (!STATE.compareAndSet(this, INIT, EXPIRED)) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException ignored) {
+                // a failing task must not stop the timer
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.inomera.telco.commons.lock.reentrant;
+
+/**
+ * How {@link LocalReentrantLockProvider} runs the suppliers and runnables given to {@code executeInLock} with a single
+ * key. Locks acquired by {@code lock} and {@code tryLock} are the same in both modes, and exclude the suppliers of
+ * their keys in both.
+ */
+public enum LocalExecutionMode {
+    /**
+     * Every caller acquires the key's lock, runs its supplier and releases the lock.
+     */
+    LOCKED,
+
+    /**
+     * Flat combining: a caller publishes its supplier on the key's lock and only then tries to acquire the lock.
+     * The caller that acquires it runs the suppliers published by the others before releasing it, and hands each
+     * caller its result or exception, so one acquisition serves every caller that arrived while the lock was busy.
+     * A hot key then costs one lock hand-off per batch of suppliers rather than one per supplier.
+     * <p>
+     * A caller which already holds another lock, read/write lock or supplier run of this provider is not combined;
+     * it acquires the key's lock and runs its supplier on its own thread, so that the supplier keeps the caller's
+     * holds and may lock those keys again. Any other supplier may run on another caller's thread, so it must not
+     * depend on thread locals of its caller, nor on locks of other providers held by its caller. A supplier holds the
+     * key's lock while it runs, and a nested {@code executeInLock} or {@code lock} of the same key runs within that
+     * hold. Callers wait uninterruptibly, as in {@code lock}.
+     */
+    COMBINING
+}
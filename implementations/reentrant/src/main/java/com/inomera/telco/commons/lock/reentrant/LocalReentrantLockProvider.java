@@ -3,95 +3,381 @@ package com.inomera.telco.commons.lock.reentrant;
 import com.inomera.telco.commons.lock.BaseLockProvider;
 import com.inomera.telco.commons.lock.LockProvider;
 import com.inomera.telco.commons.lock.Locked;
+import com.inomera.telco.commons.lock.Permits;
 
+import java.time.Duration;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.Function;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * Non-distributed local implementation of LockProvider which uses ReentrantLock
+ * <p>
+ * Locks are kept in one {@link LockTable} per lock map and are reference counted by the threads
+ * holding or waiting for them. Acquiring and releasing a lock never takes a global monitor.
+ * A released lock stays idle in its table, so an uncontended lock/unlock cycle of a known key does not allocate;
+ * idle locks which are not used again are removed in sweeps once the table grows. Lock tables are
+ * looked up by the lock map name and kept for the lifetime of the provider.
+ * <p>
+ * Asynchronous acquisitions do not occupy a thread while waiting. They queue on the lock together with waiting
+ * threads, in arrival order, and are handed the lock by the releasing caller; the hand-off is completed on the
+ * asynchronous executor, which is {@link ForkJoinPool#commonPool()} unless another one is given.
+ * <p>
+ * Locks are fair unless another {@link LockFairness} is given, either for all locks or per lock map.
+ * Locks acquired by lock name only use the default fairness.
+ * <p>
+ * A lock acquired with a lease is held by its handle rather than by the thread, so it is not reentrant and may be
+ * unlocked from any thread. Leases are expired by a hashed wheel timer shared by all local providers, with a
+ * resolution of ten milliseconds.
+ * <p>
+ * Read/write locks are {@link java.util.concurrent.locks.ReentrantReadWriteLock}s kept in tables of their own,
+ * separate from the exclusive locks of the same keys. They are fair when the lock map's fairness is fair
+ * and non-fair otherwise; a non-fair read/write lock already keeps readers from starving a waiting writer.
+ * <p>
+ * Permits are {@link java.util.concurrent.Semaphore}s kept in tables of their own in the same way, fair under the
+ * same rule. Permits may be released from any thread.
+ * <p>
+ * {@code executeInLock} with a single key acquires the key's lock for every caller unless
+ * {@link LocalExecutionMode#COMBINING} is given, which lets the holder of a hot key's lock run the suppliers of the
+ * callers waiting for it.
  *
  * @author Serdar Kuzucu
  */
 public class LocalReentrantLockProvider extends BaseLockProvider implements LockProvider {
-    private final Map<LockMapKey, CountingReentrantLock> lockMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LockTable> lockTables = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ReadWriteLockTable> readWriteLockTables = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, SemaphoreTable> semaphoreTables = new ConcurrentHashMap<>();
+    private final LockFairness defaultFairness;
+    private final Map<String, LockFairness> lockMapFairness;
+    private final Executor asyncExecutor;
+    private final LocalExecutionMode executionMode;
+    private final ThreadHolds threadHolds;
+    private final LockTable lockNameTable;
+
+    public LocalReentrantLockProvider() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param asyncExecutor executor completing asynchronous acquisitions which had to wait for the lock
+     */
+    public LocalReentrantLockProvider(Executor asyncExecutor) {
+        this(LockFairness.fair(), new HashMap<>(), asyncExecutor);
+    }
+
+    /**
+     * @param executionMode how {@code executeInLock} runs suppliers within the lock of a key
+     */
+    public LocalReentrantLockProvider(LocalExecutionMode executionMode) {
+        this(LockFairness.fair(), new HashMap<>(), ForkJoinPool.commonPool(), executionMode);
+    }
+
+    /**
+     * @param defaultFairness fairness of all locks
+     */
+    public LocalReentrantLockProvider(LockFairness defaultFairness) {
+        this(defaultFairness, new HashMap<>());
+    }
+
+    /**
+     * @param defaultFairness fairness of locks whose lock map is not in {@code lockMapFairness}
+     * @param lockMapFairness fairness of locks by lock map name
+     */
+    public LocalReentrantLockProvider(LockFairness defaultFairness, Map<String, LockFairness> lockMapFairness) {
+        this(defaultFairness, lockMapFairness, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param defaultFairness fairness of locks whose lock map is not in {@code lockMapFairness}
+     * @param lockMapFairness fairness of locks by lock map name
+     * @param asyncExecutor   executor completing asynchronous acquisitions which had to wait for the lock
+     */
+    public LocalReentrantLockProvider(LockFairness defaultFairness, Map<String, LockFairness> lockMapFairness,
+                                      Executor asyncExecutor) {
+        this(defaultFairness, lockMapFairness, asyncExecutor, LocalExecutionMode.LOCKED);
+    }
+
+    /**
+     * @param defaultFairness fairness of locks whose lock map is not in {@code lockMapFairness}
+     * @param lockMapFairness fairness of locks by lock map name
+     * @param asyncExecutor   executor completing asynchronous acquisitions which had to wait for the lock
+     * @param executionMode   how {@code executeInLock} runs suppliers within the lock of a key
+     */
+    public LocalReentrantLockProvider(LockFairness defaultFairness, Map<String, LockFairness> lockMapFairness,
+                                      Executor asyncExecutor, LocalExecutionMode executionMode) {
+        this.defaultFairness = Objects.requireNonNull(defaultFairness, "Default fairness cannot be null");
+        this.lockMapFairness = new HashMap<>(Objects.requireNonNull(lockMapFairness, "Lock map fairness cannot be null"));
+        this.asyncExecutor = Objects.requireNonNull(asyncExecutor, "Async executor cannot be null");
+        this.executionMode = Objects.requireNonNull(executionMode, "Execution mode cannot be null");
+        this.threadHolds = executionMode == LocalExecutionMode.COMBINING ? new ThreadHolds() : null;
+        this.lockNameTable = new LockTable(null, defaultFairness, asyncExecutor, threadHolds);
+    }
 
     @Override
     public Locked lock(String lockMap, String lockKey) {
-        return lock(new CompositeLockMapKey(lockMap, lockKey));
+        return lock(lockTable(lockMap), lockKey);
     }
 
     @Override
     public Optional<Locked> tryLock(String lockMap, String lockKey) {
-        return tryLock(new CompositeLockMapKey(lockMap, lockKey));
+        return tryLock(lockTable(lockMap), lockKey);
+    }
+
+    @Override
+    public Optional<Locked> tryLock(String lockMap, String lockKey, Duration waitTime) {
+        return tryLock(lockTable(lockMap), lockKey, waitTime);
+    }
+
+    @Override
+    public Locked lock(String lockMap, String lockKey, Duration leaseTime) {
+        final long leaseNanos = leaseNanos(leaseTime);
+        final LockTable table = lockTable(lockMap);
+        final CountingReentrantLock lock = table.retain(lockKey);
+        try {
+            return lock.lock(leaseNanos);
+        } catch (IllegalMonitorStateException e) {
+            table.release(lock);
+            throw e;
+        }
+    }
+
+    @Override
+    public Optional<Locked> tryLock(String lockMap, String lockKey, Duration waitTime, Duration leaseTime) {
+        final long waitNanos = Objects.requireNonNull(waitTime, "Wait time cannot be null").toNanos();
+        final long leaseNanos = leaseNanos(leaseTime);
+        final LockTable table = lockTable(lockMap);
+        final CountingReentrantLock lock = table.retain(lockKey);
+        try {
+            final Optional<Locked> locked = lock.tryLock(waitNanos, TimeUnit.NANOSECONDS, leaseNanos);
+            if (locked.isPresent()) {
+                return locked;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IllegalMonitorStateException e) {
+            table.release(lock);
+            throw e;
+        }
+        table.release(lock);
+        return Optional.empty();
     }
 
     @Override
     public Locked lock(String lockName) {
-        return lock(new SimpleLockMapKey(lockName));
+        return lock(lockNameTable, lockName);
     }
 
     @Override
     public Optional<Locked> tryLock(String lockName) {
-        return tryLock(new SimpleLockMapKey(lockName));
+        return tryLock(lockNameTable, lockName);
     }
 
-    private Locked lock(LockMapKey lockName) {
-        return doLock(lockName, (lock) -> {
-            lock.lock();
-            return () -> unlock(lockName);
-        });
+    @Override
+    public Optional<Locked> tryLock(String lockName, Duration waitTime) {
+        return tryLock(lockNameTable, lockName, waitTime);
     }
 
-    private Optional<Locked> tryLock(LockMapKey lockName) {
-        return doLock(lockName, (lock) -> {
-            boolean locked = lock.tryLock();
-            if (!locked) {
-                lock.decrementCounterAndGetValue();
-                return Optional.empty();
-            }
-            return Optional.of(() -> unlock(lockName));
-        });
+    @Override
+    public CompletionStage<Locked> lockAsync(String lockMap, String lockKey) {
+        return lockAsync(lockTable(lockMap), lockKey);
+    }
+
+    @Override
+    public CompletionStage<Locked> lockAsync(String lockName) {
+        return lockAsync(lockNameTable, lockName);
+    }
+
+    @Override
+    public CompletionStage<Optional<Locked>> tryLockAsync(String lockMap, String lockKey) {
+        return tryLockAsync(lockTable(lockMap), lockKey);
+    }
+
+    @Override
+    public CompletionStage<Optional<Locked>> tryLockAsync(String lockName) {
+        return tryLockAsync(lockNameTable, lockName);
+    }
+
+    @Override
+    public void executeInLock(String lockMap, String lockKey, Runnable runnable) {
+        if (executionMode != LocalExecutionMode.COMBINING) {
+            super.executeInLock(lockMap, lockKey, runnable);
+            return;
+        }
+        executeCombining(lockTable(lockMap), lockKey, runnable);
+    }
+
+    @Override
+    public <T> T executeInLock(String lockMap, String lockKey, Supplier<T> supplier) {
+        if (executionMode != LocalExecutionMode.COMBINING) {
+            return super.executeInLock(lockMap, lockKey, supplier);
+        }
+        return executeCombining(lockTable(lockMap), lockKey, supplier);
+    }
+
+    @Override
+    public void executeInLock(String lockName, Runnable runnable) {
+        if (executionMode != LocalExecutionMode.COMBINING) {
+            super.executeInLock(lockName, runnable);
+            return;
+        }
+        executeCombining(lockNameTable, lockName, runnable);
     }
 
-    private <T> T doLock(LockMapKey lockKey, Function<CountingReentrantLock, T> lockFunction) {
-        final CountingReentrantLock lock;
+    @Override
+    public <T> T executeInLock(String lockName, Supplier<T> supplier) {
+        if (executionMode != LocalExecutionMode.COMBINING) {
+            return super.executeInLock(lockName, supplier);
+        }
+        return executeCombining(lockNameTable, lockName, supplier);
+    }
 
-        synchronized (lockMap) {
-            lock = lockMap.get(lockKey);
-            if (lock == null) {
-                CountingReentrantLock newLock = new CountingReentrantLock();
-                lockMap.put(lockKey, newLock);
-                return lockFunction.apply(newLock);
-            } else {
-                lock.incrementCounterAndGetValue();
+    @Override
+    public Locked readLock(String lockMap, String lockKey) {
+        return readWriteLockTable(lockMap).retain(lockKey).lockRead();
+    }
+
+    @Override
+    public Locked writeLock(String lockMap, String lockKey) {
+        return readWriteLockTable(lockMap).retain(lockKey).lockWrite();
+    }
+
+    @Override
+    public Permits acquirePermits(String lockMap, String lockKey, int maxPermits, int permits) {
+        checkPermits(maxPermits, permits);
+        final CountingSemaphore semaphore = semaphoreTable(lockMap).retain(lockKey, maxPermits);
+        semaphore.acquireUninterruptibly(permits);
+        return semaphore.permits(permits);
+    }
+
+    @Override
+    public Optional<Permits> tryAcquirePermits(String lockMap, String lockKey, int maxPermits, int permits, Duration waitTime) {
+        checkPermits(maxPermits, permits);
+        final long waitNanos = Objects.requireNonNull(waitTime, "Wait time cannot be null").toNanos();
+        final SemaphoreTable table = semaphoreTable(lockMap);
+        final CountingSemaphore semaphore = table.retain(lockKey, maxPermits);
+        try {
+            if (semaphore.tryAcquire(permits, waitNanos, TimeUnit.NANOSECONDS)) {
+                return Optional.of(semaphore.permits(permits));
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+        table.release(semaphore);
+        return Optional.empty();
+    }
 
-        return lockFunction.apply(lock);
+    private Locked lock(LockTable table, String lockKey) {
+        final CountingReentrantLock lock = table.retain(lockKey);
+        lock.lock();
+        return lock.locked();
     }
 
-    private void unlock(LockMapKey lockKey) {
-        final CountingReentrantLock lock;
+    private Optional<Locked> tryLock(LockTable table, String lockKey) {
+        final CountingReentrantLock lock = table.retain(lockKey);
+        if (!lock.tryLock()) {
+            table.release(lock);
+            return Optional.empty();
+        }
+        return lock.optionalLocked();
+    }
 
-        synchronized (lockMap) {
-            lock = lockMap.get(lockKey);
-            if (lock != null) {
-                if (lock.decrementCounterAndGetValue() <= 0) {
-                    lockMap.remove(lockKey);
-                }
-            } else {
-                throw new IllegalMonitorStateException("Lock for key " + lockKey + " is not owned by the current thread");
+    private Optional<Locked> tryLock(LockTable table, String lockKey, Duration waitTime) {
+        final long waitNanos = Objects.requireNonNull(waitTime, "Wait time cannot be null").toNanos();
+        final CountingReentrantLock lock = table.retain(lockKey);
+        try {
+            if (lock.tryLock(waitNanos, TimeUnit.NANOSECONDS)) {
+                return lock.optionalLocked();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+        table.release(lock);
+        return Optional.empty();
+    }
+
+    private CompletionStage<Locked> lockAsync(LockTable table, String lockKey) {
+        return table.retain(lockKey).lockAsync();
+    }
+
+    private CompletionStage<Optional<Locked>> tryLockAsync(LockTable table, String lockKey) {
+        final CountingReentrantLock lock = table.retain(lockKey);
+        final Optional<Locked> locked = lock.tryLockAsync();
+        if (!locked.isPresent()) {
+            table.release(lock);
+        }
+        return CompletableFuture.completedFuture(locked);
+    }
+
+    private static void executeCombining(LockTable table, String lockKey, Runnable runnable) {
+        Objects.requireNonNull(runnable, "Runnable cannot be null");
+        executeCombining(table, lockKey, () -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    private static <T> T executeCombining(LockTable table, String lockKey, Supplier<T> supplier) {
+        Objects.requireNonNull(supplier, "Supplier cannot be null");
+        return table.retain(lockKey).executeCombining(supplier);
+    }
 
-        lock.unlock();
+    private static long leaseNanos(Duration leaseTime) {
+        leaseMillis(leaseTime);
+        return leaseTime.toNanos();
     }
 
+    private LockTable lockTable(String lockMap) {
+        final LockTable table = lockTables.get(lockMap);
+        if (table != null) {
+            return table;
+        }
+        return lockTables.computeIfAbsent(lockMap,
+                name -> new LockTable(name, lockMapFairness.getOrDefault(name, defaultFairness), asyncExecutor,
+                        threadHolds));
+    }
+
+    private ReadWriteLockTable readWriteLockTable(String lockMap) {
+        final ReadWriteLockTable table = readWriteLockTables.get(lockMap);
+        if (table != null) {
+            return table;
+        }
+        return readWriteLockTables.computeIfAbsent(lockMap,
+                name -> new ReadWriteLockTable(lockMapFairness.getOrDefault(name, defaultFairness).isFair(),
+                        threadHolds));
+    }
+
+    private SemaphoreTable semaphoreTable(String lockMap) {
+        final SemaphoreTable table = semaphoreTables.get(lockMap);
+        if (table != null) {
+            return table;
+        }
+        return semaphoreTables.computeIfAbsent(lockMap,
+                name -> new SemaphoreTable(lockMapFairness.getOrDefault(name, defaultFairness).isFair()));
+    }
+
+    /**
+     * @return the number of locks, read/write locks and semaphores which threads hold or wait for
+     */
     public int size() {
-        synchronized (lockMap) {
-            return lockMap.size();
+        int size = lockNameTable.size();
+        for (LockTable table : lockTables.values()) {
+            size += table.size();
+        }
+        for (ReadWriteLockTable table : readWriteLockTables.values()) {
+            size += table.size();
+        }
+        for (SemaphoreTable table : semaphoreTables.values()) {
+            size += table.size();
         }
+        return size;
     }
 }
@@ -0,0 +1,76 @@
+package com.inomera.telco.commons.lock.reentrant;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Order in which threads waiting for a local lock acquire it.
+ * <ul>
+ * <li>{@link #fair()}: strictly in arrival order. Every hand-off to a parked thread costs a context switch.</li>
+ * <li>{@link #nonFair()}: an arriving thread may take a free lock ahead of parked threads. Highest throughput
+ * under contention, but a parked thread may wait indefinitely.</li>
+ * <li>{@link #adaptive(Duration)}: non-fair until a thread has waited longer than the starvation threshold,
+ * then fair until that thread acquires the lock.</li>
+ * </ul>
+ */
+public final class LockFairness {
+    private static final Duration DEFAULT_STARVATION_THRESHOLD = Duration.ofMillis(1);
+    private static final LockFairness FAIR = new LockFairness(Mode.FAIR, 0L);
+    private static final LockFairness NON_FAIR = new LockFairness(Mode.NON_FAIR, 0L);
+
+    private final Mode mode;
+    private final long starvationThresholdNanos;
+
+    private LockFairness(Mode mode, long starvationThresholdNanos) {
+        this.mode = mode;
+        this.starvationThresholdNanos = starvationThresholdNanos;
+    }
+
+    public static LockFairness fair() {
+        return FAIR;
+    }
+
+    public static LockFairness nonFair() {
+        return NON_FAIR;
+    }
+
+    /**
+     * @return adaptive fairness with a starvation threshold of 1 millisecond
+     */
+    public static LockFairness adaptive() {
+        return adaptive(DEFAULT_STARVATION_THRESHOLD);
+    }
+
+    /**
+     * @param starvationThreshold how long a thread may wait before arriving threads stop taking the lock ahead of it
+     * @return adaptive fairness with the given starvation threshold
+     */
+    public static LockFairness adaptive(Duration starvationThreshold) {
+        Objects.requireNonNull(starvationThreshold, "Starvation threshold cannot be null");
+        if (starvationThreshold.isNegative() || starvationThreshold.isZero()) {
+            throw new IllegalArgumentException("Starvation threshold must be positive: " + starvationThreshold);
+        }
+        return new LockFairness(Mode.ADAPTIVE, starvationThreshold.toNanos());
+    }
+
+    boolean isFair() {
+        return mode == Mode.FAIR;
+    }
+
+    boolean isAdaptive() {
+        return mode == Mode.ADAPTIVE;
+    }
+
+    long getStarvationThresholdNanos() {
+        return starvationThresholdNanos;
+    }
+
+    @Override
+    public String toString() {
+        return mode == Mode.ADAPTIVE ? "ADAPTIVE(" + Duration.ofNanos(starvationThresholdNanos) + ")" : mode.name();
+    }
+
+    private enum Mode {
+        FAIR, NON_FAIR, ADAPTIVE
+    }
+}
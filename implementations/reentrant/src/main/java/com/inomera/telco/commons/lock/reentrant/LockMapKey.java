@@ -4,4 +4,9 @@ package com.inomera.telco.commons.lock.reentrant;
  * @author Serdar Kuzucu
  */
 interface LockMapKey {
+
+    /**
+     * @return the name of the lock within its lock map
+     */
+    String getLockName();
 }
@@ -0,0 +1,151 @@
+package com.inomera.telco.commons.lock.reentrant;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Reference counted locks of a single lock map, looked up by lock name.
+ * <p>
+ * A lock stays in the table while any thread holds or waits for it, and also once the last thread releases it,
+ * so that locking the same key again reuses the lock, its key and its handle without allocating. Whenever adding
+ * a lock takes the table past its sweep threshold, the table retires and removes the idle locks which were not
+ * locked again since they were added or since the previous sweep, and sets the threshold to twice the locks that
+ * remain, but at least {@value #MIN_SWEEP_THRESHOLD}. A retired lock is never handed out again.
+ */
+final class LockTable {
+    static final int MIN_SWEEP_THRESHOLD = 1024;
+
+    private final String lockMap;
+    private final LockFairness fairness;
+    private final Executor asyncExecutor;
+    private final ThreadHolds threadHolds;
+    private final ConcurrentMap<String, CountingReentrantLock> locks = new ConcurrentHashMap<>();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private volatile int sweepThreshold = MIN_SWEEP_THRESHOLD;
+
+    /**
+     * @param lockMap       name of the lock map, or null for locks acquired by lock name only
+     * @param fairness      order in which waiting threads acquire the locks of this table
+     * @param asyncExecutor executor completing asynchronous waiters when a lock is handed to them
+     */
+    LockTable(String lockMap, LockFairness fairness, Executor asyncExecutor) {
+        this(lockMap, fairness, asyncExecutor, null);
+    }
+
+    /**
+     * @param lockMap       name of the lock map, or null for locks acquired by lock name only
+     * @param fairness      order in which waiting threads acquire the locks of this table
+     * @param asyncExecutor executor completing asynchronous waiters when a lock is handed to them
+     * @param threadHolds   holds of the provider's threads to count the thread-bound holds of this table in,
+     *                      or null not to count them
+     */
+    LockTable(String lockMap, LockFairness fairness, Executor asyncExecutor, ThreadHolds threadHolds) {
+        this.lockMap = lockMap;
+        this.fairness = fairness;
+        this.asyncExecutor = asyncExecutor;
+        this.threadHolds = threadHolds;
+    }
+
+    /**
+     * Returns the lock mapped to the given name with its counter incremented, creating it when absent.
+     * A lock retired by a sweep is about to be removed by the sweep, so it is removed here as well
+     * and a fresh lock is created instead.
+     */
+    CountingReentrantLock retain(String lockName) {
+        while (true) {
+            final CountingReentrantLock lock = locks.get(lockName);
+            if (lock == null) {
+                final CountingReentrantLock newLock = new CountingReentrantLock(this, newKey(lockName));
+                if (locks.putIfAbsent(lockName, newLock) == null) {
+                    if (locks.size() > sweepThreshold) {
+                        sweep();
+                    }
+                    return newLock;
+                }
+            } else if (lock.tryIncrementCounter()) {
+                return lock;
+            } else {
+                locks.remove(lockName, lock);
+            }
+        }
+    }
+
+    void release(CountingReentrantLock lock) {
+        lock.decrementCounterAndGetValue();
+    }
+
+    LockFairness getFairness() {
+        return fairness;
+    }
+
+    Executor getAsyncExecutor() {
+        return asyncExecutor;
+    }
+
+    /**
+     * Counts a hold the calling thread acquired, if thread holds are counted.
+     */
+    void threadAcquired() {
+        if (threadHolds != null) {
+            threadHolds.acquired();
+        }
+    }
+
+    /**
+     * Counts a hold the calling thread released, if thread holds are counted.
+     */
+    void threadReleased() {
+        if (threadHolds != null) {
+            threadHolds.released();
+        }
+    }
+
+    /**
+     * @return true if thread holds are counted and the calling thread holds any lock of the provider
+     */
+    boolean threadHoldsAny() {
+        return threadHolds != null && threadHolds.any();
+    }
+
+    /**
+     * @return the number of locks which threads hold or wait for
+     */
+    int size() {
+        int size = 0;
+        for (CountingReentrantLock lock : locks.values()) {
+            if (lock.isInUse()) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of locks in the table, including idle ones
+     */
+    int capacity() {
+        return locks.size();
+    }
+
+    private void sweep() {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            for (CountingReentrantLock lock : locks.values()) {
+                if (lock.tryRetireUnused()) {
+                    locks.remove(lock.getKey().getLockName(), lock);
+                }
+            }
+            sweepThreshold = Math.max(MIN_SWEEP_THRESHOLD, 2 * locks.size());
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    private LockMapKey newKey(String lockName) {
+        return lockMap == null ? new SimpleLockMapKey(lockName) : new CompositeLockMapKey(lockMap, lockName);
+    }
+}
@@ -0,0 +1,65 @@
+package com.inomera.telco.commons.lock.reentrant;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Reference counted read/write locks of a single lock map, looked up by lock name.
+ * A lock stays in the table while any thread holds or waits for it; unlike {@link LockTable}, the last thread
+ * to release its reference removes it.
+ */
+final class ReadWriteLockTable {
+    private final boolean fair;
+    private final ThreadHolds threadHolds;
+    private final ConcurrentMap<String, CountingReadWriteLock> locks = new ConcurrentHashMap<>();
+
+    /**
+     * @param fair        whether waiting threads acquire the locks of this table in arrival order
+     * @param threadHolds holds of the provider's threads to count the holds of this table in, or null not to count them
+     */
+    ReadWriteLockTable(boolean fair, ThreadHolds threadHolds) {
+        this.fair = fair;
+        this.threadHolds = threadHolds;
+    }
+
+    /**
+     * Returns the lock mapped to the given name with its counter incremented, creating it when absent.
+     */
+    CountingReadWriteLock retain(String lockName) {
+        while (true) {
+            final CountingReadWriteLock lock = locks.get(lockName);
+            if (lock == null) {
+                final CountingReadWriteLock newLock = new CountingReadWriteLock(this, lockName, fair);
+                if (locks.putIfAbsent(lockName, newLock) == null) {
+                    return newLock;
+                }
+            } else if (lock.tryIncrementCounter()) {
+                return lock;
+            } else {
+                locks.remove(lockName, lock);
+            }
+        }
+    }
+
+    void release(CountingReadWriteLock lock) {
+        if (lock.decrementCounterAndGetValue() == 0) {
+            locks.remove(lock.getLockName(), lock);
+        }
+    }
+
+    void threadAcquired() {
+        if (threadHolds != null) {
+            threadHolds.acquired();
+        }
+    }
+
+    void threadReleased() {
+        if (threadHolds != null) {
+            threadHolds.released();
+        }
+    }
+
+    int size() {
+        return locks.size();
+    }
+}
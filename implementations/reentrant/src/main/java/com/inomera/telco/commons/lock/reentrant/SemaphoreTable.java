@@ -0,0 +1,58 @@
+package com.inomera.telco.commons.lock.reentrant;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Reference counted semaphores of a single lock map, looked up by lock name.
+ * Semaphores are kept and removed the same way as the locks of a {@link LockTable},
+ * so the permits of a key exist only while some caller holds or waits for them.
+ */
+final class SemaphoreTable {
+    private final boolean fair;
+    private final ConcurrentMap<String, CountingSemaphore> semaphores = new ConcurrentHashMap<>();
+
+    /**
+     * @param fair whether waiting callers acquire permits in arrival order
+     */
+    SemaphoreTable(boolean fair) {
+        this.fair = fair;
+    }
+
+    /**
+     * Returns the semaphore mapped to the given name with its counter incremented, creating it with
+     * the given number of permits when absent.
+     *
+     * @throws IllegalArgumentException if the semaphore in use has a different number of permits
+     */
+    CountingSemaphore retain(String lockName, int maxPermits) {
+        while (true) {
+            final CountingSemaphore semaphore = semaphores.get(lockName);
+            if (semaphore == null) {
+                final CountingSemaphore newSemaphore = new CountingSemaphore(this, lockName, maxPermits, fair);
+                if (semaphores.putIfAbsent(lockName, newSemaphore) == null) {
+                    return newSemaphore;
+                }
+            } else if (semaphore.tryIncrementCounter()) {
+                if (semaphore.getMaxPermits() != maxPermits) {
+                    release(semaphore);
+                    throw new IllegalArgumentException("Permits of " + lockName + " are in use with "
+                            + semaphore.getMaxPermits() + " max permits, not " + maxPermits);
+                }
+                return semaphore;
+            } else {
+                semaphores.remove(lockName, semaphore);
+            }
+        }
+    }
+
+    void release(CountingSemaphore semaphore) {
+        if (semaphore.decrementCounterAndGetValue() == 0) {
+            semaphores.remove(semaphore.getLockName(), semaphore);
+        }
+    }
+
+    int size() {
+        return semaphores.size();
+    }
+}
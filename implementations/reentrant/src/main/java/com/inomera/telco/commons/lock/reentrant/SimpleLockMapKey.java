@@ -1,15 +1,20 @@
 package com.inomera.telco.commons.lock.reentrant;
 
-import java.util.Objects;
-
 /**
  * @author Serdar Kuzucu
  */
 public class SimpleLockMapKey implements LockMapKey {
     private final String lockName;
+    private final int hash;
 
     SimpleLockMapKey(String lockName) {
         this.lockName = lockName;
+        this.hash = lockName.hashCode();
+    }
+
+    @Override
+    public String getLockName() {
+        return lockName;
     }
 
     @Override
@@ -21,12 +26,12 @@ public class SimpleLockMapKey implements LockMapKey {
             return false;
         }
         final SimpleLockMapKey that = (SimpleLockMapKey) o;
-        return lockName.equals(that.lockName);
+        return hash == that.hash && lockName.equals(that.lockName);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(lockName);
+        return hash;
     }
 
     @Override
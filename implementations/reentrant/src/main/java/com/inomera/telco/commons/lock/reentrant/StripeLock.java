@@ -0,0 +1,92 @@
+package com.inomera.telco.commons.lock.reentrant;
+
+import com.inomera.telco.commons.lock.Locked;
+
+import java.util.Optional;
+import java.util.concurrent.locks.AbstractQueuedSynchronizer;
+
+/**
+ * Reentrant lock used as a stripe by {@link StripedReentrantLockProvider}.
+ * <p>
+ * The lock is its own {@link Locked} handle so that acquiring it does not allocate.
+ * The synchronizer state lives in this object rather than in a separate delegate as in
+ * {@link java.util.concurrent.locks.ReentrantLock}, which lets the trailing padding keep
+ * the state of neighbouring stripes on different cache lines.
+ */
+@SuppressWarnings("unused")
+final class StripeLock extends AbstractQueuedSynchronizer implements Locked {
+    private static final long serialVersionUID = 1L;
+
+    private final boolean fair;
+    private final transient Optional<Locked> optionalOfThis = Optional.of(this);
+
+    private long p1, p2, p3, p4, p5, p6, p7;
+
+    StripeLock(boolean fair) {
+        this.fair = fair;
+    }
+
+    void lock() {
+        acquire(1);
+    }
+
+    boolean tryLock() {
+        return tryAcquire(1, false);
+    }
+
+    boolean tryLock(long waitNanos) throws InterruptedException {
+        return tryAcquireNanos(1, waitNanos);
+    }
+
+    Optional<Locked> asOptional() {
+        return optionalOfThis;
+    }
+
+    @Override
+    public void unlock() {
+        release(1);
+    }
+
+    @Override
+    protected boolean tryAcquire(int acquires) {
+        return tryAcquire(acquires, fair);
+    }
+
+    private boolean tryAcquire(int acquires, boolean respectQueue) {
+        final Thread current = Thread.currentThread();
+        final int state = getState();
+        if (state == 0) {
+            if ((!respectQueue || !hasQueuedPredecessors()) && compareAndSetState(0, acquires)) {
+                setExclusiveOwnerThread(current);
+                return true;
+            }
+        } else if (getExclusiveOwnerThread() == current) {
+            final int next = state + acquires;
+            if (next < 0) {
+                throw new Error("Maximum lock count exceeded");
+            }
+            setState(next);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    protected boolean tryRelease(int releases) {
+        if (getExclusiveOwnerThread() != Thread.currentThread()) {
+            throw new IllegalMonitorStateException("Stripe lock is not owned by the current thread");
+        }
+        final int next = getState() - releases;
+        final boolean free = next == 0;
+        if (free) {
+            setExclusiveOwnerThread(null);
+        }
+        setState(next);
+        return free;
+    }
+
+    @Override
+    protected boolean isHeldExclusively() {
+        return getExclusiveOwnerThread() == Thread.currentThread();
+    }
+}
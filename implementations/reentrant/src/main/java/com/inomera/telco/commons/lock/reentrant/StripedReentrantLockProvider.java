@@ -0,0 +1,155 @@
+package com.inomera.telco.commons.lock.reentrant;
+
+import com.inomera.telco.commons.lock.BaseLockProvider;
+import com.inomera.telco.commons.lock.LockProvider;
+import com.inomera.telco.commons.lock.Locked;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Non-distributed local implementation of LockProvider which maps keys onto a fixed number of
+ * preallocated reentrant locks.
+ * <p>
+ * Unlike {@link LocalReentrantLockProvider}, nothing is created or removed per key, so
+ * acquiring an uncontended lock does not allocate and short-lived keys cause no map churn.
+ * The price is that unrelated keys hashing to the same stripe share a lock. They block each
+ * other, and two threads each holding one stripe while waiting for the other's can deadlock
+ * even though their keys differ. Raise the stripe count to make such collisions rarer.
+ * {@link #lockAll(String, Collection)} is not exposed to this: it acquires stripes in ascending stripe order,
+ * taking each stripe once even when several of the keys fall on it.
+ * <p>
+ * Each stripe is padded to fill a cache line, so threads working on neighbouring stripes do not
+ * invalidate each other's lock state. This costs roughly one cache line per stripe.
+ */
+public class StripedReentrantLockProvider extends BaseLockProvider implements LockProvider {
+    private static final int DEFAULT_STRIPES = 1024;
+    private static final int MAX_STRIPES = 1 << 30;
+
+    private final StripeLock[] stripes;
+    private final int mask;
+
+    /**
+     * Creates a new StripedReentrantLockProvider with 1024 fair stripes.
+     */
+    public StripedReentrantLockProvider() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * Creates a new StripedReentrantLockProvider with fair stripes.
+     *
+     * @param stripes number of locks to preallocate, rounded up to the next power of two
+     */
+    public StripedReentrantLockProvider(int stripes) {
+        this(stripes, true);
+    }
+
+    /**
+     * Creates a new StripedReentrantLockProvider.
+     *
+     * @param stripes number of locks to preallocate, rounded up to the next power of two
+     * @param fair    whether waiting threads acquire a stripe in arrival order
+     */
+    public StripedReentrantLockProvider(int stripes, boolean fair) {
+        if (stripes <= 0 || stripes > MAX_STRIPES) {
+            throw new IllegalArgumentException("Stripe count must be between 1 and " + MAX_STRIPES + ": " + stripes);
+        }
+        final int size = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.stripes = new StripeLock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new StripeLock(fair);
+        }
+        this.mask = size - 1;
+    }
+
+    @Override
+    public Locked lock(String lockMap, String lockKey) {
+        return lock(stripe(31 * lockMap.hashCode() + lockKey.hashCode()));
+    }
+
+    @Override
+    public Optional<Locked> tryLock(String lockMap, String lockKey) {
+        return tryLock(stripe(31 * lockMap.hashCode() + lockKey.hashCode()));
+    }
+
+    @Override
+    public Optional<Locked> tryLock(String lockMap, String lockKey, Duration waitTime) {
+        return tryLock(stripe(31 * lockMap.hashCode() + lockKey.hashCode()), waitTime);
+    }
+
+    @Override
+    public Locked lockAll(String lockMap, Collection<String> lockKeys) {
+        final int[] stripeIndexes = canonicalOrder(lockKeys).stream()
+                .mapToInt(lockKey -> stripeIndex(31 * lockMap.hashCode() + lockKey.hashCode()))
+                .sorted()
+                .distinct()
+                .toArray();
+        int acquired = 0;
+        try {
+            for (; acquired < stripeIndexes.length; acquired++) {
+                stripes[stripeIndexes[acquired]].lock();
+            }
+        } catch (RuntimeException | Error e) {
+            unlockStripes(stripeIndexes, acquired);
+            throw e;
+        }
+        return () -> unlockStripes(stripeIndexes, stripeIndexes.length);
+    }
+
+    @Override
+    public Locked lock(String lockName) {
+        return lock(stripe(lockName.hashCode()));
+    }
+
+    @Override
+    public Optional<Locked> tryLock(String lockName) {
+        return tryLock(stripe(lockName.hashCode()));
+    }
+
+    @Override
+    public Optional<Locked> tryLock(String lockName, Duration waitTime) {
+        return tryLock(stripe(lockName.hashCode()), waitTime);
+    }
+
+    public int stripeCount() {
+        return stripes.length;
+    }
+
+    private Locked lock(StripeLock stripe) {
+        stripe.lock();
+        return stripe;
+    }
+
+    private Optional<Locked> tryLock(StripeLock stripe) {
+        return stripe.tryLock() ? stripe.asOptional() : Optional.empty();
+    }
+
+    private Optional<Locked> tryLock(StripeLock stripe, Duration waitTime) {
+        final long waitNanos = Objects.requireNonNull(waitTime, "Wait time cannot be null").toNanos();
+        try {
+            if (stripe.tryLock(waitNanos)) {
+                return stripe.asOptional();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return Optional.empty();
+    }
+
+    private void unlockStripes(int[] stripeIndexes, int acquired) {
+        for (int i = acquired - 1; i >= 0; i--) {
+            stripes[stripeIndexes[i]].unlock();
+        }
+    }
+
+    private StripeLock stripe(int hash) {
+        return stripes[stripeIndex(hash)];
+    }
+
+    private int stripeIndex(int hash) {
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,24 @@
+package com.inomera.telco.commons.lock.reentrant;
+
+/**
+ * Number of thread-bound locks of a provider which each thread holds, counting every reentrant hold.
+ * Lets flat combining tell callers that hold another lock of the provider apart from those that hold none.
+ */
+final class ThreadHolds {
+    private final ThreadLocal<int[]> holds = ThreadLocal.withInitial(() -> new int[1]);
+
+    void acquired() {
+        holds.get()[0]++;
+    }
+
+    void released() {
+        holds.get()[0]--;
+    }
+
+    /**
+     * @return true if the calling thread holds any lock of the provider
+     */
+    boolean any() {
+        return holds.get()[0] > 0;
+    }
+}
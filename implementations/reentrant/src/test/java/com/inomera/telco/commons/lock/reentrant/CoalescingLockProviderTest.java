@@ -0,0 +1,259 @@
+package com.inomera.telco.commons.lock.reentrant;
+
+import com.inomera.telco.commons.lock.Locked;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.google.common.util.concurrent.Uninterruptibles.awaitUninterruptibly;
+import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoalescingLockProviderTest {
+    private static final String LOCK_MAP = "lockMap";
+    private static final String KEY1 = "key1";
+    private static final int THREADS = 8;
+    private static final int LOCKS_PER_THREAD = 25;
+
+    @Test
+    @DisplayName("Threads contending for a key should share few remote acquisitions and still exclude each other")
+    void contendedKey_shouldHandOffRemoteLock() {
+        final CountingRemoteLockProvider remote = new CountingRemoteLockProvider();
+        final CoalescingLockProvider lockProvider = new CoalescingLockProvider(remote);
+
+        final int maxHolders = lockFromThreads(lockProvider);
+
+        assertEquals(1, maxHolders);
+        assertTrue(remote.acquisitions.get() < THREADS * LOCKS_PER_THREAD / 4,
+                remote.acquisitions.get() + " remote acquisitions");
+        assertEquals(0, lockProvider.size());
+        assertTrue(remote.tryLock(LOCK_MAP, KEY1).map(locked -> {
+            locked.unlock();
+            return true;
+        }).orElse(false));
+    }
+
+    @Test
+    @DisplayName("A remote lock should be handed off at most maxHandoffs times in a row")
+    void maxHandoffs_shouldBoundConsecutiveHandoffs() {
+        final CountingRemoteLockProvider remote = new CountingRemoteLockProvider();
+        final CoalescingLockProvider lockProvider = new CoalescingLockProvider(remote, 2);
+
+        final int maxHolders = lockFromThreads(lockProvider);
+
+        assertEquals(1, maxHolders);
+        assertTrue(remote.acquisitions.get() >= THREADS * LOCKS_PER_THREAD / 3,
+                remote.acquisitions.get() + " remote acquisitions");
+        assertEquals(0, lockProvider.size());
+    }
+
+    @Test
+    @DisplayName("A nested lock should reuse the remote lock, which is released with the outer lock")
+    void nestedLock_shouldReuseRemoteLock() {
+        final CountingRemoteLockProvider remote = new CountingRemoteLockProvider();
+        final CoalescingLockProvider lockProvider = new CoalescingLockProvider(remote);
+
+        final Locked outer = lockProvider.lock(LOCK_MAP, KEY1);
+        final Locked inner = lockProvider.lock(LOCK_MAP, KEY1);
+        final Optional<Locked> tried = lockProvider.tryLock(LOCK_MAP, KEY1);
+        assertTrue(tried.isPresent());
+        tried.get().unlock();
+        inner.unlock();
+        assertFalse(remote.tryLock(LOCK_MAP, KEY1).isPresent());
+        outer.unlock();
+
+        assertEquals(1, remote.acquisitions.get());
+        assertEquals(0, lockProvider.size());
+        assertTrue(remote.tryLock(LOCK_MAP, KEY1).map(locked -> {
+            locked.unlock();
+            return true;
+        }).orElse(false));
+    }
+
+    @Test
+    @DisplayName("tryLock should fail and release the local lock when another node holds the remote lock")
+    void tryLock_shouldFailWhenRemoteLockIsHeldElsewhere() {
+        final CountingRemoteLockProvider remote = new CountingRemoteLockProvider();
+        final CoalescingLockProvider lockProvider = new CoalescingLockProvider(remote);
+        final Locked otherNode = remote.lockAsync(LOCK_MAP, KEY1).toCompletableFuture().join();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            assertFalse(lockProvider.tryLock(LOCK_MAP, KEY1).isPresent());
+            assertFalse(lockProvider.tryLock(LOCK_MAP, KEY1, Duration.ofMillis(50)).isPresent());
+            assertEquals(0, lockProvider.size());
+
+            otherNode.unlock();
+            final Optional<Locked> locked = lockProvider.tryLock(LOCK_MAP, KEY1, Duration.ofSeconds(10));
+            assertTrue(locked.isPresent());
+            locked.get().unlock();
+        });
+    }
+
+    @Test
+    @DisplayName("lock by lock name should coalesce on the remote lock of the name")
+    void lockWithLockName_shouldLockRemoteLockName() {
+        final CountingRemoteLockProvider remote = new CountingRemoteLockProvider();
+        final CoalescingLockProvider lockProvider = new CoalescingLockProvider(remote);
+
+        final Locked locked = lockProvider.lock(KEY1);
+        assertFalse(remote.tryLock(KEY1).isPresent());
+        assertTrue(remote.tryLock(LOCK_MAP, KEY1).map(other -> {
+            other.unlock();
+            return true;
+        }).orElse(false));
+        locked.unlock();
+
+        assertEquals(1, remote.nameAcquisitions.get());
+        assertTrue(remote.tryLock(KEY1).map(other -> {
+            other.unlock();
+            return true;
+        }).orElse(false));
+    }
+
+    @Test
+    @DisplayName("Unlocking twice or from another thread should throw IllegalMonitorStateException")
+    void unlock_shouldRejectDoubleUnlockAndOtherThreads() throws InterruptedException {
+        final CoalescingLockProvider lockProvider = new CoalescingLockProvider(new CountingRemoteLockProvider());
+        final Locked locked = lockProvider.lock(LOCK_MAP, KEY1);
+        final AtomicReference<Throwable> otherThreadFailure = new AtomicReference<>();
+
+        final Thread otherThread = new Thread(() -> {
+            try {
+                locked.unlock();
+            } catch (Throwable e) {
+                otherThreadFailure.set(e);
+            }
+        });
+        otherThread.start();
+        otherThread.join();
+        locked.unlock();
+
+        assertTrue(otherThreadFailure.get() instanceof IllegalMonitorStateException);
+        assertThrows(IllegalMonitorStateException.class, locked::unlock);
+        assertEquals(0, lockProvider.size());
+    }
+
+    @Test
+    @DisplayName("A remote lock kept for a handoff should be released when the next local holder fails to lock")
+    void failedHandoff_shouldReleaseRemoteLock() {
+        final CountingRemoteLockProvider remote = new CountingRemoteLockProvider();
+        final FailingLocalLockProvider local = new FailingLocalLockProvider();
+        final CoalescingLockProvider lockProvider = new CoalescingLockProvider(remote, CoalescingLockProvider.DEFAULT_MAX_HANDOFFS, local);
+        final Locked locked = lockProvider.lock(LOCK_MAP, KEY1);
+        final AtomicReference<Throwable> waiterFailure = new AtomicReference<>();
+
+        local.failNextLock = true;
+        final Thread waiter = new Thread(() -> {
+            try {
+                lockProvider.lock(LOCK_MAP, KEY1);
+            } catch (Throwable e) {
+                waiterFailure.set(e);
+            }
+        });
+        waiter.start();
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            while (waiter.getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+        });
+        locked.unlock();
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> waiter.join());
+
+        assertTrue(waiterFailure.get() instanceof IllegalStateException);
+        assertEquals(0, lockProvider.size());
+        assertTrue(remote.tryLock(LOCK_MAP, KEY1).map(other -> {
+            other.unlock();
+            return true;
+        }).orElse(false));
+    }
+
+    @Test
+    @DisplayName("Constructor should reject negative max handoffs")
+    void constructor_shouldRejectNegativeMaxHandoffs() {
+        assertThrows(IllegalArgumentException.class, () -> new CoalescingLockProvider(new CountingRemoteLockProvider(), -1));
+    }
+
+    /**
+     * @return the greatest number of threads seen holding the lock at once
+     */
+    private static int lockFromThreads(CoalescingLockProvider lockProvider) {
+        final AtomicInteger holders = new AtomicInteger();
+        final AtomicInteger maxHolders = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            final Thread thread = new Thread(() -> {
+                awaitUninterruptibly(start);
+                for (int j = 0; j < LOCKS_PER_THREAD; j++) {
+                    lockProvider.executeInLock(LOCK_MAP, KEY1, () -> {
+                        maxHolders.accumulateAndGet(holders.incrementAndGet(), Math::max);
+                        sleepUninterruptibly(1, TimeUnit.MILLISECONDS);
+                        holders.decrementAndGet();
+                    });
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        });
+        return maxHolders.get();
+    }
+
+    /**
+     * Local provider whose next lock fails once the lock is acquired, as if the caller gave up right after.
+     */
+    private static final class FailingLocalLockProvider extends LocalReentrantLockProvider {
+        private volatile boolean failNextLock;
+
+        @Override
+        public Locked lock(String lockMap, String lockKey) {
+            final Locked locked = super.lock(lockMap, lockKey);
+            if (failNextLock) {
+                failNextLock = false;
+                locked.unlock();
+                throw new IllegalStateException("Failed after locking " + lockKey);
+            }
+            return locked;
+        }
+    }
+
+    /**
+     * Stands in for a distributed provider, counting the remote acquisitions.
+     */
+    private static final class CountingRemoteLockProvider extends LocalReentrantLockProvider {
+        private final AtomicInteger acquisitions = new AtomicInteger();
+        private final AtomicInteger nameAcquisitions = new AtomicInteger();
+
+        @Override
+        public CompletionStage<Locked> lockAsync(String lockMap, String lockKey) {
+            acquisitions.incrementAndGet();
+            return super.lockAsync(lockMap, lockKey);
+        }
+
+        @Override
+        public CompletionStage<Optional<Locked>> tryLockAsync(String lockMap, String lockKey) {
+            acquisitions.incrementAndGet();
+            return super.tryLockAsync(lockMap, lockKey);
+        }
+
+        @Override
+        public CompletionStage<Locked> lockAsync(String lockName) {
+            nameAcquisitions.incrementAndGet();
+            return super.lockAsync(lockName);
+        }
+    }
+}
@@ -3,7 +3,7 @@ package com.inomera.telco.commons.lock.reentrant;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * @author Serdar Kuzucu
@@ -12,18 +12,39 @@ class CountingReentrantLockTest {
     @Test
     @DisplayName("Should start counting at 1 and return 2 on first increment")
     void shouldReturn2OnFirstIncrement() {
-        final CountingReentrantLock countingReentrantLock = new CountingReentrantLock();
+        final CountingReentrantLock countingReentrantLock = newLock();
         assertEquals(2, countingReentrantLock.incrementCounterAndGetValue());
     }
 
     @Test
     @DisplayName("Should increment to 4 and reduce to 3 after 3 increment and 1 decrement")
     void shouldReturn3After3IncrementAndOneDecrement() {
-        final CountingReentrantLock countingReentrantLock = new CountingReentrantLock();
+        final CountingReentrantLock countingReentrantLock = newLock();
         assertEquals(2, countingReentrantLock.incrementCounterAndGetValue());
         assertEquals(3, countingReentrantLock.incrementCounterAndGetValue());
         assertEquals(4, countingReentrantLock.incrementCounterAndGetValue());
 
         assertEquals(3, countingReentrantLock.decrementCounterAndGetValue());
     }
+
+    @Test
+    @DisplayName("Should increment the counter of an idle lock, but not of a retired one")
+    void tryIncrementCounter_shouldFailOnlyAfterRetirement() {
+        final CountingReentrantLock countingReentrantLock = newLock();
+        assertTrue(countingReentrantLock.tryIncrementCounter());
+        assertEquals(1, countingReentrantLock.decrementCounterAndGetValue());
+        assertEquals(0, countingReentrantLock.decrementCounterAndGetValue());
+        assertFalse(countingReentrantLock.isInUse());
+
+        assertTrue(countingReentrantLock.tryIncrementCounter());
+        assertFalse(countingReentrantLock.tryRetireUnused());
+        assertEquals(0, countingReentrantLock.decrementCounterAndGetValue());
+
+        assertTrue(countingReentrantLock.tryRetireUnused());
+        assertFalse(countingReentrantLock.tryIncrementCounter());
+    }
+
+    private static CountingReentrantLock newLock() {
+        return new CountingReentrantLock(new LockTable(null, LockFairness.fair(), Runnable::run), new SimpleLockMapKey("lock1"));
+    }
 }
@@ -0,0 +1,157 @@
+package com.inomera.telco.commons.lock.reentrant;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.util.concurrent.Uninterruptibles.awaitUninterruptibly;
+import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyedSerialExecutorTest {
+    private static final String LOCK_MAP = "lockMap";
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void end() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Tasks of a key should run one at a time in submission order")
+    void submit_shouldRunTasksOfKeyInOrder() {
+        final KeyedSerialExecutor executor = new KeyedSerialExecutor(pool, 4);
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final List<CompletableFuture<Integer>> futures = new ArrayList<>();
+
+        for (int i = 0; i < 1000; i++) {
+            final int value = i;
+            futures.add(executor.submit(LOCK_MAP, "key", () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                order.add(value);
+                running.decrementAndGet();
+                return value;
+            }));
+        }
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join());
+        assertEquals(1, maxRunning.get());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(Integer.valueOf(i), order.get(i));
+            assertEquals(Integer.valueOf(i), futures.get(i).join());
+        }
+        awaitNoQueues(executor);
+    }
+
+    @Test
+    @DisplayName("Tasks of different keys should run in parallel")
+    void submit_shouldRunDifferentKeysInParallel() {
+        final KeyedSerialExecutor executor = new KeyedSerialExecutor(pool);
+        final CountDownLatch otherKeyRan = new CountDownLatch(1);
+
+        final CompletableFuture<Boolean> waiting = executor.submit(LOCK_MAP, "key1", () -> {
+            try {
+                return otherKeyRan.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return false;
+            }
+        });
+        executor.execute(LOCK_MAP, "key2", otherKeyRan::countDown);
+
+        assertTrue(waiting.join());
+        awaitNoQueues(executor);
+    }
+
+    @Test
+    @DisplayName("A failed task should fail its future and not stop the tasks queued after it")
+    void submit_shouldGoOnAfterFailedTask() {
+        final KeyedSerialExecutor executor = new KeyedSerialExecutor(pool);
+        final CountDownLatch release = new CountDownLatch(1);
+        executor.execute(LOCK_MAP, "key", () -> awaitUninterruptibly(release));
+
+        final CompletableFuture<Object> failed = executor.submit(LOCK_MAP, "key", () -> {
+            throw new IllegalStateException("failed");
+        });
+        final AtomicInteger cancelledRuns = new AtomicInteger();
+        final CompletableFuture<Void> cancelled = executor.execute(LOCK_MAP, "key", cancelledRuns::incrementAndGet);
+        final CompletableFuture<String> next = executor.submit(LOCK_MAP, "key", () -> "next");
+        cancelled.cancel(false);
+        release.countDown();
+
+        assertEquals("next", next.join());
+        final ExecutionException failure = assertThrows(ExecutionException.class, failed::get);
+        assertTrue(failure.getCause() instanceof IllegalStateException);
+        assertEquals(0, cancelledRuns.get());
+        awaitNoQueues(executor);
+    }
+
+    @Test
+    @DisplayName("A busy key should hand its queue back to the executor after a batch of tasks")
+    void submit_shouldNotLetBusyKeyStarveOtherKeys() {
+        final ExecutorService singleThread = Executors.newSingleThreadExecutor();
+        try {
+            final KeyedSerialExecutor executor = new KeyedSerialExecutor(singleThread, 2);
+            final CountDownLatch release = new CountDownLatch(1);
+            final List<String> order = Collections.synchronizedList(new ArrayList<>());
+            executor.execute(LOCK_MAP, "busy", () -> awaitUninterruptibly(release));
+            final List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                futures.add(executor.execute(LOCK_MAP, "busy", () -> order.add("busy")));
+            }
+            futures.add(executor.execute(LOCK_MAP, "other", () -> order.add("other")));
+            release.countDown();
+
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+            assertEquals(List.of("busy", "other", "busy", "busy", "busy", "busy"), order);
+        } finally {
+            singleThread.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Tasks should fail with RejectedExecutionException when the executor rejects them")
+    void submit_shouldFailWhenExecutorRejects() {
+        final KeyedSerialExecutor executor = new KeyedSerialExecutor(runnable -> {
+            throw new RejectedExecutionException("rejected");
+        });
+
+        final CompletableFuture<String> rejected = executor.submit(LOCK_MAP, "key", () -> "value");
+
+        final ExecutionException failure = assertThrows(ExecutionException.class, rejected::get);
+        assertTrue(failure.getCause() instanceof RejectedExecutionException);
+        assertEquals(0, executor.size());
+    }
+
+    @Test
+    @DisplayName("Constructor should reject a max tasks per run below one")
+    void constructor_shouldRejectNonPositiveMaxTasksPerRun() {
+        assertThrows(IllegalArgumentException.class, () -> new KeyedSerialExecutor(pool, 0));
+    }
+
+    /**
+     * A key's queue is removed by the thread that ran its last task right after the task's future is completed.
+     */
+    private static void awaitNoQueues(KeyedSerialExecutor executor) {
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            while (executor.size() != 0) {
+                sleepUninterruptibly(1, TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+}
@@ -0,0 +1,83 @@
+package com.inomera.telco.commons.lock.reentrant;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LeaseTimerTest {
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    @DisplayName("A timeout should run its task once the delay elapses, also after several rounds of the wheel")
+    void schedule_shouldRunTaskAfterDelay() {
+        final LeaseTimer timer = new LeaseTimer(TICK_NANOS, 8);
+        final CountDownLatch expired = new CountDownLatch(2);
+        final long scheduledAt = System.nanoTime();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            timer.schedule(expired::countDown, TimeUnit.MILLISECONDS.toNanos(5));
+            timer.schedule(expired::countDown, TimeUnit.MILLISECONDS.toNanos(50));
+            expired.await();
+        });
+        assertTrue(System.nanoTime() - scheduledAt >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    @DisplayName("A cancelled timeout should not run its task")
+    void cancel_shouldPreventTask() {
+        final LeaseTimer timer = new LeaseTimer(TICK_NANOS, 8);
+        final AtomicInteger cancelledRuns = new AtomicInteger();
+        final CountDownLatch expired = new CountDownLatch(1);
+
+        final LeaseTimer.Timeout timeout = timer.schedule(cancelledRuns::incrementAndGet, TimeUnit.MILLISECONDS.toNanos(20));
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        timer.schedule(expired::countDown, TimeUnit.MILLISECONDS.toNanos(40));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> expired.await());
+        sleepUninterruptibly(20, TimeUnit.MILLISECONDS);
+        assertEquals(0, cancelledRuns.get());
+    }
+
+    @Test
+    @DisplayName("A timeout should not be cancellable once its task ran, and a failing task should not stop the timer")
+    void expiredTimeout_shouldNotBeCancellable() {
+        final LeaseTimer timer = new LeaseTimer(TICK_NANOS, 8);
+        final CountDownLatch expired = new CountDownLatch(1);
+
+        final LeaseTimer.Timeout failing = timer.schedule(() -> {
+            throw new IllegalStateException("failed");
+        }, TICK_NANOS);
+        timer.schedule(expired::countDown, TimeUnit.MILLISECONDS.toNanos(10));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> expired.await());
+        assertFalse(failing.cancel());
+    }
+
+    @Test
+    @DisplayName("Many timeouts should all expire, each once")
+    void manyTimeouts_shouldExpireOnce() {
+        final LeaseTimer timer = new LeaseTimer(TICK_NANOS, 16);
+        final int timeouts = 10_000;
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch expired = new CountDownLatch(timeouts);
+
+        for (int i = 0; i < timeouts; i++) {
+            timer.schedule(() -> {
+                runs.incrementAndGet();
+                expired.countDown();
+            }, TimeUnit.MILLISECONDS.toNanos(i % 40));
+        }
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> expired.await());
+        sleepUninterruptibly(20, TimeUnit.MILLISECONDS);
+        assertEquals(timeouts, runs.get());
+    }
+}
@@ -0,0 +1,89 @@
+package com.inomera.telco.commons.lock.reentrant;
+
+import com.inomera.telco.commons.lock.Locked;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.Collection;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs {@link UncontendedLockBenchmark} with the JMH GC profiler and checks that an uncontended
+ * lock/unlock cycle does not allocate.
+ * <p>
+ * The JMH run takes several seconds, so it is skipped unless the {@code lockProvider.allocationTest} system property
+ * is true, e.g. {@code ./gradlew :lock-provider-reentrant:test -PlockProvider.allocationTest=true}.
+ */
+public class LocalReentrantLockProviderAllocationTest {
+    private static final String ALLOCATION_METRIC = "gc.alloc.rate.norm";
+
+    @Test
+    @EnabledIfSystemProperty(named = "lockProvider.allocationTest", matches = "true")
+    @DisplayName("Uncontended lock and unlock on an existing lock should allocate 0 B/op")
+    void uncontendedLockAndUnlock_shouldNotAllocate() throws Exception {
+        final Options options = new OptionsBuilder()
+                .include(UncontendedLockBenchmark.class.getName().replace("$", "."))
+                .addProfiler(GCProfiler.class)
+                .forks(0)
+                .threads(1)
+                .warmupIterations(2)
+                .warmupTime(TimeValue.milliseconds(500))
+                .measurementIterations(3)
+                .measurementTime(TimeValue.milliseconds(500))
+                .build();
+
+        final Collection<RunResult> results = new Runner(options).run();
+        assertEquals(3, results.size());
+
+        for (RunResult result : results) {
+            final String benchmark = result.getParams().getBenchmark();
+            final Result<?> allocation = result.getSecondaryResults().get(ALLOCATION_METRIC);
+            assertNotNull(allocation, "No allocation metric for " + benchmark);
+            assertTrue(allocation.getScore() < 1.0,
+                    benchmark + " allocated " + allocation.getScore() + " B/op");
+        }
+    }
+
+    /**
+     * Every cycle locks and fully releases the key. The first cycle creates the key's lock, which then stays
+     * in its table idle between cycles, so the measured cycles go through lookup, counting, locking and unlocking.
+     */
+    @State(Scope.Thread)
+    @BenchmarkMode(Mode.AverageTime)
+    public static class UncontendedLockBenchmark {
+        private static final String LOCK_MAP = "lockMap";
+        private static final String LOCK_KEY = "lockKey";
+
+        private final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider();
+        private final Runnable task = () -> {
+        };
+
+        @Benchmark
+        public void lockAndUnlock() {
+            lockProvider.lock(LOCK_MAP, LOCK_KEY).unlock();
+        }
+
+        @Benchmark
+        public boolean tryLockAndUnlock() {
+            final Optional<Locked> locked = lockProvider.tryLock(LOCK_MAP, LOCK_KEY);
+            locked.ifPresent(Locked::unlock);
+            return locked.isPresent();
+        }
+
+        @Benchmark
+        public void executeInLock() {
+            lockProvider.executeInLock(LOCK_MAP, LOCK_KEY, task);
+        }
+    }
+}
@@ -1,15 +1,29 @@
 package com.inomera.telco.commons.lock.reentrant;
 
 import com.inomera.telco.commons.lock.Locked;
+import com.inomera.telco.commons.lock.Permits;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 import static com.google.common.util.concurrent.Uninterruptibles.awaitUninterruptibly;
 import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
@@ -269,4 +283,982 @@ class LocalReentrantLockProviderTest {
 
         assertThrows(IllegalMonitorStateException.class, lock::unlock);
     }
+
+    @Test
+    @DisplayName("Concurrent lock and unlock on shared keys should be mutually exclusive and leave no locks behind")
+    void concurrentLockAndUnlock_shouldBeMutuallyExclusiveAndCleanUp() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider();
+        final int threadCount = 16;
+        final int iterations = 10_000;
+        final int[] counters = new int[4];
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            final AtomicReference<Throwable> uncaughtException = new AtomicReference<>();
+            final CountDownLatch start = new CountDownLatch(1);
+            final Thread[] threads = new Thread[threadCount];
+            for (int i = 0; i < threadCount; i++) {
+                threads[i] = new Thread(() -> {
+                    awaitUninterruptibly(start);
+                    for (int j = 0; j < iterations; j++) {
+                        final int slot = j % counters.length;
+                        if (j % 2 == 0) {
+                            lockProvider.executeInLock(LOCK_MAP, "key" + slot, () -> counters[slot]++);
+                        } else {
+                            final Locked locked = lockProvider.lock(LOCK_MAP, "key" + slot);
+                            counters[slot]++;
+                            locked.unlock();
+                        }
+                    }
+                });
+                threads[i].setUncaughtExceptionHandler((th, ex) -> uncaughtException.set(ex));
+                threads[i].start();
+            }
+
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            if (uncaughtException.get() != null) {
+                throw new AssertionError("Thread threw exception", uncaughtException.get());
+            }
+
+            int total = 0;
+            for (int counter : counters) {
+                total += counter;
+            }
+            assertEquals(threadCount * iterations, total);
+            assertEquals(0, lockProvider.size());
+        });
+    }
+
+    @Test
+    @DisplayName("tryLock with wait time should acquire the lock once the holder releases it")
+    void tryLockWithWaitTime_shouldAcquireLockWhenHolderReleasesIt() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            final CountDownLatch thread1Locked = new CountDownLatch(1);
+            final Thread thread1 = new Thread(() -> {
+                final Locked locked = lockProvider.lock(LOCK_MAP, KEY1);
+                thread1Locked.countDown();
+                sleepUninterruptibly(200, TimeUnit.MILLISECONDS);
+                locked.unlock();
+            });
+            thread1.start();
+            assertTrue(thread1Locked.await(3, TimeUnit.SECONDS));
+
+            final Optional<Locked> locked = lockProvider.tryLock(LOCK_MAP, KEY1, Duration.ofSeconds(10));
+            assertTrue(locked.isPresent());
+            locked.get().unlock();
+
+            thread1.join(3000);
+            assertEquals(0, lockProvider.size());
+        });
+    }
+
+    @Test
+    @DisplayName("tryLock with wait time should return empty Optional when the wait time elapses")
+    void tryLockWithWaitTime_shouldReturnEmptyOptionalWhenWaitTimeElapses() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            final CountDownLatch thread1Locked = new CountDownLatch(1);
+            final CountDownLatch thread1Continue = new CountDownLatch(1);
+            final Thread thread1 = new Thread(() -> {
+                final Locked locked = lockProvider.lock(KEY1);
+                thread1Locked.countDown();
+                awaitUninterruptibly(thread1Continue);
+                locked.unlock();
+            });
+            thread1.start();
+            assertTrue(thread1Locked.await(3, TimeUnit.SECONDS));
+
+            final long start = System.nanoTime();
+            final Optional<Locked> locked = lockProvider.tryLock(KEY1, Duration.ofMillis(200));
+            assertFalse(locked.isPresent());
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+            assertEquals(1, lockProvider.size());
+
+            thread1Continue.countDown();
+            thread1.join(3000);
+            assertEquals(0, lockProvider.size());
+        });
+    }
+
+    @Test
+    @DisplayName("executeInTryLock with wait time should run the supplier and release the lock")
+    void executeInTryLockWithWaitTime_shouldRunSupplierAndReleaseLock() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider();
+
+        final Integer returnValue = lockProvider.executeInTryLock(LOCK_MAP, KEY1, Duration.ofSeconds(1), () -> 3);
+
+        assertEquals(Integer.valueOf(3), returnValue);
+        assertEquals(0, lockProvider.size());
+    }
+
+    @Test
+    @DisplayName("lockAsync should complete immediately when the lock is free and allow unlock from another thread")
+    void lockAsync_shouldCompleteImmediatelyWhenLockIsFree() throws Exception {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider();
+
+        final CompletableFuture<Locked> future = lockProvider.lockAsync(LOCK_MAP, KEY1).toCompletableFuture();
+        assertTrue(future.isDone());
+        assertFalse(lockProvider.tryLock(LOCK_MAP, KEY1).isPresent());
+
+        final Thread unlocker = new Thread(future.join()::unlock);
+        unlocker.start();
+        unlocker.join(3000);
+
+        final Optional<Locked> locked = lockProvider.tryLock(LOCK_MAP, KEY1);
+        assertTrue(locked.isPresent());
+        locked.get().unlock();
+        assertEquals(0, lockProvider.size());
+    }
+
+    @Test
+    @DisplayName("lockAsync should complete once the thread holding the lock releases it")
+    void lockAsync_shouldCompleteWhenThreadHolderReleasesLock() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider();
+
+        final Locked threadHold = lockProvider.lock(KEY1);
+        final CompletableFuture<Locked> future = lockProvider.lockAsync(KEY1).toCompletableFuture();
+        assertFalse(future.isDone());
+        assertEquals(1, lockProvider.size());
+
+        threadHold.unlock();
+        final Locked asyncHold = future.join();
+        assertFalse(lockProvider.tryLock(KEY1).isPresent());
+
+        asyncHold.unlock();
+        assertThrows(IllegalMonitorStateException.class, asyncHold::unlock);
+        assertEquals(0, lockProvider.size());
+    }
+
+    @Test
+    @DisplayName("Threads should wait for the asynchronous holder to release the lock")
+    void lock_shouldWaitForAsyncHolder() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            final Locked asyncHold = lockProvider.lockAsync(LOCK_MAP, KEY1).toCompletableFuture().join();
+            final CountDownLatch threadLocked = new CountDownLatch(1);
+            final Thread thread = new Thread(() -> {
+                lockProvider.lock(LOCK_MAP, KEY1).unlock();
+                threadLocked.countDown();
+            });
+            thread.start();
+            assertFalse(threadLocked.await(200, TimeUnit.MILLISECONDS));
+
+            asyncHold.unlock();
+            assertTrue(threadLocked.await(3, TimeUnit.SECONDS));
+            thread.join(3000);
+            assertEquals(0, lockProvider.size());
+        });
+    }
+
+    @Test
+    @DisplayName("tryLockAsync should return empty Optional when the lock is held")
+    void tryLockAsync_shouldReturnEmptyOptionalWhenLockIsHeld() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider();
+
+        final Optional<Locked> first = lockProvider.tryLockAsync(LOCK_MAP, KEY1).toCompletableFuture().join();
+        assertTrue(first.isPresent());
+        final Optional<Locked> second = lockProvider.tryLockAsync(LOCK_MAP, KEY1).toCompletableFuture().join();
+        assertFalse(second.isPresent());
+        assertEquals(1, lockProvider.size());
+
+        first.get().unlock();
+        assertEquals(0, lockProvider.size());
+    }
+
+    @Test
+    @DisplayName("Cancelled asynchronous waiters should be skipped and release their references")
+    void lockAsync_cancelledWaiterShouldBeSkipped() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider(LockFairness.nonFair(),
+                Collections.emptyMap(), Runnable::run);
+
+        final Locked holder = lockProvider.lockAsync(KEY1).toCompletableFuture().join();
+        final CompletableFuture<Locked> cancelled = lockProvider.lockAsync(KEY1).toCompletableFuture();
+        final CompletableFuture<Locked> waiting = lockProvider.lockAsync(KEY1).toCompletableFuture();
+        assertTrue(cancelled.cancel(false));
+
+        holder.unlock();
+        assertTrue(waiting.isDone());
+        waiting.join().unlock();
+        assertEquals(0, lockProvider.size());
+    }
+
+    @Test
+    @DisplayName("Fair lockAsync should wait in arrival order together with parked threads")
+    void fairLockAsync_shouldWaitInArrivalOrderWithParkedThreads() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            final List<String> acquisitionOrder = new CopyOnWriteArrayList<>();
+            final Locked mainHold = lockProvider.lock(LOCK_MAP, KEY1);
+            final Thread first = new Thread(() -> {
+                final Locked locked = lockProvider.lock(LOCK_MAP, KEY1);
+                acquisitionOrder.add("first");
+                sleepUninterruptibly(50, TimeUnit.MILLISECONDS);
+                locked.unlock();
+            });
+            first.start();
+            while (first.getState() != Thread.State.WAITING) {
+                sleepUninterruptibly(1, TimeUnit.MILLISECONDS);
+            }
+            final CompletableFuture<Void> async = lockProvider.lockAsync(LOCK_MAP, KEY1).toCompletableFuture()
+                    .thenAccept(locked -> {
+                        acquisitionOrder.add("async");
+                        locked.unlock();
+                    });
+            sleepUninterruptibly(100, TimeUnit.MILLISECONDS);
+            final Thread second = new Thread(() -> {
+                lockProvider.lock(LOCK_MAP, KEY1).unlock();
+                acquisitionOrder.add("second");
+            });
+            second.start();
+            while (second.getState() != Thread.State.WAITING) {
+                sleepUninterruptibly(1, TimeUnit.MILLISECONDS);
+            }
+
+            mainHold.unlock();
+            first.join();
+            async.join();
+            second.join();
+            assertEquals(Arrays.asList("first", "async", "second"), acquisitionOrder);
+            assertEquals(0, lockProvider.size());
+        });
+    }
+
+    @Test
+    @DisplayName("lockAsync should fail a waiter whose hand-off the executor rejects and pass the lock to the next one")
+    void lockAsync_rejectedHandOffShouldFailWaiterAndPassLockOn() {
+        for (LockFairness fairness : Arrays.asList(LockFairness.fair(), LockFairness.nonFair())) {
+            final AtomicBoolean rejectNext = new AtomicBoolean(true);
+            final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider(fairness,
+                    Collections.emptyMap(), runnable -> {
+                if (rejectNext.getAndSet(false)) {
+                    throw new RejectedExecutionException("rejected");
+                }
+                runnable.run();
+            });
+
+            assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+                final Locked threadHold = lockProvider.lock(LOCK_MAP, KEY1);
+                final CompletableFuture<Locked> rejected = lockProvider.lockAsync(LOCK_MAP, KEY1).toCompletableFuture();
+                final CompletableFuture<Locked> next = lockProvider.lockAsync(LOCK_MAP, KEY1).toCompletableFuture();
+
+                threadHold.unlock();
+                final CompletionException failure = assertThrows(CompletionException.class, rejected::join);
+                assertTrue(failure.getCause() instanceof RejectedExecutionException);
+                next.join().unlock();
+                assertTrue(lockProvider.tryLock(LOCK_MAP, KEY1).map(locked -> {
+                    locked.unlock();
+                    return true;
+                }).orElse(false));
+                assertEquals(0, lockProvider.size());
+            }, fairness::toString);
+        }
+    }
+
+    @Test
+    @DisplayName("A stream of asynchronous waiters should not starve a parked thread")
+    void lockAsync_streamShouldNotStarveParkedThread() {
+        for (LockFairness fairness : Arrays.asList(LockFairness.nonFair(), LockFairness.adaptive(), LockFairness.fair())) {
+            final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider(fairness,
+                    Collections.emptyMap(), ForkJoinPool.commonPool());
+
+            assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+                final AtomicBoolean running = new AtomicBoolean(true);
+                final CountDownLatch streamsStopped = new CountDownLatch(4);
+                final Locked mainHold = lockProvider.lock(LOCK_MAP, KEY1);
+                for (int i = 0; i < 4; i++) {
+                    lockAsyncRepeatedly(lockProvider, running, streamsStopped);
+                }
+                final CountDownLatch acquired = new CountDownLatch(1);
+                final Thread waiter = new Thread(() -> {
+                    lockProvider.lock(LOCK_MAP, KEY1).unlock();
+                    acquired.countDown();
+                });
+                waiter.start();
+                while (waiter.getState() != Thread.State.WAITING) {
+                    sleepUninterruptibly(1, TimeUnit.MILLISECONDS);
+                }
+
+                mainHold.unlock();
+                final boolean waiterAcquired = acquired.await(5, TimeUnit.SECONDS);
+                running.set(false);
+                streamsStopped.await();
+                waiter.join();
+                assertTrue(waiterAcquired);
+                assertEquals(0, lockProvider.size());
+            }, fairness::toString);
+        }
+    }
+
+    /**
+     * Locks asynchronously again and again, queueing the next acquisition before each unlock, until stopped.
+     */
+    private static void lockAsyncRepeatedly(LocalReentrantLockProvider lockProvider, AtomicBoolean running,
+                                            CountDownLatch stopped) {
+        lockProvider.lockAsync(LOCK_MAP, KEY1).thenAccept(locked -> {
+            if (running.get()) {
+                lockAsyncRepeatedly(lockProvider, running, stopped);
+                locked.unlock();
+            } else {
+                locked.unlock();
+                stopped.countDown();
+            }
+        });
+    }
+
+    @Test
+    @DisplayName("Many asynchronous waiters should run mutually exclusive without occupying threads")
+    void executeInLockAsync_shouldBeMutuallyExclusive() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider();
+        final int waiterCount = 10_000;
+        final int[] counter = new int[1];
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            final Locked threadHold = lockProvider.lock(LOCK_MAP, KEY1);
+            final List<CompletableFuture<Integer>> results = new ArrayList<>(waiterCount);
+            for (int i = 0; i < waiterCount; i++) {
+                results.add(lockProvider.executeInLockAsync(LOCK_MAP, KEY1, () -> ++counter[0]).toCompletableFuture());
+            }
+            threadHold.unlock();
+
+            CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).join();
+            assertEquals(waiterCount, counter[0]);
+            assertEquals(0, lockProvider.size());
+        });
+    }
+
+    @Test
+    @DisplayName("executeInLockAsync should release the lock and fail the stage when the supplier throws")
+    void executeInLockAsync_shouldReleaseLockWhenSupplierThrows() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider();
+
+        final CompletableFuture<Object> result = lockProvider.executeInLockAsync(KEY1, () -> {
+            throw new IllegalStateException("failed");
+        }).toCompletableFuture();
+
+        final Throwable failure = assertThrows(Exception.class, result::join).getCause();
+        assertTrue(failure instanceof IllegalStateException);
+        assertEquals(0, lockProvider.size());
+    }
+
+    @Test
+    @DisplayName("Concurrent thread and asynchronous holders should be mutually exclusive and leave no locks behind")
+    void concurrentThreadAndAsyncHolders_shouldBeMutuallyExclusiveAndCleanUp() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider();
+        final int threadCount = 8;
+        final int iterations = 5_000;
+        final int[] counter = new int[1];
+        final AtomicInteger acquisitions = new AtomicInteger();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            final AtomicReference<Throwable> uncaughtException = new AtomicReference<>();
+            final Thread[] threads = new Thread[threadCount];
+            for (int i = 0; i < threadCount; i++) {
+                final boolean async = i % 2 == 0;
+                final List<CompletableFuture<Integer>> threadResults = new ArrayList<>(iterations);
+                threads[i] = new Thread(() -> {
+                    for (int j = 0; j < iterations; j++) {
+                        final Supplier<Integer> increment = () -> {
+                            acquisitions.incrementAndGet();
+                            return ++counter[0];
+                        };
+                        if (async) {
+                            threadResults.add(lockProvider.executeInLockAsync(KEY1, increment).toCompletableFuture());
+                        } else if (j % 2 == 0) {
+                            lockProvider.executeInTryLock(KEY1, Duration.ofMillis(1), increment);
+                        } else {
+                            lockProvider.executeInLock(KEY1, increment);
+                        }
+                    }
+                    CompletableFuture.allOf(threadResults.toArray(new CompletableFuture<?>[0])).join();
+                });
+                threads[i].setUncaughtExceptionHandler((th, ex) -> uncaughtException.set(ex));
+                threads[i].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            if (uncaughtException.get() != null) {
+                throw new AssertionError("Thread threw exception", uncaughtException.get());
+            }
+            assertEquals(acquisitions.get(), counter[0]);
+            assertTrue(counter[0] >= threadCount / 2 * iterations * 3 / 2);
+            assertEquals(0, lockProvider.size());
+        });
+    }
+
+    @Test
+    @DisplayName("Fair lock should not be taken ahead of a parked thread")
+    void fairLock_shouldNotBeTakenAheadOfParkedThread() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider(LockFairness.nonFair(),
+                Collections.singletonMap(LOCK_MAP, LockFairness.fair()));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            final List<String> acquisitionOrder = new CopyOnWriteArrayList<>();
+            final Locked mainHold = lockProvider.lock(LOCK_MAP, KEY1);
+            final Thread waiter = startWaiter(lockProvider, acquisitionOrder);
+            sleepUninterruptibly(200, TimeUnit.MILLISECONDS);
+
+            mainHold.unlock();
+            assertFalse(lockProvider.tryLock(LOCK_MAP, KEY1, Duration.ZERO).isPresent());
+            lockProvider.lock(LOCK_MAP, KEY1).unlock();
+            acquisitionOrder.add("main");
+
+            waiter.join(3000);
+            assertEquals(Arrays.asList("waiter", "main"), acquisitionOrder);
+            assertEquals(0, lockProvider.size());
+        });
+    }
+
+    @Test
+    @DisplayName("Non-fair lock should be mutually exclusive")
+    void nonFairLock_shouldBeMutuallyExclusive() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider(LockFairness.fair(),
+                Collections.singletonMap(LOCK_MAP, LockFairness.nonFair()));
+        final int threadCount = 8;
+        final int iterations = 10_000;
+        final int[] counter = new int[1];
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            final Thread[] threads = new Thread[threadCount];
+            for (int i = 0; i < threadCount; i++) {
+                threads[i] = new Thread(() -> {
+                    for (int j = 0; j < iterations; j++) {
+                        lockProvider.executeInLock(LOCK_MAP, KEY1, () -> counter[0]++);
+                    }
+                });
+                threads[i].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertEquals(threadCount * iterations, counter[0]);
+            assertEquals(0, lockProvider.size());
+        });
+    }
+
+    @Test
+    @DisplayName("Adaptive lock should hand the lock to a thread which waited longer than the starvation threshold")
+    void adaptiveLock_shouldHandLockToStarvingThread() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider(
+                LockFairness.adaptive(Duration.ofMillis(20)));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            final List<String> acquisitionOrder = new CopyOnWriteArrayList<>();
+            final Locked mainHold = lockProvider.lock(LOCK_MAP, KEY1);
+            final Thread waiter = startWaiter(lockProvider, acquisitionOrder);
+            sleepUninterruptibly(200, TimeUnit.MILLISECONDS);
+
+            mainHold.unlock();
+            assertFalse(lockProvider.tryLock(LOCK_MAP, KEY1, Duration.ZERO).isPresent());
+            lockProvider.lock(LOCK_MAP, KEY1).unlock();
+            acquisitionOrder.add("main");
+
+            waiter.join(3000);
+            assertEquals(Arrays.asList("waiter", "main"), acquisitionOrder);
+            assertEquals(0, lockProvider.size());
+        });
+    }
+
+    @Test
+    @DisplayName("Adaptive lock should not starve a waiting thread while other threads keep barging in")
+    void adaptiveLock_shouldNotStarveWaitingThread() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider(
+                LockFairness.adaptive(Duration.ofMillis(5)));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            final AtomicBoolean running = new AtomicBoolean(true);
+            final Thread[] bargers = new Thread[4];
+            for (int i = 0; i < bargers.length; i++) {
+                bargers[i] = new Thread(() -> {
+                    while (running.get()) {
+                        lockProvider.executeInLock(LOCK_MAP, KEY1, () -> { });
+                    }
+                });
+                bargers[i].start();
+            }
+            sleepUninterruptibly(50, TimeUnit.MILLISECONDS);
+
+            final Optional<Locked> locked = lockProvider.tryLock(LOCK_MAP, KEY1, Duration.ofSeconds(5));
+            assertTrue(locked.isPresent());
+            locked.get().unlock();
+
+            running.set(false);
+            for (Thread barger : bargers) {
+                barger.join();
+            }
+            assertEquals(0, lockProvider.size());
+        });
+    }
+
+    @Test
+    @DisplayName("Adaptive lock should keep a starving thread's place in the queue while another thread keeps barging in")
+    void adaptiveLock_shouldKeepStarvingThreadsPlaceInQueue() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider(
+                LockFairness.adaptive(Duration.ofMillis(400)));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            final List<String> acquisitionOrder = new CopyOnWriteArrayList<>();
+            final AtomicBoolean running = new AtomicBoolean(true);
+            final Locked mainHold = lockProvider.lock(LOCK_MAP, KEY1);
+            final Thread barger = new Thread(() -> {
+                while (running.get()) {
+                    lockProvider.lock(LOCK_MAP, KEY1).unlock();
+                }
+            });
+            barger.start();
+            final Thread waiter = startWaiter(lockProvider, acquisitionOrder);
+            while (waiter.getState() == Thread.State.NEW || waiter.getState() == Thread.State.RUNNABLE) {
+                sleepUninterruptibly(1, TimeUnit.MILLISECONDS);
+            }
+            // The second thread arrives within the waiter's starvation threshold, and the lock is released
+            // after the threshold, so a waiter leaving the queue when starving would come after it
+            sleepUninterruptibly(200, TimeUnit.MILLISECONDS);
+            final Thread second = new Thread(() -> {
+                lockProvider.lock(LOCK_MAP, KEY1).unlock();
+                acquisitionOrder.add("second");
+            });
+            second.start();
+            sleepUninterruptibly(300, TimeUnit.MILLISECONDS);
+
+            mainHold.unlock();
+            waiter.join();
+            second.join();
+            running.set(false);
+            barger.join();
+            assertEquals(Arrays.asList("waiter", "second"), acquisitionOrder);
+            assertEquals(0, lockProvider.size());
+        });
+    }
+
+    private static Thread startWaiter(LocalReentrantLockProvider lockProvider, List<String> acquisitionOrder) {
+        final Thread waiter = new Thread(() -> {
+            final Locked locked = lockProvider.lock(LOCK_MAP, KEY1);
+            acquisitionOrder.add("waiter");
+            sleepUninterruptibly(100, TimeUnit.MILLISECONDS);
+            locked.unlock();
+        });
+        waiter.start();
+        return waiter;
+    }
+
+    @Test
+    @DisplayName("lockAll should not deadlock when callers lock overlapping keys in opposite orders")
+    void lockAll_shouldNotDeadlockWithOppositeKeyOrders() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider();
+        final int iterations = 10_000;
+        final int[] counter = new int[1];
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            final Thread forward = new Thread(() -> {
+                for (int i = 0; i < iterations; i++) {
+                    lockProvider.executeInLock(LOCK_MAP, Arrays.asList(KEY1, KEY2), () -> {
+                        counter[0]++;
+                    });
+                }
+            });
+            final Thread backward = new Thread(() -> {
+                for (int i = 0; i < iterations; i++) {
+                    lockProvider.executeInLock(LOCK_MAP, Arrays.asList(KEY2, KEY1), () -> {
+                        counter[0]++;
+                    });
+                }
+            });
+            forward.start();
+            backward.start();
+            forward.join();
+            backward.join();
+        });
+
+        assertEquals(2 * iterations, counter[0]);
+        assertEquals(0, lockProvider.size());
+    }
+
+    @Test
+    @DisplayName("lockAll should hold every key until unlocked")
+    void lockAll_shouldHoldEveryKeyUntilUnlocked() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider();
+
+        final Locked locked = lockProvider.lockAll(LOCK_MAP, Arrays.asList(KEY2, KEY1, KEY2));
+        assertEquals(2, lockProvider.size());
+        assertFalse(CompletableFuture.supplyAsync(() -> lockProvider.tryLock(LOCK_MAP, KEY1)).join().isPresent());
+        assertFalse(CompletableFuture.supplyAsync(() -> lockProvider.tryLock(LOCK_MAP, KEY2)).join().isPresent());
+
+        locked.unlock();
+        assertEquals(0, lockProvider.size());
+    }
+
+    @Test
+    @DisplayName("executeInLock with keys should return the supplier result and release every key")
+    void executeInLockWithKeys_shouldReturnResultAndRelease() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider();
+
+        final Integer returnValue = lockProvider.executeInLock(LOCK_MAP, Arrays.asList(KEY1, KEY2), () -> {
+            assertEquals(2, lockProvider.size());
+            return 7;
+        });
+
+        assertEquals(Integer.valueOf(7), returnValue);
+        assertEquals(0, lockProvider.size());
+    }
+
+    @Test
+    @DisplayName("lockAll should reject empty keys and null keys")
+    void lockAll_shouldRejectEmptyAndNullKeys() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider();
+
+        assertThrows(IllegalArgumentException.class, () -> lockProvider.lockAll(LOCK_MAP, Collections.emptyList()));
+        assertThrows(NullPointerException.class, () -> lockProvider.lockAll(LOCK_MAP, Arrays.asList(KEY1, null)));
+        assertEquals(0, lockProvider.size());
+    }
+
+    @Test
+    @DisplayName("readLock should be shared by readers and exclude writers")
+    void readLock_shouldBeSharedByReadersAndExcludeWriters() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            final Locked readLocked = lockProvider.readLock(LOCK_MAP, KEY1);
+            assertEquals(1, lockProvider.size());
+
+            CompletableFuture.runAsync(() -> lockProvider.readLock(LOCK_MAP, KEY1).unlock()).join();
+
+            final AtomicBoolean written = new AtomicBoolean();
+            final Thread writer = new Thread(() -> lockProvider.executeInWriteLock(LOCK_MAP, KEY1, () -> written.set(true)));
+            writer.start();
+            sleepUninterruptibly(100, TimeUnit.MILLISECONDS);
+            assertFalse(written.get());
+
+            readLocked.unlock();
+            writer.join();
+            assertTrue(written.get());
+            assertEquals(0, lockProvider.size());
+        });
+    }
+
+    @Test
+    @DisplayName("Read/write locks should be separate from the exclusive lock of the same key")
+    void readWriteLock_shouldBeSeparateFromExclusiveLock() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider();
+
+        final Locked locked = lockProvider.lock(LOCK_MAP, KEY1);
+        final Integer returnValue = CompletableFuture.supplyAsync(() -> lockProvider.executeInWriteLock(LOCK_MAP, KEY1, () -> 3)).join();
+        locked.unlock();
+
+        assertEquals(Integer.valueOf(3), returnValue);
+        assertEquals(0, lockProvider.size());
+    }
+
+    @Test
+    @DisplayName("Unlocking a read lock from a thread not holding it should fail and keep the lock")
+    void readUnlock_shouldFailFromOtherThread() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider();
+
+        final Locked readLocked = lockProvider.readLock(LOCK_MAP, KEY1);
+        final CompletableFuture<Void> otherThreadUnlock = CompletableFuture.runAsync(readLocked::unlock);
+
+        final Throwable failure = assertThrows(Throwable.class, otherThreadUnlock::join);
+        assertTrue(failure.getCause() instanceof IllegalMonitorStateException);
+        assertEquals(1, lockProvider.size());
+        readLocked.unlock();
+        assertEquals(0, lockProvider.size());
+    }
+
+    @Test
+    @DisplayName("Permits should let at most max permits be held at once and be released by count")
+    void permits_shouldBeBoundedAndReleasedByCount() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider();
+
+        final Permits permits = lockProvider.acquirePermits(LOCK_MAP, KEY1, 3, 3);
+        assertEquals(3, permits.held());
+        assertFalse(CompletableFuture.supplyAsync(() -> lockProvider.tryAcquirePermits(LOCK_MAP, KEY1, 3, 1, Duration.ofMillis(50))).join().isPresent());
+
+        permits.release(2);
+        assertEquals(1, permits.held());
+        final Permits otherPermits = CompletableFuture.supplyAsync(() -> lockProvider.tryAcquirePermits(LOCK_MAP, KEY1, 3, 2, Duration.ofMillis(50))).join().get();
+        assertThrows(IllegalArgumentException.class, () -> permits.release(2));
+
+        permits.unlock();
+        otherPermits.unlock();
+        assertThrows(IllegalStateException.class, permits::unlock);
+        assertEquals(0, lockProvider.size());
+    }
+
+    @Test
+    @DisplayName("executeWithPermit should cap the number of concurrent executions")
+    void executeWithPermit_shouldCapConcurrency() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider();
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            final List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final Thread thread = new Thread(() -> {
+                    for (int i = 0; i < 20; i++) {
+                        lockProvider.executeWithPermit(LOCK_MAP, KEY1, 2, () -> {
+                            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                            sleepUninterruptibly(1, TimeUnit.MILLISECONDS);
+                            running.decrementAndGet();
+                        });
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        });
+
+        assertEquals(2, maxRunning.get());
+        assertEquals(0, lockProvider.size());
+    }
+
+    @Test
+    @DisplayName("Permits should reject invalid counts and a max permits differing from the one in use")
+    void permits_shouldRejectInvalidCounts() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider();
+
+        assertThrows(IllegalArgumentException.class, () -> lockProvider.acquirePermits(LOCK_MAP, KEY1, 2, 3));
+        assertThrows(IllegalArgumentException.class, () -> lockProvider.acquirePermits(LOCK_MAP, KEY1, 2, 0));
+        assertThrows(IllegalArgumentException.class, () -> lockProvider.acquirePermits(LOCK_MAP, KEY1, 0, 1));
+
+        final Permits permits = lockProvider.acquirePermits(LOCK_MAP, KEY1, 2, 1);
+        assertThrows(IllegalArgumentException.class, () -> lockProvider.acquirePermits(LOCK_MAP, KEY1, 5, 1));
+        permits.unlock();
+        assertEquals(0, lockProvider.size());
+    }
+
+    @Test
+    @DisplayName("A lock with a lease should be released once the lease elapses and refuse a later unlock")
+    void lockWithLease_shouldBeReleasedWhenLeaseElapses() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            final Locked leased = lockProvider.lock(LOCK_MAP, KEY1, Duration.ofMillis(100));
+            assertEquals(1, lockProvider.size());
+            assertFalse(CompletableFuture.supplyAsync(() -> lockProvider.tryLock(LOCK_MAP, KEY1)).join().isPresent());
+
+            CompletableFuture.runAsync(() -> lockProvider.tryLock(LOCK_MAP, KEY1, Duration.ofSeconds(10)).get().unlock()).join();
+            assertThrows(IllegalMonitorStateException.class, leased::unlock);
+            // the timer releases its reference to the lock right after the waiter was woken
+            while (lockProvider.size() != 0) {
+                Thread.yield();
+            }
+        });
+    }
+
+    @Test
+    @DisplayName("A lock with a lease unlocked in time should not release a later holder when the lease elapses")
+    void lockWithLease_unlockedInTime_shouldNotReleaseLaterHolder() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider();
+
+        final Locked leased = lockProvider.tryLock(LOCK_MAP, KEY1, Duration.ofSeconds(1), Duration.ofMillis(50)).get();
+        leased.unlock();
+        final Locked later = lockProvider.lock(LOCK_MAP, KEY1);
+
+        sleepUninterruptibly(200, TimeUnit.MILLISECONDS);
+        assertFalse(CompletableFuture.supplyAsync(() -> lockProvider.tryLock(LOCK_MAP, KEY1)).join().isPresent());
+        later.unlock();
+        assertThrows(IllegalMonitorStateException.class, leased::unlock);
+        assertEquals(0, lockProvider.size());
+    }
+
+    @Test
+    @DisplayName("A lock with a lease should be held by its handle, not reentrant and unlockable from any thread")
+    void lockWithLease_shouldBeHeldByHandle() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider();
+
+        final Locked locked = lockProvider.lock(LOCK_MAP, KEY1);
+        assertThrows(IllegalMonitorStateException.class, () -> lockProvider.lock(LOCK_MAP, KEY1, Duration.ofSeconds(10)));
+        assertThrows(IllegalMonitorStateException.class,
+                () -> lockProvider.tryLock(LOCK_MAP, KEY1, Duration.ZERO, Duration.ofSeconds(10)));
+        locked.unlock();
+        assertEquals(0, lockProvider.size());
+
+        final Locked leased = lockProvider.lock(LOCK_MAP, KEY1, Duration.ofSeconds(10));
+        assertFalse(lockProvider.tryLock(LOCK_MAP, KEY1).isPresent());
+        assertFalse(lockProvider.tryLock(LOCK_MAP, KEY1, Duration.ofMillis(20), Duration.ofSeconds(10)).isPresent());
+        CompletableFuture.runAsync(leased::unlock).join();
+        assertEquals(0, lockProvider.size());
+    }
+
+    @Test
+    @DisplayName("A lock with a lease should reject a non-positive lease")
+    void lockWithLease_shouldRejectNonPositiveLease() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider();
+
+        assertThrows(IllegalArgumentException.class, () -> lockProvider.lock(LOCK_MAP, KEY1, Duration.ZERO));
+        assertThrows(NullPointerException.class, () -> lockProvider.tryLock(LOCK_MAP, KEY1, Duration.ZERO, null));
+        assertEquals(0, lockProvider.size());
+    }
+
+    @Test
+    @DisplayName("Combining executeInLock should run the suppliers waiting for a held lock in a single acquisition")
+    void combiningExecuteInLock_shouldRunWaitingSuppliersInOneAcquisition() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider(LocalExecutionMode.COMBINING);
+        final Set<Thread> runningThreads = ConcurrentHashMap.newKeySet();
+        final AtomicInteger counter = new AtomicInteger();
+        final int[] results = new int[8];
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            final Locked locked = lockProvider.lock(LOCK_MAP, KEY1);
+            final List<Thread> callers = new ArrayList<>();
+            for (int i = 0; i < results.length; i++) {
+                final int index = i;
+                final Thread caller = new Thread(() -> results[index] = lockProvider.executeInLock(LOCK_MAP, KEY1, () -> {
+                    runningThreads.add(Thread.currentThread());
+                    return counter.incrementAndGet() * 10 + index;
+                }));
+                caller.start();
+                callers.add(caller);
+            }
+            for (Thread caller : callers) {
+                while (caller.getState() != Thread.State.WAITING) {
+                    sleepUninterruptibly(1, TimeUnit.MILLISECONDS);
+                }
+            }
+            assertEquals(0, counter.get());
+            locked.unlock();
+
+            for (Thread caller : callers) {
+                caller.join();
+            }
+        });
+        assertEquals(8, counter.get());
+        assertEquals(1, runningThreads.size());
+        for (int i = 0; i < results.length; i++) {
+            assertEquals(i, results[i] % 10);
+        }
+        assertEquals(0, lockProvider.size());
+    }
+
+    @Test
+    @DisplayName("Combining executeInLock should keep suppliers of many threads mutually exclusive")
+    void combiningExecuteInLock_shouldBeMutuallyExclusive() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider(LocalExecutionMode.COMBINING);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final int[] counter = new int[1];
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            final List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                final boolean asRunnable = i % 2 == 0;
+                futures.add(CompletableFuture.runAsync(() -> {
+                    for (int j = 0; j < 2000; j++) {
+                        final Runnable increment = () -> {
+                            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                            counter[0]++;
+                            running.decrementAndGet();
+                        };
+                        if (j % 100 == 0) {
+                            final Locked locked = lockProvider.lock(LOCK_MAP, KEY1);
+                            increment.run();
+                            locked.unlock();
+                        } else if (asRunnable) {
+                            lockProvider.executeInLock(LOCK_MAP, KEY1, increment);
+                        } else {
+                            lockProvider.executeInLock(LOCK_MAP, KEY1, () -> {
+                                increment.run();
+                                return null;
+                            });
+                        }
+                    }
+                }, runnable -> new Thread(runnable).start()));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        });
+        assertEquals(16000, counter[0]);
+        assertEquals(1, maxRunning.get());
+        assertEquals(0, lockProvider.size());
+    }
+
+    @Test
+    @DisplayName("Combining executeInLock should throw a supplier's exception to its own caller only")
+    void combiningExecuteInLock_shouldThrowExceptionToItsCaller() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider(LocalExecutionMode.COMBINING);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            final Locked locked = lockProvider.lock(KEY1);
+            final CompletableFuture<String> failing = CompletableFuture.supplyAsync(() -> lockProvider.executeInLock(KEY1,
+                    () -> {
+                        throw new IllegalStateException("failed");
+                    }), runnable -> new Thread(runnable).start());
+            final CompletableFuture<String> succeeding = CompletableFuture.supplyAsync(
+                    () -> lockProvider.executeInLock(KEY1, () -> "value"), runnable -> new Thread(runnable).start());
+            sleepUninterruptibly(50, TimeUnit.MILLISECONDS);
+            locked.unlock();
+
+            assertEquals("value", succeeding.join());
+            final CompletionException failure = assertThrows(CompletionException.class, failing::join);
+            assertTrue(failure.getCause() instanceof IllegalStateException);
+        });
+        assertEquals(0, lockProvider.size());
+    }
+
+    @Test
+    @DisplayName("Combining executeInLock should run a nested executeInLock of the same key within the outer hold")
+    void combiningExecuteInLock_shouldRunNestedCallWithinHold() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider(LocalExecutionMode.COMBINING);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            final Integer returnValue = lockProvider.executeInLock(LOCK_MAP, KEY1,
+                    () -> lockProvider.executeInLock(LOCK_MAP, KEY1, () -> {
+                        final Locked locked = lockProvider.lock(LOCK_MAP, KEY1);
+                        locked.unlock();
+                        return 7;
+                    }));
+            assertEquals(Integer.valueOf(7), returnValue);
+
+            final Locked locked = lockProvider.lock(LOCK_MAP, KEY1);
+            assertEquals("nested", lockProvider.executeInLock(LOCK_MAP, KEY1, () -> "nested"));
+            locked.unlock();
+        });
+        assertEquals(0, lockProvider.size());
+    }
+
+    @Test
+    @DisplayName("Combining executeInLock should run the supplier of a caller holding another lock on the caller's thread")
+    void combiningExecuteInLock_shouldRunSupplierOfCallerHoldingAnotherLockOnItsThread() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider(LocalExecutionMode.COMBINING);
+        final AtomicReference<Thread> supplierThread = new AtomicReference<>();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            final Locked locked = lockProvider.lock(LOCK_MAP, KEY1);
+            final Thread combiner = new Thread(() -> lockProvider.executeInLock(LOCK_MAP, KEY1, () -> "combiner"));
+            combiner.start();
+            while (combiner.getState() != Thread.State.WAITING) {
+                sleepUninterruptibly(1, TimeUnit.MILLISECONDS);
+            }
+            final Thread holder = new Thread(() -> {
+                final Locked otherLocked = lockProvider.lock(LOCK_MAP, KEY2);
+                lockProvider.executeInLock(LOCK_MAP, KEY1, () -> {
+                    lockProvider.lock(LOCK_MAP, KEY2).unlock();
+                    supplierThread.set(Thread.currentThread());
+                });
+                otherLocked.unlock();
+            });
+            holder.start();
+            while (holder.getState() != Thread.State.WAITING) {
+                sleepUninterruptibly(1, TimeUnit.MILLISECONDS);
+            }
+            locked.unlock();
+
+            combiner.join();
+            holder.join();
+            assertSame(holder, supplierThread.get());
+        });
+        assertEquals(0, lockProvider.size());
+    }
 }
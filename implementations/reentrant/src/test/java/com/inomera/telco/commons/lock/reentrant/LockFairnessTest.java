@@ -0,0 +1,37 @@
+package com.inomera.telco.commons.lock.reentrant;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LockFairnessTest {
+    @Test
+    @DisplayName("Adaptive fairness should keep the starvation threshold")
+    void adaptive_shouldKeepStarvationThreshold() {
+        final LockFairness fairness = LockFairness.adaptive(Duration.ofMillis(5));
+        assertTrue(fairness.isAdaptive());
+        assertFalse(fairness.isFair());
+        assertEquals(Duration.ofMillis(5).toNanos(), fairness.getStarvationThresholdNanos());
+        assertEquals(Duration.ofMillis(1).toNanos(), LockFairness.adaptive().getStarvationThresholdNanos());
+    }
+
+    @Test
+    @DisplayName("Fair and non-fair should not be adaptive")
+    void fairAndNonFair_shouldNotBeAdaptive() {
+        assertTrue(LockFairness.fair().isFair());
+        assertFalse(LockFairness.fair().isAdaptive());
+        assertFalse(LockFairness.nonFair().isFair());
+        assertFalse(LockFairness.nonFair().isAdaptive());
+    }
+
+    @Test
+    @DisplayName("Adaptive fairness should reject non-positive thresholds")
+    void adaptive_shouldRejectNonPositiveThreshold() {
+        assertThrows(IllegalArgumentException.class, () -> LockFairness.adaptive(Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> LockFairness.adaptive(Duration.ofMillis(-1)));
+        assertThrows(NullPointerException.class, () -> LockFairness.adaptive(null));
+    }
+}
@@ -0,0 +1,46 @@
+package com.inomera.telco.commons.lock.reentrant;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LockTableTest {
+
+    @Test
+    @DisplayName("A released lock should stay in the table and be reused for the same key")
+    void retain_shouldReuseIdleLock() {
+        final LockTable table = new LockTable("lockMap", LockFairness.fair(), Runnable::run);
+
+        final CountingReentrantLock lock = table.retain("key");
+        table.release(lock);
+        assertEquals(0, table.size());
+        assertEquals(1, table.capacity());
+
+        final CountingReentrantLock reused = table.retain("key");
+        assertSame(lock, reused);
+        assertEquals(1, table.size());
+        table.release(reused);
+    }
+
+    @Test
+    @DisplayName("Sweeps should bound the idle locks of keys used once and keep recently used and held locks")
+    void retain_shouldSweepUnusedIdleLocks() {
+        final LockTable table = new LockTable("lockMap", LockFairness.fair(), Runnable::run);
+        final CountingReentrantLock held = table.retain("held");
+        final CountingReentrantLock hot = table.retain("hot");
+        table.release(hot);
+
+        for (int i = 0; i < 100_000; i++) {
+            table.release(table.retain("key" + i));
+            if (i % 100 == 0) {
+                table.release(table.retain("hot"));
+            }
+        }
+
+        assertTrue(table.capacity() <= LockTable.MIN_SWEEP_THRESHOLD + 1, "Capacity " + table.capacity());
+        assertSame(held, table.retain("held"));
+        assertSame(hot, table.retain("hot"));
+        assertEquals(2, table.size());
+    }
+}
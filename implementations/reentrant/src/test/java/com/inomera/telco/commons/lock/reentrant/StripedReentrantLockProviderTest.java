@@ -0,0 +1,196 @@
+package com.inomera.telco.commons.lock.reentrant;
+
+import com.inomera.telco.commons.lock.Locked;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.google.common.util.concurrent.Uninterruptibles.awaitUninterruptibly;
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedReentrantLockProviderTest {
+    private static final String KEY1 = "key1";
+    private static final String LOCK_MAP = "lockMap";
+
+    @Test
+    @DisplayName("Stripe count should be rounded up to the next power of two")
+    void stripeCount_shouldBeRoundedUpToPowerOfTwo() {
+        assertEquals(1, new StripedReentrantLockProvider(1).stripeCount());
+        assertEquals(8, new StripedReentrantLockProvider(5).stripeCount());
+        assertEquals(64, new StripedReentrantLockProvider(64).stripeCount());
+        assertEquals(1024, new StripedReentrantLockProvider().stripeCount());
+    }
+
+    @Test
+    @DisplayName("Constructor should reject non-positive stripe count")
+    void constructor_shouldRejectNonPositiveStripeCount() {
+        assertThrows(IllegalArgumentException.class, () -> new StripedReentrantLockProvider(0));
+        assertThrows(IllegalArgumentException.class, () -> new StripedReentrantLockProvider(-1));
+    }
+
+    @Test
+    @DisplayName("Same key should return the same preallocated handle")
+    void lock_shouldReturnSameHandleForSameKey() {
+        final StripedReentrantLockProvider lockProvider = new StripedReentrantLockProvider(16);
+
+        final Locked first = lockProvider.lock(LOCK_MAP, KEY1);
+        first.unlock();
+        final Locked second = lockProvider.lock(LOCK_MAP, KEY1);
+        second.unlock();
+
+        assertSame(first, second);
+    }
+
+    @Test
+    @DisplayName("Lock should be reentrant for the owning thread")
+    void lock_shouldBeReentrant() {
+        final StripedReentrantLockProvider lockProvider = new StripedReentrantLockProvider(16);
+
+        final Locked outer = lockProvider.lock(LOCK_MAP, KEY1);
+        final Optional<Locked> inner = lockProvider.tryLock(LOCK_MAP, KEY1);
+        assertTrue(inner.isPresent());
+
+        inner.get().unlock();
+        outer.unlock();
+
+        assertThrows(IllegalMonitorStateException.class, outer::unlock);
+    }
+
+    @Test
+    @DisplayName("tryLock should fail while another thread holds the stripe")
+    void tryLock_shouldFailWhileAnotherThreadHoldsTheStripe() throws InterruptedException {
+        final StripedReentrantLockProvider lockProvider = new StripedReentrantLockProvider(1);
+        final Locked locked = lockProvider.lock(KEY1);
+
+        final AtomicReference<Optional<Locked>> otherThreadResult = new AtomicReference<>();
+        final Thread thread = new Thread(() -> otherThreadResult.set(lockProvider.tryLock(LOCK_MAP, "anotherKey")));
+        thread.start();
+        thread.join(3000);
+
+        assertNotNull(otherThreadResult.get());
+        assertFalse(otherThreadResult.get().isPresent());
+        locked.unlock();
+    }
+
+    @Test
+    @DisplayName("Concurrent lock and unlock on shared keys should be mutually exclusive")
+    void concurrentLockAndUnlock_shouldBeMutuallyExclusive() {
+        final StripedReentrantLockProvider lockProvider = new StripedReentrantLockProvider(4);
+        final int threadCount = 8;
+        final int iterations = 10_000;
+        final int[] counters = new int[16];
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            final AtomicReference<Throwable> uncaughtException = new AtomicReference<>();
+            final CountDownLatch start = new CountDownLatch(1);
+            final Thread[] threads = new Thread[threadCount];
+            for (int i = 0; i < threadCount; i++) {
+                threads[i] = new Thread(() -> {
+                    awaitUninterruptibly(start);
+                    for (int j = 0; j < iterations; j++) {
+                        final int slot = j % counters.length;
+                        lockProvider.executeInLock(LOCK_MAP, "key" + slot, () -> counters[slot]++);
+                    }
+                });
+                threads[i].setUncaughtExceptionHandler((th, ex) -> uncaughtException.set(ex));
+                threads[i].start();
+            }
+
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            if (uncaughtException.get() != null) {
+                throw new AssertionError("Thread threw exception", uncaughtException.get());
+            }
+
+            int total = 0;
+            for (int counter : counters) {
+                total += counter;
+            }
+            assertEquals(threadCount * iterations, total);
+        });
+    }
+
+    @Test
+    @DisplayName("tryLock with wait time should return empty Optional when another thread holds the stripe")
+    void tryLockWithWaitTime_shouldReturnEmptyOptionalWhenWaitTimeElapses() throws InterruptedException {
+        final StripedReentrantLockProvider lockProvider = new StripedReentrantLockProvider(1);
+        final Locked locked = lockProvider.lock(KEY1);
+
+        final AtomicReference<Optional<Locked>> otherThreadResult = new AtomicReference<>();
+        final Thread thread = new Thread(() -> otherThreadResult.set(lockProvider.tryLock(KEY1, Duration.ofMillis(100))));
+        thread.start();
+        thread.join(3000);
+
+        assertNotNull(otherThreadResult.get());
+        assertFalse(otherThreadResult.get().isPresent());
+        locked.unlock();
+
+        final Optional<Locked> afterRelease = lockProvider.tryLock(LOCK_MAP, KEY1, Duration.ofMillis(100));
+        assertTrue(afterRelease.isPresent());
+        afterRelease.get().unlock();
+    }
+
+    @Test
+    @DisplayName("lockAll should not deadlock when keys of different callers collide on stripes in opposite orders")
+    void lockAll_shouldNotDeadlockOnCollidingStripes() {
+        final StripedReentrantLockProvider lockProvider = new StripedReentrantLockProvider(4);
+        final int threadCount = 4;
+        final int iterations = 5_000;
+        final int[] counter = new int[1];
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            final Thread[] threads = new Thread[threadCount];
+            for (int t = 0; t < threadCount; t++) {
+                threads[t] = new Thread(() -> {
+                    final ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < iterations; i++) {
+                        final List<String> keys = List.of("key" + random.nextInt(16), "key" + random.nextInt(16),
+                                "key" + random.nextInt(16));
+                        lockProvider.executeInLock(LOCK_MAP, keys, () -> {
+                            counter[0]++;
+                        });
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        });
+
+        assertEquals(threadCount * iterations, counter[0]);
+    }
+
+    @Test
+    @DisplayName("lockAll should take a stripe shared by several keys once")
+    void lockAll_shouldTakeSharedStripeOnce() throws InterruptedException {
+        final StripedReentrantLockProvider lockProvider = new StripedReentrantLockProvider(1);
+
+        final Locked locked = lockProvider.lockAll(LOCK_MAP, List.of("a", "b", "c"));
+        locked.unlock();
+
+        final AtomicReference<Optional<Locked>> otherThreadResult = new AtomicReference<>();
+        final Thread thread = new Thread(() -> otherThreadResult.set(lockProvider.tryLock(LOCK_MAP, "a")));
+        thread.start();
+        thread.join(3000);
+
+        assertTrue(otherThreadResult.get().isPresent());
+    }
+
+    @Test
+    @DisplayName("Permits should not be supported")
+    void acquirePermits_shouldNotBeSupported() {
+        final StripedReentrantLockProvider lockProvider = new StripedReentrantLockProvider(16);
+
+        assertThrows(UnsupportedOperationException.class, () -> lockProvider.acquirePermits(LOCK_MAP, KEY1, 2, 1));
+    }
+}
@@ -0,0 +1,130 @@
+package com.inomera.telco.commons.lock.reentrant;
+
+import com.inomera.telco.commons.lock.LockProvider;
+import com.inomera.telco.commons.lock.Locked;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs 100k virtual threads contending on a few thousand keys while holding the locks across blocking
+ * work, and records {@code jdk.VirtualThreadPinned} events. A monitor on the acquisition path would pin
+ * the carrier thread whenever a virtual thread parks inside it.
+ */
+class VirtualThreadContentionTest {
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final String LOCK_MAP = "lockMap";
+    private static final int VIRTUAL_THREAD_COUNT = 100_000;
+    private static final int KEY_COUNT = 2_000;
+
+    @Test
+    @DisplayName("LocalReentrantLockProvider should not pin carrier threads under virtual thread contention")
+    void localReentrantLockProvider_shouldNotPinCarrierThreads() {
+        final LocalReentrantLockProvider lockProvider = new LocalReentrantLockProvider();
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+            assertEquals(0, runAndCountPinnedEvents(lockProvider));
+            assertEquals(0, lockProvider.size());
+        });
+    }
+
+    @Test
+    @DisplayName("StripedReentrantLockProvider should not pin carrier threads under virtual thread contention")
+    void stripedReentrantLockProvider_shouldNotPinCarrierThreads() {
+        final StripedReentrantLockProvider lockProvider = new StripedReentrantLockProvider(256);
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> assertEquals(0, runAndCountPinnedEvents(lockProvider)));
+    }
+
+    private static long runAndCountPinnedEvents(LockProvider lockProvider) throws Exception {
+        final Path recordingFile = Files.createTempFile("virtual-thread-contention", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(PINNED_EVENT).withThreshold(Duration.ZERO).withStackTrace();
+            recording.start();
+            runContention(lockProvider);
+            recording.stop();
+            recording.dump(recordingFile);
+
+            final List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+            return events.stream().filter(event -> PINNED_EVENT.equals(event.getEventType().getName())).count();
+        } finally {
+            Files.deleteIfExists(recordingFile);
+        }
+    }
+
+    private static void runContention(LockProvider lockProvider) {
+        final int[] counters = new int[KEY_COUNT];
+        final AtomicInteger acquisitions = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < VIRTUAL_THREAD_COUNT; i++) {
+                final int task = i;
+                executor.execute(() -> {
+                    try {
+                        final int slot = task % KEY_COUNT;
+                        final String lockKey = "key" + slot;
+                        switch (task % 3) {
+                            case 0:
+                                lockProvider.executeInLock(LOCK_MAP, lockKey, () -> increment(counters, slot, acquisitions));
+                                break;
+                            case 1:
+                                final Locked locked = lockProvider.lock(LOCK_MAP, lockKey);
+                                try {
+                                    increment(counters, slot, acquisitions);
+                                } finally {
+                                    locked.unlock();
+                                }
+                                break;
+                            default:
+                                final Optional<Locked> tryLocked = lockProvider.tryLock(LOCK_MAP, lockKey, Duration.ofSeconds(30));
+                                assertTrue(tryLocked.isPresent());
+                                try {
+                                    increment(counters, slot, acquisitions);
+                                } finally {
+                                    tryLocked.get().unlock();
+                                }
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                });
+            }
+        }
+
+        if (failure.get() != null) {
+            throw new AssertionError("Virtual thread failed", failure.get());
+        }
+        int total = 0;
+        for (int counter : counters) {
+            total += counter;
+        }
+        assertEquals(VIRTUAL_THREAD_COUNT, acquisitions.get());
+        assertEquals(VIRTUAL_THREAD_COUNT, total);
+    }
+
+    /**
+     * Increments the counter of a key non-atomically and parks in between, which both exposes missing
+     * mutual exclusion and makes the virtual thread unmount while holding the lock.
+     */
+    private static void increment(int[] counters, int slot, AtomicInteger acquisitions) {
+        final int value = counters[slot];
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+        counters[slot] = value + 1;
+        acquisitions.incrementAndGet();
+    }
+}
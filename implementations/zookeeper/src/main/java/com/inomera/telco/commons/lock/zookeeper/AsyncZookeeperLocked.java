@@ -0,0 +1,194 @@
+package com.inomera.telco.commons.lock.zookeeper;
+
+import com.inomera.telco.commons.lock.Locked;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.CuratorEvent;
+import org.apache.curator.framework.api.CuratorWatcher;
+import org.apache.curator.framework.recipes.locks.InterProcessMutex;
+import org.apache.curator.framework.recipes.locks.LockInternals;
+import org.apache.curator.framework.recipes.locks.StandardLockInternalsDriver;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Lock acquired through Curator's background API, waiting in the same queue as {@link InterProcessMutex} locks
+ * on the lock path.
+ * <p>
+ * Every step is a background request whose callback sends the next one: a protected sequential lock node is
+ * created, the children of the lock path are read, and while the lock node is not the first, the node before it
+ * is watched and the children read again once it changes. No thread waits for the lock, so any number of
+ * acquisitions can be outstanding. The lock is not bound to a thread and is not reentrant.
+ * <p>
+ * Release deletes the lock node in the background, retried by Curator until it succeeds, and the returned stage
+ * fails if the delete does.
+ */
+final class AsyncZookeeperLocked implements Locked {
+    private static final String LOCK_NAME = "lock-";
+    private static final StandardLockInternalsDriver SORTER = new StandardLockInternalsDriver();
+
+    private final CuratorFramework client;
+    private final String lockPath;
+    private final boolean waiting;
+    private final CompletableFuture<Boolean> acquired = new CompletableFuture<>();
+    private final AtomicBoolean held = new AtomicBoolean();
+    private final Runnable onReleased;
+    private volatile String lockNode;
+
+    private AsyncZookeeperLocked(CuratorFramework client, String lockPath, boolean waiting, Runnable onReleased) {
+        this.client = client;
+        this.lockPath = lockPath;
+        this.waiting = waiting;
+        this.onReleased = onReleased;
+    }
+
+    static CompletionStage<Locked> lock(CuratorFramework client, String lockPath, Runnable onReleased) {
+        final AsyncZookeeperLocked locked = new AsyncZookeeperLocked(client, lockPath, true, onReleased);
+        return locked.acquire().thenApply(ignored -> locked);
+    }
+
+    static CompletionStage<Optional<Locked>> tryLock(CuratorFramework client, String lockPath, Runnable onReleased) {
+        final AsyncZookeeperLocked locked = new AsyncZookeeperLocked(client, lockPath, false, onReleased);
+        return locked.acquire().thenApply(isAcquired -> isAcquired ? Optional.of(locked) : Optional.empty());
+    }
+
+    @Override
+    public void unlock() {
+        try {
+            unlockAsync().toCompletableFuture().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletionStage<Void> unlockAsync() {
+        if (!held.compareAndSet(true, false)) {
+            return CompletableFuture.failedFuture(new IllegalMonitorStateException("Lock " + lockPath + " is not held"));
+        }
+        final CompletableFuture<Void> released = new CompletableFuture<>();
+        try {
+            client.delete().guaranteed().inBackground((curator, event) -> {
+                final int resultCode = event.getResultCode();
+                if (resultCode == KeeperException.Code.OK.intValue() || resultCode == KeeperException.Code.NONODE.intValue()) {
+                    onReleased.run();
+                    released.complete(null);
+                } else {
+                    released.completeExceptionally(failure("Could not release lock", event));
+                }
+            }).forPath(lockNode);
+        } catch (Exception e) {
+            released.completeExceptionally(new IllegalStateException("Could not release lock " + lockPath, e));
+        }
+        return released;
+    }
+
+    private CompletableFuture<Boolean> acquire() {
+        try {
+            client.create()
+                    .creatingParentContainersIfNeeded()
+                    .withProtection()
+                    .withMode(CreateMode.EPHEMERAL_SEQUENTIAL)
+                    .inBackground((curator, event) -> {
+                        if (event.getResultCode() == KeeperException.Code.OK.intValue()) {
+                            lockNode = event.getName();
+                            readChildren();
+                        } else {
+                            acquired.completeExceptionally(failure("Could not create lock node", event));
+                        }
+                    })
+                    .forPath(ZKPaths.makePath(lockPath, LOCK_NAME));
+        } catch (Exception e) {
+            acquired.completeExceptionally(new IllegalStateException("Could not acquire lock " + lockPath, e));
+        }
+        return acquired;
+    }
+
+    /**
+     * Reads the children once the lock node is created and whenever the watched node changes, until acquired.
+     */
+    private void readChildren() {
+        if (acquired.isDone()) {
+            return;
+        }
+        try {
+            client.getChildren().inBackground((curator, event) -> {
+                if (acquired.isDone()) {
+                    return;
+                }
+                if (event.getResultCode() == KeeperException.Code.OK.intValue()) {
+                    takeTurn(event.getChildren());
+                } else {
+                    fail(failure("Could not read lock nodes", event));
+                }
+            }).forPath(lockPath);
+        } catch (Exception e) {
+            fail(new IllegalStateException("Could not acquire lock " + lockPath, e));
+        }
+    }
+
+    /**
+     * Acquires the lock if the lock node is the first, otherwise gives up or watches the node right before it.
+     */
+    private void takeTurn(List<String> children) {
+        final List<String> sortedChildren = LockInternals.getSortedChildren(LOCK_NAME, SORTER, children);
+        final int ourIndex = sortedChildren.indexOf(ZKPaths.getNodeFromPath(lockNode));
+        if (ourIndex < 0) {
+            fail(new IllegalStateException("Lock node " + lockNode + " was deleted, the session may have expired"));
+            return;
+        }
+        if (ourIndex == 0) {
+            held.set(true);
+            if (!acquired.complete(true) && held.compareAndSet(true, false)) {
+                deleteLockNode();
+            }
+            return;
+        }
+        if (!waiting) {
+            deleteLockNode();
+            acquired.complete(false);
+            return;
+        }
+        try {
+            client.checkExists()
+                    .usingWatcher((CuratorWatcher) event -> readChildren())
+                    .inBackground((curator, event) -> {
+                        if (event.getResultCode() == KeeperException.Code.NONODE.intValue()) {
+                            readChildren();
+                        } else if (event.getResultCode() != KeeperException.Code.OK.intValue()) {
+                            fail(failure("Could not watch lock node", event));
+                        }
+                    })
+                    .forPath(ZKPaths.makePath(lockPath, sortedChildren.get(ourIndex - 1)));
+        } catch (Exception e) {
+            fail(new IllegalStateException("Could not acquire lock " + lockPath, e));
+        }
+    }
+
+    private void fail(Throwable failure) {
+        deleteLockNode();
+        acquired.completeExceptionally(failure);
+    }
+
+    private void deleteLockNode() {
+        try {
+            client.delete().guaranteed().inBackground().forPath(lockNode);
+        } catch (Exception ignored) {
+        }
+    }
+
+    private IllegalStateException failure(String message, CuratorEvent event) {
+        final KeeperException.Code code = KeeperException.Code.get(event.getResultCode());
+        return new IllegalStateException(message + " of " + lockPath, KeeperException.create(code, event.getPath()));
+    }
+}
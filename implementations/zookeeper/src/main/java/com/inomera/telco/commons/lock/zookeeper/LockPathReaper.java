@@ -0,0 +1,185 @@
+package com.inomera.telco.commons.lock.zookeeper;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.transaction.CuratorOp;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.OpResult;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes the lock paths released through a provider once they have been idle for a while, in batched multi-op
+ * transactions.
+ * <p>
+ * Curator creates lock paths as container nodes, which the server deletes once they are empty, but only every
+ * {@code znode.container.checkIntervalMs}, a minute by default, and at most {@code znode.container.maxPerMinute}
+ * of them a minute, 10 000 by default. Under a churn of unique keys the empty lock paths pile up faster than that.
+ * The reaper deletes them from the client side instead.
+ * <p>
+ * A path is recorded on every release of a lock on it and deleted once it has not been released again for the idle
+ * time. A path locked again in the meantime is not empty and fails its delete. That only drops it from the batch,
+ * since it is recorded again on its next release. Paths whose delete fails otherwise, e.g. on connection loss, are
+ * recorded again to be retried.
+ */
+final class LockPathReaper implements AutoCloseable {
+    static final int DEFAULT_BATCH_SIZE = 100;
+
+    private final CuratorFramework client;
+    private final long idleNanos;
+    private final int batchSize;
+    private final ConcurrentMap<String, Released> released = new ConcurrentHashMap<>();
+    private ScheduledExecutorService executor;
+
+    LockPathReaper(CuratorFramework client, Duration idleTime, int batchSize) {
+        if (idleTime.isNegative()) {
+            throw new IllegalArgumentException("Idle time cannot be negative: " + idleTime);
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.client = client;
+        this.idleNanos = idleTime.toNanos();
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Reaps the idle paths every idle time on a daemon thread, so a path is deleted within twice the idle time.
+     */
+    synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "zookeeper-lock-path-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final long periodNanos = Math.max(idleNanos, TimeUnit.MILLISECONDS.toNanos(1));
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                reap();
+            } catch (RuntimeException ignored) {
+            }
+        }, periodNanos, periodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * @param lockPath   path released
+     * @param childNames names of the container children of the path, deleted before it
+     */
+    void released(String lockPath, String... childNames) {
+        final List<String> nodes = new ArrayList<>(childNames.length + 1);
+        for (String childName : childNames) {
+            nodes.add(ZKPaths.makePath(lockPath, childName));
+        }
+        nodes.add(lockPath);
+        released.put(lockPath, new Released(System.nanoTime(), nodes));
+    }
+
+    /**
+     * @return the number of paths released and not reaped yet
+     */
+    int size() {
+        return released.size();
+    }
+
+    /**
+     * Deletes the paths idle for the idle time.
+     *
+     * @return the number of paths deleted
+     */
+    int reap() {
+        final long now = System.nanoTime();
+        final List<Released> idle = new ArrayList<>();
+        for (Map.Entry<String, Released> entry : released.entrySet()) {
+            if (now - entry.getValue().releasedAt() >= idleNanos && released.remove(entry.getKey(), entry.getValue())) {
+                idle.add(entry.getValue());
+            }
+        }
+        int deleted = 0;
+        for (int from = 0; from < idle.size(); from += batchSize) {
+            deleted += delete(idle.subList(from, Math.min(idle.size(), from + batchSize)));
+        }
+        return deleted;
+    }
+
+    /**
+     * Deletes the paths in one transaction, dropping the path whose delete failed and retrying the rest until
+     * a transaction succeeds.
+     */
+    private int delete(List<Released> batch) {
+        final List<Released> remaining = new ArrayList<>(batch);
+        while (!remaining.isEmpty()) {
+            final List<CuratorOp> deletes = new ArrayList<>();
+            final List<Released> deleted = new ArrayList<>();
+            try {
+                for (Released path : remaining) {
+                    for (String node : path.nodes()) {
+                        deletes.add(client.transactionOp().delete().forPath(node));
+                        deleted.add(path);
+                    }
+                }
+                client.transaction().forOperations(deletes);
+                return remaining.size();
+            } catch (KeeperException e) {
+                final int failed = failedOperation(e);
+                if (failed < 0) {
+                    remaining.forEach(this::retry);
+                    return 0;
+                }
+                final Released path = deleted.get(failed);
+                remaining.remove(path);
+                final KeeperException.Code code = KeeperException.Code.get(((OpResult.ErrorResult) e.getResults().get(failed)).getErr());
+                if (code != KeeperException.Code.NOTEMPTY && code != KeeperException.Code.NONODE) {
+                    retry(path);
+                }
+            } catch (Exception e) {
+                remaining.forEach(this::retry);
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    private void retry(Released path) {
+        released.putIfAbsent(path.nodes().get(path.nodes().size() - 1), new Released(System.nanoTime(), path.nodes()));
+    }
+
+    /**
+     * @return the index of the operation that failed the transaction, or -1 if it failed as a whole
+     */
+    private static int failedOperation(KeeperException e) {
+        final List<OpResult> results = e.getResults();
+        if (results == null) {
+            return -1;
+        }
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i) instanceof OpResult.ErrorResult error
+                    && error.getErr() != KeeperException.Code.OK.intValue()
+                    && error.getErr() != KeeperException.Code.RUNTIMEINCONSISTENCY.intValue()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private record Released(long releasedAt, List<String> nodes) {
+    }
+}
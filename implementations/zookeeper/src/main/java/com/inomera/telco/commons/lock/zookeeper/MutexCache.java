@@ -0,0 +1,125 @@
+package com.inomera.telco.commons.lock.zookeeper;
+
+import org.apache.curator.framework.recipes.locks.InterProcessMutex;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of the {@link InterProcessMutex}es of lock paths.
+ * <p>
+ * An {@code InterProcessMutex} keeps the lock node and reentrancy count of every thread holding it, so one instance per
+ * path is shared by all threads: a thread locking a path it holds only counts up, and its unlocks count down until
+ * the last one deletes the lock node. A mutex is pinned from lookup until the caller unlocks it or gives up waiting,
+ * and pinned mutexes are never evicted, so a held mutex and its reentrancy count are never lost.
+ * <p>
+ * Once the number of cached paths exceeds the maximum size, unpinned paths are evicted with the CLOCK policy: a path
+ * looked up since the previous sweep gets a second chance, others are evicted, until an eighth of the maximum size is
+ * free or only pinned paths are left. A maximum size of zero disables caching; every lookup then creates a mutex,
+ * which is not reentrant with the mutexes of earlier lookups.
+ */
+final class MutexCache {
+    private final int maximumSize;
+    private final int evictedSize;
+    private final Function<String, InterProcessMutex> mutexFactory;
+    private final ConcurrentMap<String, CachedMutex> mutexes = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    MutexCache(int maximumSize, Function<String, InterProcessMutex> mutexFactory) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("Mutex cache size cannot be negative: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.evictedSize = maximumSize - Math.max(1, maximumSize / 8);
+        this.mutexFactory = mutexFactory;
+    }
+
+    /**
+     * @return the pinned mutex of the path, to be released once unlocked or given up
+     */
+    CachedMutex retain(String lockPath) {
+        if (maximumSize == 0) {
+            return new CachedMutex(lockPath, mutexFactory.apply(lockPath));
+        }
+        final CachedMutex retained = mutexes.compute(lockPath, (path, mutex) -> {
+            final CachedMutex pinned = mutex == null ? new CachedMutex(path, mutexFactory.apply(path)) : mutex;
+            pinned.pins++;
+            pinned.referenced = true;
+            return pinned;
+        });
+        if (mutexes.size() > maximumSize) {
+            evict();
+        }
+        return retained;
+    }
+
+    void release(CachedMutex mutex) {
+        if (maximumSize == 0) {
+            return;
+        }
+        mutexes.computeIfPresent(mutex.lockPath, (path, pinned) -> {
+            pinned.pins--;
+            return pinned;
+        });
+    }
+
+    int size() {
+        return mutexes.size();
+    }
+
+    /**
+     * Sweeps the paths at most twice, the first sweep possibly only taking away second chances.
+     * Callers finding another caller evicting go on without waiting.
+     */
+    private void evict() {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            for (int sweep = 0; sweep < 2 && mutexes.size() > evictedSize; sweep++) {
+                for (String lockPath : mutexes.keySet()) {
+                    if (mutexes.size() <= evictedSize) {
+                        break;
+                    }
+                    mutexes.computeIfPresent(lockPath, (path, mutex) -> {
+                        if (mutex.pins > 0) {
+                            return mutex;
+                        }
+                        if (mutex.referenced) {
+                            mutex.referenced = false;
+                            return mutex;
+                        }
+                        return null;
+                    });
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * A mutex with its pins by callers. Pins and the referenced flag are only changed in the map's compute functions.
+     */
+    static final class CachedMutex {
+        private final String lockPath;
+        private final InterProcessMutex mutex;
+        private int pins;
+        private boolean referenced;
+
+        private CachedMutex(String lockPath, InterProcessMutex mutex) {
+            this.lockPath = lockPath;
+            this.mutex = mutex;
+        }
+
+        InterProcessMutex mutex() {
+            return mutex;
+        }
+
+        String lockPath() {
+            return lockPath;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.inomera.telco.commons.lock.zookeeper;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.transaction.CuratorOp;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.OpResult;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.data.Stat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Lock held by an ephemeral node at each of its lock paths, created in a single request.
+ * <p>
+ * An attempt creates the node of a single path with one create, and the nodes of several paths with one transaction,
+ * so either all of them or none are created. When a node exists, the attempt fails at once, or watches that node
+ * and tries again once it is deleted. Release deletes the nodes in a single request, unless the session that
+ * created them has expired, which has deleted them already and may have let another client create them again.
+ */
+final class ZookeeperEphemeralLock {
+    private final CuratorFramework client;
+    private final List<String> lockPaths;
+    private final AtomicBoolean held = new AtomicBoolean();
+    private long sessionId;
+
+    ZookeeperEphemeralLock(CuratorFramework client, List<String> lockPaths) {
+        this.client = client;
+        this.lockPaths = lockPaths;
+    }
+
+    /**
+     * @param waitNanos time to wait for existing nodes to be deleted, zero to try once, {@link Long#MAX_VALUE}
+     *                  to wait until acquired
+     * @return whether the lock is acquired
+     */
+    boolean acquire(long waitNanos) throws Exception {
+        final long start = System.nanoTime();
+        while (true) {
+            final String existingPath = tryCreate();
+            if (existingPath == null) {
+                sessionId = client.getZookeeperClient().getZooKeeper().getSessionId();
+                held.set(true);
+                return true;
+            }
+            final long remainingNanos = waitNanos == Long.MAX_VALUE ? Long.MAX_VALUE : waitNanos - (System.nanoTime() - start);
+            if (remainingNanos <= 0) {
+                return false;
+            }
+            final CountDownLatch deleted = new CountDownLatch(1);
+            final Stat existing = client.checkExists()
+                    .usingWatcher((Watcher) event -> deleted.countDown())
+                    .forPath(existingPath);
+            if (existing == null) {
+                continue;
+            }
+            if (remainingNanos == Long.MAX_VALUE) {
+                deleted.await();
+            } else if (!deleted.await(remainingNanos, TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+    }
+
+    void release() {
+        if (!held.compareAndSet(true, false)) {
+            return;
+        }
+        try {
+            if (client.getZookeeperClient().getZooKeeper().getSessionId() != sessionId) {
+                return;
+            }
+            if (lockPaths.size() == 1) {
+                client.delete().forPath(lockPaths.get(0));
+                return;
+            }
+            final List<CuratorOp> deletes = new ArrayList<>(lockPaths.size());
+            for (String lockPath : lockPaths) {
+                deletes.add(client.transactionOp().delete().forPath(lockPath));
+            }
+            client.transaction().forOperations(deletes);
+        } catch (Exception e) {
+            for (String lockPath : lockPaths) {
+                try {
+                    client.delete().guaranteed().inBackground().forPath(lockPath);
+                } catch (Exception ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * @return null if the nodes are created, otherwise the path of a node that exists
+     */
+    private String tryCreate() throws Exception {
+        if (lockPaths.size() == 1) {
+            try {
+                client.create().creatingParentContainersIfNeeded().withMode(CreateMode.EPHEMERAL).forPath(lockPaths.get(0));
+                return null;
+            } catch (KeeperException.NodeExistsException e) {
+                return lockPaths.get(0);
+            }
+        }
+        try {
+            return tryCreateAll();
+        } catch (KeeperException.NoNodeException e) {
+            for (String lockPath : lockPaths) {
+                client.createContainers(ZKPaths.getPathAndNode(lockPath).getPath());
+            }
+            return tryCreateAll();
+        }
+    }
+
+    private String tryCreateAll() throws Exception {
+        final List<CuratorOp> creates = new ArrayList<>(lockPaths.size());
+        for (String lockPath : lockPaths) {
+            creates.add(client.transactionOp().create().withMode(CreateMode.EPHEMERAL).forPath(lockPath));
+        }
+        try {
+            client.transaction().forOperations(creates);
+            return null;
+        } catch (KeeperException e) {
+            final List<OpResult> results = e.getResults();
+            if (results == null) {
+                throw e;
+            }
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i) instanceof OpResult.ErrorResult error
+                        && error.getErr() == KeeperException.Code.NODEEXISTS.intValue()) {
+                    return lockPaths.get(i);
+                }
+            }
+            throw e;
+        }
+    }
+}
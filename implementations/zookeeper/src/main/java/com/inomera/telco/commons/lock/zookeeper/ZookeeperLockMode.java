@@ -0,0 +1,25 @@
+package com.inomera.telco.commons.lock.zookeeper;
+
+import org.apache.curator.framework.recipes.locks.InterProcessMutex;
+
+/**
+ * How {@link ZookeeperLockProvider} acquires the exclusive locks of keys. Read/write locks and permits are the same
+ * in both modes. All clients of a lock map should use the same mode.
+ */
+public enum ZookeeperLockMode {
+    /**
+     * The key's {@link InterProcessMutex}: a sequential lock node under the key's path, granted in creation order.
+     * A failed {@code tryLock} still creates, checks and deletes its lock node, and one without a wait time waits
+     * 500 milliseconds for the lock.
+     */
+    MUTEX,
+
+    /**
+     * An ephemeral node at the key's path, which only one client can create. {@code tryLock} without a wait time is a
+     * single create that fails right away if the node exists, and unlock is a single delete. {@code lock} and
+     * {@code tryLock} with a wait time watch the node and race to create it again once it is deleted, so waiters are
+     * not granted the lock in arrival order. {@code lockAll} creates the nodes of all keys in one transaction.
+     * Locks are not reentrant, and leave no lock path behind once released.
+     */
+    EPHEMERAL
+}
@@ -3,26 +3,78 @@ package com.inomera.telco.commons.lock.zookeeper;
 import com.inomera.telco.commons.lock.BaseLockProvider;
 import com.inomera.telco.commons.lock.LockProvider;
 import com.inomera.telco.commons.lock.Locked;
+import com.inomera.telco.commons.lock.Permits;
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.imps.CuratorFrameworkState;
 import org.apache.curator.framework.recipes.locks.InterProcessLock;
 import org.apache.curator.framework.recipes.locks.InterProcessMutex;
+import org.apache.curator.framework.recipes.locks.InterProcessReadWriteLock;
+import org.apache.curator.framework.recipes.locks.InterProcessSemaphoreV2;
+import org.apache.curator.framework.recipes.locks.Lease;
 
 import java.io.File;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Use to lock in a distributed environment
+ * <p>
+ * The {@link InterProcessMutex} of a lock path is cached and shared by all threads, so exclusive locks are reentrant:
+ * a thread locking a key it already holds gets the lock again without waiting, and must unlock it as many times.
+ * A lock that cannot be acquired throws {@link IllegalStateException}, as does a release failing in Zookeeper; unlocking
+ * from a thread not holding the lock throws {@link IllegalMonitorStateException}. A tryLock or tryAcquirePermits
+ * returns empty only when its wait time elapses or it is interrupted; a failure in Zookeeper throws
+ * {@link IllegalStateException} as well.
+ * The cache keeps up to {@link #DEFAULT_MUTEX_CACHE_SIZE} paths unless another size is given, never evicting
+ * a mutex that is held or waited for.
+ * <p>
+ * {@link #lockAll(String, Collection)} creates the lock nodes of all keys in a single multi-op transaction.
+ * It waits in the same queues as single key locks but is not reentrant with them.
+ * <p>
+ * Read and write locks are the two sides of an {@link InterProcessReadWriteLock} on a path of its own,
+ * the key under the lock map path suffixed with {@code -rw}, apart from the key's exclusive lock.
+ * Permits are leases of an {@link InterProcessSemaphoreV2} under the lock map path suffixed with {@code -permits}.
+ * <p>
+ * Exclusive locks are acquired in the provider's {@link ZookeeperLockMode}, {@link ZookeeperLockMode#MUTEX} unless
+ * another is given; the mutex cache, lock node transaction and reentrancy above are those of that mode.
+ * <p>
+ * In {@link ZookeeperLockMode#MUTEX} mode, {@link #lockAsync(String, String)} and
+ * {@link #tryLockAsync(String, String)} wait in the same queue as the mutex without blocking any thread: every step
+ * is a background request, and a waiting lock watches the lock node before its own. The locks are not bound to
+ * a thread and are not reentrant. Their {@link Locked#unlockAsync()} deletes the lock node in the background and
+ * fails if the delete does, which {@link Locked#unlock()} rethrows.
+ * <p>
+ * Keys are put right under their lock map path unless a shard fan-out is given. With a fan-out, the path of a key
+ * is {@code lockMap/<shard>/<shard>/lockKey}, the two shard nodes picked by the hash of the key, so that a lock map of
+ * millions of keys does not become a single node with millions of children. All clients of a lock map must use
+ * the same fan-out, or they lock different paths for the same key.
+ * <p>
+ * Lock paths are container nodes, which the server deletes once empty, but only every minute and at a limited rate
+ * by default. Given a reap idle time, the provider deletes the paths of released locks itself once they have not been
+ * locked for that long, in batched multi-op transactions on a daemon thread stopped by {@link #close()}.
  *
  * @author Turgay Can
  */
-public class ZookeeperLockProvider extends BaseLockProvider implements LockProvider {
+public class ZookeeperLockProvider extends BaseLockProvider implements LockProvider, AutoCloseable {
+    public static final int DEFAULT_MUTEX_CACHE_SIZE = 10_000;
     private static final String DEFAULT_LOCK_PATH = "/locks";
     private static final int DEFAULT_LOCK_WAIT_TIME_MS = 500;
+    private static final String READ_WRITE_LOCK_MAP_SUFFIX = "-rw";
+    private static final String PERMITS_LOCK_MAP_SUFFIX = "-permits";
+    private static final String[] SEMAPHORE_CHILDREN = {"leases", "locks"};
+    private static final int MAX_SHARD_FAN_OUT = 4096;
 
     private final CuratorFramework curatorClient;
     private final String defaultLockPath;
+    private final MutexCache mutexCache;
+    private final LockPathReaper lockPathReaper;
+    private final ZookeeperLockMode lockMode;
+    private final int shardFanOut;
 
     /**
      * Creates a new CuratorFramework with given CuratorFramework and
@@ -31,8 +83,7 @@ public class ZookeeperLockProvider extends BaseLockProvider implements LockProvi
      * @param curatorClient Zookeeper to get lock path
      */
     public ZookeeperLockProvider(CuratorFramework curatorClient) {
-        this.curatorClient = Objects.requireNonNull(curatorClient, "CuratorFramework is required!");
-        this.defaultLockPath = DEFAULT_LOCK_PATH;
+        this(curatorClient, DEFAULT_LOCK_PATH);
     }
 
     /**
@@ -43,42 +94,223 @@ public class ZookeeperLockProvider extends BaseLockProvider implements LockProvi
      * @param defaultLockPath name of the default lock path
      */
     public ZookeeperLockProvider(CuratorFramework curatorClient, String defaultLockPath) {
-        this.curatorClient = curatorClient;
+        this(curatorClient, defaultLockPath, DEFAULT_MUTEX_CACHE_SIZE);
+    }
+
+    /**
+     * Creates a new ZookeeperLockProvider with given Zookeeper,
+     * given default lock map name and given mutex cache size.
+     *
+     * @param curatorClient   CuratorFramework to get lock client
+     * @param defaultLockPath name of the default lock path
+     * @param mutexCacheSize  maximum number of lock paths whose mutexes are kept while not held, zero to create a
+     *                        mutex for every acquisition, which makes locks not reentrant
+     */
+    public ZookeeperLockProvider(CuratorFramework curatorClient, String defaultLockPath, int mutexCacheSize) {
+        this(curatorClient, defaultLockPath, mutexCacheSize, null);
+    }
+
+    /**
+     * Creates a new ZookeeperLockProvider with given Zookeeper,
+     * given default lock map name, given mutex cache size and given reap idle time.
+     *
+     * @param curatorClient   CuratorFramework to get lock client
+     * @param defaultLockPath name of the default lock path
+     * @param mutexCacheSize  maximum number of lock paths whose mutexes are kept while not held, zero to create a
+     *                        mutex for every acquisition, which makes locks not reentrant
+     * @param reapIdleTime    time after which the path of a released lock that was not locked again is deleted,
+     *                        null to leave lock paths to the server
+     */
+    public ZookeeperLockProvider(CuratorFramework curatorClient, String defaultLockPath, int mutexCacheSize,
+                                 Duration reapIdleTime) {
+        this(curatorClient, defaultLockPath, mutexCacheSize, reapIdleTime, ZookeeperLockMode.MUTEX);
+    }
+
+    /**
+     * Creates a new ZookeeperLockProvider with given Zookeeper,
+     * given default lock map name, given mutex cache size, given reap idle time and given lock mode.
+     *
+     * @param curatorClient   CuratorFramework to get lock client
+     * @param defaultLockPath name of the default lock path
+     * @param mutexCacheSize  maximum number of lock paths whose mutexes are kept while not held, zero to create a
+     *                        mutex for every acquisition, which makes locks not reentrant
+     * @param reapIdleTime    time after which the path of a released lock that was not locked again is deleted,
+     *                        null to leave lock paths to the server
+     * @param lockMode        how exclusive locks are acquired
+     */
+    public ZookeeperLockProvider(CuratorFramework curatorClient, String defaultLockPath, int mutexCacheSize,
+                                 Duration reapIdleTime, ZookeeperLockMode lockMode) {
+        this(curatorClient, defaultLockPath, mutexCacheSize, reapIdleTime, lockMode, 0);
+    }
+
+    /**
+     * Creates a new ZookeeperLockProvider with given Zookeeper,
+     * given default lock map name, given mutex cache size, given reap idle time, given lock mode and given shard fan-out.
+     *
+     * @param curatorClient   CuratorFramework to get lock client
+     * @param defaultLockPath name of the default lock path
+     * @param mutexCacheSize  maximum number of lock paths whose mutexes are kept while not held, zero to create a
+     *                        mutex for every acquisition, which makes locks not reentrant
+     * @param reapIdleTime    time after which the path of a released lock that was not locked again is deleted,
+     *                        null to leave lock paths to the server
+     * @param lockMode        how exclusive locks are acquired
+     * @param shardFanOut     number of shard nodes on each of the two shard levels under a lock map, at most 4096,
+     *                        zero to put keys right under their lock map
+     */
+    public ZookeeperLockProvider(CuratorFramework curatorClient, String defaultLockPath, int mutexCacheSize,
+                                 Duration reapIdleTime, ZookeeperLockMode lockMode, int shardFanOut) {
+        if (shardFanOut < 0 || shardFanOut > MAX_SHARD_FAN_OUT) {
+            throw new IllegalArgumentException("Shard fan-out must be between 0 and " + MAX_SHARD_FAN_OUT + ": " + shardFanOut);
+        }
+        this.shardFanOut = shardFanOut;
+        this.curatorClient = Objects.requireNonNull(curatorClient, "CuratorFramework is required!");
         this.defaultLockPath = Objects.requireNonNull(defaultLockPath, "Default lock path name cannot be null");
+        this.lockMode = Objects.requireNonNull(lockMode, "Lock mode cannot be null");
+        this.mutexCache = new MutexCache(mutexCacheSize, lockPath -> new InterProcessMutex(curatorClient, lockPath));
+        if (reapIdleTime == null) {
+            this.lockPathReaper = null;
+        } else {
+            this.lockPathReaper = new LockPathReaper(curatorClient, reapIdleTime, LockPathReaper.DEFAULT_BATCH_SIZE);
+            this.lockPathReaper.start();
+        }
     }
 
     @Override
     public Locked lock(String lockMap, String lockKey) {
-        InterProcessLock lock = getMutex(lockMap, lockKey);
+        if (lockMode == ZookeeperLockMode.EPHEMERAL) {
+            return acquireEphemeral(List.of(lockPath(lockMap, lockKey)));
+        }
+        final MutexCache.CachedMutex mutex = mutexCache.retain(lockPath(lockMap, lockKey));
         try {
-            lock.acquire();
-        } finally {
-            return () -> {
-                try {
-                    lock.release();
-                } catch (Exception e) {
-                }
-            };
+            mutex.mutex().acquire();
+        } catch (InterruptedException e) {
+            mutexCache.release(mutex);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while acquiring lock " + mutex.lockPath(), e);
+        } catch (Exception e) {
+            mutexCache.release(mutex);
+            throw new IllegalStateException("Could not acquire lock " + mutex.lockPath(), e);
         }
+        return locked(mutex);
     }
 
     @Override
     public Optional<Locked> tryLock(String lockMap, String lockKey) {
-        InterProcessLock lock = getMutex(lockMap, lockKey);
+        if (lockMode == ZookeeperLockMode.EPHEMERAL) {
+            return tryLock(lockMap, lockKey, Duration.ZERO);
+        }
+        return tryLock(lockMap, lockKey, Duration.ofMillis(DEFAULT_LOCK_WAIT_TIME_MS));
+    }
+
+    @Override
+    public Optional<Locked> tryLock(String lockMap, String lockKey, Duration waitTime) {
+        final long waitMillis = Objects.requireNonNull(waitTime, "Wait time cannot be null").toMillis();
+        if (lockMode == ZookeeperLockMode.EPHEMERAL) {
+            return tryAcquireEphemeral(lockPath(lockMap, lockKey), waitTime.toNanos());
+        }
+        final MutexCache.CachedMutex mutex = mutexCache.retain(lockPath(lockMap, lockKey));
         try {
-            if (lock.acquire(DEFAULT_LOCK_WAIT_TIME_MS, TimeUnit.MILLISECONDS)) {
-                return Optional.of(() -> {
-                    try {
-                        lock.release();
-                    } catch (Exception e) {
-                    }
-                });
-            } else {
-                return Optional.empty();
+            if (mutex.mutex().acquire(waitMillis, TimeUnit.MILLISECONDS)) {
+                return Optional.of(locked(mutex));
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            mutexCache.release(mutex);
+            throw new IllegalStateException("Could not acquire lock " + mutex.lockPath(), e);
+        }
+        mutexCache.release(mutex);
+        return Optional.empty();
+    }
+
+    @Override
+    public Locked lockAll(String lockMap, Collection<String> lockKeys) {
+        final List<String> lockPaths = canonicalOrder(lockKeys).stream()
+                .map(lockKey -> lockPath(lockMap, lockKey))
+                .toList();
+        if (lockMode == ZookeeperLockMode.EPHEMERAL) {
+            return acquireEphemeral(lockPaths);
+        }
+        final ZookeeperMultiLock lock = new ZookeeperMultiLock(curatorClient, lockPaths);
+        try {
+            lock.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while acquiring locks " + lockPaths, e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not acquire locks " + lockPaths, e);
+        }
+        return () -> {
+            lock.release();
+            lockPaths.forEach(this::released);
+        };
+    }
+
+    @Override
+    public Locked readLock(String lockMap, String lockKey) {
+        return acquire(getReadWriteLock(lockMap, lockKey).readLock(), lockMap, lockKey);
+    }
+
+    @Override
+    public Locked writeLock(String lockMap, String lockKey) {
+        return acquire(getReadWriteLock(lockMap, lockKey).writeLock(), lockMap, lockKey);
+    }
+
+    @Override
+    public Permits acquirePermits(String lockMap, String lockKey, int maxPermits, int permits) {
+        checkPermits(maxPermits, permits);
+        final InterProcessSemaphoreV2 semaphore = getSemaphore(lockMap, lockKey, maxPermits);
+        try {
+            return new ZookeeperPermits(semaphore, semaphore.acquire(permits), () -> releasedPermits(lockMap, lockKey));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while acquiring permits of " + lockPath(lockMap, lockKey), e);
         } catch (Exception e) {
+            throw new IllegalStateException("Could not acquire permits of " + lockPath(lockMap, lockKey), e);
+        }
+    }
+
+    @Override
+    public Optional<Permits> tryAcquirePermits(String lockMap, String lockKey, int maxPermits, int permits, Duration waitTime) {
+        checkPermits(maxPermits, permits);
+        final long waitMillis = Objects.requireNonNull(waitTime, "Wait time cannot be null").toMillis();
+        final InterProcessSemaphoreV2 semaphore = getSemaphore(lockMap, lockKey, maxPermits);
+        final Collection<Lease> leases;
+        try {
+            leases = semaphore.acquire(permits, waitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             return Optional.empty();
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not acquire permits of " + lockPath(lockMap, lockKey), e);
+        }
+        if (leases != null) {
+            return Optional.of(new ZookeeperPermits(semaphore, leases, () -> releasedPermits(lockMap, lockKey)));
         }
+        if (curatorClient.getState() != CuratorFrameworkState.STARTED) {
+            // InterProcessSemaphoreV2 returns no leases, as on a timeout, once the client is closed
+            throw new IllegalStateException("Could not acquire permits of " + lockPath(lockMap, lockKey)
+                    + ", Curator client is " + curatorClient.getState());
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public CompletionStage<Locked> lockAsync(String lockMap, String lockKey) {
+        if (lockMode == ZookeeperLockMode.EPHEMERAL) {
+            return super.lockAsync(lockMap, lockKey);
+        }
+        final String lockPath = lockPath(lockMap, lockKey);
+        return AsyncZookeeperLocked.lock(curatorClient, lockPath, () -> released(lockPath));
+    }
+
+    @Override
+    public CompletionStage<Optional<Locked>> tryLockAsync(String lockMap, String lockKey) {
+        if (lockMode == ZookeeperLockMode.EPHEMERAL) {
+            return super.tryLockAsync(lockMap, lockKey);
+        }
+        final String lockPath = lockPath(lockMap, lockKey);
+        return AsyncZookeeperLocked.tryLock(curatorClient, lockPath, () -> released(lockPath));
     }
 
     @Override
@@ -91,8 +323,153 @@ public class ZookeeperLockProvider extends BaseLockProvider implements LockProvi
         return tryLock(defaultLockPath, lockName);
     }
 
-    private InterProcessLock getMutex(String lockMap, String lockKey) {
-        return new InterProcessMutex(curatorClient, lockMap.concat(File.separator).concat(lockKey));
+    @Override
+    public Optional<Locked> tryLock(String lockName, Duration waitTime) {
+        return tryLock(defaultLockPath, lockName, waitTime);
+    }
+
+    @Override
+    public CompletionStage<Locked> lockAsync(String lockName) {
+        return lockAsync(defaultLockPath, lockName);
+    }
+
+    @Override
+    public CompletionStage<Optional<Locked>> tryLockAsync(String lockName) {
+        return tryLockAsync(defaultLockPath, lockName);
+    }
+
+    /**
+     * Unpins the mutex once released. A release by a thread not holding the mutex throws
+     * {@link IllegalMonitorStateException} and keeps it pinned. A release failing in Zookeeper still gives up the
+     * mutex's hold, so it unpins the mutex before throwing {@link IllegalStateException}.
+     */
+    private Locked locked(MutexCache.CachedMutex mutex) {
+        return () -> {
+            try {
+                mutex.mutex().release();
+            } catch (IllegalMonitorStateException e) {
+                throw e;
+            } catch (Exception e) {
+                mutexCache.release(mutex);
+                throw new IllegalStateException("Could not release lock " + mutex.lockPath(), e);
+            }
+            mutexCache.release(mutex);
+            released(mutex.lockPath());
+        };
+    }
+
+    private Locked acquireEphemeral(List<String> lockPaths) {
+        final ZookeeperEphemeralLock lock = new ZookeeperEphemeralLock(curatorClient, lockPaths);
+        try {
+            lock.acquire(Long.MAX_VALUE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while acquiring locks " + lockPaths, e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not acquire locks " + lockPaths, e);
+        }
+        return lock::release;
+    }
+
+    private Optional<Locked> tryAcquireEphemeral(String lockPath, long waitNanos) {
+        final ZookeeperEphemeralLock lock = new ZookeeperEphemeralLock(curatorClient, List.of(lockPath));
+        try {
+            if (lock.acquire(waitNanos)) {
+                return Optional.of(lock::release);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not acquire lock " + lockPath, e);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Stops deleting the paths of released locks.
+     */
+    @Override
+    public void close() {
+        if (lockPathReaper != null) {
+            lockPathReaper.close();
+        }
+    }
+
+    int mutexCacheSize() {
+        return mutexCache.size();
+    }
+
+    LockPathReaper lockPathReaper() {
+        return lockPathReaper;
+    }
+
+    private void released(String lockPath) {
+        if (lockPathReaper != null) {
+            lockPathReaper.released(lockPath);
+        }
+    }
+
+    private void releasedPermits(String lockMap, String lockKey) {
+        if (lockPathReaper != null) {
+            lockPathReaper.released(lockPath(lockMap.concat(PERMITS_LOCK_MAP_SUFFIX), lockKey), SEMAPHORE_CHILDREN);
+        }
+    }
+
+    private InterProcessReadWriteLock getReadWriteLock(String lockMap, String lockKey) {
+        return new InterProcessReadWriteLock(curatorClient, readWriteLockPath(lockMap, lockKey));
+    }
+
+    private InterProcessSemaphoreV2 getSemaphore(String lockMap, String lockKey, int maxPermits) {
+        return new InterProcessSemaphoreV2(curatorClient, lockPath(lockMap.concat(PERMITS_LOCK_MAP_SUFFIX), lockKey), maxPermits);
+    }
+
+    private Locked acquire(InterProcessLock lock, String lockMap, String lockKey) {
+        try {
+            lock.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while acquiring lock " + lockPath(lockMap, lockKey), e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not acquire lock " + lockPath(lockMap, lockKey), e);
+        }
+        return () -> {
+            try {
+                lock.release();
+            } catch (IllegalMonitorStateException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException("Could not release lock " + readWriteLockPath(lockMap, lockKey), e);
+            }
+            released(readWriteLockPath(lockMap, lockKey));
+        };
+    }
+
+    private String readWriteLockPath(String lockMap, String lockKey) {
+        return lockPath(lockMap.concat(READ_WRITE_LOCK_MAP_SUFFIX), lockKey);
+    }
+
+    /**
+     * @return the path under which the exclusive lock of the key is held, below the key's shard nodes if sharded
+     */
+    public String lockPath(String lockMap, String lockKey) {
+        if (shardFanOut == 0) {
+            return lockMap.concat(File.separator).concat(lockKey);
+        }
+        final int shard = Math.floorMod(spread(lockKey.hashCode()), shardFanOut * shardFanOut);
+        return lockMap.concat(File.separator).concat(Integer.toHexString(shard / shardFanOut))
+                .concat(File.separator).concat(Integer.toHexString(shard % shardFanOut))
+                .concat(File.separator).concat(lockKey);
+    }
+
+    /**
+     * Mixes the bits of a string hash code, which differ little between similar keys, e.g. numbered ones.
+     */
+    private static int spread(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        return hash ^ (hash >>> 16);
     }
 
 }
@@ -0,0 +1,274 @@
+package com.inomera.telco.commons.lock.zookeeper;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.transaction.CuratorOp;
+import org.apache.curator.framework.api.transaction.CuratorTransactionResult;
+import org.apache.curator.framework.recipes.locks.InterProcessMutex;
+import org.apache.curator.framework.recipes.locks.LockInternals;
+import org.apache.curator.framework.recipes.locks.StandardLockInternalsDriver;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.data.Stat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Lock on several lock paths at once, waiting in the same queues as {@link InterProcessMutex} locks on those paths.
+ * <p>
+ * The lock nodes of all paths are created in one multi-op transaction, and the children of every path are read
+ * in the same request pipeline, so an uncontended acquisition takes a single round trip. Zookeeper orders the
+ * transaction against every other lock node, so a multi lock only waits for nodes created before all of its own.
+ * Two multi locks therefore cannot deadlock each other, whatever the order of their paths.
+ * <p>
+ * Lock nodes are named like the protected nodes of {@link InterProcessMutex}, {@code _c_<id>-lock-<sequence>} with an
+ * id of their own per acquisition. A transaction whose reply is lost with the connection may have been applied, and
+ * Curator may apply it again when it retries; the id finds the nodes of such a transaction, which are then taken
+ * over or deleted rather than left to block the paths until the session ends.
+ * <p>
+ * Unlike {@link InterProcessMutex}, the lock is not reentrant: a thread already holding one of the paths
+ * waits for itself.
+ */
+final class ZookeeperMultiLock {
+    private static final String LOCK_NAME = "lock-";
+    private static final String PROTECTED_PREFIX = "_c_";
+    private static final StandardLockInternalsDriver SORTER = new StandardLockInternalsDriver();
+
+    private final CuratorFramework client;
+    private final List<String> lockPaths;
+    private final List<String> lockNodes;
+    private final String protectedLockName;
+
+    ZookeeperMultiLock(CuratorFramework client, List<String> lockPaths) {
+        this(client, lockPaths, UUID.randomUUID().toString());
+    }
+
+    /**
+     * @param protectionId id of this acquisition in the names of its lock nodes
+     */
+    ZookeeperMultiLock(CuratorFramework client, List<String> lockPaths, String protectionId) {
+        this.client = client;
+        this.lockPaths = lockPaths;
+        this.lockNodes = new ArrayList<>(lockPaths.size());
+        this.protectedLockName = PROTECTED_PREFIX + protectionId + "-" + LOCK_NAME;
+    }
+
+    void acquire() throws Exception {
+        try {
+            final List<List<String>> children = createLockNodes();
+            for (int i = 0; i < lockPaths.size(); i++) {
+                awaitTurn(lockPaths.get(i), ZKPaths.getNodeFromPath(lockNodes.get(i)), children.get(i));
+            }
+        } catch (Exception e) {
+            if (lockNodes.isEmpty()) {
+                deleteProtectedNodesInBackground();
+            }
+            release();
+            throw e;
+        }
+    }
+
+    void release() {
+        if (lockNodes.isEmpty()) {
+            return;
+        }
+        final List<CuratorOp> deletes = new ArrayList<>(lockNodes.size());
+        try {
+            for (String lockNode : lockNodes) {
+                deletes.add(client.transactionOp().delete().forPath(lockNode));
+            }
+            client.transaction().forOperations(deletes);
+        } catch (Exception e) {
+            for (String lockNode : lockNodes) {
+                try {
+                    client.delete().guaranteed().inBackground().forPath(lockNode);
+                } catch (Exception ignored) {
+                }
+            }
+        }
+        lockNodes.clear();
+    }
+
+    /**
+     * Creates a lock node under every lock path and reads the children of the lock paths right behind it,
+     * creating the lock paths first if they do not exist yet. If the connection is lost before the reply, the nodes
+     * of the transaction are looked up before it is tried again.
+     */
+    private List<List<String>> createLockNodes() throws Exception {
+        try {
+            return tryCreateLockNodes();
+        } catch (KeeperException.NoNodeException e) {
+            for (String lockPath : lockPaths) {
+                client.createContainers(lockPath);
+            }
+            return tryCreateLockNodes();
+        } catch (KeeperException.ConnectionLossException e) {
+            if (lockNodes.isEmpty() && !findProtectedNodes()) {
+                return tryCreateLockNodes();
+            }
+            return readChildren();
+        }
+    }
+
+    /**
+     * Takes over the lock nodes of an applied transaction whose reply was lost.
+     *
+     * @return false if the transaction was not applied
+     */
+    private boolean findProtectedNodes() throws Exception {
+        final List<String> foundNodes = new ArrayList<>(lockPaths.size());
+        for (String lockPath : lockPaths) {
+            final String protectedNode = client.getChildren().forPath(lockPath).stream()
+                    .filter(child -> child.startsWith(protectedLockName))
+                    .findFirst()
+                    .orElse(null);
+            // The transaction is atomic, so its nodes are under every lock path or under none
+            if (protectedNode == null) {
+                return false;
+            }
+            foundNodes.add(ZKPaths.makePath(lockPath, protectedNode));
+        }
+        lockNodes.addAll(foundNodes);
+        return true;
+    }
+
+    private List<List<String>> readChildren() throws Exception {
+        final List<List<String>> childrenOfPaths = new ArrayList<>(lockPaths.size());
+        for (int i = 0; i < lockPaths.size(); i++) {
+            final String lockPath = lockPaths.get(i);
+            childrenOfPaths.add(withoutOrphans(lockPath, ZKPaths.getNodeFromPath(lockNodes.get(i)),
+                    client.getChildren().forPath(lockPath)));
+        }
+        return childrenOfPaths;
+    }
+
+    private List<List<String>> tryCreateLockNodes() throws Exception {
+        final List<CuratorOp> creates = new ArrayList<>(lockPaths.size());
+        for (String lockPath : lockPaths) {
+            creates.add(client.transactionOp().create()
+                    .withMode(CreateMode.EPHEMERAL_SEQUENTIAL)
+                    .forPath(ZKPaths.makePath(lockPath, protectedLockName)));
+        }
+
+        final CompletableFuture<List<CuratorTransactionResult>> created = new CompletableFuture<>();
+        client.transaction()
+                .inBackground((curator, event) -> complete(created, event.getResultCode(), event.getPath(), event.getOpResults()))
+                .forOperations(creates);
+
+        // Requests of a session are processed in order, so the children are read after the transaction is applied
+        final List<CompletableFuture<List<String>>> children = new ArrayList<>(lockPaths.size());
+        for (String lockPath : lockPaths) {
+            final CompletableFuture<List<String>> pathChildren = new CompletableFuture<>();
+            client.getChildren()
+                    .inBackground((curator, event) -> complete(pathChildren, event.getResultCode(), event.getPath(), event.getChildren()))
+                    .forPath(lockPath);
+            children.add(pathChildren);
+        }
+
+        for (CuratorTransactionResult result : await(created)) {
+            lockNodes.add(result.getResultPath());
+        }
+        final List<List<String>> childrenOfPaths = new ArrayList<>(lockPaths.size());
+        for (int i = 0; i < lockPaths.size(); i++) {
+            final String lockPath = lockPaths.get(i);
+            final String lockNode = ZKPaths.getNodeFromPath(lockNodes.get(i));
+            List<String> pathChildren = await(children.get(i));
+            // A transaction retried by Curator may be applied after the children were read
+            if (!pathChildren.contains(lockNode)) {
+                pathChildren = client.getChildren().forPath(lockPath);
+            }
+            childrenOfPaths.add(withoutOrphans(lockPath, lockNode, pathChildren));
+        }
+        return childrenOfPaths;
+    }
+
+    /**
+     * Deletes the nodes which an earlier, applied attempt of the transaction created besides the taken lock node.
+     *
+     * @return the children without the deleted nodes
+     */
+    private List<String> withoutOrphans(String lockPath, String lockNode, List<String> children) throws Exception {
+        final List<String> remaining = new ArrayList<>(children.size());
+        for (String child : children) {
+            if (child.startsWith(protectedLockName) && !child.equals(lockNode)) {
+                client.delete().guaranteed().inBackground().forPath(ZKPaths.makePath(lockPath, child));
+            } else {
+                remaining.add(child);
+            }
+        }
+        return remaining;
+    }
+
+    /**
+     * Deletes any node of this acquisition after its transaction failed with an unknown outcome.
+     */
+    private void deleteProtectedNodesInBackground() {
+        for (String lockPath : lockPaths) {
+            try {
+                client.getChildren()
+                        .inBackground((curator, event) -> {
+                            if (event.getResultCode() != KeeperException.Code.OK.intValue()) {
+                                return;
+                            }
+                            for (String child : event.getChildren()) {
+                                if (child.startsWith(protectedLockName)) {
+                                    curator.delete().guaranteed().inBackground().forPath(ZKPaths.makePath(lockPath, child));
+                                }
+                            }
+                        })
+                        .forPath(lockPath);
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+    private void awaitTurn(String lockPath, String lockNode, List<String> children) throws Exception {
+        while (true) {
+            final List<String> sortedChildren = LockInternals.getSortedChildren(LOCK_NAME, SORTER, children);
+            final int ourIndex = sortedChildren.indexOf(lockNode);
+            if (ourIndex < 0) {
+                throw new KeeperException.NoNodeException(ZKPaths.makePath(lockPath, lockNode));
+            }
+            if (ourIndex == 0) {
+                return;
+            }
+
+            final CountDownLatch predecessorDeleted = new CountDownLatch(1);
+            final Stat predecessor = client.checkExists()
+                    .usingWatcher((Watcher) event -> predecessorDeleted.countDown())
+                    .forPath(ZKPaths.makePath(lockPath, sortedChildren.get(ourIndex - 1)));
+            if (predecessor != null) {
+                predecessorDeleted.await();
+            }
+            children = client.getChildren().forPath(lockPath);
+        }
+    }
+
+    private static <T> void complete(CompletableFuture<T> future, int resultCode, String path, T result) {
+        if (resultCode == KeeperException.Code.OK.intValue()) {
+            future.complete(result);
+        } else {
+            future.completeExceptionally(KeeperException.create(KeeperException.Code.get(resultCode), path));
+        }
+    }
+
+    /**
+     * Waits for a background request without giving up on interrupt, so that no lock node is left behind unknown.
+     */
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.inomera.telco.commons.lock.zookeeper;
+
+import com.inomera.telco.commons.lock.BasePermits;
+import org.apache.curator.framework.recipes.locks.InterProcessSemaphoreV2;
+import org.apache.curator.framework.recipes.locks.Lease;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Permits of a Curator {@link InterProcessSemaphoreV2}, one lease node per permit.
+ */
+class ZookeeperPermits extends BasePermits {
+    private final InterProcessSemaphoreV2 semaphore;
+    private final List<Lease> leases;
+    private final Runnable onReleased;
+
+    ZookeeperPermits(InterProcessSemaphoreV2 semaphore, Collection<Lease> leases, Runnable onReleased) {
+        super(leases.size());
+        this.semaphore = semaphore;
+        this.leases = new ArrayList<>(leases);
+        this.onReleased = onReleased;
+    }
+
+    @Override
+    protected void releasePermits(int permits) {
+        final List<Lease> released = leases.subList(leases.size() - permits, leases.size());
+        semaphore.returnAll(new ArrayList<>(released));
+        released.clear();
+        if (leases.isEmpty()) {
+            onReleased.run();
+        }
+    }
+}
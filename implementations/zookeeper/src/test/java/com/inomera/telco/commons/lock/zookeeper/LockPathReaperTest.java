@@ -0,0 +1,85 @@
+package com.inomera.telco.commons.lock.zookeeper;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.ExponentialBackoffRetry;
+import org.apache.curator.test.TestingServer;
+import org.apache.zookeeper.CreateMode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LockPathReaperTest {
+    private static final String LOCK_MAP = "/reaper";
+
+    private TestingServer zkServer;
+    private CuratorFramework curatorClient;
+
+    @BeforeEach
+    void init() throws Exception {
+        zkServer = new TestingServer();
+        curatorClient = CuratorFrameworkFactory.newClient(zkServer.getConnectString(), new ExponentialBackoffRetry(1000, 3));
+        curatorClient.start();
+    }
+
+    @AfterEach
+    void end() throws IOException {
+        curatorClient.close();
+        zkServer.stop();
+    }
+
+    @Test
+    @DisplayName("A batch should delete its empty paths even when one of them is locked again")
+    void reap_shouldSkipLockedPathAndDeleteTheRest() throws Exception {
+        final LockPathReaper reaper = new LockPathReaper(curatorClient, Duration.ZERO, 10);
+        for (int i = 0; i < 5; i++) {
+            curatorClient.createContainers(LOCK_MAP + "/key" + i);
+            reaper.released(LOCK_MAP + "/key" + i);
+        }
+        curatorClient.create().withMode(CreateMode.EPHEMERAL_SEQUENTIAL).forPath(LOCK_MAP + "/key2/lock-");
+
+        assertEquals(4, reaper.reap());
+
+        assertEquals(1, curatorClient.getChildren().forPath(LOCK_MAP).size());
+        assertNotNull(curatorClient.checkExists().forPath(LOCK_MAP + "/key2"));
+        assertEquals(0, reaper.size());
+    }
+
+    @Test
+    @DisplayName("A path should be kept until it has been idle for the idle time")
+    void reap_shouldKeepPathUntilIdle() throws Exception {
+        final LockPathReaper reaper = new LockPathReaper(curatorClient, Duration.ofMillis(300), 10);
+        curatorClient.createContainers(LOCK_MAP + "/key");
+        reaper.released(LOCK_MAP + "/key");
+
+        assertEquals(0, reaper.reap());
+        assertEquals(1, reaper.size());
+        sleepUninterruptibly(300, TimeUnit.MILLISECONDS);
+        assertEquals(1, reaper.reap());
+        assertNull(curatorClient.checkExists().forPath(LOCK_MAP + "/key"));
+    }
+
+    @Test
+    @DisplayName("The children of a path should be deleted with it, in batches of the batch size")
+    void reap_shouldDeleteChildrenInBatches() throws Exception {
+        final LockPathReaper reaper = new LockPathReaper(curatorClient, Duration.ZERO, 2);
+        for (int i = 0; i < 5; i++) {
+            curatorClient.createContainers(LOCK_MAP + "/key" + i + "/leases");
+            curatorClient.createContainers(LOCK_MAP + "/key" + i + "/locks");
+            reaper.released(LOCK_MAP + "/key" + i, "leases", "locks");
+        }
+        reaper.released(LOCK_MAP + "/missing");
+
+        assertEquals(5, reaper.reap());
+
+        assertTrue(curatorClient.getChildren().forPath(LOCK_MAP).isEmpty());
+    }
+}
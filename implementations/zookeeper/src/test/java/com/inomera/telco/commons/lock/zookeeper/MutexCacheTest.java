@@ -0,0 +1,78 @@
+package com.inomera.telco.commons.lock.zookeeper;
+
+import org.apache.curator.framework.recipes.locks.InterProcessMutex;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class MutexCacheTest {
+    private final AtomicInteger created = new AtomicInteger();
+    private final Function<String, InterProcessMutex> mutexFactory = lockPath -> {
+        created.incrementAndGet();
+        return mock(InterProcessMutex.class);
+    };
+
+    @Test
+    @DisplayName("A path should get the same mutex on every lookup while cached")
+    void retain_shouldReuseMutexOfPath() {
+        final MutexCache cache = new MutexCache(10, mutexFactory);
+
+        final MutexCache.CachedMutex first = cache.retain("/locks/key1");
+        final MutexCache.CachedMutex second = cache.retain("/locks/key1");
+        cache.release(first);
+        cache.release(second);
+
+        assertSame(first, second);
+        assertSame(first.mutex(), cache.retain("/locks/key1").mutex());
+        assertNotSame(first.mutex(), cache.retain("/locks/key2").mutex());
+        assertEquals(2, created.get());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    @DisplayName("Paths beyond the maximum size should be evicted, except pinned ones and those looked up again")
+    void overflow_shouldEvictUnpinnedPaths() {
+        final MutexCache cache = new MutexCache(8, mutexFactory);
+        final MutexCache.CachedMutex pinned = cache.retain("/locks/pinned");
+        cache.release(cache.retain("/locks/hot"));
+        final InterProcessMutex hot = cache.retain("/locks/hot").mutex();
+
+        for (int i = 0; i < 100; i++) {
+            cache.release(cache.retain("/locks/key" + i));
+            final MutexCache.CachedMutex hotAgain = cache.retain("/locks/hot");
+            assertSame(hot, hotAgain.mutex());
+            cache.release(hotAgain);
+        }
+
+        assertTrue(cache.size() <= 8, "size " + cache.size());
+        assertSame(pinned, cache.retain("/locks/pinned"));
+    }
+
+    @Test
+    @DisplayName("Pinned paths should be kept even when they exceed the maximum size")
+    void pinnedPaths_shouldNotBeEvicted() {
+        final MutexCache cache = new MutexCache(2, mutexFactory);
+
+        for (int i = 0; i < 5; i++) {
+            cache.retain("/locks/key" + i);
+        }
+
+        assertEquals(5, cache.size());
+        assertEquals(5, created.get());
+    }
+
+    @Test
+    @DisplayName("A cache of size zero should create a mutex on every lookup and a negative size should be rejected")
+    void zeroSize_shouldCreateMutexOnEveryLookup() {
+        final MutexCache cache = new MutexCache(0, mutexFactory);
+
+        assertNotSame(cache.retain("/locks/key1").mutex(), cache.retain("/locks/key1").mutex());
+        assertEquals(0, cache.size());
+        assertThrows(IllegalArgumentException.class, () -> new MutexCache(-1, mutexFactory));
+    }
+}
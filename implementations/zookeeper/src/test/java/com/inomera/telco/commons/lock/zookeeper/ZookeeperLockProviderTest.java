@@ -1,10 +1,12 @@
 package com.inomera.telco.commons.lock.zookeeper;
 
 import com.inomera.telco.commons.lock.Locked;
+import com.inomera.telco.commons.lock.Permits;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.CuratorFrameworkFactory;
 import org.apache.curator.retry.ExponentialBackoffRetry;
 import org.apache.curator.test.TestingServer;
+import org.apache.zookeeper.CreateMode;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -12,10 +14,22 @@ import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
+import static com.google.common.util.concurrent.Uninterruptibles.awaitUninterruptibly;
+import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
 import static org.junit.jupiter.api.Assertions.*;
 
 class ZookeeperLockProviderTest {
@@ -85,12 +99,53 @@ class ZookeeperLockProviderTest {
     @DisplayName("tryLock with custom path and lockKey should return empty Optional when lock is owned")
     void tryLock_shouldTryLockOnMap_returnEmptyOptional() {
         final Locked aLock = lockProvider.lock("/tmp/locks2", "aLock");
-        final Optional<Locked> locked = lockProvider.tryLock("/tmp/locks2", "aLock");
+        final Optional<Locked> locked = fromOtherThread(() -> lockProvider.tryLock("/tmp/locks2", "aLock"));
         assertNotNull(locked);
         assertFalse(locked.isPresent());
         aLock.unlock();
     }
 
+    @Test
+    @DisplayName("lock should throw IllegalStateException when the lock cannot be acquired")
+    void lock_shouldThrowWhenLockCannotBeAcquired() {
+        curatorClient.close();
+
+        assertThrows(IllegalStateException.class, () -> lockProvider.lock("/tmp/locks2", "aLock"));
+    }
+
+    @Test
+    @DisplayName("tryLock and tryAcquirePermits should throw rather than return empty when Zookeeper fails")
+    void tryLock_shouldThrowWhenZookeeperFails() {
+        final ZookeeperLockProvider ephemeralLockProvider = ephemeralLockProvider();
+        curatorClient.close();
+
+        assertThrows(IllegalStateException.class, () -> lockProvider.tryLock("/tmp/locks2", "aLock"));
+        assertThrows(IllegalStateException.class, () -> lockProvider.tryLock("/tmp/locks2", "aLock", Duration.ofMillis(100)));
+        assertThrows(IllegalStateException.class,
+                () -> lockProvider.tryAcquirePermits("/tmp/locks2", "aLock", 2, 1, Duration.ofMillis(100)));
+        assertThrows(IllegalStateException.class, () -> ephemeralLockProvider.tryLock("/tmp/locks2", "aLock"));
+    }
+
+    @Test
+    @DisplayName("Unlocking from a thread not holding the lock should throw and keep the lock held")
+    void unlock_shouldThrowFromThreadNotHoldingLock() {
+        final Locked locked = lockProvider.lock("/tmp/locks2", "aLock");
+
+        final CompletionException failure = assertThrows(CompletionException.class, () -> fromOtherThread(() -> {
+            locked.unlock();
+            return null;
+        }));
+        assertTrue(failure.getCause() instanceof IllegalMonitorStateException);
+        assertFalse(fromOtherThread(() -> lockProvider.tryLock("/tmp/locks2", "aLock")).isPresent());
+
+        locked.unlock();
+        assertTrue(fromOtherThread(() -> {
+            final Optional<Locked> tried = lockProvider.tryLock("/tmp/locks2", "aLock");
+            tried.ifPresent(Locked::unlock);
+            return tried.isPresent();
+        }));
+    }
+
 
     @Test
     @DisplayName("executeInLock should lock in Zookeeper path and unlock after task finishes")
@@ -98,7 +153,7 @@ class ZookeeperLockProviderTest {
         final AtomicInteger counter = new AtomicInteger(0);
         lockProvider.executeInLock("/tmp/locks2", "aLock", () -> {
             counter.incrementAndGet();
-            final Optional<Locked> lockedOptional = lockProvider.tryLock("/tmp/locks2", "aLock");
+            final Optional<Locked> lockedOptional = fromOtherThread(() -> lockProvider.tryLock("/tmp/locks2", "aLock"));
             assertNotNull(lockedOptional);
             assertFalse(lockedOptional.isPresent());
         });
@@ -221,7 +276,10 @@ class ZookeeperLockProviderTest {
         final Locked lock = lockProvider.lock("/tmp/locks2", "aLock");
         final AtomicInteger counter = new AtomicInteger(0);
 
-        lockProvider.executeInTryLock("/tmp/locks2", "aLock", (Runnable) counter::incrementAndGet);
+        fromOtherThread(() -> {
+            lockProvider.executeInTryLock("/tmp/locks2", "aLock", (Runnable) counter::incrementAndGet);
+            return null;
+        });
         lock.unlock();
 
         assertEquals(0, counter.get());
@@ -258,10 +316,10 @@ class ZookeeperLockProviderTest {
     void executeTryInLock_shouldLockInMapAndUnlockWhenLockIsNotAvailable() {
         final Locked lock = lockProvider.lock("/tmp/locks2", "aLock");
         final AtomicInteger counter = new AtomicInteger(0);
-        Integer returnValue = lockProvider.executeInTryLock("/tmp/locks2", "aLock", () -> {
+        Integer returnValue = fromOtherThread(() -> lockProvider.executeInTryLock("/tmp/locks2", "aLock", () -> {
             counter.incrementAndGet();
             return 3;
-        });
+        }));
         lock.unlock();
 
         assertEquals(0, counter.get());
@@ -296,7 +354,10 @@ class ZookeeperLockProviderTest {
     void executeInTryLock_shouldNotLockAndUnlockWhenLockIsNotAvailable() {
         final Locked lock = lockProvider.lock("aLock");
         final AtomicInteger counter = new AtomicInteger(0);
-        lockProvider.executeInTryLock("aLock", (Runnable) counter::incrementAndGet);
+        fromOtherThread(() -> {
+            lockProvider.executeInTryLock("aLock", (Runnable) counter::incrementAndGet);
+            return null;
+        });
         lock.unlock();
         assertEquals(0, counter.get());
     }
@@ -331,14 +392,502 @@ class ZookeeperLockProviderTest {
         final Locked lock = lockProvider.lock("aLock");
 
         final AtomicInteger counter = new AtomicInteger(0);
-        final Integer returnValue = lockProvider.executeInTryLock("aLock", () -> {
+        final Integer returnValue = fromOtherThread(() -> lockProvider.executeInTryLock("aLock", () -> {
             counter.incrementAndGet();
             return 3;
-        });
+        }));
 
         lock.unlock();
         assertEquals(0, counter.get());
         assertNull(returnValue);
     }
 
+    @Test
+    @DisplayName("tryLock with wait time should return empty Optional when the lock is held for longer than the wait time")
+    void tryLockWithWaitTime_shouldReturnEmptyOptionalWhenWaitTimeElapses() {
+        final Locked aLock = lockProvider.lock("/tmp/locks2", "aLock");
+
+        final long start = System.nanoTime();
+        final Optional<Locked> locked = fromOtherThread(() -> lockProvider.tryLock("/tmp/locks2", "aLock", Duration.ofMillis(200)));
+        final long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertFalse(locked.isPresent());
+        assertTrue(waitedMillis >= 200, "Waited only " + waitedMillis + " ms");
+        aLock.unlock();
+    }
+
+    @Test
+    @DisplayName("tryLock with wait time should acquire the lock once the holder releases it")
+    void tryLockWithWaitTime_shouldAcquireLockWhenHolderReleasesIt() throws InterruptedException {
+        final CountDownLatch holderLocked = new CountDownLatch(1);
+        final Thread holder = new Thread(() -> {
+            final Locked aLock = lockProvider.lock("aLock");
+            holderLocked.countDown();
+            sleepUninterruptibly(200, TimeUnit.MILLISECONDS);
+            aLock.unlock();
+        });
+        holder.start();
+        assertTrue(holderLocked.await(10, TimeUnit.SECONDS));
+
+        final Optional<Locked> locked = lockProvider.tryLock("aLock", Duration.ofSeconds(10));
+        assertTrue(locked.isPresent());
+        locked.get().unlock();
+        holder.join();
+    }
+
+    @Test
+    @DisplayName("executeInTryLock with wait time should lock in Zookeeper and return the value")
+    void executeInTryLockWithWaitTime_shouldLockAndReturnValue() {
+        final Integer returnValue = lockProvider.executeInTryLock("/tmp/locks2", "aLock", Duration.ofSeconds(1), () -> 3);
+        assertEquals(Integer.valueOf(3), returnValue);
+    }
+
+    @Test
+    @DisplayName("lockAsync should complete once the holder releases the lock and allow unlock from another thread")
+    void lockAsync_shouldCompleteWhenHolderReleasesLockAndUnlockFromAnyThread() throws Exception {
+        final Locked holder = lockProvider.lock("aLock");
+        final CompletableFuture<Locked> future = lockProvider.lockAsync("aLock").toCompletableFuture();
+        sleepUninterruptibly(200, TimeUnit.MILLISECONDS);
+        assertFalse(future.isDone());
+
+        holder.unlock();
+        final Locked locked = future.get(10, TimeUnit.SECONDS);
+
+        final Thread unlocker = new Thread(locked::unlock);
+        unlocker.start();
+        unlocker.join(10_000);
+
+        final Optional<Locked> lockedAgain = lockProvider.tryLock("aLock");
+        assertTrue(lockedAgain.isPresent());
+        lockedAgain.get().unlock();
+    }
+
+    @Test
+    @DisplayName("executeInLockAsync should lock in Zookeeper and return the value")
+    void executeInLockAsync_shouldLockAndReturnValue() throws Exception {
+        final Integer returnValue = lockProvider.executeInLockAsync("/tmp/locks2", "aLock", () -> 3)
+                .toCompletableFuture().get(10, TimeUnit.SECONDS);
+        assertEquals(Integer.valueOf(3), returnValue);
+
+        final Optional<Locked> locked = lockProvider.tryLock("/tmp/locks2", "aLock");
+        assertTrue(locked.isPresent());
+        locked.get().unlock();
+    }
+
+    @Test
+    @DisplayName("lockAll should exclude single key locks on every key until unlocked")
+    void lockAll_shouldExcludeSingleKeyLocks() throws Exception {
+        final Locked locked = lockProvider.lockAll("/tmp/locks2", List.of("bLock", "aLock"));
+
+        assertFalse(CompletableFuture.supplyAsync(() -> lockProvider.tryLock("/tmp/locks2", "aLock", Duration.ofMillis(100))).get().isPresent());
+        assertFalse(CompletableFuture.supplyAsync(() -> lockProvider.tryLock("/tmp/locks2", "bLock", Duration.ofMillis(100))).get().isPresent());
+
+        locked.unlock();
+        assertTrue(curatorClient.getChildren().forPath("/tmp/locks2/aLock").isEmpty());
+        assertTrue(curatorClient.getChildren().forPath("/tmp/locks2/bLock").isEmpty());
+
+        final Optional<Locked> afterRelease = CompletableFuture.supplyAsync(() -> lockProvider.tryLock("/tmp/locks2", "aLock")).get();
+        assertTrue(afterRelease.isPresent());
+    }
+
+    @Test
+    @DisplayName("lockAll should wait until a single key lock on one of its keys is released")
+    void lockAll_shouldWaitForSingleKeyLock() {
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            final CountDownLatch singleLocked = new CountDownLatch(1);
+            final CountDownLatch releaseSingle = new CountDownLatch(1);
+            final CompletableFuture<Void> single = CompletableFuture.runAsync(() -> {
+                final Locked locked = lockProvider.lock("/tmp/locks2", "bLock");
+                singleLocked.countDown();
+                awaitUninterruptibly(releaseSingle);
+                locked.unlock();
+            });
+            awaitUninterruptibly(singleLocked);
+
+            final CompletableFuture<Locked> all = CompletableFuture.supplyAsync(() -> lockProvider.lockAll("/tmp/locks2", List.of("aLock", "bLock")));
+            sleepUninterruptibly(200, TimeUnit.MILLISECONDS);
+            assertFalse(all.isDone());
+
+            releaseSingle.countDown();
+            single.get();
+            all.get().unlock();
+        });
+    }
+
+    @Test
+    @DisplayName("lockAll should not deadlock when callers lock overlapping keys in opposite orders")
+    void lockAll_shouldNotDeadlockWithOppositeKeyOrders() {
+        final int iterations = 50;
+        final AtomicInteger counter = new AtomicInteger();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            final CompletableFuture<Void> forward = CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < iterations; i++) {
+                    lockProvider.executeInLock("/tmp/locks2", List.of("aLock", "bLock", "cLock"), (Runnable) counter::incrementAndGet);
+                }
+            });
+            final CompletableFuture<Void> backward = CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < iterations; i++) {
+                    lockProvider.executeInLock("/tmp/locks2", List.of("cLock", "bLock"), (Runnable) counter::incrementAndGet);
+                    lockProvider.executeInLock("/tmp/locks2", "aLock", (Runnable) counter::incrementAndGet);
+                }
+            });
+            forward.get();
+            backward.get();
+        });
+
+        assertEquals(3 * iterations, counter.get());
+    }
+
+    @Test
+    @DisplayName("lockAll should delete lock nodes an earlier attempt of its transaction left behind")
+    void lockAll_shouldDeleteNodesOfEarlierTransactionAttempt() throws Exception {
+        final List<String> lockPaths = List.of("/tmp/locks2/aLock", "/tmp/locks2/bLock");
+        for (String lockPath : lockPaths) {
+            curatorClient.create().creatingParentContainersIfNeeded()
+                    .withMode(CreateMode.EPHEMERAL_SEQUENTIAL)
+                    .forPath(lockPath + "/_c_retried-lock-");
+        }
+        final ZookeeperMultiLock lock = new ZookeeperMultiLock(curatorClient, lockPaths, "retried");
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), lock::acquire);
+        for (String lockPath : lockPaths) {
+            final List<String> children = curatorClient.getChildren().forPath(lockPath);
+            assertEquals(1, children.size());
+            assertTrue(children.get(0).startsWith("_c_retried-lock-"), children.get(0));
+        }
+        lock.release();
+        for (String lockPath : lockPaths) {
+            assertTrue(curatorClient.getChildren().forPath(lockPath).isEmpty());
+        }
+    }
+
+    @Test
+    @DisplayName("readLock should be shared by readers and exclude writers")
+    void readLock_shouldBeSharedByReadersAndExcludeWriters() {
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            final Locked readLocked = lockProvider.readLock("/tmp/locks2", "aLock");
+
+            CompletableFuture.runAsync(() -> lockProvider.readLock("/tmp/locks2", "aLock").unlock()).get();
+            final CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> lockProvider.writeLock("/tmp/locks2", "aLock").unlock());
+            sleepUninterruptibly(200, TimeUnit.MILLISECONDS);
+            assertFalse(writer.isDone());
+
+            readLocked.unlock();
+            writer.get();
+        });
+    }
+
+    @Test
+    @DisplayName("Read/write locks should be separate from the exclusive lock of the same key")
+    void readWriteLock_shouldBeSeparateFromExclusiveLock() throws Exception {
+        final Locked locked = lockProvider.lock("/tmp/locks2", "aLock");
+
+        CompletableFuture.runAsync(() -> lockProvider.writeLock("/tmp/locks2", "aLock").unlock()).get(10, TimeUnit.SECONDS);
+        locked.unlock();
+    }
+
+    @Test
+    @DisplayName("Permits should let at most max permits be held at once and be released by count")
+    void permits_shouldBeBoundedAndReleasedByCount() {
+        final Permits permits = lockProvider.acquirePermits("/tmp/locks2", "aLock", 3, 3);
+        assertFalse(lockProvider.tryAcquirePermits("/tmp/locks2", "aLock", 3, 1, Duration.ofMillis(100)).isPresent());
+
+        permits.release(2);
+        final Optional<Permits> otherPermits = lockProvider.tryAcquirePermits("/tmp/locks2", "aLock", 3, 2, Duration.ofSeconds(5));
+        assertTrue(otherPermits.isPresent());
+        assertFalse(lockProvider.tryAcquirePermits("/tmp/locks2", "aLock", 3, 1, Duration.ofMillis(100)).isPresent());
+
+        permits.unlock();
+        otherPermits.get().unlock();
+        final Integer returnValue = lockProvider.executeWithPermit("/tmp/locks2", "aLock", 3, () -> 9);
+        assertEquals(Integer.valueOf(9), returnValue);
+    }
+
+    @Test
+    @DisplayName("A thread holding a lock should lock it again and keep it until unlocking it as many times")
+    void lock_shouldBeReentrantForHoldingThread() {
+        final Locked outer = lockProvider.lock("/tmp/locks2", "aLock");
+        final Optional<Locked> inner = lockProvider.tryLock("/tmp/locks2", "aLock", Duration.ZERO);
+        assertTrue(inner.isPresent());
+
+        inner.get().unlock();
+        assertFalse(fromOtherThread(() -> lockProvider.tryLock("/tmp/locks2", "aLock", Duration.ZERO)).isPresent());
+        outer.unlock();
+        final Optional<Locked> other = fromOtherThread(() -> lockProvider.tryLock("/tmp/locks2", "aLock", Duration.ZERO));
+        assertTrue(other.isPresent());
+        assertEquals(1, lockProvider.mutexCacheSize());
+    }
+
+    @Test
+    @DisplayName("A held mutex should not be evicted from a full mutex cache")
+    void mutexCache_shouldNotEvictHeldMutex() {
+        final ZookeeperLockProvider smallCacheLockProvider = new ZookeeperLockProvider(curatorClient, DEFAULT_PATH, 2);
+        final Locked held = smallCacheLockProvider.lock("/tmp/locks2", "held");
+
+        for (int i = 0; i < 10; i++) {
+            smallCacheLockProvider.lock("/tmp/locks2", "key" + i).unlock();
+        }
+
+        assertTrue(smallCacheLockProvider.mutexCacheSize() <= 2);
+        final Optional<Locked> reentered = smallCacheLockProvider.tryLock("/tmp/locks2", "held", Duration.ZERO);
+        assertTrue(reentered.isPresent());
+        reentered.get().unlock();
+        held.unlock();
+        assertTrue(fromOtherThread(() -> smallCacheLockProvider.tryLock("/tmp/locks2", "held", Duration.ZERO)).isPresent());
+    }
+
+    @Test
+    @DisplayName("Without a mutex cache a thread holding a lock should not lock it again")
+    void noMutexCache_shouldNotBeReentrant() {
+        final ZookeeperLockProvider uncachedLockProvider = new ZookeeperLockProvider(curatorClient, DEFAULT_PATH, 0);
+        final Locked locked = uncachedLockProvider.lock("/tmp/locks2", "aLock");
+
+        assertFalse(uncachedLockProvider.tryLock("/tmp/locks2", "aLock", Duration.ofMillis(100)).isPresent());
+        locked.unlock();
+        assertEquals(0, uncachedLockProvider.mutexCacheSize());
+    }
+
+    @Test
+    @DisplayName("The lock paths of a churn of unique keys should stay bounded while the reaper deletes idle paths")
+    void reaper_shouldBoundLockPathsUnderKeyChurn() throws Exception {
+        final int keys = Integer.getInteger("lockProvider.zookeeper.churnKeys", 20_000);
+        final int bound = 2_000;
+        int maxLockPaths = 0;
+        try (ZookeeperLockProvider reapingLockProvider = new ZookeeperLockProvider(curatorClient, DEFAULT_PATH,
+                ZookeeperLockProvider.DEFAULT_MUTEX_CACHE_SIZE, Duration.ofMillis(100))) {
+            for (int i = 0; i < keys; i++) {
+                reapingLockProvider.lock("/tmp/churn", "key" + i).unlock();
+                if (i % 500 == 0) {
+                    maxLockPaths = Math.max(maxLockPaths, curatorClient.checkExists().forPath("/tmp/churn").getNumChildren());
+                    while (reapingLockProvider.lockPathReaper().size() > bound / 2) {
+                        sleepUninterruptibly(10, TimeUnit.MILLISECONDS);
+                    }
+                }
+            }
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (curatorClient.checkExists().forPath("/tmp/churn") != null
+                    && curatorClient.checkExists().forPath("/tmp/churn").getNumChildren() > 0
+                    && System.nanoTime() < deadline) {
+                sleepUninterruptibly(50, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        assertTrue(maxLockPaths < bound, maxLockPaths + " lock paths");
+        assertTrue(curatorClient.checkExists().forPath("/tmp/churn") == null
+                || curatorClient.checkExists().forPath("/tmp/churn").getNumChildren() == 0);
+    }
+
+    @Test
+    @DisplayName("The reaper should delete the paths of released read/write locks and permits")
+    void reaper_shouldDeleteReadWriteLockAndPermitsPaths() throws Exception {
+        try (ZookeeperLockProvider reapingLockProvider = new ZookeeperLockProvider(curatorClient, DEFAULT_PATH,
+                ZookeeperLockProvider.DEFAULT_MUTEX_CACHE_SIZE, Duration.ofSeconds(2))) {
+            reapingLockProvider.writeLock("/tmp/reaped", "aLock").unlock();
+            reapingLockProvider.acquirePermits("/tmp/reaped", "aLock", 2, 1).unlock();
+            reapingLockProvider.lockAll("/tmp/reaped", List.of("bLock", "cLock")).unlock();
+            final Locked held = reapingLockProvider.lock("/tmp/reaped", "dLock");
+            assertEquals(4, reapingLockProvider.lockPathReaper().size());
+
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                while (!curatorClient.getChildren().forPath("/tmp/reaped-rw").isEmpty()
+                        || !curatorClient.getChildren().forPath("/tmp/reaped-permits").isEmpty()
+                        || curatorClient.getChildren().forPath("/tmp/reaped").size() > 1) {
+                    sleepUninterruptibly(50, TimeUnit.MILLISECONDS);
+                }
+            });
+
+            assertTrue(curatorClient.getChildren().forPath("/tmp/reaped-rw").isEmpty());
+            assertTrue(curatorClient.getChildren().forPath("/tmp/reaped-permits").isEmpty());
+            assertEquals(List.of("dLock"), curatorClient.getChildren().forPath("/tmp/reaped"));
+            held.unlock();
+        }
+    }
+
+    @Test
+    @DisplayName("In ephemeral mode tryLock should fail at once while another client holds the key")
+    void ephemeralMode_tryLockShouldFailAtOnceWhenHeld() throws Exception {
+        final ZookeeperLockProvider ephemeralLockProvider = ephemeralLockProvider();
+        final Locked locked = ephemeralLockProvider.lock("/tmp/ephemeral", "aLock");
+
+        final long start = System.nanoTime();
+        assertFalse(fromOtherThread(() -> ephemeralLockProvider.tryLock("/tmp/ephemeral", "aLock")).isPresent());
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(400));
+        assertFalse(ephemeralLockProvider.tryLock("/tmp/ephemeral", "aLock").isPresent());
+
+        locked.unlock();
+        assertNull(curatorClient.checkExists().forPath("/tmp/ephemeral/aLock"));
+        final Optional<Locked> next = ephemeralLockProvider.tryLock("/tmp/ephemeral", "aLock");
+        assertTrue(next.isPresent());
+        next.get().unlock();
+    }
+
+    @Test
+    @DisplayName("In ephemeral mode lock and tryLock with a wait time should get the key once it is unlocked")
+    void ephemeralMode_lockShouldWaitForUnlock() {
+        final ZookeeperLockProvider ephemeralLockProvider = ephemeralLockProvider();
+        final Locked locked = ephemeralLockProvider.lock("/tmp/ephemeral", "aLock");
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            final CompletableFuture<Void> waiter = CompletableFuture.runAsync(() -> ephemeralLockProvider.lock("/tmp/ephemeral", "aLock").unlock());
+            final CompletableFuture<Optional<Locked>> tryWaiter = CompletableFuture.supplyAsync(() ->
+                    ephemeralLockProvider.tryLock("/tmp/ephemeral", "aLock", Duration.ofSeconds(10)));
+            sleepUninterruptibly(200, TimeUnit.MILLISECONDS);
+            assertFalse(waiter.isDone());
+            assertFalse(tryWaiter.isDone());
+
+            locked.unlock();
+            final Optional<Locked> tried = tryWaiter.get();
+            assertTrue(tried.isPresent());
+            tried.get().unlock();
+            waiter.get();
+        });
+    }
+
+    @Test
+    @DisplayName("In ephemeral mode lockAll should hold no key until it can create the nodes of all keys")
+    void ephemeralMode_lockAllShouldCreateAllNodesAtOnce() throws Exception {
+        final ZookeeperLockProvider ephemeralLockProvider = ephemeralLockProvider();
+        final Locked locked = ephemeralLockProvider.lock("/tmp/ephemeral", "bLock");
+
+        final CompletableFuture<Locked> lockAll = CompletableFuture.supplyAsync(() ->
+                ephemeralLockProvider.lockAll("/tmp/ephemeral", List.of("aLock", "bLock", "cLock")));
+        sleepUninterruptibly(200, TimeUnit.MILLISECONDS);
+        assertFalse(lockAll.isDone());
+        assertNull(curatorClient.checkExists().forPath("/tmp/ephemeral/aLock"));
+
+        locked.unlock();
+        final Locked allLocked = lockAll.get(10, TimeUnit.SECONDS);
+        assertFalse(ephemeralLockProvider.tryLock("/tmp/ephemeral", "cLock").isPresent());
+        allLocked.unlock();
+        assertTrue(curatorClient.getChildren().forPath("/tmp/ephemeral").isEmpty());
+    }
+
+    @Test
+    @DisplayName("In ephemeral mode unlocking twice should not release the next holder's lock")
+    void ephemeralMode_doubleUnlockShouldKeepNextHolder() {
+        final ZookeeperLockProvider ephemeralLockProvider = ephemeralLockProvider();
+        final Locked locked = ephemeralLockProvider.lock("/tmp/ephemeral", "aLock");
+        locked.unlock();
+        final Locked next = ephemeralLockProvider.lock("/tmp/ephemeral", "aLock");
+
+        locked.unlock();
+
+        assertFalse(ephemeralLockProvider.tryLock("/tmp/ephemeral", "aLock").isPresent());
+        next.unlock();
+    }
+
+    @Test
+    @DisplayName("A sharded key should always get the same path under two levels of at most fan-out shard nodes")
+    void shardFanOut_shouldSpreadKeysOverShardNodes() {
+        final ZookeeperLockProvider shardedLockProvider = shardedLockProvider(4);
+        final Set<String> shards = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            final String lockPath = shardedLockProvider.lockPath("/tmp/sharded", "key" + i);
+            assertEquals(lockPath, shardedLockProvider.lockPath("/tmp/sharded", "key" + i));
+            final String[] levels = lockPath.substring("/tmp/sharded/".length()).split("/");
+            assertEquals("key" + i, levels[2]);
+            assertTrue(Integer.parseInt(levels[0], 16) < 4 && Integer.parseInt(levels[1], 16) < 4, lockPath);
+            shards.add(levels[0] + "/" + levels[1]);
+        }
+        assertEquals(16, shards.size());
+        assertEquals("/tmp/sharded/key", lockProvider.lockPath("/tmp/sharded", "key"));
+    }
+
+    @Test
+    @DisplayName("Sharded locks should exclude each other and keep the lock map to fan-out children")
+    void shardFanOut_shouldLockShardedPaths() throws Exception {
+        final ZookeeperLockProvider shardedLockProvider = shardedLockProvider(4);
+        for (int i = 0; i < 50; i++) {
+            shardedLockProvider.lock("/tmp/sharded", "key" + i).unlock();
+        }
+        final Locked locked = shardedLockProvider.lock("/tmp/sharded", "aLock");
+
+        assertFalse(fromOtherThread(() -> shardedLockProvider.tryLock("/tmp/sharded", "aLock", Duration.ZERO)).isPresent());
+        assertNotNull(curatorClient.checkExists().forPath(shardedLockProvider.lockPath("/tmp/sharded", "aLock")));
+        assertTrue(curatorClient.getChildren().forPath("/tmp/sharded").size() <= 4);
+        locked.unlock();
+        assertTrue(fromOtherThread(() -> shardedLockProvider.tryLock("/tmp/sharded", "aLock", Duration.ZERO)).isPresent());
+    }
+
+    @Test
+    @DisplayName("Constructor should reject a negative or too large shard fan-out")
+    void constructor_shouldRejectInvalidShardFanOut() {
+        assertThrows(IllegalArgumentException.class, () -> shardedLockProvider(-1));
+        assertThrows(IllegalArgumentException.class, () -> shardedLockProvider(4097));
+    }
+
+    @Test
+    @DisplayName("Hundreds of outstanding lockAsync calls should wait without a thread each and hold the lock in turn")
+    void lockAsync_shouldWaitWithoutThreads() {
+        final int waiters = 500;
+        final Locked holder = lockProvider.lock("/tmp/async", "aLock");
+        final int threadsBefore = Thread.activeCount();
+        final AtomicInteger holders = new AtomicInteger();
+        final AtomicInteger maxHolders = new AtomicInteger();
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        for (int i = 0; i < waiters; i++) {
+            futures.add(lockProvider.lockAsync("/tmp/async", "aLock")
+                    .thenCompose(locked -> {
+                        maxHolders.accumulateAndGet(holders.incrementAndGet(), Math::max);
+                        holders.decrementAndGet();
+                        return locked.unlockAsync();
+                    })
+                    .toCompletableFuture());
+        }
+        sleepUninterruptibly(500, TimeUnit.MILLISECONDS);
+        assertTrue(Thread.activeCount() < threadsBefore + 20, Thread.activeCount() + " threads");
+        assertTrue(futures.stream().noneMatch(CompletableFuture::isDone));
+
+        holder.unlock();
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join());
+        assertEquals(1, maxHolders.get());
+    }
+
+    @Test
+    @DisplayName("tryLockAsync should fail without waiting while the mutex of the key is held")
+    void tryLockAsync_shouldFailAtOnceWhileMutexIsHeld() throws Exception {
+        final Locked holder = lockProvider.lock("/tmp/async", "bLock");
+
+        final long start = System.nanoTime();
+        assertFalse(lockProvider.tryLockAsync("/tmp/async", "bLock").toCompletableFuture().get(10, TimeUnit.SECONDS).isPresent());
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(400));
+        holder.unlock();
+
+        final Optional<Locked> locked = lockProvider.tryLockAsync("/tmp/async", "bLock").toCompletableFuture().get(10, TimeUnit.SECONDS);
+        assertTrue(locked.isPresent());
+        assertFalse(fromOtherThread(() -> lockProvider.tryLock("/tmp/async", "bLock", Duration.ZERO)).isPresent());
+        locked.get().unlockAsync().toCompletableFuture().get(10, TimeUnit.SECONDS);
+        assertEquals(List.of(), curatorClient.getChildren().forPath("/tmp/async/bLock"));
+    }
+
+    @Test
+    @DisplayName("Unlocking an asynchronous lock twice should fail with IllegalMonitorStateException")
+    void unlockAsync_shouldFailWhenAlreadyReleased() throws Exception {
+        final Locked locked = lockProvider.lockAsync("/tmp/async", "cLock").toCompletableFuture().get(10, TimeUnit.SECONDS);
+        locked.unlock();
+
+        assertThrows(IllegalMonitorStateException.class, locked::unlock);
+        final ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> locked.unlockAsync().toCompletableFuture().get(10, TimeUnit.SECONDS));
+        assertTrue(failure.getCause() instanceof IllegalMonitorStateException);
+    }
+
+    /**
+     * Runs the supplier on a new thread, since locks are reentrant for the thread holding them.
+     */
+    private static <T> T fromOtherThread(Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(supplier, runnable -> new Thread(runnable).start()).join();
+    }
+
+    private ZookeeperLockProvider ephemeralLockProvider() {
+        return new ZookeeperLockProvider(curatorClient, DEFAULT_PATH, ZookeeperLockProvider.DEFAULT_MUTEX_CACHE_SIZE,
+                null, ZookeeperLockMode.EPHEMERAL);
+    }
+
+    private ZookeeperLockProvider shardedLockProvider(int shardFanOut) {
+        return new ZookeeperLockProvider(curatorClient, DEFAULT_PATH, ZookeeperLockProvider.DEFAULT_MUTEX_CACHE_SIZE,
+                null, ZookeeperLockMode.MUTEX, shardFanOut);
+    }
 }
@@ -1,6 +1,14 @@
 package com.inomera.telco.commons.lock;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Supplier;
 
 /**
@@ -9,6 +17,23 @@ import java.util.function.Supplier;
  * and handling both mandatory and optional (try-lock) locking mechanisms.
  *
  * It ensures that locks are released properly, even in case of exceptions.
+ * <p>
+ * The asynchronous methods acquire the lock on a virtual thread which also releases it later,
+ * so blocking and thread-bound backends work unchanged. Providers with a native asynchronous
+ * client override them.
+ * <p>
+ * {@link #lockAll(String, Collection)} acquires the locks one by one in the canonical key order.
+ * Providers whose backend can acquire several locks at once override it.
+ * <p>
+ * {@link #readLock(String, String)} and {@link #writeLock(String, String)} fall back to the exclusive lock of the key.
+ * Providers whose backend has read/write locks override them.
+ * <p>
+ * Permits have no fallback: providers with a semaphore override {@link #acquirePermits(String, String, int, int)}
+ * and {@link #tryAcquirePermits(String, String, int, int, Duration)}, others throw {@link UnsupportedOperationException}.
+ * <p>
+ * Leases have no fallback either: providers whose backend can expire a lock override
+ * {@link #lock(String, String, Duration)} and {@link #tryLock(String, String, Duration, Duration)},
+ * others throw {@link UnsupportedOperationException}.
  *
  * @author Serdar Kuzucu
  */
@@ -68,6 +93,223 @@ public abstract class BaseLockProvider implements LockProvider {
         return executeAndUnlock(supplier, locked);
     }
 
+    /**
+     * Throws {@link UnsupportedOperationException}; providers whose backend can expire a lock override it.
+     *
+     * @param lockMap   the name of the lock map
+     * @param lockKey   the key used to acquire the lock
+     * @param leaseTime the maximum time the lock is held
+     * @return never
+     */
+    @Override
+    public Locked lock(String lockMap, String lockKey, Duration leaseTime) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support leases");
+    }
+
+    /**
+     * Throws {@link UnsupportedOperationException}; providers whose backend can expire a lock override it.
+     *
+     * @param lockMap   the name of the lock map
+     * @param lockKey   the key used to attempt acquiring the lock
+     * @param waitTime  the maximum time to wait for the lock
+     * @param leaseTime the maximum time the lock is held
+     * @return never
+     */
+    @Override
+    public Optional<Locked> tryLock(String lockMap, String lockKey, Duration waitTime, Duration leaseTime) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support leases");
+    }
+
+    /**
+     * Acquires the locks of all given keys one by one in the canonical key order.
+     * If acquiring a lock fails, the locks acquired so far are released before the failure is rethrown.
+     *
+     * @param lockMap  the name of the lock map
+     * @param lockKeys the keys used to acquire the locks; duplicate keys are locked once
+     * @return a {@link Locked} object releasing all the acquired locks in reverse order
+     */
+    @Override
+    public Locked lockAll(String lockMap, Collection<String> lockKeys) {
+        final List<String> orderedKeys = canonicalOrder(lockKeys);
+        final List<Locked> acquired = new ArrayList<>(orderedKeys.size());
+        try {
+            for (String lockKey : orderedKeys) {
+                acquired.add(lock(lockMap, lockKey));
+            }
+        } catch (RuntimeException | Error e) {
+            unlockAll(acquired);
+            throw e;
+        }
+        return () -> unlockAll(acquired);
+    }
+
+    /**
+     * Executes a runnable within the locks of all given keys, acquired by {@link #lockAll(String, Collection)}.
+     *
+     * @param lockMap  the name of the lock map
+     * @param lockKeys the keys used to acquire the locks
+     * @param runnable the task to be executed within the locks
+     */
+    @Override
+    public void executeInLock(String lockMap, Collection<String> lockKeys, Runnable runnable) {
+        final Locked locked = lockAll(lockMap, lockKeys);
+        executeAndUnlock(runnable, locked);
+    }
+
+    /**
+     * Executes a supplier within the locks of all given keys, acquired by {@link #lockAll(String, Collection)}, and returns the result.
+     *
+     * @param lockMap  the name of the lock map
+     * @param lockKeys the keys used to acquire the locks
+     * @param supplier the supplier to be executed within the locks
+     * @param <T>      the type of the returned result
+     * @return the result produced by the supplier
+     */
+    @Override
+    public <T> T executeInLock(String lockMap, Collection<String> lockKeys, Supplier<T> supplier) {
+        final Locked locked = lockAll(lockMap, lockKeys);
+        return executeAndUnlock(supplier, locked);
+    }
+
+    /**
+     * Acquires the exclusive lock of the key, since the backend has no shared read lock.
+     *
+     * @param lockMap the name of the lock map
+     * @param lockKey the key used to acquire the lock
+     * @return the acquired {@link Locked} object
+     */
+    @Override
+    public Locked readLock(String lockMap, String lockKey) {
+        return lock(lockMap, lockKey);
+    }
+
+    /**
+     * Acquires the exclusive lock of the key, since the backend has no read/write lock.
+     *
+     * @param lockMap the name of the lock map
+     * @param lockKey the key used to acquire the lock
+     * @return the acquired {@link Locked} object
+     */
+    @Override
+    public Locked writeLock(String lockMap, String lockKey) {
+        return lock(lockMap, lockKey);
+    }
+
+    /**
+     * Executes a runnable within the read lock of a key.
+     *
+     * @param lockMap  the name of the lock map
+     * @param lockKey  the key used to acquire the lock
+     * @param runnable the task to be executed within the lock
+     */
+    @Override
+    public void executeInReadLock(String lockMap, String lockKey, Runnable runnable) {
+        final Locked locked = readLock(lockMap, lockKey);
+        executeAndUnlock(runnable, locked);
+    }
+
+    /**
+     * Executes a supplier within the read lock of a key and returns the result.
+     *
+     * @param lockMap  the name of the lock map
+     * @param lockKey  the key used to acquire the lock
+     * @param supplier the supplier to be executed within the lock
+     * @param <T>      the type of the returned result
+     * @return the result produced by the supplier
+     */
+    @Override
+    public <T> T executeInReadLock(String lockMap, String lockKey, Supplier<T> supplier) {
+        final Locked locked = readLock(lockMap, lockKey);
+        return executeAndUnlock(supplier, locked);
+    }
+
+    /**
+     * Executes a runnable within the write lock of a key.
+     *
+     * @param lockMap  the name of the lock map
+     * @param lockKey  the key used to acquire the lock
+     * @param runnable the task to be executed within the lock
+     */
+    @Override
+    public void executeInWriteLock(String lockMap, String lockKey, Runnable runnable) {
+        final Locked locked = writeLock(lockMap, lockKey);
+        executeAndUnlock(runnable, locked);
+    }
+
+    /**
+     * Executes a supplier within the write lock of a key and returns the result.
+     *
+     * @param lockMap  the name of the lock map
+     * @param lockKey  the key used to acquire the lock
+     * @param supplier the supplier to be executed within the lock
+     * @param <T>      the type of the returned result
+     * @return the result produced by the supplier
+     */
+    @Override
+    public <T> T executeInWriteLock(String lockMap, String lockKey, Supplier<T> supplier) {
+        final Locked locked = writeLock(lockMap, lockKey);
+        return executeAndUnlock(supplier, locked);
+    }
+
+    /**
+     * Throws {@link UnsupportedOperationException}; providers with a semaphore override it.
+     *
+     * @param lockMap    the name of the lock map
+     * @param lockKey    the key whose permits are acquired
+     * @param maxPermits the number of permits of the key
+     * @param permits    the number of permits to acquire
+     * @return never
+     */
+    @Override
+    public Permits acquirePermits(String lockMap, String lockKey, int maxPermits, int permits) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support permits");
+    }
+
+    /**
+     * Throws {@link UnsupportedOperationException}; providers with a semaphore override it.
+     *
+     * @param lockMap    the name of the lock map
+     * @param lockKey    the key whose permits are acquired
+     * @param maxPermits the number of permits of the key
+     * @param permits    the number of permits to acquire
+     * @param waitTime   the maximum time to wait for the permits
+     * @return never
+     */
+    @Override
+    public Optional<Permits> tryAcquirePermits(String lockMap, String lockKey, int maxPermits, int permits, Duration waitTime) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support permits");
+    }
+
+    /**
+     * Executes a runnable holding one of the permits of a key.
+     *
+     * @param lockMap    the name of the lock map
+     * @param lockKey    the key whose permit is acquired
+     * @param maxPermits the number of permits of the key
+     * @param runnable   the task to be executed holding the permit
+     */
+    @Override
+    public void executeWithPermit(String lockMap, String lockKey, int maxPermits, Runnable runnable) {
+        final Permits permits = acquirePermits(lockMap, lockKey, maxPermits, 1);
+        executeAndUnlock(runnable, permits);
+    }
+
+    /**
+     * Executes a supplier holding one of the permits of a key and returns the result.
+     *
+     * @param lockMap    the name of the lock map
+     * @param lockKey    the key whose permit is acquired
+     * @param maxPermits the number of permits of the key
+     * @param supplier   the supplier to be executed holding the permit
+     * @param <T>        the type of the returned result
+     * @return the result produced by the supplier
+     */
+    @Override
+    public <T> T executeWithPermit(String lockMap, String lockKey, int maxPermits, Supplier<T> supplier) {
+        final Permits permits = acquirePermits(lockMap, lockKey, maxPermits, 1);
+        return executeAndUnlock(supplier, permits);
+    }
+
     /**
      * Attempts to acquire a lock and execute a runnable within it. If the lock cannot be acquired, the runnable is not executed.
      *
@@ -122,6 +364,211 @@ public abstract class BaseLockProvider implements LockProvider {
         return lockedOptional.map(locked -> executeAndUnlock(supplier, locked)).orElse(null);
     }
 
+    /**
+     * Attempts to acquire a lock within the given wait time and execute a runnable within it. If the lock cannot be acquired, the runnable is not executed.
+     *
+     * @param lockMap  the name of the lock map
+     * @param lockKey  the key used to attempt acquiring the lock
+     * @param waitTime the maximum time to wait for the lock
+     * @param runnable the task to be executed if the lock is acquired
+     */
+    @Override
+    public void executeInTryLock(String lockMap, String lockKey, Duration waitTime, Runnable runnable) {
+        final Optional<Locked> lockedOptional = tryLock(lockMap, lockKey, waitTime);
+        lockedOptional.ifPresent(locked -> executeAndUnlock(runnable, locked));
+    }
+
+    /**
+     * Attempts to acquire a lock within the given wait time and execute a supplier within it, returning the result. If the lock cannot be acquired, returns null.
+     *
+     * @param lockMap  the name of the lock map
+     * @param lockKey  the key used to attempt acquiring the lock
+     * @param waitTime the maximum time to wait for the lock
+     * @param supplier the supplier to be executed if the lock is acquired
+     * @param <T>      the type of the returned result
+     * @return the result produced by the supplier, or null if the lock could not be acquired
+     */
+    @Override
+    public <T> T executeInTryLock(String lockMap, String lockKey, Duration waitTime, Supplier<T> supplier) {
+        final Optional<Locked> lockedOptional = tryLock(lockMap, lockKey, waitTime);
+        return lockedOptional.map(locked -> executeAndUnlock(supplier, locked)).orElse(null);
+    }
+
+    /**
+     * Attempts to acquire a lock within the given wait time and execute a runnable within it, using only a lock name.
+     *
+     * @param lockName the name of the lock
+     * @param waitTime the maximum time to wait for the lock
+     * @param runnable the task to be executed if the lock is acquired
+     */
+    @Override
+    public void executeInTryLock(String lockName, Duration waitTime, Runnable runnable) {
+        final Optional<Locked> lockedOptional = tryLock(lockName, waitTime);
+        lockedOptional.ifPresent(locked -> executeAndUnlock(runnable, locked));
+    }
+
+    /**
+     * Attempts to acquire a lock within the given wait time and execute a supplier within it, using only a lock name. Returns null if the lock cannot be acquired.
+     *
+     * @param lockName the name of the lock
+     * @param waitTime the maximum time to wait for the lock
+     * @param supplier the supplier to be executed if the lock is acquired
+     * @param <T>      the type of the returned result
+     * @return the result produced by the supplier, or null if the lock could not be acquired
+     */
+    @Override
+    public <T> T executeInTryLock(String lockName, Duration waitTime, Supplier<T> supplier) {
+        final Optional<Locked> lockedOptional = tryLock(lockName, waitTime);
+        return lockedOptional.map(locked -> executeAndUnlock(supplier, locked)).orElse(null);
+    }
+
+    /**
+     * Acquires a lock on a virtual thread using a lock map and lock key.
+     *
+     * @param lockMap the name of the lock map
+     * @param lockKey the key used to acquire the lock
+     * @return a stage completed with the acquired {@link Locked} object
+     */
+    @Override
+    public CompletionStage<Locked> lockAsync(String lockMap, String lockKey) {
+        return VirtualThreadLockBridge.lock(() -> lock(lockMap, lockKey));
+    }
+
+    /**
+     * Acquires a lock on a virtual thread using only a lock name.
+     *
+     * @param lockName the name of the lock
+     * @return a stage completed with the acquired {@link Locked} object
+     */
+    @Override
+    public CompletionStage<Locked> lockAsync(String lockName) {
+        return VirtualThreadLockBridge.lock(() -> lock(lockName));
+    }
+
+    /**
+     * Attempts to acquire a lock on a virtual thread using a lock map and lock key.
+     *
+     * @param lockMap the name of the lock map
+     * @param lockKey the key used to attempt acquiring the lock
+     * @return a stage completed with the acquired {@link Locked} object if successful, or an empty {@link Optional} if not
+     */
+    @Override
+    public CompletionStage<Optional<Locked>> tryLockAsync(String lockMap, String lockKey) {
+        return VirtualThreadLockBridge.tryLock(() -> tryLock(lockMap, lockKey));
+    }
+
+    /**
+     * Attempts to acquire a lock on a virtual thread using only a lock name.
+     *
+     * @param lockName the name of the lock
+     * @return a stage completed with the acquired {@link Locked} object if successful, or an empty {@link Optional} if not
+     */
+    @Override
+    public CompletionStage<Optional<Locked>> tryLockAsync(String lockName) {
+        return VirtualThreadLockBridge.tryLock(() -> tryLock(lockName));
+    }
+
+    /**
+     * Executes a supplier within a lock acquired by {@link #lockAsync(String, String)} and releases the lock asynchronously.
+     *
+     * @param lockMap  the name of the lock map
+     * @param lockKey  the key used to acquire the lock
+     * @param supplier the supplier to be executed within the lock
+     * @param <T>      the type of the returned result
+     * @return a stage completed with the result produced by the supplier once the lock is released
+     */
+    @Override
+    public <T> CompletionStage<T> executeInLockAsync(String lockMap, String lockKey, Supplier<T> supplier) {
+        return lockAsync(lockMap, lockKey).thenCompose(locked -> executeAndUnlockAsync(supplier, locked));
+    }
+
+    /**
+     * Executes a supplier within a lock acquired by {@link #lockAsync(String)} and releases the lock asynchronously.
+     *
+     * @param lockName the name of the lock
+     * @param supplier the supplier to be executed within the lock
+     * @param <T>      the type of the returned result
+     * @return a stage completed with the result produced by the supplier once the lock is released
+     */
+    @Override
+    public <T> CompletionStage<T> executeInLockAsync(String lockName, Supplier<T> supplier) {
+        return lockAsync(lockName).thenCompose(locked -> executeAndUnlockAsync(supplier, locked));
+    }
+
+    /**
+     * Sorts the given keys into the canonical order in which multiple locks are acquired, dropping duplicates.
+     *
+     * @param lockKeys the keys to be locked together
+     * @return the distinct keys in ascending order
+     * @throws IllegalArgumentException if there are no keys
+     */
+    protected static List<String> canonicalOrder(Collection<String> lockKeys) {
+        Objects.requireNonNull(lockKeys, "Lock keys cannot be null");
+        final TreeSet<String> orderedKeys = new TreeSet<>();
+        for (String lockKey : lockKeys) {
+            orderedKeys.add(Objects.requireNonNull(lockKey, "Lock key cannot be null"));
+        }
+        if (orderedKeys.isEmpty()) {
+            throw new IllegalArgumentException("At least one lock key is required");
+        }
+        return new ArrayList<>(orderedKeys);
+    }
+
+    /**
+     * Checks the number of permits requested against the number of permits of the key.
+     *
+     * @param maxPermits the number of permits of the key
+     * @param permits    the number of permits to acquire
+     * @throws IllegalArgumentException if maxPermits or permits is not positive, or permits is more than maxPermits
+     */
+    protected static void checkPermits(int maxPermits, int permits) {
+        if (maxPermits <= 0) {
+            throw new IllegalArgumentException("Max permits must be positive: " + maxPermits);
+        }
+        if (permits <= 0 || permits > maxPermits) {
+            throw new IllegalArgumentException("Permits must be between 1 and " + maxPermits + ": " + permits);
+        }
+    }
+
+    /**
+     * Checks a lease and converts it to milliseconds, the unit of the distributed backends.
+     *
+     * @param leaseTime the maximum time a lock is held
+     * @return the lease in milliseconds
+     * @throws IllegalArgumentException if the lease is not positive
+     */
+    protected static long leaseMillis(Duration leaseTime) {
+        Objects.requireNonNull(leaseTime, "Lease time cannot be null");
+        if (leaseTime.isNegative() || leaseTime.isZero()) {
+            throw new IllegalArgumentException("Lease time must be positive: " + leaseTime);
+        }
+        return Math.max(1, leaseTime.toMillis());
+    }
+
+    /**
+     * Releases the given locks in reverse order of acquisition. Every lock is released even if releasing another fails;
+     * the first failure is rethrown afterward.
+     *
+     * @param acquired the acquired locks, in order of acquisition
+     */
+    protected static void unlockAll(List<? extends Locked> acquired) {
+        RuntimeException failure = null;
+        for (int i = acquired.size() - 1; i >= 0; i--) {
+            try {
+                acquired.get(i).unlock();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
     /**
      * Executes the given runnable and ensures the lock is released afterward.
      *
@@ -151,4 +598,22 @@ public abstract class BaseLockProvider implements LockProvider {
             locked.unlock();
         }
     }
+
+    /**
+     * Executes the given supplier and releases the lock asynchronously afterward, even if the supplier fails.
+     *
+     * @param supplier the supplier to be executed
+     * @param locked   the acquired lock
+     * @param <T>      the type of the returned result
+     * @return a stage completed with the result produced by the supplier once the lock is released
+     */
+    private <T> CompletionStage<T> executeAndUnlockAsync(Supplier<T> supplier, Locked locked) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            result.complete(supplier.get());
+        } catch (Throwable e) {
+            result.completeExceptionally(e);
+        }
+        return locked.unlockAsync().thenCompose(ignored -> result);
+    }
 }
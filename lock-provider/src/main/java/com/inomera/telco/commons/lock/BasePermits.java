@@ -0,0 +1,66 @@
+package com.inomera.telco.commons.lock;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Base implementation of {@link Permits} keeping count of the permits held.
+ * Subclasses only return permits to their backend.
+ * <p>
+ * Releases are serialized by a {@link ReentrantLock} rather than a monitor, so that a virtual thread waiting on the
+ * backend while releasing does not pin its carrier thread.
+ */
+public abstract class BasePermits implements Permits {
+    private final ReentrantLock releaseLock = new ReentrantLock();
+    private volatile int held;
+
+    /**
+     * @param held the number of permits acquired
+     */
+    protected BasePermits(int held) {
+        this.held = held;
+    }
+
+    @Override
+    public int held() {
+        return held;
+    }
+
+    @Override
+    public void release(int permits) {
+        releaseLock.lock();
+        try {
+            if (permits <= 0 || permits > held) {
+                throw new IllegalArgumentException("Cannot release " + permits + " permits, " + held + " held");
+            }
+            releasePermits(permits);
+            held -= permits;
+        } finally {
+            releaseLock.unlock();
+        }
+    }
+
+    /**
+     * Releases all the permits still held.
+     *
+     * @throws IllegalStateException if all the permits are already released
+     */
+    @Override
+    public void unlock() {
+        releaseLock.lock();
+        try {
+            if (held == 0) {
+                throw new IllegalStateException("Permits are already released");
+            }
+            release(held);
+        } finally {
+            releaseLock.unlock();
+        }
+    }
+
+    /**
+     * Returns permits to the backend.
+     *
+     * @param permits the number of permits to return, between 1 and the permits held
+     */
+    protected abstract void releasePermits(int permits);
+}
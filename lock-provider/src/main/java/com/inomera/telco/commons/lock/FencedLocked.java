@@ -0,0 +1,16 @@
+package com.inomera.telco.commons.lock;
+
+/**
+ * A lock that carries a fencing token, returned by providers whose backend issues one.
+ * <p>
+ * Every new holder of a lock gets a greater fence than all earlier holders of the same lock. A store guarded by the
+ * lock can remember the greatest fence it has seen and reject writes carrying a smaller one, which turns away a holder
+ * that lost the lock, e.g. after a long pause, without reading anything back first.
+ */
+public interface FencedLocked extends Locked {
+
+    /**
+     * @return the fencing token of this hold of the lock
+     */
+    long getFence();
+}
@@ -1,13 +1,17 @@
 package com.inomera.telco.commons.lock;
 
+import java.time.Duration;
+import java.util.Collection;
 import java.util.Optional;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Supplier;
 
 /**
  * Interface defining the contract for a lock provider.
  * <p>
  * Provides methods to acquire, attempt, and execute code blocks within locks.
- * Supports both mandatory and optional (try-lock) mechanisms.
+ * Supports both mandatory and optional (try-lock) mechanisms, blocking the calling thread
+ * or completing a {@link CompletionStage} once the lock is acquired.
  *
  * @author Serdar Kuzucu
  * @author Turgay Can
@@ -32,6 +36,43 @@ public interface LockProvider {
      */
     Optional<Locked> tryLock(String lockMap, String lockKey);
 
+    /**
+     * Attempts to acquire a lock using a lock map and lock key, waiting up to the given time for it to become available.
+     * The wait is done through the backend's own notification mechanism rather than by polling.
+     *
+     * @param lockMap  the name of the lock map
+     * @param lockKey  the key used to attempt acquiring the lock
+     * @param waitTime the maximum time to wait for the lock
+     * @return an {@link Optional} containing the acquired {@link Locked} object if successful, or an empty {@link Optional} if the wait time elapsed or the thread was interrupted
+     */
+    Optional<Locked> tryLock(String lockMap, String lockKey, Duration waitTime);
+
+    /**
+     * Acquires a lock using a lock map and lock key, holding it for at most the given lease.
+     * Once the lease elapses the lock is released by the backend even if it was never unlocked,
+     * and unlocking it afterwards throws {@link IllegalMonitorStateException}.
+     * Unlike a lock without a lease, the hold is not renewed while the holder is alive.
+     *
+     * @param lockMap   the name of the lock map
+     * @param lockKey   the key used to acquire the lock
+     * @param leaseTime the maximum time the lock is held
+     * @return the acquired {@link Locked} object
+     */
+    Locked lock(String lockMap, String lockKey, Duration leaseTime);
+
+    /**
+     * Attempts to acquire a lock using a lock map and lock key, waiting up to the given time for it to become available
+     * and holding it for at most the given lease.
+     *
+     * @param lockMap   the name of the lock map
+     * @param lockKey   the key used to attempt acquiring the lock
+     * @param waitTime  the maximum time to wait for the lock
+     * @param leaseTime the maximum time the lock is held
+     * @return an {@link Optional} containing the acquired {@link Locked} object if successful, or an empty {@link Optional} if the wait time elapsed or the thread was interrupted
+     * @see #lock(String, String, Duration)
+     */
+    Optional<Locked> tryLock(String lockMap, String lockKey, Duration waitTime, Duration leaseTime);
+
     /**
      * Acquires a lock using only a lock name.
      *
@@ -48,6 +89,15 @@ public interface LockProvider {
      */
     Optional<Locked> tryLock(String lockName);
 
+    /**
+     * Attempts to acquire a lock using only a lock name, waiting up to the given time for it to become available.
+     *
+     * @param lockName the name of the lock
+     * @param waitTime the maximum time to wait for the lock
+     * @return an {@link Optional} containing the acquired {@link Locked} object if successful, or an empty {@link Optional} if the wait time elapsed or the thread was interrupted
+     */
+    Optional<Locked> tryLock(String lockName, Duration waitTime);
+
     /**
      * Executes a runnable within a lock acquired using a lock map and lock key.
      *
@@ -86,6 +136,149 @@ public interface LockProvider {
      */
     <T> T executeInLock(String lockName, Supplier<T> supplier);
 
+    /**
+     * Acquires the locks of all given keys in a lock map, blocking until every one of them is held.
+     * The keys are acquired in a canonical order, so callers locking overlapping sets of keys cannot deadlock each other.
+     * Backends able to acquire several locks at once do so in a single logical round trip.
+     *
+     * @param lockMap  the name of the lock map
+     * @param lockKeys the keys used to acquire the locks; duplicate keys are locked once
+     * @return a {@link Locked} object releasing all the acquired locks
+     */
+    Locked lockAll(String lockMap, Collection<String> lockKeys);
+
+    /**
+     * Executes a runnable within the locks of all given keys, acquired as by {@link #lockAll(String, Collection)}.
+     *
+     * @param lockMap  the name of the lock map
+     * @param lockKeys the keys used to acquire the locks
+     * @param runnable the task to be executed within the locks
+     */
+    void executeInLock(String lockMap, Collection<String> lockKeys, Runnable runnable);
+
+    /**
+     * Executes a supplier within the locks of all given keys, acquired as by {@link #lockAll(String, Collection)}, and returns the result.
+     *
+     * @param lockMap  the name of the lock map
+     * @param lockKeys the keys used to acquire the locks
+     * @param supplier the supplier to be executed within the locks
+     * @param <T>      the type of the returned result
+     * @return the result produced by the supplier
+     */
+    <T> T executeInLock(String lockMap, Collection<String> lockKeys, Supplier<T> supplier);
+
+    /**
+     * Acquires the shared read lock of a key. Any number of readers may hold it at once, but not while a writer does.
+     * Read/write locks of a key are separate from its exclusive lock on backends with native read/write locks;
+     * other backends fall back to the exclusive lock for both reading and writing.
+     *
+     * @param lockMap the name of the lock map
+     * @param lockKey the key used to acquire the lock
+     * @return the acquired {@link Locked} object
+     */
+    Locked readLock(String lockMap, String lockKey);
+
+    /**
+     * Acquires the exclusive write lock of a key, waiting until no reader or other writer holds it.
+     *
+     * @param lockMap the name of the lock map
+     * @param lockKey the key used to acquire the lock
+     * @return the acquired {@link Locked} object
+     * @see #readLock(String, String)
+     */
+    Locked writeLock(String lockMap, String lockKey);
+
+    /**
+     * Executes a runnable within the read lock of a key.
+     *
+     * @param lockMap  the name of the lock map
+     * @param lockKey  the key used to acquire the lock
+     * @param runnable the task to be executed within the lock
+     */
+    void executeInReadLock(String lockMap, String lockKey, Runnable runnable);
+
+    /**
+     * Executes a supplier within the read lock of a key and returns the result.
+     *
+     * @param lockMap  the name of the lock map
+     * @param lockKey  the key used to acquire the lock
+     * @param supplier the supplier to be executed within the lock
+     * @param <T>      the type of the returned result
+     * @return the result produced by the supplier
+     */
+    <T> T executeInReadLock(String lockMap, String lockKey, Supplier<T> supplier);
+
+    /**
+     * Executes a runnable within the write lock of a key.
+     *
+     * @param lockMap  the name of the lock map
+     * @param lockKey  the key used to acquire the lock
+     * @param runnable the task to be executed within the lock
+     */
+    void executeInWriteLock(String lockMap, String lockKey, Runnable runnable);
+
+    /**
+     * Executes a supplier within the write lock of a key and returns the result.
+     *
+     * @param lockMap  the name of the lock map
+     * @param lockKey  the key used to acquire the lock
+     * @param supplier the supplier to be executed within the lock
+     * @param <T>      the type of the returned result
+     * @return the result produced by the supplier
+     */
+    <T> T executeInWriteLock(String lockMap, String lockKey, Supplier<T> supplier);
+
+    /**
+     * Acquires permits of a key, blocking until enough of them are available.
+     * A key has {@code maxPermits} permits, set when its permits are first created; every caller should pass the same value.
+     *
+     * @param lockMap    the name of the lock map
+     * @param lockKey    the key whose permits are acquired
+     * @param maxPermits the number of permits of the key
+     * @param permits    the number of permits to acquire
+     * @return the acquired {@link Permits}
+     * @throws IllegalArgumentException      if permits is not positive or more than maxPermits
+     * @throws UnsupportedOperationException if the provider has no permits
+     */
+    Permits acquirePermits(String lockMap, String lockKey, int maxPermits, int permits);
+
+    /**
+     * Attempts to acquire permits of a key, waiting up to the given time for enough of them to become available.
+     *
+     * @param lockMap    the name of the lock map
+     * @param lockKey    the key whose permits are acquired
+     * @param maxPermits the number of permits of the key
+     * @param permits    the number of permits to acquire
+     * @param waitTime   the maximum time to wait for the permits
+     * @return an {@link Optional} containing the acquired {@link Permits} if successful, or an empty {@link Optional} if the wait time elapsed or the thread was interrupted
+     * @throws IllegalArgumentException      if permits is not positive or more than maxPermits
+     * @throws UnsupportedOperationException if the provider has no permits
+     * @see #acquirePermits(String, String, int, int)
+     */
+    Optional<Permits> tryAcquirePermits(String lockMap, String lockKey, int maxPermits, int permits, Duration waitTime);
+
+    /**
+     * Executes a runnable holding one of the permits of a key, so that at most {@code maxPermits} callers run it at once.
+     *
+     * @param lockMap    the name of the lock map
+     * @param lockKey    the key whose permit is acquired
+     * @param maxPermits the number of permits of the key
+     * @param runnable   the task to be executed holding the permit
+     */
+    void executeWithPermit(String lockMap, String lockKey, int maxPermits, Runnable runnable);
+
+    /**
+     * Executes a supplier holding one of the permits of a key and returns the result.
+     *
+     * @param lockMap    the name of the lock map
+     * @param lockKey    the key whose permit is acquired
+     * @param maxPermits the number of permits of the key
+     * @param supplier   the supplier to be executed holding the permit
+     * @param <T>        the type of the returned result
+     * @return the result produced by the supplier
+     */
+    <T> T executeWithPermit(String lockMap, String lockKey, int maxPermits, Supplier<T> supplier);
+
     /**
      * Attempts to acquire a lock and execute a runnable within it. If the lock cannot be acquired, the runnable is not executed.
      *
@@ -123,4 +316,105 @@ public interface LockProvider {
      * @return the result produced by the supplier, or null if the lock could not be acquired
      */
     <T> T executeInTryLock(String lockName, Supplier<T> supplier);
+
+    /**
+     * Attempts to acquire a lock within the given wait time and execute a runnable within it. If the lock cannot be acquired, the runnable is not executed.
+     *
+     * @param lockMap  the name of the lock map
+     * @param lockKey  the key used to attempt acquiring the lock
+     * @param waitTime the maximum time to wait for the lock
+     * @param runnable the task to be executed if the lock is acquired
+     */
+    void executeInTryLock(String lockMap, String lockKey, Duration waitTime, Runnable runnable);
+
+    /**
+     * Attempts to acquire a lock within the given wait time and execute a supplier within it, returning the result. If the lock cannot be acquired, returns null.
+     *
+     * @param lockMap  the name of the lock map
+     * @param lockKey  the key used to attempt acquiring the lock
+     * @param waitTime the maximum time to wait for the lock
+     * @param supplier the supplier to be executed if the lock is acquired
+     * @param <T>      the type of the returned result
+     * @return the result produced by the supplier, or null if the lock could not be acquired
+     */
+    <T> T executeInTryLock(String lockMap, String lockKey, Duration waitTime, Supplier<T> supplier);
+
+    /**
+     * Attempts to acquire a lock within the given wait time and execute a runnable within it, using only a lock name.
+     *
+     * @param lockName the name of the lock
+     * @param waitTime the maximum time to wait for the lock
+     * @param runnable the task to be executed if the lock is acquired
+     */
+    void executeInTryLock(String lockName, Duration waitTime, Runnable runnable);
+
+    /**
+     * Attempts to acquire a lock within the given wait time and execute a supplier within it, using only a lock name. Returns null if the lock cannot be acquired.
+     *
+     * @param lockName the name of the lock
+     * @param waitTime the maximum time to wait for the lock
+     * @param supplier the supplier to be executed if the lock is acquired
+     * @param <T>      the type of the returned result
+     * @return the result produced by the supplier, or null if the lock could not be acquired
+     */
+    <T> T executeInTryLock(String lockName, Duration waitTime, Supplier<T> supplier);
+
+    /**
+     * Acquires a lock using a lock map and lock key without blocking the calling thread.
+     * The returned {@link Locked} may be unlocked from any thread.
+     *
+     * @param lockMap the name of the lock map
+     * @param lockKey the key used to acquire the lock
+     * @return a stage completed with the acquired {@link Locked} object
+     */
+    CompletionStage<Locked> lockAsync(String lockMap, String lockKey);
+
+    /**
+     * Acquires a lock using only a lock name without blocking the calling thread.
+     * The returned {@link Locked} may be unlocked from any thread.
+     *
+     * @param lockName the name of the lock
+     * @return a stage completed with the acquired {@link Locked} object
+     */
+    CompletionStage<Locked> lockAsync(String lockName);
+
+    /**
+     * Attempts to acquire a lock using a lock map and lock key without blocking the calling thread.
+     *
+     * @param lockMap the name of the lock map
+     * @param lockKey the key used to attempt acquiring the lock
+     * @return a stage completed with the acquired {@link Locked} object if successful, or an empty {@link Optional} if not
+     */
+    CompletionStage<Optional<Locked>> tryLockAsync(String lockMap, String lockKey);
+
+    /**
+     * Attempts to acquire a lock using only a lock name without blocking the calling thread.
+     *
+     * @param lockName the name of the lock
+     * @return a stage completed with the acquired {@link Locked} object if successful, or an empty {@link Optional} if not
+     */
+    CompletionStage<Optional<Locked>> tryLockAsync(String lockName);
+
+    /**
+     * Executes a supplier within a lock acquired without blocking the calling thread.
+     * The supplier runs on the thread that completes the acquisition.
+     *
+     * @param lockMap  the name of the lock map
+     * @param lockKey  the key used to acquire the lock
+     * @param supplier the supplier to be executed within the lock
+     * @param <T>      the type of the returned result
+     * @return a stage completed with the result produced by the supplier once the lock is released
+     */
+    <T> CompletionStage<T> executeInLockAsync(String lockMap, String lockKey, Supplier<T> supplier);
+
+    /**
+     * Executes a supplier within a lock acquired without blocking the calling thread, using only a lock name.
+     * The supplier runs on the thread that completes the acquisition.
+     *
+     * @param lockName the name of the lock
+     * @param supplier the supplier to be executed within the lock
+     * @param <T>      the type of the returned result
+     * @return a stage completed with the result produced by the supplier once the lock is released
+     */
+    <T> CompletionStage<T> executeInLockAsync(String lockName, Supplier<T> supplier);
 }
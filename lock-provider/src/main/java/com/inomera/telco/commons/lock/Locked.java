@@ -1,5 +1,8 @@
 package com.inomera.telco.commons.lock;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
 /**
  * @author Serdar Kuzucu
  */
@@ -9,4 +12,19 @@ public interface Locked {
      * Release lock
      */
     void unlock();
+
+    /**
+     * Release lock without blocking the calling thread where the backend supports it.
+     * The default implementation releases the lock synchronously.
+     *
+     * @return a stage completed when the lock is released
+     */
+    default CompletionStage<Void> unlockAsync() {
+        try {
+            unlock();
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 }
@@ -0,0 +1,22 @@
+package com.inomera.telco.commons.lock;
+
+/**
+ * Permits acquired from the bounded permits of a key. Released permits become available to other callers.
+ * <p>
+ * {@link #unlock()} releases all the permits still held.
+ */
+public interface Permits extends Locked {
+
+    /**
+     * @return the number of permits still held
+     */
+    int held();
+
+    /**
+     * Releases some of the held permits.
+     *
+     * @param permits the number of permits to release
+     * @throws IllegalArgumentException if permits is not positive or more than the permits held
+     */
+    void release(int permits);
+}
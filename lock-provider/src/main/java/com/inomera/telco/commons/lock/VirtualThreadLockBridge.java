@@ -0,0 +1,147 @@
+package com.inomera.telco.commons.lock;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs blocking, thread-bound lock acquisitions on virtual threads to serve the asynchronous API.
+ * <p>
+ * The virtual thread that acquires a lock also releases it: it parks until the returned
+ * {@link Locked} is unlocked, from whichever thread, and then releases the underlying lock itself.
+ * A waiting or holding caller costs one parked virtual thread instead of a platform thread.
+ * The fence of a {@link FencedLocked} is kept.
+ */
+final class VirtualThreadLockBridge {
+    private static final ThreadFactory THREAD_FACTORY = Thread.ofVirtual().name("lock-provider-async-", 0).factory();
+
+    private VirtualThreadLockBridge() {
+    }
+
+    static CompletionStage<Locked> lock(Supplier<Locked> acquisition) {
+        final CompletableFuture<Locked> future = new CompletableFuture<>();
+        THREAD_FACTORY.newThread(() -> {
+            final Locked locked;
+            try {
+                locked = acquisition.get();
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+                return;
+            }
+            holdUntilReleased(locked, future, Function.identity());
+        }).start();
+        return future;
+    }
+
+    static CompletionStage<Optional<Locked>> tryLock(Supplier<Optional<Locked>> acquisition) {
+        final CompletableFuture<Optional<Locked>> future = new CompletableFuture<>();
+        THREAD_FACTORY.newThread(() -> {
+            final Optional<Locked> locked;
+            try {
+                locked = acquisition.get();
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+                return;
+            }
+            if (locked.isEmpty()) {
+                future.complete(Optional.empty());
+                return;
+            }
+            holdUntilReleased(locked.get(), future, Optional::of);
+        }).start();
+        return future;
+    }
+
+    private static <T> void holdUntilReleased(Locked locked, CompletableFuture<T> future, Function<Locked, T> result) {
+        final BridgedLocked bridged = locked instanceof FencedLocked fencedLocked
+                ? new BridgedFencedLocked(Thread.currentThread(), fencedLocked)
+                : new BridgedLocked(Thread.currentThread(), locked);
+        if (!future.complete(result.apply(bridged))) {
+            locked.unlock();
+            return;
+        }
+        bridged.awaitUnlockRequest();
+    }
+
+    private static class BridgedLocked implements Locked {
+        private final Thread owner;
+        private final Locked delegate;
+        private final AtomicBoolean unlockRequested = new AtomicBoolean();
+        private final CompletableFuture<Void> unlockRequest = new CompletableFuture<>();
+        private final CompletableFuture<Void> released = new CompletableFuture<>();
+
+        private BridgedLocked(Thread owner, Locked delegate) {
+            this.owner = owner;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void unlock() {
+            requestUnlock();
+            if (Thread.currentThread() == owner) {
+                releaseDelegate();
+            }
+            try {
+                released.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw e;
+            }
+        }
+
+        @Override
+        public CompletionStage<Void> unlockAsync() {
+            try {
+                requestUnlock();
+            } catch (IllegalMonitorStateException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            return released;
+        }
+
+        private void requestUnlock() {
+            if (!unlockRequested.compareAndSet(false, true)) {
+                throw new IllegalMonitorStateException("Lock is already released");
+            }
+            unlockRequest.complete(null);
+        }
+
+        private void awaitUnlockRequest() {
+            unlockRequest.join();
+            releaseDelegate();
+        }
+
+        private void releaseDelegate() {
+            if (released.isDone()) {
+                return;
+            }
+            try {
+                delegate.unlock();
+                released.complete(null);
+            } catch (Throwable e) {
+                released.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static final class BridgedFencedLocked extends BridgedLocked implements FencedLocked {
+        private final long fence;
+
+        private BridgedFencedLocked(Thread owner, FencedLocked delegate) {
+            super(owner, delegate);
+            this.fence = delegate.getFence();
+        }
+
+        @Override
+        public long getFence() {
+            return fence;
+        }
+    }
+}